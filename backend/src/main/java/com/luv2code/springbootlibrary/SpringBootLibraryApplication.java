@@ -2,8 +2,11 @@ package com.luv2code.springbootlibrary;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+// @EnableScheduling: runs the methods marked with @Scheduled (e.g. RatingAggregateRepairJob) at their set times
 @SpringBootApplication
+@EnableScheduling
 public class SpringBootLibraryApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,30 @@
+package com.luv2code.springbootlibrary.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+    Settings for the cache of books kept in memory (see BookCache).
+
+    @ConfigurationProperties(prefix = "library.book-cache") - Spring fills these fields from application.properties:
+            library.book-cache.enabled=true
+            library.book-cache.maximum-bytes=33554432
+            library.book-cache.expire-after-write=30m
+ */
+@Component
+@ConfigurationProperties(prefix = "library.book-cache")
+@Data
+public class BookCacheProperties {
+
+    // false: every read goes to the database, as if there was no cache. It can also be switched at runtime with /api/admin/secure/book-cache, to compare the throughput with and without it.
+    private boolean enabled = true;
+
+    // About how much memory the cached books may take. Books are weighed by their size (a book with a long description weighs more), not counted.
+    private long maximumBytes = 32L * 1024 * 1024;
+
+    // A safety net: a cached book is read again from the database at the latest this long after it was cached, even if no BookChangedEvent said it changed (e.g. a change made straight in the database).
+    private Duration expireAfterWrite = Duration.ofMinutes(30);
+}
@@ -0,0 +1,40 @@
+package com.luv2code.springbootlibrary.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/*
+    The threads BookPageService runs its lookups on.
+
+    They get a pool of their own so a burst of book page views can't hold up anything else (and the other way around).
+    When all threads are busy, queue-capacity lookups wait in line; past that the request thread runs the lookup itself (CallerRunsPolicy), so the page slows down instead of failing.
+
+    Every lookup holds a database connection while it runs, so there must be fewer threads than connections in the pool (spring.datasource.hikari.maximum-pool-size).
+    Otherwise a burst of book pages could take every connection, and checkouts, returns and everything else would wait for one. The app refuses to start with more.
+ */
+@Configuration
+public class BookPageConfiguration {
+
+    @Bean(name = "bookPageExecutor")
+    public ThreadPoolTaskExecutor bookPageExecutor(
+            @Value("${library.book-page.threads:4}") int threads,
+            @Value("${library.book-page.queue-capacity:500}") int queueCapacity,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize
+    ) {
+        if (threads >= connectionPoolSize) {
+            throw new IllegalStateException("library.book-page.threads (" + threads + ") must be less than the database connection pool "
+                    + "(spring.datasource.hikari.maximum-pool-size = " + connectionPoolSize + "), or book pages can take every connection");
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("book-page-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
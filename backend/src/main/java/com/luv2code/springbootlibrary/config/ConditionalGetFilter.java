@@ -0,0 +1,74 @@
+package com.luv2code.springbootlibrary.config;
+
+import com.luv2code.springbootlibrary.service.ETagService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/*
+    Adds ETags to the lists served by Spring Data REST (we don't write their controllers, so a filter is the place to do it), and answers 304 Not Modified when the client already has the current list:
+        GET /api/books, /api/books/search/...   and our /api/books/seek   -> the catalog ETag
+        GET /api/reviews/search/findByBookId?bookId=...                   -> the ETag of that book's reviews
+    (A single book, /api/books/{bookId}, is handled by BookController.)
+
+    The ETag comes from ETagService, without running the list's query: on a 304 the database isn't asked for the list at all.
+
+    "Cache-Control: no-cache" tells the browser it may keep the response but must check it with us (If-None-Match) every time before using it. Without it Spring Security would send "no-store", and the browser wouldn't keep anything to check.
+ */
+@Component
+public class ConditionalGetFilter extends OncePerRequestFilter {
+
+    private ETagService eTagService;
+
+    @Autowired
+    public ConditionalGetFilter(ETagService eTagService) {
+        this.eTagService = eTagService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String etag = etagOf(request);
+        if (etag == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        // Compares the ETag with If-None-Match; when they match it sets the 304 status and we stop here. Either way it adds the ETag header.
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    // The ETag of the response to this request, or null for the URLs this filter doesn't handle
+    private String etagOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/api/books") || path.startsWith("/api/books/search/") || path.equals("/api/books/seek")) {
+            return eTagService.catalogETag();
+        }
+        if (path.equals("/api/reviews/search/findByBookId")) {
+            try {
+                return eTagService.reviewsETag(Long.valueOf(request.getParameter("bookId")));
+            } catch (NumberFormatException e) {
+                // No or bad bookId: Spring Data REST answers the error itself
+                return null;
+            }
+        }
+        return null;
+    }
+}
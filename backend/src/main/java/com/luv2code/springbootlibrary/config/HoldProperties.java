@@ -0,0 +1,22 @@
+package com.luv2code.springbootlibrary.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+    Settings for the waitlists (see HoldService).
+
+    @ConfigurationProperties(prefix = "library.holds") - Spring fills these fields from application.properties:
+            library.holds.pickup-time=48h
+ */
+@Component
+@ConfigurationProperties(prefix = "library.holds")
+@Data
+public class HoldProperties {
+
+    // How long a returned copy is set aside for the reader at the head of the queue. After that it goes to the next reader (or back on the shelf).
+    private Duration pickupTime = Duration.ofHours(48);
+}
@@ -0,0 +1,24 @@
+package com.luv2code.springbootlibrary.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+    Settings for the cover image store (see ImageStore).
+
+    @ConfigurationProperties(prefix = "library.images") - Spring fills these fields from application.properties:
+            library.images.directory=/var/lib/library/images
+            library.images.base-url=https://library.example.com/api/images/
+ */
+@Component
+@ConfigurationProperties(prefix = "library.images")
+@Data
+public class ImageStoreProperties {
+
+    // Folder the image files are written to. Relative paths are resolved against the folder the app was started from.
+    private String directory = "cover-images";
+
+    // What goes in front of the image hash (which is what Book.img holds) to make the URL sent to the browser, see CoverUrlSerializer. It must point at ImageController.
+    private String baseUrl = "http://localhost:8080/api/images/";
+}
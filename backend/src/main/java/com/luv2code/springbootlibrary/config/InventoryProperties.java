@@ -0,0 +1,45 @@
+package com.luv2code.springbootlibrary.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+    Settings for how the inventory columns of a book (copies, copiesAvailable) are protected when several requests change the same book at the same time.
+
+    @ConfigurationProperties(prefix = "library.inventory") - Spring fills these fields from application.properties:
+            library.inventory.locking-mode=optimistic
+            library.inventory.max-attempts=5
+ */
+@Component
+@ConfigurationProperties(prefix = "library.inventory")
+@Data
+public class InventoryProperties {
+
+    /*
+        PESSIMISTIC: the book row is locked while it is being changed (a guarded UPDATE for checkout/return, SELECT ... FOR UPDATE for the admin quantity changes). Nobody ever has to retry, but everybody waits in line.
+
+        OPTIMISTIC: nothing is locked. The book is read, changed and saved with a version check (@Version on Book). If another request saved first, the change is thrown away and retried (see InventoryRetryPolicy).
+
+        Which one is faster depends on how "hot" a book is, so compare the counters from InventoryContentionMetrics before switching,
+        and the checkouts/sec that BookServiceCheckoutContentionTest and OptimisticCheckoutContentionTest print for 1, 16 and 256 borrowers on one book.
+     */
+    public enum LockingMode {
+        PESSIMISTIC,
+        OPTIMISTIC
+    }
+
+    private LockingMode lockingMode = LockingMode.PESSIMISTIC;
+
+    // How many times an inventory change is tried in total before we give up and return an error.
+    private int maxAttempts = 5;
+
+    // The first retry waits up to this long. Every following retry doubles the limit, up to maxBackoffMs.
+    private long initialBackoffMs = 5;
+
+    private long maxBackoffMs = 200;
+
+    public boolean isOptimistic() {
+        return lockingMode == LockingMode.OPTIMISTIC;
+    }
+}
@@ -0,0 +1,76 @@
+package com.luv2code.springbootlibrary.config;
+
+import com.luv2code.springbootlibrary.service.JwksCache;
+import com.luv2code.springbootlibrary.service.JwksLoader;
+import com.luv2code.springbootlibrary.service.JwtVerificationMetrics;
+import com.luv2code.springbootlibrary.service.RemoteJwksLoader;
+import com.luv2code.springbootlibrary.service.TimedJwtDecoder;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.util.List;
+
+/*
+    How the tokens sent to the API are checked (.oauth2ResourceServer().jwt() in SecurityConfiguration uses the JwtDecoder made here).
+
+    Okta's starter would make a decoder of its own, but it backs off because we define one. Ours:
+        - checks the signature with keys kept in memory by JwksCache (downloaded in the background, reloaded when the issuer rotates its keys), so a request never waits for Okta,
+        - checks expiry, issuer and audience (library.jwt.*),
+        - times every check into JwtVerificationMetrics.
+
+    Where the keys come from depends on the profile:
+        default        - RemoteJwksLoader downloads them from Okta (library.jwt.jwks-uri)
+        local-issuer   - LocalTokenIssuer, a stand-in issuer inside the app, for load tests without Okta
+ */
+@Configuration
+public class JwtDecoderConfiguration {
+
+    @Bean
+    @Profile("!local-issuer")
+    public JwksLoader remoteJwksLoader(JwtProperties jwtProperties) {
+        return new RemoteJwksLoader(jwtProperties);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public JwksCache jwksCache(JwksLoader jwksLoader, JwtProperties jwtProperties) {
+        return new JwksCache(jwksLoader, jwtProperties);
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(JwksCache jwksCache, JwtProperties jwtProperties, JwtVerificationMetrics metrics) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwksCache));
+        // The claims are checked by the validators below, the Spring Security way
+        processor.setJWTClaimsSetVerifier((claims, context) -> { });
+
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(validator(jwtProperties));
+        return new TimedJwtDecoder(decoder, metrics);
+    }
+
+    // Expiry/not-before and issuer, plus the audience when one is set
+    private static OAuth2TokenValidator<Jwt> validator(JwtProperties jwtProperties) {
+        OAuth2TokenValidator<Jwt> defaults = JwtValidators.createDefaultWithIssuer(jwtProperties.getIssuer());
+
+        String audience = jwtProperties.getAudience();
+        if (audience == null || audience.isEmpty()) {
+            return defaults;
+        }
+        OAuth2TokenValidator<Jwt> audienceValidator = new JwtClaimValidator<List<String>>(
+                JwtClaimNames.AUD, aud -> aud != null && aud.contains(audience));
+        return new DelegatingOAuth2TokenValidator<>(defaults, audienceValidator);
+    }
+}
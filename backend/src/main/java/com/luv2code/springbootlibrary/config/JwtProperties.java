@@ -0,0 +1,43 @@
+package com.luv2code.springbootlibrary.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+    Settings for how tokens are checked (see JwtDecoderConfiguration).
+
+    @ConfigurationProperties(prefix = "library.jwt") - Spring fills these fields from application.properties:
+            library.jwt.issuer=https://dev-XXXXXXX.okta.com/oauth2/default
+            library.jwt.refresh-interval=5m
+ */
+@Component
+@ConfigurationProperties(prefix = "library.jwt")
+@Data
+public class JwtProperties {
+
+    // Tokens must have been issued by this issuer ("iss" claim)
+    private String issuer;
+
+    // ...for this audience ("aud" claim). Leave empty to accept any audience.
+    private String audience;
+
+    // Where the issuer publishes its public keys (the "JWKS"). Not used by the local-issuer profile, which has its keys in memory.
+    private String jwksUri;
+
+    // How often the keys are downloaded again in the background
+    private Duration refreshInterval = Duration.ofMinutes(5);
+
+    /*
+        A token signed with a key we don't know usually means the issuer has rotated its keys, so the keys are downloaded again straight away.
+        But at most once per this interval: otherwise anybody could make us hammer the issuer by sending tokens with made up key ids.
+     */
+    private Duration minRefreshInterval = Duration.ofSeconds(30);
+
+    // Limits for one download of the keys
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    private Duration readTimeout = Duration.ofSeconds(2);
+}
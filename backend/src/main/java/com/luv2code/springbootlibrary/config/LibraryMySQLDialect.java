@@ -0,0 +1,21 @@
+package com.luv2code.springbootlibrary.config;
+
+import org.hibernate.dialect.MySQL8Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/*
+    The Hibernate dialect we use for MySQL (see spring.jpa.properties.hibernate.dialect in application.properties).
+
+    It is the normal MySQL8Dialect plus the SQL functions our JPQL queries need that JPQL doesn't have:
+
+        days_until(date) - how many days from today until "date" (negative if it's in the past).
+                           e.g. "select days_until(c.returnDate) from Checkout c" runs DATEDIFF(c.return_on, CURRENT_DATE)
+ */
+public class LibraryMySQLDialect extends MySQL8Dialect {
+
+    public LibraryMySQLDialect() {
+        super();
+        registerFunction("days_until", new SQLFunctionTemplate(StandardBasicTypes.INTEGER, "datediff(?1, current_date)"));
+    }
+}
@@ -0,0 +1,25 @@
+package com.luv2code.springbootlibrary.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/*
+    The threads LiveUpdateService writes the events on.
+
+    A stream doesn't keep a thread while it waits for events (it's an async request), so a few threads serve thousands of streams: one only runs when a stream has something to send.
+    Each stream has at most one write queued or running at a time (see LiveUpdateService), so the queue can't grow past the number of streams.
+ */
+@Configuration
+public class LiveUpdateConfiguration {
+
+    @Bean(name = "liveUpdateExecutor")
+    public ThreadPoolTaskExecutor liveUpdateExecutor(LiveUpdateProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getSenderThreads());
+        executor.setMaxPoolSize(properties.getSenderThreads());
+        executor.setQueueCapacity(properties.getMaxConnections());
+        executor.setThreadNamePrefix("live-update-");
+        return executor;
+    }
+}
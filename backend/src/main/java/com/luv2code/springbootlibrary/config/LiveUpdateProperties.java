@@ -0,0 +1,46 @@
+package com.luv2code.springbootlibrary.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+    Settings for the live updates stream (see LiveUpdateService).
+
+    @ConfigurationProperties(prefix = "library.live") - Spring fills these fields from application.properties:
+            library.live.max-connections=10000
+ */
+@Component
+@ConfigurationProperties(prefix = "library.live")
+@Data
+public class LiveUpdateProperties {
+
+    // Open streams per instance of the app. Past this, new streams are refused and the client falls back to asking.
+    private int maxConnections = 10_000;
+
+    // How many books one stream may watch
+    private int maxWatchedBooks = 200;
+
+    // Loan changes waiting to be sent to one stream. A client too slow to take them is disconnected (it reconnects and reloads its loans) rather than being sent an incomplete list.
+    private int maxPendingEvents = 64;
+
+    // A stream that had nothing to send for this long is closed. A browser still showing the page reconnects by itself.
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    // Every stream is closed after this long at the latest, so no connection lives forever
+    private Duration maxLifetime = Duration.ofMinutes(30);
+
+    // The threads that write the events to the streams (waiting streams don't use a thread)
+    private int senderThreads = 4;
+
+    // A write still running after this long is stuck on a client that stopped reading: the stream gets no more events and is closed once the write gives up
+    private Duration sendTimeout = Duration.ofSeconds(5);
+
+    // How many extra sender threads may stand in for threads stuck in such writes, so the other streams keep getting their events
+    private int maxStuckWrites = 16;
+
+    // How long a ticket for opening a signed-in stream stays valid (see LiveUpdateService.issueTicket). It's used once, right after it's issued.
+    private Duration ticketTimeToLive = Duration.ofSeconds(30);
+}
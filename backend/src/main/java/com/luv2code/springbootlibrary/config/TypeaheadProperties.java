@@ -0,0 +1,22 @@
+package com.luv2code.springbootlibrary.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+    Settings for the search box autocomplete (see TypeaheadService).
+
+    @ConfigurationProperties(prefix = "library.typeahead") - Spring fills these fields from application.properties:
+            library.typeahead.rebuild-delay=10s
+ */
+@Component
+@ConfigurationProperties(prefix = "library.typeahead")
+@Data
+public class TypeaheadProperties {
+
+    // How long after a book is added or deleted the trie is rebuilt. Every change made in the meantime is picked up by the same rebuild, so an admin adding 50 books causes one rebuild, not 50.
+    private Duration rebuildDelay = Duration.ofSeconds(10);
+}
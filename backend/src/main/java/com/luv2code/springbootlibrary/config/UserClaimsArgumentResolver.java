@@ -0,0 +1,48 @@
+package com.luv2code.springbootlibrary.config;
+
+import com.luv2code.springbootlibrary.utils.UserClaims;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/*
+    Fills in controller parameters of type UserClaims (see WebConfiguration, which registers it).
+
+    Spring Security has already validated the request's token and left the parsed Jwt in the SecurityContext, so all we do is read two claims from it.
+    The result is kept as a request attribute, so a request that needs the claims more than once still builds them only once.
+
+    The parameter is null when the request has no token (only possible on URLs outside /secure/**, e.g. the book page).
+ */
+public class UserClaimsArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private static final String ATTRIBUTE = UserClaims.class.getName();
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return UserClaims.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Object cached = webRequest.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (cached != null) {
+            return cached;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof Jwt)) {
+            return null;
+        }
+
+        UserClaims claims = UserClaims.from((Jwt) authentication.getPrincipal());
+        webRequest.setAttribute(ATTRIBUTE, claims, RequestAttributes.SCOPE_REQUEST);
+        return claims;
+    }
+}
@@ -0,0 +1,18 @@
+package com.luv2code.springbootlibrary.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+// Spring MVC settings of our own. WebMvcConfigurer lets us add to Spring Boot's defaults instead of replacing them.
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    // Lets controller methods take a UserClaims parameter (see UserClaimsArgumentResolver)
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new UserClaimsArgumentResolver());
+    }
+}
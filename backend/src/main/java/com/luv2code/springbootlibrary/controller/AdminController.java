@@ -1,11 +1,24 @@
 package com.luv2code.springbootlibrary.controller;
 
 import com.luv2code.springbootlibrary.requestmodels.AddBookRequest;
+import com.luv2code.springbootlibrary.responsemodels.BookCacheStatsResponse;
+import com.luv2code.springbootlibrary.responsemodels.InventoryContentionResponse;
+import com.luv2code.springbootlibrary.responsemodels.JwtVerificationResponse;
+import com.luv2code.springbootlibrary.responsemodels.SecondLevelCacheStatsResponse;
+import com.luv2code.springbootlibrary.responsemodels.TypeaheadStatsResponse;
 import com.luv2code.springbootlibrary.service.AdminService;
-import com.luv2code.springbootlibrary.utils.ExtractJWT;
+import com.luv2code.springbootlibrary.service.BookCache;
+import com.luv2code.springbootlibrary.service.InventoryContentionMetrics;
+import com.luv2code.springbootlibrary.service.InventoryRetryPolicy;
+import com.luv2code.springbootlibrary.service.JwtVerificationMetrics;
+import com.luv2code.springbootlibrary.service.SecondLevelCacheMetrics;
+import com.luv2code.springbootlibrary.service.TypeaheadService;
+import com.luv2code.springbootlibrary.utils.UserClaims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 // Allows requests to this controller from a frontend running on http://localhost:3000 (e.g., a React app). Browsers block cross-origin requests by default for security reasons. This annotation bypasses that for the specified domain.
 @CrossOrigin("http://localhost:3000")
 
@@ -21,15 +34,43 @@ public class AdminController {
     // The AdminService object is automatically created and provided by Spring using the @Autowired annotation.
     private AdminService adminService;
 
+    // Retries the quantity changes when another request changed the same book first, and counts how often that happens.
+    private InventoryRetryPolicy inventoryRetryPolicy;
+    private InventoryContentionMetrics inventoryContentionMetrics;
+
+    // How long checking the users' tokens takes
+    private JwtVerificationMetrics jwtVerificationMetrics;
+
+    // The search box autocomplete, for its size
+    private TypeaheadService typeaheadService;
+
+    // The books kept in memory, for their hit rate and to turn them off and on
+    private BookCache bookCache;
+
+    // The hit/miss counters of Hibernate's second-level cache
+    private SecondLevelCacheMetrics secondLevelCacheMetrics;
+
     @Autowired
-    public AdminController(AdminService adminService) {
+    public AdminController(AdminService adminService,
+                           InventoryRetryPolicy inventoryRetryPolicy,
+                           InventoryContentionMetrics inventoryContentionMetrics,
+                           JwtVerificationMetrics jwtVerificationMetrics,
+                           TypeaheadService typeaheadService,
+                           BookCache bookCache,
+                           SecondLevelCacheMetrics secondLevelCacheMetrics) {
         this.adminService = adminService;
+        this.inventoryRetryPolicy = inventoryRetryPolicy;
+        this.inventoryContentionMetrics = inventoryContentionMetrics;
+        this.jwtVerificationMetrics = jwtVerificationMetrics;
+        this.typeaheadService = typeaheadService;
+        this.bookCache = bookCache;
+        this.secondLevelCacheMetrics = secondLevelCacheMetrics;
     }
 
     @PutMapping("/secure/increase/book/quantity")
     public void increaseBookQuantity(
             /*
-            @RequestHeader extracts a value from the HTTP headers of the request. In this case the value we want to extract is the the value for "Authorization". There are numerous HTTP Headers in our file and they look like this:
+            The user's token arrives in the "Authorization" HTTP header of the request. There are numerous HTTP Headers in our file and they look like this:
                     Authorization: Bearer some.jwt.token
                     Content-Type: application/json
 
@@ -40,10 +81,10 @@ public class AdminController {
                     okta.oauth2.issuer=https://dev-XXXXXXX.okta.com/oauth2/default
 
 
-            String token:
-            The String token parameter in the @RequestHeader annotation will automatically capture the value of the Authorization header from the incoming HTTP request. You, as the developer, don’t need to manually set or input a value here when the method is called.
+            UserClaims user:
+            The claims of that token (who the user is and their userType). By the time this method runs, Spring Security has already checked the token and parsed it, and UserClaimsArgumentResolver hands us the parsed claims. You, as the developer, don’t need to manually set or input a value here when the method is called.
              */
-            @RequestHeader(value="Authorization") String token,
+            UserClaims user,
 
             /*
             @RequestParam extracts a value from the query string of the URL.
@@ -63,22 +104,10 @@ public class AdminController {
              */
             @RequestParam Long bookId
     ) throws Exception {
-        // Extracts the userType field from the JWT token. To ensure only users with the "admin" role can access this functionality.
-
         /*
-        ExtractJWT: This is the name of the class containing the static method payloadJWTExtraction.
-        payloadJWTExtraction(...): This is a method that extracts information from the payload of the JWT token.
-
-
-        token: The token parameter contains the JWT/Okta token passed to the method.
-
-
-        "\"userType\""
-            This is the second parameter passed to the payloadJWTExtraction method.
-            It represents the key (or claim name) in the JWT payload that we want to extract.
-            The userType claim is likely part of the JWT payload, which may look like this after decoding:
+        user.isAdmin() checks the "userType" claim of the token.
 
-            Okta (or any OAuth 2.0 / OpenID Connect provider) generates the JWT token, not your Spring Boot application. Here's what it looks like:
+            Okta (or any OAuth 2.0 / OpenID Connect provider) generates the JWT token, not your Spring Boot application. Here's what its payload looks like after decoding:
             {
                 "sub": "john.doe@example.com",
                 "userType": "admin",
@@ -86,42 +115,40 @@ public class AdminController {
                 "exp": 1609462800
             }
 
-            Here, "userType" has the value "admin". The method will extract "admin" from the payload.
+            Here, "userType" has the value "admin", so isAdmin() is true.
          */
-        String admin = ExtractJWT.payloadJWTExtraction(token, "\"userType\"");
 
         // This verifies that the user is an admin. If not, an exception is thrown, blocking the operation.
-        if (admin == null || !admin.equals("admin")) {
+        if (!user.isAdmin()) {
             throw new Exception("Administration page only");
         }
 
         // Calls a method in the AdminService to perform the actual task of increasing the book quantity.
-        adminService.increaseBookQuantity(bookId);
+        // It goes through inventoryRetryPolicy so that it is tried again if somebody else changed the same book at the same time.
+        inventoryRetryPolicy.run(bookId, () -> adminService.increaseBookQuantity(bookId));
     }
 
     @PutMapping("/secure/decrease/book/quantity")
     public void decreaseBookQuantity(
-            @RequestHeader(value="Authorization") String token,
+            UserClaims user,
             @RequestParam Long bookId
     ) throws Exception {
-        String admin = ExtractJWT.payloadJWTExtraction(token, "\"userType\"");
-        if (admin == null || !admin.equals("admin")) {
+        if (!user.isAdmin()) {
             throw new Exception("Administration page only");
         }
-        adminService.decreaseBookQuantity(bookId);
+        inventoryRetryPolicy.run(bookId, () -> adminService.decreaseBookQuantity(bookId));
     }
 
 
 
     @PostMapping("/secure/add/book")
     public void postBook(
-            @RequestHeader(value="Authorization") String token,
+            UserClaims user,
             // Notice we used @REQUESTBODY not @REQUESTPARAM
             // This is a deserialization annotation. It means the incoming request body (which should contain JSON data) will be automatically converted into an AddBookRequest object. The fields in the request body should match the fields in the AddBookRequest class (title, author, description, etc.). This is how the backend gets all the details needed to add a new book.
             @RequestBody AddBookRequest addBookRequest
     ) throws Exception {
-        String admin = ExtractJWT.payloadJWTExtraction(token, "\"userType\"");
-        if (admin == null || !admin.equals("admin")) {
+        if (!user.isAdmin()) {
             throw new Exception("Administration page only");
         }
         adminService.postBook(addBookRequest);
@@ -129,26 +156,81 @@ public class AdminController {
 
     @DeleteMapping("/secure/delete/book")
     public void deleteBook(
-            @RequestHeader(value="Authorization") String token,
+            UserClaims user,
             @RequestParam Long bookId
     ) throws Exception {
-        String admin = ExtractJWT.payloadJWTExtraction(token, "\"userType\"");
-        if (admin == null || !admin.equals("admin")) {
+        if (!user.isAdmin()) {
             throw new Exception("Administration page only");
         }
         adminService.deleteBook(bookId);
     }
 
-}
-
-
-
-
-
-
+    // Shows, per book, how often inventory changes ran into each other (conflicts, retries, give-ups). Used to decide between the pessimistic and optimistic locking modes.
+    @GetMapping("/secure/inventory/contention")
+    public List<InventoryContentionResponse> inventoryContention(
+            UserClaims user
+    ) throws Exception {
+        if (!user.isAdmin()) {
+            throw new Exception("Administration page only");
+        }
+        return inventoryContentionMetrics.snapshot();
+    }
 
+    // A histogram of how long checking a token has taken (see JwtVerificationMetrics)
+    @GetMapping("/secure/jwt/verification")
+    public JwtVerificationResponse jwtVerification(
+            UserClaims user
+    ) throws Exception {
+        if (!user.isAdmin()) {
+            throw new Exception("Administration page only");
+        }
+        return jwtVerificationMetrics.snapshot();
+    }
 
+    // How big the typeahead trie is and when it was last rebuilt (see TypeaheadService)
+    @GetMapping("/secure/typeahead")
+    public TypeaheadStatsResponse typeahead(
+            UserClaims user
+    ) throws Exception {
+        if (!user.isAdmin()) {
+            throw new Exception("Administration page only");
+        }
+        return typeaheadService.stats();
+    }
 
+    // The hit rate, evictions and size of the book cache (see BookCache)
+    @GetMapping("/secure/book-cache")
+    public BookCacheStatsResponse bookCache(
+            UserClaims user
+    ) throws Exception {
+        if (!user.isAdmin()) {
+            throw new Exception("Administration page only");
+        }
+        return bookCache.stats();
+    }
 
+    // Turns the book cache off or on without restarting, e.g. PUT /api/admin/secure/book-cache?enabled=false, to measure the throughput with and without it
+    @PutMapping("/secure/book-cache")
+    public BookCacheStatsResponse enableBookCache(
+            UserClaims user,
+            @RequestParam boolean enabled
+    ) throws Exception {
+        if (!user.isAdmin()) {
+            throw new Exception("Administration page only");
+        }
+        bookCache.setEnabled(enabled);
+        return bookCache.stats();
+    }
 
+    // The hits and misses of every region of Hibernate's second-level cache (see SecondLevelCacheMetrics). "enabled": false unless the app runs with the l2cache profile.
+    @GetMapping("/secure/l2-cache")
+    public SecondLevelCacheStatsResponse secondLevelCache(
+            UserClaims user
+    ) throws Exception {
+        if (!user.isAdmin()) {
+            throw new Exception("Administration page only");
+        }
+        return secondLevelCacheMetrics.snapshot();
+    }
 
+}
@@ -1,13 +1,46 @@
 package com.luv2code.springbootlibrary.controller;
 
 import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.BookSummary;
+import com.luv2code.springbootlibrary.entity.HistoryWithBook;
+import com.luv2code.springbootlibrary.responsemodels.BookBatchResponse;
+import com.luv2code.springbootlibrary.responsemodels.BookPageResponse;
+import com.luv2code.springbootlibrary.responsemodels.BookRatingResponse;
+import com.luv2code.springbootlibrary.responsemodels.BookSearchResponse;
+import com.luv2code.springbootlibrary.responsemodels.CategoryFacetResponse;
+import com.luv2code.springbootlibrary.responsemodels.ChangeFeedResponse;
+import com.luv2code.springbootlibrary.responsemodels.HoldResponse;
+import com.luv2code.springbootlibrary.responsemodels.LiveTicketResponse;
+import com.luv2code.springbootlibrary.responsemodels.LoanBatchItemResponse;
+import com.luv2code.springbootlibrary.responsemodels.SeekPageResponse;
 import com.luv2code.springbootlibrary.responsemodels.ShelfCurrentLoansResponse;
+import com.luv2code.springbootlibrary.responsemodels.TypeaheadSuggestion;
+import com.luv2code.springbootlibrary.service.BookBatchService;
+import com.luv2code.springbootlibrary.service.BookCache;
+import com.luv2code.springbootlibrary.service.BookPageService;
+import com.luv2code.springbootlibrary.service.BookSearchService;
 import com.luv2code.springbootlibrary.service.BookService;
-import com.luv2code.springbootlibrary.utils.ExtractJWT;
+import com.luv2code.springbootlibrary.service.CategoryFacetService;
+import com.luv2code.springbootlibrary.service.ChangeFeedService;
+import com.luv2code.springbootlibrary.service.ETagService;
+import com.luv2code.springbootlibrary.service.HoldService;
+import com.luv2code.springbootlibrary.service.InventoryRetryPolicy;
+import com.luv2code.springbootlibrary.service.LiveUpdateService;
+import com.luv2code.springbootlibrary.service.RatingAggregateService;
+import com.luv2code.springbootlibrary.service.SeekPagingService;
+import com.luv2code.springbootlibrary.service.TypeaheadService;
+import com.luv2code.springbootlibrary.utils.UserClaims;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 @CrossOrigin("http://localhost:3000")
 @RestController
@@ -16,64 +49,310 @@ public class BookController {
 
     private BookService bookService;
 
+    private InventoryRetryPolicy inventoryRetryPolicy;
+
+    private RatingAggregateService ratingAggregateService;
+
+    private BookPageService bookPageService;
+
+    private BookSearchService bookSearchService;
+
+    private TypeaheadService typeaheadService;
+
+    private CategoryFacetService categoryFacetService;
+
+    private SeekPagingService seekPagingService;
+
+    private BookCache bookCache;
+
+    private ETagService eTagService;
+
+    private ChangeFeedService changeFeedService;
+
+    private BookBatchService bookBatchService;
+
+    private HoldService holdService;
+
+    private LiveUpdateService liveUpdateService;
+
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, InventoryRetryPolicy inventoryRetryPolicy,
+                          RatingAggregateService ratingAggregateService, BookPageService bookPageService,
+                          BookSearchService bookSearchService, TypeaheadService typeaheadService,
+                          CategoryFacetService categoryFacetService, SeekPagingService seekPagingService,
+                          BookCache bookCache, ETagService eTagService,
+                          ChangeFeedService changeFeedService, BookBatchService bookBatchService,
+                          HoldService holdService, LiveUpdateService liveUpdateService) {
         this.bookService = bookService;
+        this.inventoryRetryPolicy = inventoryRetryPolicy;
+        this.ratingAggregateService = ratingAggregateService;
+        this.bookPageService = bookPageService;
+        this.bookSearchService = bookSearchService;
+        this.typeaheadService = typeaheadService;
+        this.categoryFacetService = categoryFacetService;
+        this.seekPagingService = seekPagingService;
+        this.bookCache = bookCache;
+        this.eTagService = eTagService;
+        this.changeFeedService = changeFeedService;
+        this.bookBatchService = bookBatchService;
+        this.holdService = holdService;
+        this.liveUpdateService = liveUpdateService;
+    }
+
+    /*
+        Searches titles and authors in memory (see BookSearchIndex) instead of with LIKE '%...%' on the book table.
+        Returns the ids of one page of matching books, best match first, e.g. /api/books/find?query=harry&page=0&size=5
+
+        (Not under /api/books/search, which belongs to the Spring Data REST search methods.)
+     */
+    @GetMapping("/find")
+    public BookSearchResponse find(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return bookSearchService.search(query, page, size);
+    }
+
+    // Completions for what has been typed in the search box so far (titles, authors and categories), e.g. /api/books/typeahead?prefix=har&limit=8
+    @GetMapping("/typeahead")
+    public List<TypeaheadSuggestion> typeahead(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "8") int limit
+    ) {
+        return typeaheadService.suggest(prefix, limit);
+    }
+
+    // The category sidebar: how many books each category has and how many can be borrowed now. Served from memory, without any SQL (see CategoryFacetService).
+    @GetMapping("/facets/categories")
+    public List<CategoryFacetResponse> categoryFacets() {
+        return categoryFacetService.categories();
+    }
+
+    /*
+        The catalog one page at a time, with a cursor instead of a page number and without counting all books (see SeekPagingService).
+        First page: /api/books/seek?size=20, next pages: /api/books/seek?size=20&cursor=<nextCursor of the previous page>
+     */
+    @GetMapping("/seek")
+    public SeekPageResponse<BookSummary> seekBooks(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) throws Exception {
+        return seekPagingService.books(cursor, size);
+    }
+
+    // Up to BookBatchService.MAX_IDS books in one request, in the order asked for, e.g. /api/books/batch?ids=4,8,15,16 (see BookBatchService)
+    @GetMapping("/batch")
+    public BookBatchResponse batch(@RequestParam List<Long> ids) throws Exception {
+        return bookBatchService.books(ids);
+    }
+
+    /*
+        The books added, changed or deleted since the client last asked (see ChangeFeedService).
+        Start with /api/books/changes?since=0 (the whole catalog, as "CREATED"), then send the cursor of the previous answer as "since". Keep asking while "more" is true.
+     */
+    @GetMapping("/changes")
+    public ChangeFeedResponse changes(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        return changeFeedService.changes(since, limit);
+    }
+
+    /*
+        A Server-Sent Events stream of changes (see LiveUpdateService), e.g. /api/books/live?bookIds=4,8
+            event: availability   the copies of one of the watched books changed
+            event: loan           one of the signed-in user's loans changed (only for a signed-in stream)
+
+        Signing in is optional, like on the book page. A browser's EventSource can't send an Authorization header, so it opens the stream with a ticket instead (see liveTicket): /api/books/live?bookIds=4,8&ticket=...
+        Other clients may still send the header.
+     */
+    @GetMapping(value = "/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter live(
+            UserClaims user,
+            @RequestParam(required = false) List<Long> bookIds,
+            @RequestParam(required = false) String ticket
+    ) throws Exception {
+        String userEmail = null;
+        if (user != null) {
+            userEmail = user.getEmail();
+        } else if (ticket != null) {
+            userEmail = liveUpdateService.redeemTicket(ticket);
+        }
+        return liveUpdateService.subscribe(userEmail, bookIds == null ? Collections.emptyList() : bookIds);
+    }
+
+    // A ticket that opens ONE signed-in live updates stream, for the next library.live.ticket-time-to-live
+    @PostMapping("/secure/live/ticket")
+    public LiveTicketResponse liveTicket(UserClaims user) {
+        return new LiveTicketResponse(liveUpdateService.issueTicket(user.getEmail()));
+    }
+
+    // The user's history (returned books), newest return first, paged the same way
+    @GetMapping("/secure/history/seek")
+    public SeekPageResponse<HistoryWithBook> seekHistory(
+            UserClaims user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size
+    ) throws Exception {
+        return seekPagingService.history(user.getEmail(), cursor, size);
+    }
+
+    /*
+        One book, e.g. /api/books/5. This takes over the Spring Data REST URL of the same name (our controllers are asked first), so the book is read through BookCache instead of with a query every time.
+        {bookId:\d+}: only numbers, so /api/books/search and the other Spring Data REST URLs under /api/books still reach Spring Data REST.
+        404 if the book doesn't exist.
+
+        With an ETag (see ETagService): if the client sends the book's current ETag in If-None-Match, the answer is 304 and the book isn't even loaded, only its version.
+        Otherwise the ETag sent is the one of the copy being sent, which may be a moment older than the database's if BookCache hasn't dropped it yet.
+     */
+    @GetMapping("/{bookId:\\d+}")
+    public ResponseEntity<Book> book(@PathVariable Long bookId, WebRequest request) {
+        Optional<String> current = eTagService.bookETag(bookId);
+        if (!current.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(current.get())) {
+            // Spring has already set the 304 status, there's nothing to send
+            return null;
+        }
+        return bookCache.find(bookId)
+                .map(book -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(ETagService.bookETag(book))
+                        .body(book))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /*
+        Everything the book page needs in one request (see BookPageService), instead of five.
+
+        The Authorization header is optional: without it user is null and the page still gets the book and its reviews, just not the parts about the user.
+     */
+    @GetMapping("/{bookId}/page")
+    public ResponseEntity<BookPageResponse> bookPage(
+            UserClaims user,
+            @PathVariable Long bookId
+    ) {
+        String userEmail = user == null ? null : user.getEmail();
+        return ResponseEntity.of(bookPageService.bookPage(bookId, userEmail));
+    }
+
+    // The book's review count, average rating and histogram, read from the running totals instead of from the reviews (see RatingAggregateService). 404 if the book doesn't exist.
+    @GetMapping("/{bookId}/rating")
+    public ResponseEntity<BookRatingResponse> rating(@PathVariable Long bookId) {
+        return ResponseEntity.of(ratingAggregateService.rating(bookId));
     }
 
     @GetMapping("/secure/currentloans")
     public List<ShelfCurrentLoansResponse> currentLoans(
-            @RequestHeader(value = "Authorization") String token
+            UserClaims user
     ) throws Exception {
-        // "\"sub\"": This is the claim key to extract from the payload. The sub claim typically contains the subject of the token, which in this case is likely the user's email address.
-        // JWTs often include claims like sub, iat, exp, etc. The sub claim usually stores the user’s unique identifier, such as their email.
-        // After calling payloadJWTExtraction, the result (userEmail) will contain the email extracted from the token.
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
+        // UserClaims holds the claims of the token Spring Security already checked (see UserClaimsArgumentResolver).
+        // JWTs often include claims like sub, iat, exp, etc. The sub claim usually stores the user’s unique identifier, such as their email, and that's what getEmail() returns.
+        String userEmail = user.getEmail();
         return bookService.currentLoans(userEmail);
     }
 
     @GetMapping("/secure/currentloans/count")
     public int currentLoansCount(
-            @RequestHeader(value = "Authorization") String token
+            UserClaims user
     ) {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
+        String userEmail = user.getEmail();
         return bookService.currentLoansCount(userEmail);
     }
 
     @GetMapping("/secure/ischeckedout/byuser")
     public Boolean checkoutBookByUser(
-            @RequestHeader(value = "Authorization") String token,
+            UserClaims user,
             @RequestParam Long bookId
     ) {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
+        String userEmail = user.getEmail();
         return bookService.checkoutBookByUser(userEmail, bookId);
     }
 
     // Add a book to be checked out by the user
     @PutMapping("/secure/checkout")
     public Book checkoutBook (
-            @RequestHeader(value = "Authorization") String token,
+            UserClaims user,
             @RequestParam Long bookId
     ) throws Exception {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
-        return bookService.checkoutBook(userEmail, bookId);
+        String userEmail = user.getEmail();
+        // Checkout and return change the book's copiesAvailable, so they are retried if another request changed the same book first
+        return inventoryRetryPolicy.execute(bookId, () -> bookService.checkoutBook(userEmail, bookId));
     }
 
     @PutMapping("/secure/return")
     public void returnBook(
-            @RequestHeader(value = "Authorization") String token,
+            UserClaims user,
+            @RequestParam Long bookId
+    ) throws Exception {
+        String userEmail = user.getEmail();
+        inventoryRetryPolicy.run(bookId, () -> bookService.returnBook(userEmail, bookId));
+    }
+
+    /*
+        The waitlist (see HoldService). A user whose book has no copies left puts it on hold instead of reloading the book page:
+        when a copy is returned it is set aside for the first user in the queue, who gets a message, and then checks the book out as usual with /secure/checkout.
+     */
+    @GetMapping("/secure/holds")
+    public List<HoldResponse> holds(
+            UserClaims user
+    ) {
+        return holdService.holds(user.getEmail());
+    }
+
+    @PutMapping("/secure/hold")
+    public void placeHold(
+            UserClaims user,
+            @RequestParam Long bookId
+    ) throws Exception {
+        holdService.placeHold(user.getEmail(), bookId);
+    }
+
+    @DeleteMapping("/secure/hold")
+    public void cancelHold(
+            UserClaims user,
             @RequestParam Long bookId
     ) throws Exception {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
-        bookService.returnBook(userEmail, bookId);
+        holdService.cancelHold(user.getEmail(), bookId);
+    }
+
+    /*
+        Several checkouts or returns at once (the self-service kiosks), e.g. /api/books/secure/checkout/batch?bookIds=4,8,15
+        All of them run in one transaction, and the answer has one result per book (see BookService.checkoutBooks).
+        Like the single ones, they are retried as a whole on an optimistic locking conflict; the conflict is counted under the first book.
+     */
+    @PutMapping("/secure/checkout/batch")
+    public List<LoanBatchItemResponse> checkoutBooks(
+            UserClaims user,
+            @RequestParam List<Long> bookIds
+    ) throws Exception {
+        String userEmail = user.getEmail();
+        if (bookIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return inventoryRetryPolicy.execute(bookIds.get(0), () -> bookService.checkoutBooks(userEmail, bookIds));
+    }
+
+    @PutMapping("/secure/return/batch")
+    public List<LoanBatchItemResponse> returnBooks(
+            UserClaims user,
+            @RequestParam List<Long> bookIds
+    ) throws Exception {
+        String userEmail = user.getEmail();
+        if (bookIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return inventoryRetryPolicy.execute(bookIds.get(0), () -> bookService.returnBooks(userEmail, bookIds));
     }
 
     @PutMapping("/secure/renew/loan")
     public void renewLoan(
-            @RequestHeader(value = "Authorization") String token,
+            UserClaims user,
             @RequestParam Long bookId
     ) throws Exception {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
+        String userEmail = user.getEmail();
         bookService.renewLoan(userEmail, bookId);
     }
 
@@ -0,0 +1,56 @@
+package com.luv2code.springbootlibrary.controller;
+
+import com.luv2code.springbootlibrary.service.LocalTokenIssuer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    The endpoints of the stand-in token issuer (see LocalTokenIssuer). Only there with the "local-issuer" profile, never in production.
+
+    A load test gets its tokens here and sends them to the API like Okta tokens:
+            POST /api/local-issuer/token?sub=reader@example.com                  -> a normal user
+            POST /api/local-issuer/token?sub=admin@example.com&userType=admin    -> an administrator
+            POST /api/local-issuer/rotate                                        -> sign with a new key from now on
+            GET  /api/local-issuer/keys                                          -> the public keys (JWKS)
+ */
+@RestController
+@RequestMapping("/api/local-issuer")
+@Profile("local-issuer")
+public class LocalTokenController {
+
+    private LocalTokenIssuer localTokenIssuer;
+
+    @Autowired
+    public LocalTokenController(LocalTokenIssuer localTokenIssuer) {
+        this.localTokenIssuer = localTokenIssuer;
+    }
+
+    @PostMapping("/token")
+    public Map<String, Object> token(
+            @RequestParam String sub,
+            @RequestParam(required = false) String userType,
+            @RequestParam(defaultValue = "3600") long expiresIn
+    ) throws Exception {
+        // Same field names as an OAuth2 token response
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("access_token", localTokenIssuer.mint(sub, userType, Duration.ofSeconds(expiresIn)));
+        response.put("token_type", "Bearer");
+        response.put("expires_in", expiresIn);
+        return response;
+    }
+
+    @PostMapping("/rotate")
+    public void rotate() throws Exception {
+        localTokenIssuer.rotate();
+    }
+
+    @GetMapping("/keys")
+    public Map<String, Object> keys() {
+        return localTokenIssuer.load().toJSONObject();
+    }
+}
@@ -2,8 +2,10 @@ package com.luv2code.springbootlibrary.controller;
 
 import com.luv2code.springbootlibrary.entity.Message;
 import com.luv2code.springbootlibrary.requestmodels.AdminQuestionRequest;
+import com.luv2code.springbootlibrary.responsemodels.SeekPageResponse;
 import com.luv2code.springbootlibrary.service.MessagesService;
-import com.luv2code.springbootlibrary.utils.ExtractJWT;
+import com.luv2code.springbootlibrary.service.SeekPagingService;
+import com.luv2code.springbootlibrary.utils.UserClaims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,45 +16,60 @@ public class MessagesController {
 
     private MessagesService messagesService;
 
+    private SeekPagingService seekPagingService;
+
     @Autowired
-    public MessagesController(MessagesService messagesService) {
+    public MessagesController(MessagesService messagesService, SeekPagingService seekPagingService) {
         this.messagesService = messagesService;
+        this.seekPagingService = seekPagingService;
     }
 
     @PostMapping("/secure/add/message")
     public void postMessage(
-            @RequestHeader(value="Authorization") String token,
+            UserClaims user,
             @RequestBody Message messageRequest
     ) {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
+        String userEmail = user.getEmail();
         messagesService.postMessage(messageRequest, userEmail);
     }
 
     @PutMapping("/secure/admin/message")
     public void putMessage(
-            @RequestHeader(value="Authorization") String token,
+            UserClaims user,
             @RequestBody AdminQuestionRequest adminQuestionRequest
     ) throws Exception {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
-        String admin = ExtractJWT.payloadJWTExtraction(token, "\"userType\"");
-        if (admin == null || !admin.equals("admin")) {
+        String userEmail = user.getEmail();
+        if (!user.isAdmin()) {
             throw new Exception("Administration page only.");
         }
         messagesService.putMessage(adminQuestionRequest, userEmail);
     }
 
-}
-
-
-
-
-
-
-
-
-
-
-
-
+    /*
+        The user's own messages, one page at a time with a cursor instead of a page number (see SeekPagingService).
+        First page: /api/messages/secure/seek?size=5, next pages: /api/messages/secure/seek?size=5&cursor=<nextCursor of the previous page>
+     */
+    @GetMapping("/secure/seek")
+    public SeekPageResponse<Message> messagesOfUser(
+            UserClaims user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size
+    ) throws Exception {
+        return seekPagingService.messagesOfUser(user.getEmail(), cursor, size);
+    }
 
+    // The same for the admin page's list of open (closed=false) or answered messages
+    @GetMapping("/secure/admin/seek")
+    public SeekPageResponse<Message> messagesByClosed(
+            UserClaims user,
+            @RequestParam(defaultValue = "false") boolean closed,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size
+    ) throws Exception {
+        if (!user.isAdmin()) {
+            throw new Exception("Administration page only.");
+        }
+        return seekPagingService.messagesByClosed(closed, cursor, size);
+    }
 
+}
@@ -2,7 +2,7 @@ package com.luv2code.springbootlibrary.controller;
 
 import com.luv2code.springbootlibrary.requestmodels.ReviewRequest;
 import com.luv2code.springbootlibrary.service.ReviewService;
-import com.luv2code.springbootlibrary.utils.ExtractJWT;
+import com.luv2code.springbootlibrary.utils.UserClaims;
 import org.springframework.web.bind.annotation.*;
 
 @CrossOrigin("http://localhost:3000")
@@ -18,10 +18,10 @@ public class ReviewController {
 
     @GetMapping("/secure/user/book")
     public Boolean reviewBookByUser(
-            @RequestHeader(value="Authorization") String token,
+            UserClaims user,
             @RequestParam Long bookId
     ) throws Exception {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
+        String userEmail = user.getEmail();
 
         if (userEmail == null) {
             throw new Exception("User email is missing");
@@ -32,10 +32,10 @@ public class ReviewController {
 
     @PostMapping("/secure")
     public void postReview(
-            @RequestHeader(value="Authorization") String token,
+            UserClaims user,
             @RequestBody ReviewRequest reviewRequest
     ) throws Exception {
-        String userEmail = ExtractJWT.payloadJWTExtraction(token, "\"sub\"");
+        String userEmail = user.getEmail();
         if (userEmail == null) {
             throw new Exception("User email is missing");
         }
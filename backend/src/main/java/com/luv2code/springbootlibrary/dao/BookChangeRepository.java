@@ -0,0 +1,27 @@
+package com.luv2code.springbootlibrary.dao;
+
+import com.luv2code.springbootlibrary.entity.BookChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import java.util.List;
+
+/*
+    The catalog's change log (see ChangeFeedService).
+
+    @RepositoryRestResource(exported = false): the log is read through /api/books/changes, Spring Data REST must not publish this repository by itself.
+ */
+@RepositoryRestResource(exported = false)
+public interface BookChangeRepository extends JpaRepository<BookChange, Long> {
+
+    // The rows after the cursor, oldest first, read from the primary key
+    @Query("select c from BookChange c where c.id > :after_id order by c.id")
+    List<BookChange> findAfter(@Param("after_id") long afterId, Pageable pageable);
+
+    // Waits for, and then holds until the end of the transaction, the one row of book_change_log_lock (see ChangeFeedService.onBookChanged)
+    @Query(value = "SELECT id FROM book_change_log_lock WHERE id = 1 FOR UPDATE", nativeQuery = true)
+    Integer lockLog();
+}
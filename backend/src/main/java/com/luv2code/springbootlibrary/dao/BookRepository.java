@@ -1,14 +1,23 @@
 package com.luv2code.springbootlibrary.dao;
 
 import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.BookSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.Optional;
 
 /*
     JpaRepository<Book, Long>: This means the "BookRepository" will have access to all the default methods/functions provided by the JpaRepository interface for managing Book entities, such as save(), delete(), findAll(), etc.
@@ -17,6 +26,8 @@ import java.util.List;
     Book: This tells the repository to manage Book entities.
     Long: This is the type of the primary key (id field) for the Book entity.
  */
+// excerptProjection: lists of books are sent as BookSummary (no description), a single book is sent whole.
+@RepositoryRestResource(excerptProjection = BookSummary.class)
 public interface BookRepository extends JpaRepository<Book, Long> {
     /*
         Purpose: This method searches for books whose title contains a specific string (a substring search).
@@ -53,7 +64,13 @@ public interface BookRepository extends JpaRepository<Book, Long> {
             Return Value: It returns a paginated list (Page<Book>) of books that belong to the specified category.
 
             Example Usage: If you want to find all books in the "Science Fiction" category, you would call this method with "Science Fiction" as the category.
+
+            @QueryHints: with the "l2cache" profile the pages (and their counts) are kept in Hibernate's query cache, in the "book-queries" region. Without it the hints are ignored.
      */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "book-queries")
+    })
     Page<Book> findByCategory(@RequestParam("category") String category, Pageable pageable);
 
 
@@ -80,7 +97,13 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     Return Value: It returns a list of Book objects that match the provided IDs.
 
     Example Usage: If you want to fetch books with the IDs 1, 5, and 10, you would call this method with those IDs.
+
+    Cached like findByCategory with the "l2cache" profile.
      */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "book-queries")
+    })
     @Query("select o from Book o where o.id in :book_ids")
     List<Book> findBooksByBookIds (@Param("book_ids") List<Long> bookId);
 
@@ -95,4 +118,125 @@ public interface BookRepository extends JpaRepository<Book, Long> {
         Book findBookById(@Param("bookId") Long bookId);
 
      */
+
+    /*
+        Purpose: Takes one copy of a book off the shelf in a single SQL statement.
+
+        The old checkout code did "read the book -> check copiesAvailable -> save the book". When two users check out the last copy at the same moment, both reads see 1 copy, both saves write 0, and we've lent out a copy we don't have.
+
+        Here the check and the decrement happen inside the same UPDATE, so the database does both while it holds the row lock (only for this one statement):
+            UPDATE book SET copies_available = copies_available - 1 WHERE id = ? AND copies_available > 0
+
+        Return Value: the number of rows changed. 1 means we got a copy, 0 means the book doesn't exist or there were no copies left.
+
+        clearAutomatically = true: the UPDATE skips Hibernate, so any Book already loaded in this transaction would still show the old copiesAvailable. Clearing the persistence context makes the next findById() read the fresh row.
+
+        b.version = b.version + 1: bulk UPDATEs don't bump the @Version column by themselves. We do it by hand so a request that is changing the same book optimistically notices it lost the race.
+
+        @RestResource(exported = false): Spring Data REST publishes every repository method under /api/books/search/... This one must only ever be called by our services, never straight from a URL.
+     */
+    @RestResource(exported = false)
+    @Modifying(clearAutomatically = true)
+    @Query("update Book b set b.copiesAvailable = b.copiesAvailable - 1, b.version = b.version + 1 where b.id = :book_id and b.copiesAvailable > 0")
+    int decrementCopiesAvailable(@Param("book_id") Long bookId);
+
+    // The opposite of decrementCopiesAvailable: puts a copy back on the shelf when a book is returned. It can never go above the total number of copies.
+    @RestResource(exported = false)
+    @Modifying(clearAutomatically = true)
+    @Query("update Book b set b.copiesAvailable = b.copiesAvailable + 1, b.version = b.version + 1 where b.id = :book_id and b.copiesAvailable < b.copies")
+    int incrementCopiesAvailable(@Param("book_id") Long bookId);
+
+    /*
+        Purpose: Loads a book AND locks its row until the transaction ends (SELECT ... FOR UPDATE).
+
+        Used by the admin quantity changes in the pessimistic locking mode: any other request that wants to change this book waits until we're done, so nobody can overwrite our change.
+     */
+    @RestResource(exported = false)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Book o where o.id = :book_id")
+    Optional<Book> findByIdForUpdate(@Param("book_id") Long bookId);
+
+    /*
+        Adds one review to the book's rating totals (see RatingAggregateService). One UPDATE, so reviews posted at the same moment can't overwrite each other's totals.
+
+        The version is NOT bumped: the rating isn't part of the inventory, and a checkout shouldn't have to retry because somebody reviewed the book.
+     */
+    @RestResource(exported = false)
+    @Modifying
+    @Query("update Book b set b.ratingCount = b.ratingCount + 1, b.ratingSum = b.ratingSum + :rating where b.id = :book_id")
+    int addRating(@Param("book_id") Long bookId, @Param("rating") double rating);
+
+    // Recalculates the book's rating totals from its reviews (used to repair drift, see RatingAggregateService.recompute)
+    @RestResource(exported = false)
+    @Modifying
+    @Query(value = "UPDATE book SET " +
+            "rating_count = (SELECT COUNT(*) FROM review WHERE review.book_id = :book_id), " +
+            "rating_sum = (SELECT COALESCE(SUM(rating), 0) FROM review WHERE review.book_id = :book_id) " +
+            "WHERE id = :book_id", nativeQuery = true)
+    int recomputeRating(@Param("book_id") Long bookId);
+
+    // Only the ids, for jobs that go through every book
+    @RestResource(exported = false)
+    @Query("select b.id from Book b order by b.id")
+    List<Long> findAllIds();
+
+    // Just the names of a book: what the search index and the typeahead are built from (see findNamesAfter)
+    interface BookNames {
+        Long getId();
+
+        String getTitle();
+
+        String getAuthor();
+
+        String getCategory();
+    }
+
+    /*
+        The id, title, author and category of the next books after a given id, used to fill BookSearchIndex and the typeahead without loading descriptions and covers.
+        "id > :after_id order by id" walks the primary key, so every batch is as fast as the first one (an OFFSET gets slower the further it goes).
+     */
+    @RestResource(exported = false)
+    @Query("select b.id as id, b.title as title, b.author as author, b.category as category from Book b where b.id > :after_id order by b.id")
+    List<BookNames> findNamesAfter(@Param("after_id") Long afterId, Pageable pageable);
+
+    // One row of countByCategory
+    interface CategoryCount {
+        String getCategory();
+
+        long getBooks();
+
+        long getAvailableBooks();
+    }
+
+    // How many books each category has, and how many of them have a copy on the shelf. Used to check (and repair) the counts CategoryFacetService keeps in memory.
+    @RestResource(exported = false)
+    @Query("select b.category as category, count(b) as books, " +
+            "sum(case when b.copiesAvailable > 0 then 1 else 0 end) as availableBooks " +
+            "from Book b where b.category is not null group by b.category")
+    List<CategoryCount> countByCategory();
+
+    /*
+        One page of the catalog for the cursor listing (see SeekPagingService): the books after a given id, in id order.
+        The limit comes from the Pageable and there is no COUNT query, because the result is a List and not a Page.
+        Only the columns of BookSummary are selected, so the descriptions stay in the database.
+     */
+    @RestResource(exported = false)
+    @Query("select b.id as id, b.title as title, b.author as author, b.img as img, b.category as category, " +
+            "b.copies as copies, b.copiesAvailable as copiesAvailable " +
+            "from Book b where b.id > :after_id order by b.id")
+    List<BookSummary> findPageAfter(@Param("after_id") Long afterId, Pageable pageable);
+
+    /*
+        What ETagService needs to tell whether a book changed, without loading the whole book (its description can be long).
+        version moves on every inventory change; ratingCount/ratingSum move when a review is posted (addRating leaves the version alone).
+     */
+    interface BookVersion {
+        Long getVersion();
+        long getRatingCount();
+        double getRatingSum();
+    }
+
+    @RestResource(exported = false)
+    @Query("select b.version as version, b.ratingCount as ratingCount, b.ratingSum as ratingSum from Book b where b.id = :book_id")
+    Optional<BookVersion> findVersionById(@Param("book_id") Long bookId);
 }
@@ -1,12 +1,16 @@
 package com.luv2code.springbootlibrary.dao;
 
+import com.luv2code.springbootlibrary.entity.Book;
 import com.luv2code.springbootlibrary.entity.Checkout;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 /*
@@ -41,10 +45,60 @@ public interface CheckoutRepository extends JpaRepository<Checkout, Long> {
     Checkout findByUserEmailAndBookId(String userEmail, Long bookId);
 
 
+    // The user's checkouts of any of these books, in one query (used by the batch checkout and return of BookService)
+    @RestResource(exported = false)
+    List<Checkout> findByUserEmailAndBookIdIn(String userEmail, Collection<Long> bookIds);
+
+
     // This method finds all books that a user (identified by their email) has checked out. Return a list of Checkout objects based on a userEmail
     List<Checkout> findBooksByUserEmail(String userEmail);
 
 
+    /*
+        One row of findCurrentLoansByUserEmail: a checked out book and how many days are left until it's due.
+
+        This is a Spring Data "projection": we only declare the getters, and Spring fills them from the columns of the query that have the same alias ("as book", "as daysLeft").
+     */
+    interface CurrentLoan {
+        Book getBook();
+
+        // null for a checkout written by an instance of the previous version that LoanDateSyncJob hasn't converted yet: its return date is only in legacyReturnDate (see LoanDates)
+        Integer getDaysLeft();
+
+        String getLegacyReturnDate();
+    }
+
+    /*
+        This method returns a user's current loans, with the book and the number of days left, in a single query.
+
+        "from Checkout c, Book b where b.id = c.bookId": Checkout only stores the book's id (there is no @ManyToOne), so we join the two tables ourselves.
+
+        "select b as book": selecting the whole entity makes Hibernate read all the book columns in this same query. (With "select new ...(b, ...)" Hibernate would only select the id and then load every book with its own query.)
+
+        days_until(...) is our own SQL function (see LibraryMySQLDialect). It turns into DATEDIFF(return_on, CURRENT_DATE) on MySQL, so the days are counted by the database and Java doesn't have to parse any dates.
+     */
+    @RestResource(exported = false)
+    @Query("select b as book, days_until(c.returnDate) as daysLeft, c.legacyReturnDate as legacyReturnDate " +
+            "from Checkout c, Book b where b.id = c.bookId and c.userEmail = :user_email order by b.id")
+    List<CurrentLoan> findCurrentLoansByUserEmail(@Param("user_email") String userEmail);
+
+
+    /*
+        Date range queries on the (indexed) return_on column. Both ends are included.
+
+        USAGE:
+            checkoutRepository.findByReturnDateBetween(tomorrow, tomorrow)    --->>   every loan due tomorrow
+            checkoutRepository.findByReturnDateBefore(LocalDate.now())         --->>   every overdue loan
+
+        @RestResource(exported = false): these list everybody's loans, so they are not published under /api/checkouts/search.
+     */
+    @RestResource(exported = false)
+    List<Checkout> findByReturnDateBetween(LocalDate from, LocalDate to);
+
+    @RestResource(exported = false)
+    List<Checkout> findByReturnDateBefore(LocalDate date);
+
+
     /*
         This method deletes all Checkout records associated with a particular book (not user) by its ID.
 
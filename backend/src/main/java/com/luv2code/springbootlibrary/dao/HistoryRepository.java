@@ -1,11 +1,22 @@
 package com.luv2code.springbootlibrary.dao;
 
 import com.luv2code.springbootlibrary.entity.History;
+import com.luv2code.springbootlibrary.entity.HistoryWithBook;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.time.LocalDate;
+import java.util.List;
+
 
 /*
     This line declares an interface called HistoryRepository that extends JpaRepository.
@@ -15,11 +26,56 @@ import org.springframework.web.bind.annotation.RequestParam;
     Long: The type of the primary key (id) of the History entity.
     By extending JpaRepository, this interface inherits basic CRUD methods (like save, find, delete) for the History entity without extra code.
  */
+// excerptProjection: lists of histories (like findBooksByUserEmail) are shown through HistoryWithBook, which adds the book's description and cover to every row.
+@RepositoryRestResource(excerptProjection = HistoryWithBook.class)
 public interface HistoryRepository extends JpaRepository<History, Long> {
     /*
     @RequestParam("email") String userEmail: This specifies that the method will look for the userEmail parameter from an HTTP request and use it to find matching records in the database.
 
      Pageable pageable: This parameter is used for pagination. It tells Spring how many records to fetch, what page number to fetch, and possibly sorting information.
+
+     @EntityGraph(attributePaths = "book"): the books of the rows are read in the same query (a join), for the description and cover HistoryWithBook shows.
      */
+    @EntityGraph(attributePaths = "book")
     Page<History> findBooksByUserEmail(@RequestParam("email") String userEmail, Pageable pageable);
+
+    // /api/histories: every user's history, with the books (see History.book)
+    @Override
+    @EntityGraph(attributePaths = "book")
+    Page<History> findAll(Pageable pageable);
+
+    // Everything returned between two dates (both included), using the index on returned_on. Not published under /api/histories/search because it covers every user.
+    @RestResource(exported = false)
+    @EntityGraph(attributePaths = "book")
+    Page<History> findByReturnedDateBetween(LocalDate from, LocalDate to, Pageable pageable);
+
+    /*
+        The cursor listing of a user's history, newest return first (see SeekPagingService). Both use the index on (user_email, returned_on, id).
+
+        findFirstPageByUserEmail:  the first page.
+        findPageByUserEmailAfter:  the rows that come after the row (returned_on, id) in that order, i.e. returned earlier, or the same day with a smaller id.
+
+        Rows without a returned_on (written by an instance of the previous version, see LoanDates) are left out until LoanDateSyncJob has converted them:
+        they would sort after every other row, and a cursor made from one of them would point back into the pages already sent.
+
+        "left join fetch h.book": the books come with the rows, like in findBooksByUserEmail.
+     */
+    @RestResource(exported = false)
+    @Query("select h from History h left join fetch h.book where h.userEmail = :email and h.returnedDate is not null order by h.returnedDate desc, h.id desc")
+    List<HistoryWithBook> findFirstPageByUserEmail(@Param("email") String userEmail, Pageable pageable);
+
+    @RestResource(exported = false)
+    @Query("select h from History h left join fetch h.book where h.userEmail = :email " +
+            "and (h.returnedDate < :returned_on or (h.returnedDate = :returned_on and h.id < :id)) " +
+            "order by h.returnedDate desc, h.id desc")
+    List<HistoryWithBook> findPageByUserEmailAfter(@Param("email") String userEmail,
+                                                   @Param("returned_on") LocalDate returnedOn,
+                                                   @Param("id") Long id,
+                                                   Pageable pageable);
+
+    // The rows of a deleted book keep a copy of its description and cover and stop pointing at it (see AdminService.deleteBook), like migration V7 did for the books deleted before it. Uses the index on book_id (V6).
+    @Modifying
+    @Transactional
+    @Query("update History h set h.bookId = null, h.description = :description, h.img = :img where h.bookId = :book_id")
+    void detachBook(@Param("book_id") Long bookId, @Param("description") String description, @Param("img") String img);
 }
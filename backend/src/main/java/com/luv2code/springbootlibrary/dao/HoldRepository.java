@@ -0,0 +1,65 @@
+package com.luv2code.springbootlibrary.dao;
+
+import com.luv2code.springbootlibrary.entity.Hold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import javax.persistence.LockModeType;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/*
+    The waitlists of the books (see HoldService). Every query here is answered from one of the indexes of migration V12.
+
+    @RepositoryRestResource(exported = false): the holds are read and changed through /api/books/secure/holds, Spring Data REST must not publish everybody's holds by itself.
+ */
+@RepositoryRestResource(exported = false)
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+
+    Optional<Hold> findByUserEmailAndBookId(String userEmail, Long bookId);
+
+    List<Hold> findByUserEmailOrderByIdAsc(String userEmail);
+
+    List<Hold> findByUserEmailAndBookIdIn(String userEmail, Collection<Long> bookIds);
+
+    /*
+        The head of a book's queue (idx_book_hold_queue, LIMIT 1), locked until the transaction ends (SELECT ... FOR UPDATE).
+        Two returns of the same book at the same time wait for each other here, so they can't set their copies aside for the same reader: the second one gets the next reader.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Hold> findFirstByBookIdAndStatusOrderByIdAsc(Long bookId, Hold.Status status);
+
+    // How many readers are ahead of a hold in its book's queue
+    long countByBookIdAndStatusAndIdLessThan(Long bookId, Hold.Status status, Long id);
+
+    // The READY holds whose copy has been waiting too long (idx_book_hold_ready_until)
+    List<Hold> findByStatusAndReadyUntilBefore(Hold.Status status, Instant now);
+
+    // The books with readers waiting although copies are on the shelf (a return that raced with a new hold, see HoldService.expireHolds)
+    @Query("select distinct h.bookId from Hold h, Book b where b.id = h.bookId and h.status = :status and b.copiesAvailable > 0")
+    List<Long> findBookIdsWithCopiesAvailable(@Param("status") Hold.Status status);
+
+    /*
+        Removes a hold, but only if it is still in the given status. Returns 0 if somebody else removed or changed it first.
+        Used wherever a READY hold's copy changes hands (checkout, cancel, expiry): only the one that removed the hold may pass the copy on.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Hold h where h.id = :id and h.status = :status")
+    int deleteByIdAndStatus(@Param("id") Long id, @Param("status") Hold.Status status);
+
+    // A user's holds of these books that are in the given status, in one statement
+    @Modifying
+    @Query("delete from Hold h where h.userEmail = :user_email and h.bookId in :book_ids and h.status = :status")
+    int deleteByUserEmailAndBookIds(@Param("user_email") String userEmail, @Param("book_ids") Collection<Long> bookIds,
+                                    @Param("status") Hold.Status status);
+
+    @Modifying
+    @Query("delete from Hold h where h.bookId = :book_id")
+    void deleteAllByBookId(@Param("book_id") Long bookId);
+}
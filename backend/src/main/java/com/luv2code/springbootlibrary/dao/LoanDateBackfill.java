@@ -0,0 +1,144 @@
+package com.luv2code.springbootlibrary.dao;
+
+import com.luv2code.springbootlibrary.utils.LoanDates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/*
+    Copies the loan dates from the old string columns into the DATE columns (see LoanDates), with plain JDBC on the connection it's given.
+    Migration V4 runs it once over the existing rows; LoanDateSyncJob runs it again and again for the rows that instances of the previous version keep writing during a deploy.
+
+        checkout and history: only the rows whose return_on/returned_on is still empty are read, from the index on that column. Those are the rows an old instance inserted
+                              (this version and V4 always fill both DATE columns of a row together, or neither when a string is malformed).
+        A loan an old instance renews after it was converted keeps its previous (earlier) due date in the DATE column until it is renewed again or returned: reading every checkout row each run to catch those isn't worth it.
+
+    The strings are parsed in Java, not with CAST(... AS DATE): a malformed one ("", "2024-02-31") is counted and left alone, where a CAST would fail the whole UPDATE on MySQL in strict mode.
+    The rows are converted BATCH_SIZE at a time and every batch is committed on its own, so only a few rows are locked at a time and the app keeps working meanwhile.
+    Every UPDATE repeats the strings it read in its WHERE, so a row changed in between (a renewal) is left for the next run instead of being overwritten with the old date.
+ */
+public class LoanDateBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanDateBackfill.class);
+
+    static final int BATCH_SIZE = 1000;
+
+    private int converted;
+
+    private int malformed;
+
+    public static LoanDateBackfill run(Connection connection) throws SQLException {
+        LoanDateBackfill backfill = new LoanDateBackfill();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try {
+            backfill.checkouts(connection);
+            backfill.history(connection);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return backfill;
+    }
+
+    // Rows whose DATE columns were filled in
+    public int getConverted() {
+        return converted;
+    }
+
+    // Rows left as they are because a string isn't a valid date
+    public int getMalformed() {
+        return malformed;
+    }
+
+    private void checkouts(Connection connection) throws SQLException {
+        String select = "SELECT id, checkout_date, return_date FROM checkout WHERE return_on IS NULL AND id > ? ORDER BY id LIMIT " + BATCH_SIZE;
+        String update = "UPDATE checkout SET checkout_on = ?, return_on = ? WHERE id = ? AND checkout_date = ? AND return_date = ?";
+        try (PreparedStatement query = connection.prepareStatement(select);
+             PreparedStatement write = connection.prepareStatement(update)) {
+            long afterId = 0;
+            int rows;
+            do {
+                rows = 0;
+                query.setLong(1, afterId);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    while (resultSet.next()) {
+                        rows++;
+                        afterId = resultSet.getLong("id");
+                        String checkoutText = resultSet.getString("checkout_date");
+                        String returnText = resultSet.getString("return_date");
+                        if (checkoutText == null || returnText == null) {
+                            // Written by this version before it wrote the strings too: nothing to copy
+                            continue;
+                        }
+                        LocalDate checkoutOn = LoanDates.parse(checkoutText);
+                        LocalDate returnOn = LoanDates.parse(returnText);
+                        if (checkoutOn == null || returnOn == null) {
+                            malformed(afterId, "checkout", checkoutText, returnText);
+                            continue;
+                        }
+                        write.setDate(1, Date.valueOf(checkoutOn));
+                        write.setDate(2, Date.valueOf(returnOn));
+                        write.setLong(3, afterId);
+                        write.setString(4, checkoutText);
+                        write.setString(5, returnText);
+                        write.addBatch();
+                    }
+                }
+                converted += updated(write.executeBatch());
+            } while (rows == BATCH_SIZE);
+        }
+    }
+
+    private void history(Connection connection) throws SQLException {
+        String select = "SELECT id, checkout_date, returned_date FROM history WHERE returned_on IS NULL AND id > ? ORDER BY id LIMIT " + BATCH_SIZE;
+        String update = "UPDATE history SET checkout_on = ?, returned_on = ? WHERE id = ? AND returned_on IS NULL";
+        try (PreparedStatement query = connection.prepareStatement(select);
+             PreparedStatement write = connection.prepareStatement(update)) {
+            long afterId = 0;
+            int rows;
+            do {
+                rows = 0;
+                query.setLong(1, afterId);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    while (resultSet.next()) {
+                        rows++;
+                        afterId = resultSet.getLong("id");
+                        String checkoutText = resultSet.getString("checkout_date");
+                        String returnedText = resultSet.getString("returned_date");
+                        LocalDate returnedOn = LoanDates.parse(returnedText);
+                        if (returnedOn == null) {
+                            malformed(afterId, "history", checkoutText, returnedText);
+                            continue;
+                        }
+                        LocalDate checkoutOn = LoanDates.parse(checkoutText);
+                        write.setDate(1, checkoutOn == null ? null : Date.valueOf(checkoutOn));
+                        write.setDate(2, Date.valueOf(returnedOn));
+                        write.setLong(3, afterId);
+                        write.addBatch();
+                    }
+                }
+                converted += updated(write.executeBatch());
+            } while (rows == BATCH_SIZE);
+        }
+    }
+
+    private void malformed(long id, String table, String first, String second) {
+        malformed++;
+        log.debug("{} row {} has dates that aren't 'yyyy-MM-dd' ('{}', '{}'), left as they are", table, id, first, second);
+    }
+
+    private static int updated(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            // SUCCESS_NO_INFO (-2): the driver ran the statement but doesn't say how many rows it changed
+            total += count == PreparedStatement.SUCCESS_NO_INFO ? 1 : count;
+        }
+        return total;
+    }
+}
@@ -4,12 +4,25 @@ import com.luv2code.springbootlibrary.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.List;
+
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     Page<Message> findByUserEmail(@RequestParam("user_email") String userEmail, Pageable pageable);
 
     Page<Message> findByClosed(@RequestParam("closed") boolean closed, Pageable pageable);
 
+    // The cursor listings of messages (see SeekPagingService): the messages after a given id, in id order, without a COUNT query
+    @RestResource(exported = false)
+    @Query("select m from Message m where m.userEmail = :user_email and m.id > :after_id order by m.id")
+    List<Message> findPageByUserEmailAfter(@Param("user_email") String userEmail, @Param("after_id") Long afterId, Pageable pageable);
+
+    @RestResource(exported = false)
+    @Query("select m from Message m where m.closed = :closed and m.id > :after_id order by m.id")
+    List<Message> findPageByClosedAfter(@Param("closed") boolean closed, @Param("after_id") Long afterId, Pageable pageable);
 }
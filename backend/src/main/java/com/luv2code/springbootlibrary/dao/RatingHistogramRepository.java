@@ -0,0 +1,41 @@
+package com.luv2code.springbootlibrary.dao;
+
+import com.luv2code.springbootlibrary.entity.RatingHistogramBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import java.util.List;
+
+/*
+    The rating histograms of the books (see RatingAggregateService).
+
+    @RepositoryRestResource(exported = false): the histograms are shown through /api/books/{bookId}/rating, Spring Data REST must not publish this repository by itself.
+ */
+@RepositoryRestResource(exported = false)
+public interface RatingHistogramRepository extends JpaRepository<RatingHistogramBucket, RatingHistogramBucket.Key> {
+
+    List<RatingHistogramBucket> findByBookId(Long bookId);
+
+    /*
+        Adds one review to a bar of the histogram, creating the bar if it's the first review with that rating.
+
+        INSERT ... ON DUPLICATE KEY UPDATE does "insert or add 1" in one statement, so two reviews posted at the same time can't both think they're the first one.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO book_rating_histogram (book_id, half_stars, review_count) VALUES (:book_id, :half_stars, 1) " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + 1", nativeQuery = true)
+    void increment(@Param("book_id") Long bookId, @Param("half_stars") int halfStars);
+
+    // Rebuilds the histogram of one book from its reviews (used to repair drift, see RatingAggregateService.recompute)
+    @Modifying
+    @Query(value = "INSERT INTO book_rating_histogram (book_id, half_stars, review_count) " +
+            "SELECT book_id, ROUND(rating * 2), COUNT(*) FROM review WHERE book_id = :book_id GROUP BY book_id, ROUND(rating * 2)", nativeQuery = true)
+    void rebuild(@Param("book_id") Long bookId);
+
+    @Modifying
+    @Query("delete from RatingHistogramBucket where bookId = :book_id")
+    void deleteAllByBookId(@Param("book_id") Long bookId);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestParam;
 
@@ -23,4 +24,17 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     @Transactional
     @Query("delete from Review where book_id in :book_id")
     void deleteAllByBookId(@Param("book_id") Long bookId);
+
+    /*
+        How many reviews a book has and the highest review id, for ETagService. Reviews are never edited, so a new or deleted review always changes one of the two.
+        Read from the index on (book_id, id) alone (see V10__add_review_book_id_index.sql).
+     */
+    interface ReviewsVersion {
+        long getReviews();
+        Long getLastId();
+    }
+
+    @RestResource(exported = false)
+    @Query("select count(r) as reviews, max(r.id) as lastId from Review r where r.bookId = :book_id")
+    ReviewsVersion findVersionByBookId(@Param("book_id") Long bookId);
 }
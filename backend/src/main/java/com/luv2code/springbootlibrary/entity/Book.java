@@ -7,7 +7,12 @@
 
 package com.luv2code.springbootlibrary.entity;
 
+import com.luv2code.springbootlibrary.service.CoverUrlSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
 /*
@@ -16,9 +21,14 @@ import javax.persistence.*;
     @Table - this specifies the name of the table we want to link this class to -> Links Book (class) to book (table in DB)
 
     @Data - This is from Lombok, a tool that automatically generates common methods for you (like getters, setters, toString(), etc.).
+
+    @Cacheable / @Cache - books may be kept in Hibernate's second-level cache, in the "book" region. It only does something with the "l2cache" profile (see application-l2cache.properties).
+    READ_WRITE: a book being changed is locked in the cache until the transaction commits, so nobody reads a half-done change from it.
  */
 @Entity
 @Table(name = "book")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
 @Data
 public class Book {
     /*
@@ -52,7 +62,38 @@ public class Book {
     @Column(name = "category")
     private String category;
 
+    // The hash of the cover in the ImageStore, not the image itself. Covers used to be saved here as base64 text, which made every list of books megabytes long (see migration V5).
+    // It's sent out as the URL the cover is served from (ImageController), see CoverUrlSerializer.
     @Column(name = "img")
+    @JsonSerialize(using = CoverUrlSerializer.class)
     private String img;
 
+    /*
+        How many reviews the book has and the sum of their ratings, kept up to date by ReviewService (see RatingAggregateService). They show up in /api/books as ratingCount/ratingSum/ratingAverage, so the rating can be shown without fetching the reviews.
+
+        insertable/updatable = false: these columns are only ever changed by the UPDATE statements in BookRepository. Otherwise saving a Book that was loaded before a review was posted (e.g. a checkout) would write the old numbers back.
+     */
+    @Column(name = "rating_count", insertable = false, updatable = false)
+    private long ratingCount;
+
+    @Column(name = "rating_sum", insertable = false, updatable = false)
+    private double ratingSum;
+
+    /*
+        @Version - turns on optimistic locking for this entity. Hibernate adds "AND version = ?" to every UPDATE of a book and bumps the number by 1.
+
+        If two requests load the same book and both try to save it, the second save matches 0 rows (the version already moved on) and Hibernate throws an OptimisticLockException instead of silently overwriting the first change (see InventoryRetryPolicy).
+     */
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    // The average rating rounded to the nearest half star, like the stars on the book page. 0 if nobody has reviewed the book yet.
+    public double getRatingAverage() {
+        if (ratingCount == 0) {
+            return 0;
+        }
+        return Math.round(ratingSum / ratingCount * 2) / 2.0;
+    }
+
 }
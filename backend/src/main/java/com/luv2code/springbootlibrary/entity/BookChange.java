@@ -0,0 +1,44 @@
+package com.luv2code.springbootlibrary.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/*
+    One row of the catalog's change log (see migration V11 and ChangeFeedService). Rows are only ever added, never changed.
+ */
+@Entity
+@Table(name = "book_change_log")
+@Data
+@NoArgsConstructor
+public class BookChange {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type")
+    private Type type;
+
+    @Column(name = "changed_at")
+    private Instant changedAt;
+
+    public BookChange(Long bookId, Type type, Instant changedAt) {
+        this.bookId = bookId;
+        this.type = type;
+        this.changedAt = changedAt;
+    }
+}
@@ -0,0 +1,11 @@
+package com.luv2code.springbootlibrary.entity;
+
+import org.springframework.data.rest.core.config.Projection;
+
+// The whole book, for the lists that need the descriptions (/api/books?projection=detail), since lists are sent as BookSummary by default.
+@Projection(name = "detail", types = Book.class)
+public interface BookDetail extends BookSummary {
+    String getDescription();
+
+    double getRatingAverage();
+}
@@ -0,0 +1,34 @@
+package com.luv2code.springbootlibrary.entity;
+
+import com.luv2code.springbootlibrary.service.CoverUrlSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.springframework.data.rest.core.config.Projection;
+
+/*
+    A book as it's shown in a list (the home page carousel, the search results, the cursor listing): everything but the description.
+
+    BookRepository uses it as its "excerpt projection", so every list of books under /api/books (/api/books?page=..., /api/books/search/...) sends only these fields. One book (/api/books/{id}, the book page) is still sent whole.
+    A list that does need the descriptions asks for the "detail" projection (see BookDetail): /api/books?projection=detail
+
+    Queries that return BookSummary directly (e.g. BookRepository.findPageAfter) select only these columns, so the description isn't even read from the database.
+
+    @Projection must live in the same package as the entity (or below it) for Spring Data REST to find it.
+ */
+@Projection(name = "summary", types = Book.class)
+public interface BookSummary {
+    Long getId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    // The cover's URL (see ImageStore and CoverUrlSerializer), not the image itself
+    @JsonSerialize(using = CoverUrlSerializer.class)
+    String getImg();
+
+    String getCategory();
+
+    int getCopies();
+
+    int getCopiesAvailable();
+}
@@ -1,8 +1,10 @@
 package com.luv2code.springbootlibrary.entity;
 
+import com.luv2code.springbootlibrary.utils.LoanDates;
 import lombok.Data;
 
 import javax.persistence.*;
+import java.time.LocalDate;
 
 @Entity
 @Table(name = "checkout")
@@ -18,10 +20,10 @@ public class Checkout {
      */
     public Checkout() {}
 
-    public Checkout(String userEmail, String checkoutDate, String returnDate, Long bookId) {
+    public Checkout(String userEmail, LocalDate checkoutDate, LocalDate returnDate, Long bookId) {
         this.userEmail = userEmail;
-        this.checkoutDate = checkoutDate;
-        this.returnDate = returnDate;
+        setCheckoutDate(checkoutDate);
+        setReturnDate(returnDate);
         this.bookId = bookId;
     }
 
@@ -33,13 +35,43 @@ public class Checkout {
     @Column(name = "user_email")
     private String userEmail;
 
+    /*
+        The dates used to be Strings ("2024-09-25") in the checkout_date/return_date columns, which had to be parsed every time we needed to compare them, and couldn't be searched by range without reading the whole table.
+
+        They are now real DATE columns (checkout_on/return_on, see migration V3), and return_on has an index so "which loans are due tomorrow?" is a quick lookup.
+     */
+    @Column(name = "checkout_on")
+    private LocalDate checkoutDate;
+
+    @Column(name = "return_on")
+    private LocalDate returnDate;
+
+    // The same dates in the old string columns, for the instances of the previous version still running during a deploy (see LoanDates). The setters below keep them in step.
     @Column(name = "checkout_date")
-    private String checkoutDate;
+    private String legacyCheckoutDate;
 
     @Column(name = "return_date")
-    private String returnDate;
+    private String legacyReturnDate;
 
     @Column(name = "book_id")
     private Long bookId;
 
+    // A checkout written by an instance of the previous version has no DATE until LoanDateSyncJob copies it over, so until then the date comes from the old column
+    public LocalDate getCheckoutDate() {
+        return checkoutDate != null ? checkoutDate : LoanDates.parse(legacyCheckoutDate);
+    }
+
+    public LocalDate getReturnDate() {
+        return returnDate != null ? returnDate : LoanDates.parse(legacyReturnDate);
+    }
+
+    public void setCheckoutDate(LocalDate checkoutDate) {
+        this.checkoutDate = checkoutDate;
+        this.legacyCheckoutDate = LoanDates.format(checkoutDate);
+    }
+
+    public void setReturnDate(LocalDate returnDate) {
+        this.returnDate = returnDate;
+        this.legacyReturnDate = LoanDates.format(returnDate);
+    }
 }
\ No newline at end of file
@@ -1,8 +1,17 @@
 package com.luv2code.springbootlibrary.entity;
 
+import com.luv2code.springbootlibrary.service.CoverUrlSerializer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.luv2code.springbootlibrary.utils.LoanDates;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.NotFound;
+import org.hibernate.annotations.NotFoundAction;
 
 import javax.persistence.*;
+import java.time.LocalDate;
 
 @Entity
 @Table(name = "History")
@@ -13,20 +22,18 @@ public class History {
 
     public History(
             String userEmail,
-            String checkoutDate,
-            String returnedDate,
+            LocalDate checkoutDate,
+            LocalDate returnedDate,
+            Long bookId,
             String title,
-            String author,
-            String description,
-            String img
+            String author
     ) {
         this.userEmail = userEmail;
-        this.checkoutDate = checkoutDate;
-        this.returnedDate = returnedDate;
+        setCheckoutDate(checkoutDate);
+        setReturnedDate(returnedDate);
+        this.bookId = bookId;
         this.title = title;
         this.author = author;
-        this.description = description;
-        this.img = img;
     }
 
 
@@ -38,23 +45,74 @@ public class History {
     @Column(name="user_email")
     private String userEmail;
 
+    // Real DATE columns, like the dates in Checkout (see migration V3)
+    @Column(name="checkout_on")
+    private LocalDate checkoutDate;
+
+    @Column(name="returned_on")
+    private LocalDate returnedDate;
+
+    // The same dates in the old string columns, like in Checkout (see LoanDates)
     @Column(name="checkout_date")
-    private String checkoutDate;
+    private String legacyCheckoutDate;
 
     @Column(name="returned_date")
-    private String returnedDate;
-
-    @Column(name="title")
+    private String legacyReturnedDate;
+
+    /*
+        The book that was returned. Its description and cover are read with the history rows when they are shown (see book below and HistoryWithBook), instead of being copied into every history row.
+
+        title/author are a small snapshot taken when the book was returned, so the row still says what was borrowed after the book is deleted. updatable = false: they are never changed afterwards.
+     */
+    @Column(name="book_id")
+    private Long bookId;
+
+    /*
+        The same book_id, as the book itself, for reading only (bookId above is what's written). Every query listing history rows reads the books in the same query (a join, see HistoryRepository), so a page of history doesn't make a query per row.
+
+        @NotFound(IGNORE): a book_id whose book is gone gives null instead of an error. AdminService.deleteBook clears the book_id of the book's rows, so that only happens for a row written while its book was being deleted;
+        Hibernate then checks that id with one more query (and for the same reason it can't be LAZY).
+        @JsonIgnore, @ToString.Exclude, @EqualsAndHashCode.Exclude: the book isn't part of the row's JSON, text or identity.
+     */
+    @ManyToOne
+    @JoinColumn(name = "book_id", insertable = false, updatable = false)
+    @NotFound(action = NotFoundAction.IGNORE)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Book book;
+
+    @Column(name="title", updatable = false)
     private String title;
 
-    @Column(name="author")
+    @Column(name="author", updatable = false)
     private String author;
 
+    // Only filled in on old rows whose book no longer exists (see migration V7). New rows leave them empty.
     @Column(name="description")
     private String description;
 
     @Column(name="img")
+    @JsonSerialize(using = CoverUrlSerializer.class)
     private String img;
+
+    public LocalDate getCheckoutDate() {
+        return checkoutDate != null ? checkoutDate : LoanDates.parse(legacyCheckoutDate);
+    }
+
+    public LocalDate getReturnedDate() {
+        return returnedDate != null ? returnedDate : LoanDates.parse(legacyReturnedDate);
+    }
+
+    public void setCheckoutDate(LocalDate checkoutDate) {
+        this.checkoutDate = checkoutDate;
+        this.legacyCheckoutDate = LoanDates.format(checkoutDate);
+    }
+
+    public void setReturnedDate(LocalDate returnedDate) {
+        this.returnedDate = returnedDate;
+        this.legacyReturnedDate = LoanDates.format(returnedDate);
+    }
 }
 
 
@@ -0,0 +1,42 @@
+package com.luv2code.springbootlibrary.entity;
+
+import com.luv2code.springbootlibrary.service.CoverUrlSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.rest.core.config.Projection;
+
+import java.time.LocalDate;
+
+/*
+    How a History row is shown in /api/histories lists (HistoryRepository uses it as its "excerpt projection").
+
+    A history row no longer has its own copy of the book's description and cover, so this fills them in from the book itself (History.book), which every query returning these rows reads in the same query (see HistoryRepository).
+    The JSON looks exactly like it did when they were copied into every row, so the History page doesn't notice the difference.
+
+    @Value("#{...}"): "target" is the History row, "?." gives null instead of failing when the book was deleted. Old rows whose book was deleted still have their own copy, which wins.
+
+    @Projection must live in the same package as the entity (or below it) for Spring Data REST to find it.
+ */
+@Projection(name = "withBook", types = History.class)
+public interface HistoryWithBook {
+    Long getId();
+
+    String getUserEmail();
+
+    LocalDate getCheckoutDate();
+
+    LocalDate getReturnedDate();
+
+    Long getBookId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    @Value("#{target.description != null ? target.description : target.book?.description}")
+    String getDescription();
+
+    @Value("#{target.img != null ? target.img : target.book?.img}")
+    @JsonSerialize(using = CoverUrlSerializer.class)
+    String getImg();
+}
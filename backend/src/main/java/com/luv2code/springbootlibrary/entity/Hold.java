@@ -0,0 +1,52 @@
+package com.luv2code.springbootlibrary.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/*
+    A reader's place in the waitlist of a book that had no copies left (see migration V12 and HoldService).
+ */
+@Entity
+@Table(name = "book_hold")
+@Data
+@NoArgsConstructor
+public class Hold {
+
+    public enum Status {
+        // In the queue, waiting for a copy
+        WAITING,
+        // A returned copy is set aside for the reader until readyUntil
+        READY
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "user_email")
+    private String userEmail;
+
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private Status status;
+
+    @Column(name = "requested_at")
+    private Instant requestedAt;
+
+    @Column(name = "ready_until")
+    private Instant readyUntil;
+
+    public Hold(String userEmail, Long bookId, Instant requestedAt) {
+        this.userEmail = userEmail;
+        this.bookId = bookId;
+        this.status = Status.WAITING;
+        this.requestedAt = requestedAt;
+    }
+}
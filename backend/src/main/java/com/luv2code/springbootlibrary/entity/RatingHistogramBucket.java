@@ -0,0 +1,37 @@
+package com.luv2code.springbootlibrary.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/*
+    One bar of a book's rating histogram: how many reviews of the book gave this rating (see migration V8).
+
+    halfStars is the rating times 2, so every possible rating (0, 0.5, 1, ..., 5) is a whole number from 0 to 10.
+
+    @IdClass: the primary key is the pair (bookId, halfStars). JPA needs a class that holds both parts of the key, that's Key below.
+ */
+@Entity
+@Table(name = "book_rating_histogram")
+@IdClass(RatingHistogramBucket.Key.class)
+@Data
+public class RatingHistogramBucket {
+
+    @Data
+    public static class Key implements Serializable {
+        private Long bookId;
+        private int halfStars;
+    }
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Id
+    @Column(name = "half_stars")
+    private int halfStars;
+
+    @Column(name = "review_count")
+    private long reviewCount;
+}
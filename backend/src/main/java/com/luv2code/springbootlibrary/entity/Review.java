@@ -1,12 +1,17 @@
 package com.luv2code.springbootlibrary.entity;
 
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import javax.persistence.*;
 import java.util.Date;
 
+// Kept in the "review" region of Hibernate's second-level cache with the "l2cache" profile (like Book)
 @Entity
 @Table(name = "review")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "review")
 @Data
 public class Review {
 
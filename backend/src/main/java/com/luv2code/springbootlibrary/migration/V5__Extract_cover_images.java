@@ -0,0 +1,91 @@
+package com.luv2code.springbootlibrary.migration;
+
+import com.luv2code.springbootlibrary.service.ImageStore;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    Moves the covers that are still saved as base64 data URLs in book.img into the ImageStore, and replaces each one with the hash of its file (see ImageStore).
+
+    Unlike db.migration.V4__Backfill_typed_loan_dates this migration needs another object (the ImageStore), so it is a Spring bean (@Component) instead of a class Flyway finds and creates by itself.
+    Spring Boot hands every JavaMigration bean to Flyway, and Flyway still takes the version (5) from the class name.
+
+    Covers are big, so the books are read BATCH_SIZE at a time (ordered by id, carrying on after the last id of the previous batch) and every batch is committed on its own, like V4.
+    A book whose img no longer starts with "data:" is skipped, so the migration can safely run again if it's interrupted.
+    A cover that isn't a valid base64 data URL is logged and left alone, like the malformed dates of V4 (see LoanDateBackfill).
+ */
+@Component
+public class V5__Extract_cover_images extends BaseJavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V5__Extract_cover_images.class);
+
+    private static final int BATCH_SIZE = 50;
+
+    private ImageStore imageStore;
+
+    @Autowired
+    public V5__Extract_cover_images(ImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement(
+                     "SELECT id, img FROM book WHERE id > ? AND img LIKE 'data:%' ORDER BY id LIMIT " + BATCH_SIZE);
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE book SET img = ? WHERE id = ?")) {
+
+            long lastId = 0;
+            while (true) {
+                Map<Long, String> covers = new LinkedHashMap<>();
+                select.setLong(1, lastId);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        covers.put(resultSet.getLong(1), resultSet.getString(2));
+                    }
+                }
+                if (covers.isEmpty()) {
+                    break;
+                }
+
+                for (Map.Entry<Long, String> cover : covers.entrySet()) {
+                    lastId = cover.getKey();
+                    String hash;
+                    try {
+                        hash = imageStore.storeDataUrl(cover.getValue());
+                    } catch (IllegalArgumentException e) {
+                        // A corrupt cover (no comma, bad base64) is left as it is, instead of failing the migration and with it the start of the app
+                        log.warn("Book {} has a cover that isn't a valid base64 data URL, left as it is", cover.getKey());
+                        continue;
+                    }
+                    update.setString(1, hash);
+                    update.setLong(2, cover.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+                connection.commit();
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.luv2code.springbootlibrary.migration;
+
+import com.luv2code.springbootlibrary.service.ImageStore;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    Cleans up the history rows written before V6, which each carried a full copy of their book's description and cover.
+
+        1. Every row is linked to its book (same title and author) by filling in book_id. The books' ids are read once into a map, and each row is updated by its id:
+           a "SELECT MIN(id) FROM book WHERE title = ... AND author = ..." per row would read the whole book table for every history row, as there is no index on (title, author).
+           The titles and authors are compared exactly as stored: the history rows got them copied from their book.
+        2. Rows that found their book drop their copy of the description and cover. HistoryWithBook shows the book's own instead.
+        3. Rows whose book has been deleted keep their description, but their base64 cover is moved into the ImageStore. The store keeps one file per different image, so the same cover returned a hundred times is stored once.
+
+    Like V4 and V5, the rows are handled in batches, each committed on its own, so the history table is never locked for long. Every step skips rows that are already done, so it can run again after an interruption.
+    It is a Spring bean for the same reason as V5 (it needs the ImageStore).
+ */
+@Component
+public class V7__Deduplicate_history_books extends BaseJavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V7__Deduplicate_history_books.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int COVER_BATCH_SIZE = 50;
+
+    private ImageStore imageStore;
+
+    @Autowired
+    public V7__Deduplicate_history_books(ImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            linkBooks(connection);
+            moveOrphanCovers(connection);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Steps 1 and 2, BATCH_SIZE ids at a time
+    private void linkBooks(Connection connection) throws Exception {
+        Map<String, Long> bookIds = bookIdsByTitleAndAuthor(connection);
+
+        long maxId;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM history")) {
+            resultSet.next();
+            maxId = resultSet.getLong(1);
+        }
+
+        try (PreparedStatement select = connection.prepareStatement(
+                     "SELECT id, title, author FROM history WHERE id > ? AND id <= ? AND book_id IS NULL");
+             PreparedStatement link = connection.prepareStatement(
+                     "UPDATE history SET book_id = ? WHERE id = ?");
+             PreparedStatement dropCopies = connection.prepareStatement(
+                     "UPDATE history SET description = NULL, img = NULL" +
+                     " WHERE id > ? AND id <= ? AND book_id IS NOT NULL AND (description IS NOT NULL OR img IS NOT NULL)")) {
+
+            for (long from = 0; from < maxId; from += BATCH_SIZE) {
+                select.setLong(1, from);
+                select.setLong(2, from + BATCH_SIZE);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        Long bookId = bookIds.get(key(resultSet.getString("title"), resultSet.getString("author")));
+                        if (bookId != null) {
+                            link.setLong(1, bookId);
+                            link.setLong(2, resultSet.getLong("id"));
+                            link.addBatch();
+                        }
+                    }
+                }
+                link.executeBatch();
+
+                dropCopies.setLong(1, from);
+                dropCopies.setLong(2, from + BATCH_SIZE);
+                dropCopies.executeUpdate();
+                connection.commit();
+            }
+        }
+    }
+
+    // title + author -> the smallest id of a book with them (a catalog has far fewer books than history rows, so this fits in memory)
+    private static Map<String, Long> bookIdsByTitleAndAuthor(Connection connection) throws Exception {
+        Map<String, Long> bookIds = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT id, title, author FROM book ORDER BY id")) {
+            while (resultSet.next()) {
+                String key = key(resultSet.getString("title"), resultSet.getString("author"));
+                if (key != null) {
+                    bookIds.putIfAbsent(key, resultSet.getLong("id"));
+                }
+            }
+        }
+        return bookIds;
+    }
+
+    // null when either is missing: like "=" in SQL, a NULL title or author matches nothing
+    private static String key(String title, String author) {
+        return title == null || author == null ? null : title + '\u0000' + author;
+    }
+
+    // Step 3, the same way V5 moves the book covers (a corrupt one is left alone, like there)
+    private void moveOrphanCovers(Connection connection) throws Exception {
+        try (PreparedStatement select = connection.prepareStatement(
+                     "SELECT id, img FROM history WHERE id > ? AND book_id IS NULL AND img LIKE 'data:%' ORDER BY id LIMIT " + COVER_BATCH_SIZE);
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE history SET img = ? WHERE id = ?")) {
+
+            long lastId = 0;
+            while (true) {
+                Map<Long, String> covers = new LinkedHashMap<>();
+                select.setLong(1, lastId);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        covers.put(resultSet.getLong(1), resultSet.getString(2));
+                    }
+                }
+                if (covers.isEmpty()) {
+                    break;
+                }
+
+                for (Map.Entry<Long, String> cover : covers.entrySet()) {
+                    lastId = cover.getKey();
+                    String hash;
+                    try {
+                        hash = imageStore.storeDataUrl(cover.getValue());
+                    } catch (IllegalArgumentException e) {
+                        // A corrupt cover (no comma, bad base64) is left as it is, instead of failing the migration and with it the start of the app
+                        log.warn("History row {} has a cover that isn't a valid base64 data URL, left as it is", cover.getKey());
+                        continue;
+                    }
+                    update.setString(1, hash);
+                    update.setLong(2, cover.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+                connection.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    An "availability" event of the live updates stream: a watched book's copies changed, or the book was deleted (see LiveUpdateService).
+ */
+@Data
+@AllArgsConstructor
+public class AvailabilityUpdateResponse {
+
+    private Long bookId;
+
+    private int copies;
+
+    private int copiesAvailable;
+
+    private boolean deleted;
+}
@@ -0,0 +1,22 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import com.luv2code.springbootlibrary.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/*
+    The answer of /api/books/batch (see BookBatchService).
+
+    books:    one entry per requested id, in the order they were asked for; null where the book doesn't exist.
+    missing:  the requested ids that don't exist, so the client doesn't have to look for the nulls.
+ */
+@Data
+@AllArgsConstructor
+public class BookBatchResponse {
+
+    private List<Book> books;
+
+    private List<Long> missing;
+}
@@ -0,0 +1,35 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    How well the book cache is doing (see BookCache).
+
+    hits / misses:    reads answered from memory / that had to go to the database. hitRate = hits / (hits + misses).
+    evictions:        books pushed out of the cache to make room, or that expired (not counting the ones removed because they changed).
+    evictedBytes:     the estimated size of those books.
+    books / bytes:    what is in the cache now, and its estimated size.
+ */
+@Data
+@AllArgsConstructor
+public class BookCacheStatsResponse {
+
+    private boolean enabled;
+
+    private long hits;
+
+    private long misses;
+
+    private double hitRate;
+
+    private long evictions;
+
+    private long evictedBytes;
+
+    private long books;
+
+    private long bytes;
+
+    private long maximumBytes;
+}
@@ -0,0 +1,22 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import com.luv2code.springbootlibrary.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    One book of the change feed (see ChangeFeedService).
+
+    change:  CREATED, UPDATED or DELETED.
+    book:    the book as it is now; null when it was deleted.
+ */
+@Data
+@AllArgsConstructor
+public class BookChangeResponse {
+
+    private Long bookId;
+
+    private String change;
+
+    private Book book;
+}
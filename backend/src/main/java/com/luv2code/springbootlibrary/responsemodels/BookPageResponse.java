@@ -0,0 +1,34 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.Review;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/*
+    Everything the book page (BookCheckoutPage.tsx) needs, in one response (see BookPageService):
+
+    book:              the book itself, with its rating totals (ratingCount, ratingAverage).
+    latestReviews:     the newest reviews of the book, newest first.
+    reviewLeft:        has the logged in user reviewed this book?
+    currentLoansCount: how many books the logged in user has checked out.
+    checkedOut:        has the logged in user checked out this book?
+
+    The last three are null when nobody is logged in.
+ */
+@Data
+@AllArgsConstructor
+public class BookPageResponse {
+
+    private Book book;
+
+    private List<Review> latestReviews;
+
+    private Boolean reviewLeft;
+
+    private Integer currentLoansCount;
+
+    private Boolean checkedOut;
+}
@@ -0,0 +1,24 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    A book's rating, as sent by /api/books/{bookId}/rating (see RatingAggregateService).
+
+    ratingCount:   how many reviews the book has.
+    ratingAverage: the average rating, rounded to the nearest half star (0 if there are no reviews).
+    histogram:     how many reviews gave each rating. histogram[i] is the number of reviews with i half stars, so histogram[0] is 0 stars, histogram[1] is half a star ... histogram[10] is 5 stars.
+ */
+@Data
+@AllArgsConstructor
+public class BookRatingResponse {
+
+    private Long bookId;
+
+    private long ratingCount;
+
+    private double ratingAverage;
+
+    private long[] histogram;
+}
@@ -0,0 +1,28 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/*
+    One page of search results, as sent by /api/books/find (see BookSearchService).
+
+    bookIds:      the matching books, best match first. The page loads the books themselves with /api/books/{id} (or from the list it already has).
+    scores:       how well each book matched, between 0 and 1 (1 means every part of the search text was found). scores.get(i) belongs to bookIds.get(i).
+    totalMatches: how many books matched in total, to draw the page numbers.
+ */
+@Data
+@AllArgsConstructor
+public class BookSearchResponse {
+
+    private List<Long> bookIds;
+
+    private List<Double> scores;
+
+    private long totalMatches;
+
+    private int page;
+
+    private int size;
+}
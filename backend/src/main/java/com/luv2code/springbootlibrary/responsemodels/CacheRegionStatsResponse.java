@@ -0,0 +1,25 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    The counters of one region of Hibernate's second-level cache (see SecondLevelCacheMetrics).
+
+    hits / misses:  lookups found in the region / that had to go to the database. hitRate = hits / (hits + misses).
+    puts:           entries put in the region (after a miss, or when an entity was saved).
+ */
+@Data
+@AllArgsConstructor
+public class CacheRegionStatsResponse {
+
+    private String region;
+
+    private long hits;
+
+    private long misses;
+
+    private long puts;
+
+    private double hitRate;
+}
@@ -0,0 +1,21 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    One category of the category sidebar, as sent by /api/books/facets/categories (see CategoryFacetService).
+
+    books:          how many books are in the category.
+    availableBooks: how many of them have at least one copy on the shelf right now.
+ */
+@Data
+@AllArgsConstructor
+public class CategoryFacetResponse {
+
+    private String category;
+
+    private long books;
+
+    private long availableBooks;
+}
@@ -0,0 +1,24 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/*
+    A page of the catalog's change feed (see ChangeFeedService).
+
+    changes:  the books that changed, each one once, in the order of their last change.
+    cursor:   what to send as "since" next time. It never goes down.
+    more:     true if there are more changes waiting right away; false means the client has caught up.
+ */
+@Data
+@AllArgsConstructor
+public class ChangeFeedResponse {
+
+    private List<BookChangeResponse> changes;
+
+    private long cursor;
+
+    private boolean more;
+}
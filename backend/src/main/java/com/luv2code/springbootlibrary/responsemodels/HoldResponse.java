@@ -0,0 +1,26 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/*
+    One of the user's holds (see HoldService).
+
+    status:      WAITING (in the queue) or READY (a copy is set aside, check it out before readyUntil)
+    ahead:       how many readers are before the user in the queue (0 for READY)
+    readyUntil:  null while WAITING
+ */
+@Data
+@AllArgsConstructor
+public class HoldResponse {
+
+    private Long bookId;
+
+    private String status;
+
+    private long ahead;
+
+    private Instant readyUntil;
+}
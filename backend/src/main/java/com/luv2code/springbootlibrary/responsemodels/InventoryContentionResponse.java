@@ -0,0 +1,24 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    How often changes to one book's inventory ran into each other (see InventoryContentionMetrics).
+
+    conflicts: a save failed because another request changed the book first.
+    retries:   we waited and tried the change again.
+    giveUps:   we ran out of attempts and the request failed.
+ */
+@Data
+@AllArgsConstructor
+public class InventoryContentionResponse {
+
+    private Long bookId;
+
+    private long conflicts;
+
+    private long retries;
+
+    private long giveUps;
+}
@@ -0,0 +1,31 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+/*
+    How long checking tokens has taken so far (see JwtVerificationMetrics).
+
+    verified/rejected: how many tokens were accepted / turned down.
+    meanMicros:        the average time of one check, in microseconds.
+    p50Micros/p99Micros: half / 99% of the checks took at most this long (the upper bound of the histogram bar they fall in).
+    histogram:         how many checks took at most N microseconds, for every bar ("+Inf" is everything slower).
+ */
+@Data
+@AllArgsConstructor
+public class JwtVerificationResponse {
+
+    private long verified;
+
+    private long rejected;
+
+    private double meanMicros;
+
+    private long p50Micros;
+
+    private long p99Micros;
+
+    private Map<String, Long> histogram;
+}
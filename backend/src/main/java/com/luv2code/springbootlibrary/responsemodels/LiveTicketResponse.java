@@ -0,0 +1,15 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    A ticket for opening a signed-in live updates stream: /api/books/live?ticket=... (see LiveUpdateService).
+    It works once, and only for a short while, so the page asks for a new one every time it (re)connects.
+ */
+@Data
+@AllArgsConstructor
+public class LiveTicketResponse {
+
+    private String ticket;
+}
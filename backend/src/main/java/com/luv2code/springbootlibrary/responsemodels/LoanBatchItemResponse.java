@@ -0,0 +1,21 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    The result for one book of a batch checkout or return (see BookService.checkoutBooks / returnBooks).
+
+    done:   true if this book was checked out / returned
+    error:  why not, when done is false
+ */
+@Data
+@AllArgsConstructor
+public class LoanBatchItemResponse {
+
+    private Long bookId;
+
+    private boolean done;
+
+    private String error;
+}
@@ -0,0 +1,27 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/*
+    A "loan" event of the live updates stream, sent to the user it's about (see LiveUpdateService).
+
+    change:      CHECKED_OUT, RETURNED, RENEWED, or HOLD_READY (a copy is set aside for the user, see HoldService)
+    returnDate:  when the book is due (CHECKED_OUT, RENEWED)
+    readyUntil:  until when the copy is set aside (HOLD_READY)
+ */
+@Data
+@AllArgsConstructor
+public class LoanUpdateResponse {
+
+    private Long bookId;
+
+    private String change;
+
+    private LocalDate returnDate;
+
+    private Instant readyUntil;
+}
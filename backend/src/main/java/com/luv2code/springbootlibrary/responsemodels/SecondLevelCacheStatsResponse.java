@@ -0,0 +1,23 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/*
+    Hibernate's second-level cache (see SecondLevelCacheMetrics).
+
+    enabled:            false unless the app runs with the "l2cache" profile; regions is empty then.
+    statisticsEnabled:  false if hibernate.generate_statistics is off, in which case every counter stays 0.
+ */
+@Data
+@AllArgsConstructor
+public class SecondLevelCacheStatsResponse {
+
+    private boolean enabled;
+
+    private boolean statisticsEnabled;
+
+    private List<CacheRegionStatsResponse> regions;
+}
@@ -0,0 +1,23 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/*
+    One page of a cursor listing (see SeekPagingService).
+
+    items:      the rows of this page.
+    nextCursor: send it back as "cursor" to get the next page. null when this is the last page.
+
+    There are no page numbers or total count on purpose: counting every matching row is what made each page cost two queries.
+ */
+@Data
+@AllArgsConstructor
+public class SeekPageResponse<T> {
+
+    private List<T> items;
+
+    private String nextCursor;
+}
@@ -0,0 +1,27 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/*
+    The size of the typeahead trie currently in use, as sent by /api/admin/secure/typeahead (see TypeaheadService).
+
+    estimatedBytes: about how much heap the trie takes (see PrefixSuggester.estimatedBytes).
+    builtAt:        when it was built. null if it hasn't been built yet.
+ */
+@Data
+@AllArgsConstructor
+public class TypeaheadStatsResponse {
+
+    private int suggestions;
+
+    private int nodes;
+
+    private long estimatedBytes;
+
+    private long buildMillis;
+
+    private Instant builtAt;
+}
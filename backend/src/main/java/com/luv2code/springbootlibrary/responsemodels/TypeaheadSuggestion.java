@@ -0,0 +1,22 @@
+package com.luv2code.springbootlibrary.responsemodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    One completion offered by /api/books/typeahead (see PrefixSuggester).
+
+    text:  the title, author or category as it's written on the books.
+    type:  "title", "author" or "category", so the page can search the right thing when it's picked.
+    books: how many books have this title/author/category.
+ */
+@Data
+@AllArgsConstructor
+public class TypeaheadSuggestion {
+
+    private String text;
+
+    private String type;
+
+    private int books;
+}
@@ -1,11 +1,14 @@
 package com.luv2code.springbootlibrary.service;
 
+import com.luv2code.springbootlibrary.config.InventoryProperties;
 import com.luv2code.springbootlibrary.dao.BookRepository;
 import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.HistoryRepository;
 import com.luv2code.springbootlibrary.dao.ReviewRepository;
 import com.luv2code.springbootlibrary.entity.Book;
 import com.luv2code.springbootlibrary.requestmodels.AddBookRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -34,6 +37,12 @@ public class AdminService {
     private BookRepository bookRepository;
     private ReviewRepository reviewRepository;
     private CheckoutRepository checkoutRepository;
+    private InventoryProperties inventoryProperties;
+    private ImageStore imageStore;
+    private HistoryRepository historyRepository;
+    private RatingAggregateService ratingAggregateService;
+    private ApplicationEventPublisher eventPublisher;
+    private HoldService holdService;
 
 
     /*
@@ -69,10 +78,22 @@ public class AdminService {
     @Autowired
     public AdminService (BookRepository bookRepository,
                          ReviewRepository reviewRepository,
-                         CheckoutRepository checkoutRepository) {
+                         CheckoutRepository checkoutRepository,
+                         InventoryProperties inventoryProperties,
+                         ImageStore imageStore,
+                         HistoryRepository historyRepository,
+                         RatingAggregateService ratingAggregateService,
+                         ApplicationEventPublisher eventPublisher,
+                         HoldService holdService) {
         this.bookRepository = bookRepository;
         this.reviewRepository = reviewRepository;
         this.checkoutRepository = checkoutRepository;
+        this.inventoryProperties = inventoryProperties;
+        this.imageStore = imageStore;
+        this.historyRepository = historyRepository;
+        this.ratingAggregateService = ratingAggregateService;
+        this.eventPublisher = eventPublisher;
+        this.holdService = holdService;
     }
 
 
@@ -103,14 +124,19 @@ public class AdminService {
               When you call a method like findById(bookId) from BookRepository, it returns an Optional<Book>. This means it could return a Book object if the book exists, or it could be empty if the book does not exist.
 
               NOTE: You’re not creating a new Book object. Instead, you are asking the bookRepository (which connects to the database) to find an existing Book with a specific bookId. If it finds the book, it wraps it in an Optional<Book>; if not, the Optional will be empty.
+
+              findBookToChange() also takes care of locking (see the method at the bottom of this class).
          */
-        Optional<Book> book = bookRepository.findById(bookId);
+        Optional<Book> book = findBookToChange(bookId);
 
         // Check if the book exists: If it doesn't, it throws an exception.
         if (!book.isPresent()) {
             throw new Exception("Book not found");
         }
 
+        // The new copy goes to the first reader on the book's waitlist, if there is one, instead of on the shelf (see HoldService)
+        boolean setAside = holdService.handOver(bookId);
+
         /*
             "book" is able to access these methods (.get, .setCopiesAvailable...) because it has a dataType of "Book"
 
@@ -122,11 +148,17 @@ public class AdminService {
 
             .setCpoiesAvailable() --> Here we'll update the current value for Number of Book Copies Available
          */
-        book.get().setCopiesAvailable(book.get().getCopiesAvailable() + 1);
+        int previousCopiesAvailable = book.get().getCopiesAvailable();
+        if (!setAside) {
+            book.get().setCopiesAvailable(book.get().getCopiesAvailable() + 1);
+        }
         book.get().setCopies(book.get().getCopies() + 1);
 
         // Save the updated book back to the database using bookRepository.save().
         bookRepository.save(book.get());
+
+        // The availability counts (CategoryFacetService) hear about it once this transaction has committed
+        eventPublisher.publishEvent(BookChangedEvent.inventory(book.get(), previousCopiesAvailable));
     }
 
 
@@ -144,7 +176,7 @@ public class AdminService {
 
     public void decreaseBookQuantity(Long bookId) throws Exception {
         // NOTE: You’re not creating a new Book object. Instead, you are asking the bookRepository (which connects to the database) to find an existing Book with a specific bookId. If it finds the book, it wraps it in an Optional<Book>; if not, the Optional will be empty.
-        Optional<Book> book = bookRepository.findById(bookId);
+        Optional<Book> book = findBookToChange(bookId);
 
         // If the book is not available or its quantity is 0, throw an exception.
         if (!book.isPresent() || book.get().getCopiesAvailable() <= 0 || book.get().getCopies() <= 0) {
@@ -153,11 +185,14 @@ public class AdminService {
 
 
         // Decrease the number of available copies and total copies.
+        int previousCopiesAvailable = book.get().getCopiesAvailable();
         book.get().setCopiesAvailable(book.get().getCopiesAvailable() - 1);
         book.get().setCopies(book.get().getCopies() - 1);
 
         // Save the updated book back to the database.
         bookRepository.save(book.get());
+
+        eventPublisher.publishEvent(BookChangedEvent.inventory(book.get(), previousCopiesAvailable));
     }
 
 
@@ -186,10 +221,14 @@ public class AdminService {
         book.setCopies(addBookRequest.getCopies());
         book.setCopiesAvailable(addBookRequest.getCopies());
         book.setCategory(addBookRequest.getCategory());
-        book.setImg(addBookRequest.getImg());
+        // The admin page sends the cover as a base64 data URL. The bytes go to the ImageStore and the book only keeps the hash of the stored file.
+        book.setImg(imageStore.storeDataUrl(addBookRequest.getImg()));
 
         // Save the new book to the database using bookRepository.save().
         bookRepository.save(book);
+
+        // Tell whoever keeps the catalog in memory (e.g. the search index) about the new book. They hear it once this transaction has committed.
+        eventPublisher.publishEvent(BookChangedEvent.created(book));
     }
 
 
@@ -224,5 +263,30 @@ public class AdminService {
 
         // Delete all reviews related to the book from the reviewRepository.
         reviewRepository.deleteAllByBookId(bookId);
+
+        // ...and the book's rating histogram, which was built from those reviews.
+        ratingAggregateService.forget(bookId);
+
+        // ...and its waitlist
+        holdService.forget(bookId);
+
+        // The history rows of this book read its description and cover from it. They keep a copy instead, and stop pointing at a book that's gone (see History.book).
+        historyRepository.detachBook(bookId, book.get().getDescription(), book.get().getImg());
+
+        eventPublisher.publishEvent(BookChangedEvent.deleted(book.get()));
+    }
+
+    /*
+        Loads a book whose copies are about to be changed.
+
+        PESSIMISTIC: SELECT ... FOR UPDATE. The row stays locked until this transaction ends, so a checkout or another admin change of the same book waits for us instead of overwriting us.
+
+        OPTIMISTIC: a normal read. When the book is saved, @Version checks nobody changed it in the meantime; if somebody did, the save fails and the controller retries (see InventoryRetryPolicy).
+     */
+    private Optional<Book> findBookToChange(Long bookId) {
+        if (inventoryProperties.isOptimistic()) {
+            return bookRepository.findById(bookId);
+        }
+        return bookRepository.findByIdForUpdate(bookId);
     }
 }
@@ -0,0 +1,57 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.BookBatchResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Many books by id in one request (/api/books/batch?ids=4,8,15,16), for the recommendation widgets and the mirrors, which used to call /api/books/{id} once per book.
+
+    The books come from BookCache: those in memory are used as they are, all the others are read together with "WHERE id IN (...)" (BookCache.IN_CHUNK ids per query).
+    The answer keeps the order of the request, with null (and an entry in "missing") for every id that doesn't exist.
+ */
+@Service
+public class BookBatchService {
+
+    public static final int MAX_IDS = 500;
+
+    private BookCache bookCache;
+
+    @Autowired
+    public BookBatchService(BookCache bookCache) {
+        this.bookCache = bookCache;
+    }
+
+    public BookBatchResponse books(List<Long> bookIds) throws Exception {
+        if (bookIds.size() > MAX_IDS) {
+            throw new Exception("At most " + MAX_IDS + " books at a time");
+        }
+
+        // An id asked for twice is looked up once
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (Long bookId : bookIds) {
+            if (bookId != null) {
+                distinct.add(bookId);
+            }
+        }
+        Map<Long, Book> found = bookCache.findAll(distinct);
+
+        List<Book> books = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            Book book = bookId == null ? null : found.get(bookId);
+            books.add(book);
+            if (book == null) {
+                missing.add(bookId);
+            }
+        }
+        return new BookBatchResponse(books, missing);
+    }
+}
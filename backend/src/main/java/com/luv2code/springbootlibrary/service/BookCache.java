@@ -0,0 +1,156 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.luv2code.springbootlibrary.config.BookCacheProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.BookCacheStatsResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/*
+    Books kept in memory, so showing a book doesn't need a query every time. The catalog hardly ever changes compared to how often it's read.
+
+    "Read-through": find() answers from memory when it can, otherwise reads the book from the database and keeps it for the next time.
+
+    The cache is Caffeine (see pom.xml):
+        - it's bounded by size, not by number of books: each book is weighed by an estimate of the bytes it takes (mostly its description), and the total stays under library.book-cache.maximum-bytes,
+        - when it's full, Caffeine's W-TinyLFU policy keeps the books that are asked for most often, so a crawler walking through every book once doesn't push the popular ones out,
+        - two requests missing the same book at the same moment cause one query, not two (the second one waits for the first).
+
+    A cached book is removed as soon as the change to it has committed: every BookChangedEvent (added, deleted, a checkout, a return, a quantity change by the admin, a new review) removes that one book, and the next read loads it again.
+    @TransactionalEventListener only runs after the commit, so a reader can't put the old book back in between: before the commit the database still has the old book, and the removal comes after that.
+
+    Only the read-only paths use it (the book endpoint, the batch endpoint and the book page). Checkout, return and the admin changes still read the book from the database, because they change it and save it with its @Version (a cached copy could have an old version).
+    The cached Book objects are shared by every request, so they must never be changed.
+ */
+@Component
+public class BookCache {
+
+    /*
+        The estimated size of a Book: the object and its numbers, plus every String (header + one byte per character, like PrefixSuggester.estimatedBytes).
+        Strings with characters outside Latin-1 take two bytes per character, so this is a little low for them, which is fine for a bound.
+     */
+    static final int BOOK_BYTES = 96;
+    static final int STRING_BYTES = 40;
+
+    // How many ids go in one "WHERE id IN (...)". Very long IN lists make big statements and plans; a few hundred ids are read in a couple of queries instead.
+    static final int IN_CHUNK = 200;
+
+    private BookRepository bookRepository;
+
+    private BookCacheProperties properties;
+
+    private final Cache<Long, Book> books;
+
+    private volatile boolean enabled;
+
+    @Autowired
+    public BookCache(BookRepository bookRepository, BookCacheProperties properties) {
+        this.bookRepository = bookRepository;
+        this.properties = properties;
+        this.enabled = properties.isEnabled();
+        this.books = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumBytes())
+                .weigher((Long bookId, Book book) -> weigh(book))
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    // The book, from memory if it's there, otherwise from the database. Empty if the book doesn't exist (which isn't cached: the book may be added later).
+    public Optional<Book> find(Long bookId) {
+        if (!enabled) {
+            return bookRepository.findById(bookId);
+        }
+        return Optional.ofNullable(books.get(bookId, id -> bookRepository.findById(id).orElse(null)));
+    }
+
+    /*
+        Several books at once: the ones in memory straight away, all the others with as few "IN" queries as possible (IN_CHUNK ids each).
+        Books that don't exist are simply not in the map.
+
+        The books read from the database here are returned but NOT kept. find() can keep what it reads because Caffeine makes a removal of that book wait until the read is stored,
+        so the removal always comes last. A read of many books has no such protection: a book could change and be removed while the IN query is running,
+        and the old row read by the query would then be stored after the removal and served until it expires. The books get cached by find() instead, the next time one of them is shown.
+     */
+    public Map<Long, Book> findAll(Iterable<Long> bookIds) {
+        if (!enabled) {
+            return load(bookIds);
+        }
+        Map<Long, Book> found = new HashMap<>(books.getAllPresent(bookIds));
+        List<Long> missing = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            if (!found.containsKey(bookId)) {
+                missing.add(bookId);
+            }
+        }
+        found.putAll(load(missing));
+        return found;
+    }
+
+    // fallbackExecution = true: also called when the event is published outside of a transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        evict(event.getBookId());
+    }
+
+    public void evict(Long bookId) {
+        if (bookId != null) {
+            books.invalidate(bookId);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Turning the cache off also empties it, so turning it back on doesn't serve books that changed meanwhile
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            books.invalidateAll();
+        }
+    }
+
+    public BookCacheStatsResponse stats() {
+        // Caffeine does its housekeeping (evictions included) a little later, in the background; this finishes it so the numbers are up to date
+        books.cleanUp();
+        CacheStats stats = books.stats();
+        long bytes = books.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+        return new BookCacheStatsResponse(enabled, stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), stats.evictionWeight(), books.estimatedSize(), bytes,
+                properties.getMaximumBytes());
+    }
+
+    private Map<Long, Book> load(Iterable<? extends Long> bookIds) {
+        List<Long> ids = new ArrayList<>();
+        bookIds.forEach(ids::add);
+        Map<Long, Book> found = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+            for (Book book : bookRepository.findBooksByBookIds(chunk)) {
+                found.put(book.getId(), book);
+            }
+        }
+        return found;
+    }
+
+    static int weigh(Book book) {
+        return BOOK_BYTES + weigh(book.getTitle()) + weigh(book.getAuthor()) + weigh(book.getDescription())
+                + weigh(book.getCategory()) + weigh(book.getImg());
+    }
+
+    private static int weigh(String text) {
+        return text == null ? 0 : STRING_BYTES + text.length();
+    }
+}
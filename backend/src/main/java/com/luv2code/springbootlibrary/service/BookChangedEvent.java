@@ -0,0 +1,58 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    Published (with Spring's ApplicationEventPublisher) whenever a book is added, deleted, or its copies or rating change, so everything that keeps its own copy of the catalog in memory (e.g. BookSearchIndex, CategoryFacetService, BookCache) can update it.
+
+    The listeners use @TransactionalEventListener, so they only hear about the change once the transaction that made it has committed; a change that rolled back (or is being retried, see InventoryRetryPolicy) is never seen.
+
+    book:                     the book as it is after the change (for DELETED, as it was before being deleted). null for RATING, whose totals are changed by an UPDATE statement without loading the book.
+    previousCopiesAvailable:  for INVENTORY, how many copies were available before the change; otherwise the same as book.copiesAvailable.
+ */
+@Data
+@AllArgsConstructor
+public class BookChangedEvent {
+
+    public enum Change {
+        // The admin added the book
+        CREATED,
+        // The admin deleted the book
+        DELETED,
+        // copies or copiesAvailable changed: a checkout, a return, or the admin changing the quantity
+        INVENTORY,
+        // A review was posted, or the rating totals were recomputed
+        RATING
+    }
+
+    private Long bookId;
+
+    private Change change;
+
+    private Book book;
+
+    private int previousCopiesAvailable;
+
+    public static BookChangedEvent created(Book book) {
+        return new BookChangedEvent(book.getId(), Change.CREATED, book, book.getCopiesAvailable());
+    }
+
+    public static BookChangedEvent deleted(Book book) {
+        return new BookChangedEvent(book.getId(), Change.DELETED, book, book.getCopiesAvailable());
+    }
+
+    public static BookChangedEvent inventory(Book book, int previousCopiesAvailable) {
+        return new BookChangedEvent(book.getId(), Change.INVENTORY, book, previousCopiesAvailable);
+    }
+
+    public static BookChangedEvent rating(Long bookId) {
+        return new BookChangedEvent(bookId, Change.RATING, null, 0);
+    }
+
+    // True for the changes that add or remove a title, author or category from the catalog
+    public boolean changesNames() {
+        return change == Change.CREATED || change == Change.DELETED;
+    }
+}
@@ -0,0 +1,97 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.ReviewRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.Review;
+import com.luv2code.springbootlibrary.responsemodels.BookPageResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/*
+    Builds the whole book page in one go (see BookPageResponse).
+
+    The page used to make five requests: the book, its reviews, "did I review it?", "how many loans do I have?" and "did I check it out?". Each one parsed the JWT and opened its own transaction, one after the other.
+    Here the five lookups don't depend on each other, so they all start at the same time on the bookPageExecutor threads (fewer than the database connections, see BookPageConfiguration) and the page is ready when the slowest one is done, not after all five added together.
+
+    The book itself usually comes from memory (see BookCache), so that lookup is the quickest of the five.
+
+    No @Transactional on this class on purpose: a transaction belongs to one thread, so every lookup runs in its own short read transaction on its own thread (the repositories and services open one by themselves).
+ */
+@Service
+public class BookPageService {
+
+    // How many reviews the page shows under the book
+    public static final int LATEST_REVIEWS = 3;
+
+    private BookCache bookCache;
+
+    private ReviewRepository reviewRepository;
+
+    private BookService bookService;
+
+    private ReviewService reviewService;
+
+    private Executor executor;
+
+    @Autowired
+    public BookPageService(BookCache bookCache, ReviewRepository reviewRepository,
+                           BookService bookService, ReviewService reviewService,
+                           @Qualifier("bookPageExecutor") Executor executor) {
+        this.bookCache = bookCache;
+        this.reviewRepository = reviewRepository;
+        this.bookService = bookService;
+        this.reviewService = reviewService;
+        this.executor = executor;
+    }
+
+    // userEmail is null when nobody is logged in: the user specific lookups are skipped. Returns empty if the book doesn't exist.
+    public Optional<BookPageResponse> bookPage(Long bookId, String userEmail) {
+        CompletableFuture<Optional<Book>> book = async(() -> bookCache.find(bookId));
+        CompletableFuture<List<Review>> latestReviews = async(() -> reviewRepository.findByBookId(bookId,
+                PageRequest.of(0, LATEST_REVIEWS, Sort.by(Sort.Direction.DESC, "date", "id"))).getContent());
+
+        CompletableFuture<Boolean> reviewLeft = CompletableFuture.completedFuture(null);
+        CompletableFuture<Integer> currentLoansCount = CompletableFuture.completedFuture(null);
+        CompletableFuture<Boolean> checkedOut = CompletableFuture.completedFuture(null);
+        if (userEmail != null) {
+            reviewLeft = async(() -> reviewService.userReviewListed(userEmail, bookId));
+            currentLoansCount = async(() -> bookService.currentLoansCount(userEmail));
+            checkedOut = async(() -> bookService.checkoutBookByUser(userEmail, bookId));
+        }
+
+        try {
+            CompletableFuture.allOf(book, latestReviews, reviewLeft, currentLoansCount, checkedOut).join();
+        } catch (CompletionException e) {
+            // Rethrow what the lookup threw, not the wrapper, so errors look the same as when the lookups ran one by one
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+
+        if (!book.join().isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(new BookPageResponse(
+                book.join().get(),
+                latestReviews.join(),
+                reviewLeft.join(),
+                currentLoansCount.join(),
+                checkedOut.join()
+        ));
+    }
+
+    private <T> CompletableFuture<T> async(Supplier<T> lookup) {
+        return CompletableFuture.supplyAsync(lookup, executor);
+    }
+}
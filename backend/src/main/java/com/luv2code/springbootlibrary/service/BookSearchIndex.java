@@ -0,0 +1,381 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.BookSearchResponse;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/*
+    An in-memory "trigram" index over the titles and authors of all books, used instead of findByTitleContaining.
+
+    findByTitleContaining becomes  WHERE title LIKE '%harry%'  and a LIKE that starts with % can't use an index, so MySQL reads every row of the book table for every letter typed on the search page.
+
+    How the index works:
+        Every title is cut into overlapping pieces of 3 characters ("trigrams"). Each word gets two spaces in front and one behind, so the start and end of words are pieces too:
+                "harry"  ->  "  h", " ha", "har", "arr", "rry", "ry "
+        For each trigram we keep the (sorted) ids of the books whose title contains it, the same for authors.
+
+        A search text is cut up the same way, and a book's score is the share of the search's trigrams found in its title (or author):
+                "harr"   ->  "  h", " ha", "har", "arr"      "Harry Potter" has all 4 -> score 1.0
+        The last word of the search gets no space behind it, because the user is probably still typing it.
+        A search for the middle of a word ("otter") still finds "Potter", just with a lower score than a word that starts with it, and a small typo still finds the book with a lower score.
+
+    Only books scoring at least MIN_SCORE are returned. Ties are broken by the shorter title (a closer match), then by the id.
+
+    The index is changed through put/remove (see BookSearchService, which fills it at startup and keeps it up to date). Searches take a read lock and changes a write lock, so many searches run at the same time and only wait while a book is being added or removed.
+    While it is being filled, the ids that put/remove changed are remembered: the startup read may have read such a book before the change, and putFromBuild must not bring the old version (or a deleted book) back.
+    Memory: each book costs about 8 bytes per distinct trigram of its title and author, plus its normalized title and author; around half a kilobyte per book, so a few hundred MB for a million books.
+ */
+@Component
+public class BookSearchIndex {
+
+    // A book needs at least this share of the search's trigrams to be returned
+    static final double MIN_SCORE = 0.5;
+
+    // A match on the author counts a little less than the same match on the title
+    static final double AUTHOR_WEIGHT = 0.9;
+
+    private static final Pattern NOT_LETTER_OR_DIGIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern ACCENT = Pattern.compile("\\p{M}+");
+
+    // Best match first: higher score, then shorter title, then lower id
+    private static final Comparator<Match> BEST_FIRST = Comparator
+            .comparingDouble((Match m) -> -m.score)
+            .thenComparingInt(m -> m.titleLength)
+            .thenComparingLong(m -> m.bookId);
+
+    private static class IndexedBook {
+        final String title;
+        final String author;
+
+        IndexedBook(String title, String author) {
+            this.title = title;
+            this.author = author;
+        }
+    }
+
+    // The books found in one field (title or author) for the searched trigrams: ids[0..size) ascending, each once, and in counts how many of the trigrams it was found for
+    private static class Hits {
+        final long[] ids;
+        final int[] counts;
+        final int size;
+
+        Hits(long[] ids, int[] counts, int size) {
+            this.ids = ids;
+            this.counts = counts;
+            this.size = size;
+        }
+    }
+
+    private static class Match {
+        final long bookId;
+        final double score;
+        final int titleLength;
+
+        Match(long bookId, double score, int titleLength) {
+            this.bookId = bookId;
+            this.score = score;
+            this.titleLength = titleLength;
+        }
+    }
+
+    /*
+        The ids of the books that contain one trigram, kept sorted in a plain long[] (a Set<Long> would take about 5 times the memory).
+        Books are mostly added in id order, so adding is nearly always an append at the end.
+     */
+    private static class Postings {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] < id) {
+                grow();
+                ids[size++] = id;
+                return;
+            }
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            grow();
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        void remove(long id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+
+        private void grow() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+        }
+    }
+
+    private final Map<String, Postings> titleTrigrams = new HashMap<>();
+
+    private final Map<String, Postings> authorTrigrams = new HashMap<>();
+
+    private final Map<Long, IndexedBook> books = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // False until the index holds the whole catalog (see BookSearchService.buildIndex)
+    private volatile boolean ready;
+
+    // The books added, changed or deleted by put/remove while the index isn't ready yet (guarded by the write lock)
+    private final Set<Long> changedWhileBuilding = new HashSet<>();
+
+    // Adds a book, or replaces it if it is already in the index
+    public void put(Long bookId, String title, String author) {
+        IndexedBook book = new IndexedBook(normalize(title), normalize(author));
+
+        lock.writeLock().lock();
+        try {
+            rememberIfBuilding(bookId);
+            putLocked(bookId, book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A book read by the startup build. Skipped if put/remove changed it meanwhile: what they did is newer than what the build read.
+    public void putFromBuild(Long bookId, String title, String author) {
+        IndexedBook book = new IndexedBook(normalize(title), normalize(author));
+
+        lock.writeLock().lock();
+        try {
+            if (!changedWhileBuilding.contains(bookId)) {
+                putLocked(bookId, book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            rememberIfBuilding(bookId);
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        lock.writeLock().lock();
+        try {
+            ready = true;
+            changedWhileBuilding.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+        Returns one page of the books matching the search text, best match first.
+
+        The ids found for the search's trigrams are gathered per field into one long[], sorted, and counted run by run (see hits). The two sorted fields are then walked side by side, so every book is scored once,
+        without a map entry or an object per book found. Only the best (page + 1) * size matches are sorted (in a small heap); the rest are just counted for totalMatches.
+     */
+    public BookSearchResponse search(String query, int page, int size) {
+        List<String> wanted = queryTrigrams(normalize(query));
+        if (wanted.isEmpty()) {
+            return new BookSearchResponse(Collections.emptyList(), Collections.emptyList(), 0, page, size);
+        }
+
+        int keep = (int) Math.min(Integer.MAX_VALUE - 1, (long) (page + 1) * size);
+        PriorityQueue<Match> best = new PriorityQueue<>(Math.min(keep, 1024) + 1, BEST_FIRST.reversed());
+        long total = 0;
+
+        lock.readLock().lock();
+        try {
+            Hits title = hits(titleTrigrams, wanted);
+            Hits author = hits(authorTrigrams, wanted);
+
+            int t = 0;
+            int a = 0;
+            while (t < title.size || a < author.size) {
+                long titleId = t < title.size ? title.ids[t] : Long.MAX_VALUE;
+                long authorId = a < author.size ? author.ids[a] : Long.MAX_VALUE;
+                long bookId = Math.min(titleId, authorId);
+                int inTitle = titleId == bookId ? title.counts[t++] : 0;
+                int inAuthor = authorId == bookId ? author.counts[a++] : 0;
+
+                double score = Math.max(inTitle, AUTHOR_WEIGHT * inAuthor) / wanted.size();
+                if (score < MIN_SCORE) {
+                    continue;
+                }
+                total++;
+                best.add(new Match(bookId, score, books.get(bookId).title.length()));
+                if (best.size() > keep) {
+                    best.poll();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Match> sorted = new ArrayList<>(best);
+        sorted.sort(BEST_FIRST);
+
+        List<Long> bookIds = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (long i = (long) page * size; i < sorted.size(); i++) {
+            bookIds.add(sorted.get((int) i).bookId);
+            scores.add(sorted.get((int) i).score);
+        }
+        return new BookSearchResponse(bookIds, scores, total, page, size);
+    }
+
+    // The postings of all the wanted trigrams in one array, sorted, then squeezed in place to one entry per id with the length of its run as its count
+    private static Hits hits(Map<String, Postings> index, List<String> wanted) {
+        List<Postings> found = new ArrayList<>(wanted.size());
+        int total = 0;
+        for (String trigram : wanted) {
+            Postings postings = index.get(trigram);
+            if (postings != null) {
+                found.add(postings);
+                total += postings.size;
+            }
+        }
+
+        long[] ids = new long[total];
+        int at = 0;
+        for (Postings postings : found) {
+            System.arraycopy(postings.ids, 0, ids, at, postings.size);
+            at += postings.size;
+        }
+        Arrays.sort(ids);
+
+        int[] counts = new int[total];
+        int size = 0;
+        for (int i = 0; i < total; i++) {
+            if (size > 0 && ids[size - 1] == ids[i]) {
+                counts[size - 1]++;
+            } else {
+                ids[size] = ids[i];
+                counts[size] = 1;
+                size++;
+            }
+        }
+        return new Hits(ids, counts, size);
+    }
+
+    private void rememberIfBuilding(Long bookId) {
+        if (!ready) {
+            changedWhileBuilding.add(bookId);
+        }
+    }
+
+    private void putLocked(Long bookId, IndexedBook book) {
+        removeLocked(bookId);
+        books.put(bookId, book);
+        for (String trigram : indexTrigrams(book.title)) {
+            titleTrigrams.computeIfAbsent(trigram, t -> new Postings()).add(bookId);
+        }
+        for (String trigram : indexTrigrams(book.author)) {
+            authorTrigrams.computeIfAbsent(trigram, t -> new Postings()).add(bookId);
+        }
+    }
+
+    private void removeLocked(Long bookId) {
+        IndexedBook old = books.remove(bookId);
+        if (old == null) {
+            return;
+        }
+        for (String trigram : indexTrigrams(old.title)) {
+            removePosting(titleTrigrams, trigram, bookId);
+        }
+        for (String trigram : indexTrigrams(old.author)) {
+            removePosting(authorTrigrams, trigram, bookId);
+        }
+    }
+
+    private static void removePosting(Map<String, Postings> index, String trigram, long bookId) {
+        Postings postings = index.get(trigram);
+        if (postings != null) {
+            postings.remove(bookId);
+            if (postings.size == 0) {
+                index.remove(trigram);
+            }
+        }
+    }
+
+    // "Les Misérables!" -> "les miserables": lower case, no accents, anything that isn't a letter or a digit becomes a single space
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutAccents = ACCENT.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return NOT_LETTER_OR_DIGIT.matcher(withoutAccents.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // The trigrams of a normalized title or author, every word padded with "  " in front and " " behind
+    static Set<String> indexTrigrams(String normalized) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        if (normalized.isEmpty()) {
+            return trigrams;
+        }
+        for (String word : normalized.split(" ")) {
+            addTrigrams("  " + word + " ", trigrams);
+        }
+        return trigrams;
+    }
+
+    // The trigrams of a normalized search text. The last word isn't padded behind, so it matches every word it's the start of.
+    static List<String> queryTrigrams(String normalized) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        if (normalized.isEmpty()) {
+            return new ArrayList<>(trigrams);
+        }
+        String[] words = normalized.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            addTrigrams("  " + words[i] + (i < words.length - 1 ? " " : ""), trigrams);
+        }
+        return new ArrayList<>(trigrams);
+    }
+
+    private static void addTrigrams(String padded, Set<String> trigrams) {
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.BookSearchResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    Searches books by title and author with BookSearchIndex, and keeps the index in step with the book table.
+
+    - When the app has started, the index is filled from the database on a background thread, BUILD_BATCH books at a time (only id, title and author are read).
+    - After that, every book the admin adds or deletes (BookChangedEvent, published by AdminService) is added to or removed from the index once its transaction has committed.
+
+    Until the index is complete, searches still go to the database (findByTitleContaining) so the search page works during startup.
+ */
+@Service
+public class BookSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchService.class);
+
+    static final int BUILD_BATCH = 5_000;
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    private BookSearchIndex bookSearchIndex;
+
+    private BookRepository bookRepository;
+
+    @Autowired
+    public BookSearchService(BookSearchIndex bookSearchIndex, BookRepository bookRepository) {
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookRepository = bookRepository;
+    }
+
+    /*
+        Returns one page of books whose title or author matches the search text, best match first.
+        A blank search returns nothing; page and size are kept within sensible bounds.
+     */
+    public BookSearchResponse search(String query, int page, int size) {
+        int safePage = Math.max(page, 0);
+        int safeSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        if (query == null || query.isBlank()) {
+            return new BookSearchResponse(Collections.emptyList(), Collections.emptyList(), 0, safePage, safeSize);
+        }
+        if (!bookSearchIndex.isReady()) {
+            return searchDatabase(query.trim(), safePage, safeSize);
+        }
+        return bookSearchIndex.search(query, safePage, safeSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndexInBackground() {
+        Thread builder = new Thread(this::buildIndex, "book-search-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /*
+        Reads the whole catalog into the index, in id order (WHERE id > last id seen, so every batch uses the primary key instead of an ever larger OFFSET).
+
+        Books added, renamed or deleted while this runs are handled by onBookChanged at the same time. A batch may have been read before such a change (e.g. a book deleted right after its batch was read),
+        so the build puts its books with putFromBuild, which leaves alone every book onBookChanged has already handled: the index then ends with the change, not with what the build read before it.
+     */
+    public void buildIndex() {
+        long started = System.nanoTime();
+        long afterId = 0;
+        List<BookRepository.BookNames> batch;
+        do {
+            batch = bookRepository.findNamesAfter(afterId, PageRequest.of(0, BUILD_BATCH));
+            for (BookRepository.BookNames book : batch) {
+                bookSearchIndex.putFromBuild(book.getId(), book.getTitle(), book.getAuthor());
+                afterId = book.getId();
+            }
+        } while (batch.size() == BUILD_BATCH);
+
+        bookSearchIndex.markReady();
+        log.info("Book search index built: {} books in {} ms", bookSearchIndex.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // fallbackExecution = true: also called when the event is published outside of a transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!event.changesNames()) {
+            return;
+        }
+        if (event.getChange() == BookChangedEvent.Change.DELETED) {
+            bookSearchIndex.remove(event.getBookId());
+            return;
+        }
+        Book book = event.getBook();
+        bookSearchIndex.put(book.getId(), book.getTitle(), book.getAuthor());
+    }
+
+    // The old title search, used until the index is ready. Every book it finds contains the text, so they all score 1.
+    private BookSearchResponse searchDatabase(String query, int page, int size) {
+        Page<Book> books = bookRepository.findByTitleContaining(query, PageRequest.of(page, size));
+        List<Long> bookIds = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (Book book : books) {
+            bookIds.add(book.getId());
+            scores.add(1.0);
+        }
+        return new BookSearchResponse(bookIds, scores, books.getTotalElements(), page, size);
+    }
+}
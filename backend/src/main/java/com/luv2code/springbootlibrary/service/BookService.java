@@ -1,24 +1,34 @@
 package com.luv2code.springbootlibrary.service;
 
+import com.luv2code.springbootlibrary.config.InventoryProperties;
 import com.luv2code.springbootlibrary.dao.BookRepository;
 import com.luv2code.springbootlibrary.dao.CheckoutRepository;
 import com.luv2code.springbootlibrary.dao.HistoryRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
 import com.luv2code.springbootlibrary.entity.Book;
 import com.luv2code.springbootlibrary.entity.Checkout;
 import com.luv2code.springbootlibrary.entity.History;
+import com.luv2code.springbootlibrary.responsemodels.LoanBatchItemResponse;
 import com.luv2code.springbootlibrary.responsemodels.ShelfCurrentLoansResponse;
+import com.luv2code.springbootlibrary.utils.LoanDates;
 import net.bytebuddy.asm.Advice;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 
 /*
     @Service - tells Spring boot that this class is a "Service" meaning that it'll handle business logics
@@ -29,53 +39,133 @@ import java.util.concurrent.TimeUnit;
 @Transactional
 public class BookService {
 
+    // The most books one batch checkout or return may hold
+    public static final int MAX_BATCH_SIZE = 50;
+
     private BookRepository bookRepository;
 
     private CheckoutRepository checkoutRepository;
 
     private HistoryRepository historyRepository;
 
+    private InventoryProperties inventoryProperties;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    private HoldService holdService;
+
+    private LoanBatchWriter loanBatchWriter;
+
     @Autowired
     public BookService(BookRepository bookRepository, CheckoutRepository checkoutRepository,
-                       HistoryRepository historyRepository) {
+                       HistoryRepository historyRepository, InventoryProperties inventoryProperties,
+                       ApplicationEventPublisher eventPublisher, HoldService holdService,
+                       LoanBatchWriter loanBatchWriter) {
         this.bookRepository = bookRepository;
         this.checkoutRepository = checkoutRepository;
         this.historyRepository = historyRepository;
+        this.inventoryProperties = inventoryProperties;
+        this.eventPublisher = eventPublisher;
+        this.holdService = holdService;
+        this.loanBatchWriter = loanBatchWriter;
     }
 
 
     /*
         PURPOSE: to allow users checkout books
      */
+    // rollbackFor = Exception.class: nothing of a failed checkout is kept, whatever the exception (see also DuplicateEntryException)
+    @Transactional(rollbackFor = Exception.class)
     public Book checkoutBook (String userEmail, Long bookId) throws Exception {
-        // Find the book in bookRepository
-        Optional<Book> book = bookRepository.findById(bookId);
-
-        // Check if the user has already checked out this book
-        Checkout validateCheckout = checkoutRepository.findByUserEmailAndBookId(userEmail, bookId);
-
-        // Validate if the book exists, isn't already checked out, and has available copies
-        if (!book.isPresent() || validateCheckout != null || book.get().getCopiesAvailable() <= 0) {
+        // A user whose hold is ready gets the copy set aside for them (see HoldService). Everybody else takes a copy off the shelf; if that fails, the book either doesn't exist or has no copies left.
+        boolean setAside = holdService.takeReadyCopy(userEmail, bookId);
+        if (!setAside && !takeCopy(bookId)) {
             throw new Exception("Book doesn't exist or already checked out by user");
         }
 
-        // Reduce available copies and save the updated book
-        book.get().setCopiesAvailable(book.get().getCopiesAvailable() - 1);
-        bookRepository.save(book.get());
-
-        // // Create a new checkout record for the user
+        // // Create a new checkout record for the user. This insert runs in the same (short) transaction as the UPDATE above, so if it fails the copy goes back on the shelf.
         Checkout checkout = new Checkout(
                 userEmail,              // user email
-                LocalDate.now().toString(),         // checkolut date
-                LocalDate.now().plusDays(7).toString(),         // return date
-                book.get().getId()          // book Id
+                LocalDate.now(),         // checkolut date
+                LocalDate.now().plusDays(7),         // return date
+                bookId          // book Id
         );
 
-        // // Save the checkout information to the database
-        checkoutRepository.save(checkout);
+        // // Save the checkout information to the database.
+        // There's no "has the user already checked out this book?" SELECT before it: the unique key uq_checkout_user_book (migration V13) rejects the second checkout, even when both arrive at the same moment.
+        try {
+            checkoutRepository.saveAndFlush(checkout);
+        } catch (DataIntegrityViolationException e) {
+            if (DuplicateEntryException.isViolationOf(e, "uq_checkout_user_book")) {
+                throw new DuplicateEntryException("Book already checked out by user", e);
+            }
+            throw e;
+        }
+
+        // A user who was still waiting for this book got a copy off the shelf, so they leave its queue
+        if (!setAside) {
+            holdService.leaveQueues(userEmail, Collections.singletonList(bookId));
+        }
+
+        // Return the updated book object (read after the UPDATE, so copiesAvailable is the new value)
+        Book book = bookRepository.findById(bookId).get();
+
+        // Tell the in-memory availability counts (e.g. CategoryFacetService) a copy was taken. They hear it once this transaction has committed.
+        // (A copy that was set aside was never on the shelf, so the shelf didn't change.)
+        if (!setAside) {
+            eventPublisher.publishEvent(BookChangedEvent.inventory(book, book.getCopiesAvailable() + 1));
+        }
+        // ...and the user's open pages (see LiveUpdateService) that they have a new loan
+        eventPublisher.publishEvent(new LoanChangedEvent(userEmail, bookId, LoanChangedEvent.Change.CHECKED_OUT, checkout.getReturnDate()));
+        return book;
+    }
+
+
+
+    /*
+        Takes one copy of the book off the shelf. Returns false if the book doesn't exist or has no copies left.
+
+        PESSIMISTIC (default): one guarded UPDATE (see BookRepository.decrementCopiesAvailable). We don't read the book, check copiesAvailable in Java and save it back: under load that either lends out copies we don't have, or makes every borrower wait on the row lock for the whole transaction.
+
+        OPTIMISTIC: read, check and save the book as usual. @Version on Book makes the save fail if somebody else changed the book in the meantime, and the controller retries the whole checkout (see InventoryRetryPolicy).
+        The save is flushed right away, so a request that lost the race fails here, before it inserts its checkout row. (Left to the commit, Hibernate would run the INSERT first and the version check last,
+        so every lost race would insert a row only to roll it back. H2 in MySQL mode even hands the same AUTO_INCREMENT id out twice when such inserts are rolled back at the same time, see BookServiceCheckoutContentionTest.)
+     */
+    private boolean takeCopy(Long bookId) {
+        if (!inventoryProperties.isOptimistic()) {
+            return bookRepository.decrementCopiesAvailable(bookId) == 1;
+        }
 
-        // Return the updated book object
-        return book.get();
+        Optional<Book> book = bookRepository.findById(bookId);
+        if (!book.isPresent() || book.get().getCopiesAvailable() <= 0) {
+            return false;
+        }
+        book.get().setCopiesAvailable(book.get().getCopiesAvailable() - 1);
+        bookRepository.saveAndFlush(book.get());
+        return true;
+    }
+
+    /*
+        Puts one copy of the book back on the shelf, the opposite of takeCopy. Returns false if all copies were already on the shelf.
+
+        In the pessimistic mode the UPDATE bypasses the book we loaded (and detaches it), so its copiesAvailable is changed by hand to match what the UPDATE did; it isn't saved again.
+        In the optimistic mode the save is flushed right away, for the same reason as in takeCopy: a lost race fails before the history row is inserted.
+     */
+    private boolean putCopyBack(Book book) {
+        if (!inventoryProperties.isOptimistic()) {
+            if (bookRepository.incrementCopiesAvailable(book.getId()) == 0) {
+                return false;
+            }
+            book.setCopiesAvailable(book.getCopiesAvailable() + 1);
+            return true;
+        }
+
+        if (book.getCopiesAvailable() < book.getCopies()) {
+            book.setCopiesAvailable(book.getCopiesAvailable() + 1);
+            bookRepository.saveAndFlush(book);
+            return true;
+        }
+        return false;
     }
 
 
@@ -117,27 +207,170 @@ public class BookService {
             throw new Exception("Book does not exist or not checked out by user");
         }
 
-        // Increase available copies
-        book.get().setCopiesAvailable(book.get().getCopiesAvailable() + 1);
-
-        // Save
-        bookRepository.save(book.get());
+        // The copy goes to the first reader on the book's waitlist, if there is one (see HoldService). Otherwise it goes back on the shelf.
+        int previousCopiesAvailable = book.get().getCopiesAvailable();
+        if (!holdService.handOver(bookId) && putCopyBack(book.get())) {
+            eventPublisher.publishEvent(BookChangedEvent.inventory(book.get(), previousCopiesAvailable));
+        }
 
         // Delete the checkout record
         checkoutRepository.deleteById(validateCheckout.getId());
 
-        // Log the return in history
+        // Log the return in history. Only the book's id and a title/author snapshot are saved: the description and cover stay with the book and are looked up when the history is shown.
         History history = new History(
                 userEmail,
                 validateCheckout.getCheckoutDate(),
-                LocalDate.now().toString(),
+                LocalDate.now(),
+                bookId,
                 book.get().getTitle(),
-                book.get().getAuthor(),
-                book.get().getDescription(),
-                book.get().getImg()
+                book.get().getAuthor()
         );
 
         historyRepository.save(history);
+
+        eventPublisher.publishEvent(new LoanChangedEvent(userEmail, bookId, LoanChangedEvent.Change.RETURNED, null));
+    }
+
+
+    /*
+        Several checkouts in one transaction (the self-service kiosks), with a result per book: a book that can't be checked out doesn't stop the others.
+
+        checkoutBook once per book would run its queries once per book. Here the user's holds, the books and the user's checkouts are each read with ONE query for all the books,
+        and the new checkout rows are written with one batched INSERT (see LoanBatchWriter).
+        Taking a copy off the shelf is still one guarded UPDATE per book (see takeCopy): that's what stops two borrowers from getting the last copy.
+     */
+    @Transactional(rollbackFor = DuplicateEntryException.class)
+    public List<LoanBatchItemResponse> checkoutBooks(String userEmail, List<Long> bookIds) throws Exception {
+        List<Long> ids = distinctIds(bookIds);
+        List<LoanBatchItemResponse> results = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return results;
+        }
+
+        Set<Long> checkedOut = new HashSet<>();
+        for (Checkout checkout : checkoutRepository.findByUserEmailAndBookIdIn(userEmail, ids)) {
+            checkedOut.add(checkout.getBookId());
+        }
+        List<Long> notCheckedOut = new ArrayList<>(ids);
+        notCheckedOut.removeAll(checkedOut);
+
+        // Only the READY holds of books that will be checked out are removed: a book the user already has keeps its copy set aside (the hold expires and passes it on as usual).
+        // The holds before the books: removing a READY hold clears the persistence context, which would detach books loaded before it
+        Set<Long> setAside = holdService.takeReadyCopies(userEmail, notCheckedOut);
+        Map<Long, Book> books = booksById(ids);
+
+        LocalDate today = LocalDate.now();
+        List<Checkout> checkouts = new ArrayList<>();
+        for (Long bookId : ids) {
+            Book book = books.get(bookId);
+            if (book == null || checkedOut.contains(bookId)) {
+                results.add(new LoanBatchItemResponse(bookId, false, "Book doesn't exist or already checked out by user"));
+                continue;
+            }
+            if (!setAside.contains(bookId)) {
+                int previousCopiesAvailable = book.getCopiesAvailable();
+                if (!takeCopy(bookId)) {
+                    results.add(new LoanBatchItemResponse(bookId, false, "No copies available"));
+                    continue;
+                }
+                // In the pessimistic mode the UPDATE bypassed the loaded book (like in putCopyBack); in the optimistic mode takeCopy changed this same book
+                if (!inventoryProperties.isOptimistic()) {
+                    book.setCopiesAvailable(previousCopiesAvailable - 1);
+                }
+                eventPublisher.publishEvent(BookChangedEvent.inventory(book, previousCopiesAvailable));
+            }
+            checkouts.add(new Checkout(userEmail, today, today.plusDays(7), bookId));
+            results.add(new LoanBatchItemResponse(bookId, true, null));
+        }
+
+        // The SELECT above gives each book its own answer; the unique key still catches a checkout of the same book that committed in between (the whole batch then fails with a 409)
+        try {
+            loanBatchWriter.insertCheckouts(checkouts);
+        } catch (DataIntegrityViolationException e) {
+            if (DuplicateEntryException.isViolationOf(e, "uq_checkout_user_book")) {
+                throw new DuplicateEntryException("Book already checked out by user", e);
+            }
+            throw e;
+        }
+
+        List<Long> checkedOutNow = new ArrayList<>();
+        for (Checkout checkout : checkouts) {
+            checkedOutNow.add(checkout.getBookId());
+            eventPublisher.publishEvent(new LoanChangedEvent(userEmail, checkout.getBookId(), LoanChangedEvent.Change.CHECKED_OUT, checkout.getReturnDate()));
+        }
+        holdService.leaveQueues(userEmail, checkedOutNow);
+        return results;
+    }
+
+    /*
+        Several returns in one transaction, with a result per book, the same way: the books and the user's checkouts are read with one query each,
+        the checkouts are deleted with one DELETE ... WHERE id IN (...), and the history rows are written with one batched INSERT.
+        Each returned copy still goes to the book's waitlist or back on the shelf on its own, like in returnBook.
+     */
+    public List<LoanBatchItemResponse> returnBooks(String userEmail, List<Long> bookIds) throws Exception {
+        List<Long> ids = distinctIds(bookIds);
+        List<LoanBatchItemResponse> results = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return results;
+        }
+
+        Map<Long, Book> books = booksById(ids);
+        Map<Long, Checkout> checkouts = new HashMap<>();
+        for (Checkout checkout : checkoutRepository.findByUserEmailAndBookIdIn(userEmail, ids)) {
+            checkouts.put(checkout.getBookId(), checkout);
+        }
+
+        LocalDate today = LocalDate.now();
+        List<Long> returnedCheckoutIds = new ArrayList<>();
+        List<History> history = new ArrayList<>();
+        for (Long bookId : ids) {
+            Book book = books.get(bookId);
+            Checkout checkout = checkouts.get(bookId);
+            if (book == null || checkout == null) {
+                results.add(new LoanBatchItemResponse(bookId, false, "Book does not exist or not checked out by user"));
+                continue;
+            }
+
+            int previousCopiesAvailable = book.getCopiesAvailable();
+            if (!holdService.handOver(bookId) && putCopyBack(book)) {
+                eventPublisher.publishEvent(BookChangedEvent.inventory(book, previousCopiesAvailable));
+            }
+            returnedCheckoutIds.add(checkout.getId());
+            history.add(new History(userEmail, checkout.getCheckoutDate(), today, bookId, book.getTitle(), book.getAuthor()));
+            results.add(new LoanBatchItemResponse(bookId, true, null));
+        }
+
+        if (!returnedCheckoutIds.isEmpty()) {
+            checkoutRepository.deleteAllByIdInBatch(returnedCheckoutIds);
+        }
+        loanBatchWriter.insertHistory(history);
+
+        for (History row : history) {
+            eventPublisher.publishEvent(new LoanChangedEvent(userEmail, row.getBookId(), LoanChangedEvent.Change.RETURNED, null));
+        }
+        return results;
+    }
+
+    // The ids in the order given, each once
+    private static List<Long> distinctIds(List<Long> bookIds) throws Exception {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Long bookId : bookIds) {
+            if (bookId != null) {
+                ids.add(bookId);
+            }
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new Exception("At most " + MAX_BATCH_SIZE + " books at a time");
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private Map<Long, Book> booksById(List<Long> ids) {
+        Map<Long, Book> books = new HashMap<>();
+        for (Book book : bookRepository.findBooksByBookIds(ids)) {
+            books.put(book.getId(), book);
+        }
+        return books;
     }
 
 
@@ -161,84 +394,22 @@ public class BookService {
 
 
     //The main goal of this function is to generate a list of the books that a user has currently checked out, and for each book, calculate how many days are left until the book is due to be returned.
-    public List<ShelfCurrentLoansResponse> currentLoans(String userEmail) throws Exception {
+    /*
+        This used to load the user's checkouts, then load their books, then for every book scan the whole checkout list to find its checkout again, and parse both dates with a new SimpleDateFormat each time.
 
+        Now the database does all of it in ONE query (see CheckoutRepository.findCurrentLoansByUserEmail): it joins checkout to book and works out daysLeft itself. All that's left to do here is copy each row into a ShelfCurrentLoansResponse.
+     */
+    public List<ShelfCurrentLoansResponse> currentLoans(String userEmail) {
         List<ShelfCurrentLoansResponse> shelfCurrentLoansResponses = new ArrayList<>();
 
-        // Fetch all checkouts for the user
-        List<Checkout> checkoutList = checkoutRepository.findBooksByUserEmail(userEmail);
-        List<Long> bookIdList = new ArrayList<>();
-
-        // Get all" book IDs" from the List of checkout objects and add the extracted IDs into the newly created ArrayList
-        for (Checkout i: checkoutList) {
-            bookIdList.add(i.getBookId());
-        }
-
-        // // Fetch all books associated with the checkout list
-        List<Book> books = bookRepository.findBooksByBookIds(bookIdList);
-
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-
-
-
-        // From the list of books in the array (the array of books we created based on another ID list)
-        // You have a list of books that the user has checked out (from bookRepository.findBookByIds(bookIdList)), and you're going through each book one by one.
-        for (Book book : books) {
-
-            Optional<Checkout> checkout =
-                    // checkoutList: This is a list of all the Checkout objects associated with a user. Every time a user checks out a book, there’s a Checkout record created.
-                    checkoutList
-                            /*
-                                stream(): This converts the list into a stream. A stream is a sequence of elements (in this case, Checkout objects) that you can process one by one. Think of it like a pipeline that processes items from the list.
-
-                                Why stream? Streams let you apply operations (like filtering, mapping, etc.) in a clear, chainable way.
-                             */
-                            .stream()
-                            /*
-                                filter(): This method lets you filter the stream, meaning you only want to keep certain Checkout objects that meet a condition.
-
-                                x -> x.getBookId() == book.getId(): This is the condition for filtering.
-                                x represents each Checkout object in the stream (think of it like a temporary variable in a loop).
-                                x.getBookId() is a method that retrieves the bookId from the Checkout object (x).
-                                book.getId() is the ID of the current Book object you’re working with in the outer loop (this is the book that’s currently being processed).
-
-                                The filter is checking: "Does the bookId in this Checkout object match the id of the current book?"
-
-                                If yes, the Checkout passes the filter and is kept. If no, it’s filtered out.
-                             */
-                            .filter(x -> x.getBookId() == book.getId())
-                            /*
-                                Once you’ve filtered the stream to only include Checkout objects where the bookId matches the current book’s id, you use .findFirst(). This method looks for the first element in the stream that matches the filter condition and wraps it in an Optional.
-
-                                If a matching Checkout is found, you’ll get an Optional containing that Checkout.
-                                If no matching Checkout is found, you’ll get an empty Optional (meaning there is no match).
-                             */
-                            .findFirst();
-
-            // After you’ve filtered the list, you need to check if a Checkout was found (isPresent()). If there is no corresponding Checkout object, the code inside the if block won’t run.
-            if (checkout.isPresent()) {
-                // d1: This is the return date of the book, which you get from the Checkout object.
-                // d2: This is today’s date, which you calculate using LocalDate.now().
-                // Both dates are formatted using SimpleDateFormat ("yyyy-MM-dd") so that they match.
-                Date d1 = sdf.parse(checkout.get().getReturnDate());
-                Date d2 = sdf.parse(LocalDate.now().toString());
-
-
-                // Here, you're calculating the difference between the return date (d1) and today’s date (d2), in milliseconds.
-                // You then convert that difference into days using TimeUnit.DAYS.
-                TimeUnit time = TimeUnit.DAYS;
-                long difference_In_Time = time.convert(d1.getTime() - d2.getTime(),
-                        TimeUnit.MILLISECONDS);
-
-                // For each book, you create a ShelfCurrentLoansResponse object, which holds the Book and the number of days left before the return date.
-                //You then add this response to the shelfCurrentLoansResponses list.
-                shelfCurrentLoansResponses.add(
-                        new ShelfCurrentLoansResponse(
-                                book,
-                                (int) difference_In_Time
-                        )
-                );
+        for (CheckoutRepository.CurrentLoan loan : checkoutRepository.findCurrentLoansByUserEmail(userEmail)) {
+            Integer daysLeft = loan.getDaysLeft();
+            if (daysLeft == null) {
+                // Not converted to a DATE yet (see LoanDates): count the days from the string. A string that isn't a date counts as due today.
+                LocalDate returnDate = LoanDates.parse(loan.getLegacyReturnDate());
+                daysLeft = returnDate == null ? 0 : (int) ChronoUnit.DAYS.between(LocalDate.now(), returnDate);
             }
+            shelfCurrentLoansResponses.add(new ShelfCurrentLoansResponse(loan.getBook(), daysLeft));
         }
         return shelfCurrentLoansResponses;
     }
@@ -256,20 +427,16 @@ public class BookService {
             throw new Exception("Book does not exist or not checked out by user");
         }
 
-        // This creates a SimpleDateFormat object to parse date strings in the format "yyyy-MM-dd" (e.g., "2024-09-25").
-        SimpleDateFormat sdFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-        /*
-            d1: The returnDate from the validateCheckout object is converted from a string to a Date object.
-            d2: The current date (today's date) is converted to a string (using LocalDate.now()), then parsed into a Date object.
-         */
-        Date d1 = sdFormat.parse(validateCheckout.getReturnDate());
-        Date d2 = sdFormat.parse(LocalDate.now().toString());
+        // The return date is a LocalDate now, so it can be compared with today directly (no more parsing "yyyy-MM-dd" strings).
+        // It's null only if an old row's date string isn't a valid date (see LoanDates); such a loan is renewed, which gives it a valid date again.
+        LocalDate returnDate = validateCheckout.getReturnDate();
+        LocalDate today = LocalDate.now();
 
         // Extend the return date if it hasn't passed
-        if (d1.compareTo(d2) > 0 || d1.compareTo(d2) == 0) {
-            validateCheckout.setReturnDate(LocalDate.now().plusDays(7).toString());
+        if (returnDate == null || !returnDate.isBefore(today)) {
+            validateCheckout.setReturnDate(today.plusDays(7));
             checkoutRepository.save(validateCheckout);
+            eventPublisher.publishEvent(new LoanChangedEvent(userEmail, bookId, LoanChangedEvent.Change.RENEWED, validateCheckout.getReturnDate()));
         }
     }
 
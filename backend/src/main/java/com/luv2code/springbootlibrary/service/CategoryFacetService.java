@@ -0,0 +1,185 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.CategoryFacetResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The numbers of the category sidebar: how many books each category has, and how many of them can be borrowed right now.
+
+    Counting them with SQL would be one COUNT query per category per page view. Instead the counts are kept in memory:
+        - they are loaded with one GROUP BY query when the app starts (reconcile),
+        - every committed change of the catalog (BookChangedEvent) adjusts them: a book added or deleted, and a checkout, return or quantity change that takes the last copy off the shelf or puts the first one back,
+        - every library.facets.reconcile-interval-ms they are loaded again from the database, which repairs any drift (a change made straight in the database, or two returns of the same book at the same moment both seeing 0 copies before them).
+
+    A change can commit while reconcile is reading the database, after its GROUP BY has already counted that category. Replacing the counts with what was read would then lose it until the next reconcile.
+    So while reconcile reads, onBookChanged also writes down what it changed (pending), and reconcile adds those changes to what it read before it swaps the counts in. Both take the same lock for that part, so no change falls between the two.
+
+    So showing the sidebar needs no SQL at all.
+ */
+@Service
+public class CategoryFacetService {
+
+    private static final Logger log = LoggerFactory.getLogger(CategoryFacetService.class);
+
+    private static class Counts {
+        final AtomicLong books = new AtomicLong();
+        final AtomicLong availableBooks = new AtomicLong();
+
+        void add(long books, long availableBooks) {
+            this.books.addAndGet(books);
+            this.availableBooks.addAndGet(availableBooks);
+        }
+    }
+
+    // What one BookChangedEvent did to the counts of its category
+    private static class Change {
+        final String category;
+        final long books;
+        final long availableBooks;
+
+        Change(String category, long books, long availableBooks) {
+            this.category = category;
+            this.books = books;
+            this.availableBooks = availableBooks;
+        }
+
+        void applyTo(Map<String, Counts> countsByCategory) {
+            countsByCategory.computeIfAbsent(category, c -> new Counts()).add(books, availableBooks);
+        }
+    }
+
+    private BookRepository bookRepository;
+
+    // Replaced as a whole by reconcile(), so a request never sees a half loaded set of counts
+    private volatile Map<String, Counts> countsByCategory = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    private final Object lock = new Object();
+
+    // The changes made while reconcile() reads the database, null the rest of the time (guarded by lock)
+    private List<Change> pending;
+
+    @Autowired
+    public CategoryFacetService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    // The counts of every category that has books, sorted by category name
+    public List<CategoryFacetResponse> categories() {
+        List<CategoryFacetResponse> facets = new ArrayList<>();
+        for (Map.Entry<String, Counts> entry : countsByCategory.entrySet()) {
+            long books = entry.getValue().books.get();
+            if (books > 0) {
+                facets.add(new CategoryFacetResponse(entry.getKey(), books, entry.getValue().availableBooks.get()));
+            }
+        }
+        facets.sort((a, b) -> a.getCategory().compareTo(b.getCategory()));
+        return facets;
+    }
+
+    // Loads the counts from the database, replacing the ones in memory
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${library.facets.reconcile-interval-ms}", fixedDelayString = "${library.facets.reconcile-interval-ms}")
+    public void reconcile() {
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+
+        Map<String, Counts> fromDatabase = new ConcurrentHashMap<>();
+        try {
+            for (BookRepository.CategoryCount row : bookRepository.countByCategory()) {
+                Counts counts = new Counts();
+                counts.add(row.getBooks(), row.getAvailableBooks());
+                fromDatabase.put(row.getCategory(), counts);
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                pending = null;
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            for (Change change : pending) {
+                change.applyTo(fromDatabase);
+            }
+            pending = null;
+
+            if (loaded && !sameCounts(countsByCategory, fromDatabase)) {
+                log.info("Category counts were out of step with the database and have been reloaded");
+            }
+            countsByCategory = fromDatabase;
+            loaded = true;
+        }
+    }
+
+    // fallbackExecution = true: also called when the event is published outside of a transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        Book book = event.getBook();
+        if (book == null || book.getCategory() == null) {
+            return;
+        }
+        boolean available = book.getCopiesAvailable() > 0;
+        long books = 0;
+        long availableBooks = 0;
+
+        switch (event.getChange()) {
+            case CREATED:
+                books = 1;
+                availableBooks = available ? 1 : 0;
+                break;
+            case DELETED:
+                books = -1;
+                availableBooks = available ? -1 : 0;
+                break;
+            case INVENTORY:
+                boolean wasAvailable = event.getPreviousCopiesAvailable() > 0;
+                if (available && !wasAvailable) {
+                    availableBooks = 1;
+                } else if (!available && wasAvailable) {
+                    availableBooks = -1;
+                }
+                break;
+        }
+        if (books == 0 && availableBooks == 0) {
+            return;
+        }
+
+        Change change = new Change(book.getCategory(), books, availableBooks);
+        synchronized (lock) {
+            change.applyTo(countsByCategory);
+            if (pending != null) {
+                pending.add(change);
+            }
+        }
+    }
+
+    private static boolean sameCounts(Map<String, Counts> current, Map<String, Counts> fromDatabase) {
+        for (Map.Entry<String, Counts> entry : current.entrySet()) {
+            Counts other = fromDatabase.get(entry.getKey());
+            long books = other == null ? 0 : other.books.get();
+            long availableBooks = other == null ? 0 : other.availableBooks.get();
+            if (entry.getValue().books.get() != books || entry.getValue().availableBooks.get() != availableBooks) {
+                return false;
+            }
+        }
+        return current.keySet().containsAll(fromDatabase.keySet());
+    }
+}
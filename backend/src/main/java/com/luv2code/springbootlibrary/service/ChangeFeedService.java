@@ -0,0 +1,113 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookChangeRepository;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.BookChange;
+import com.luv2code.springbootlibrary.responsemodels.BookChangeResponse;
+import com.luv2code.springbootlibrary.responsemodels.ChangeFeedResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The catalog's change feed: "which books were added, changed or deleted since I last asked?", so the frontend and the mirrors of the catalog don't have to read all of /api/books to find out.
+
+    Writing: every BookChangedEvent adds a row to the change log (book_change_log, see migration V11). The row is written inside the transaction that made the change, just before it commits: both commit, or neither does.
+
+    Reading: GET /api/books/changes?since=<cursor>. The cursor is the id of the last log row the client has seen; the answer holds the rows after it, each book once (with the book as it is now), and the new cursor.
+    So a client that keeps its cursor reads work in proportion to what changed, not to the size of the catalog.
+
+    Ids are handed out when a row is inserted, but transactions commit in any order. If the rows were inserted whenever the change happened, row 11 could be visible while row 10 is still on its way, and a client that moved its cursor past 10 would never see it.
+    So the rows are inserted at the very end, while holding the lock row of book_change_log_lock (migration V16) until the commit. One transaction at a time gets ids and commits, so the ids follow the order of the commits:
+    once a row is visible, every row before it is too, whatever the gaps between the ids (a transaction that failed to commit, an auto-increment step other than 1). The feed just reads what is there.
+    The cost is that the commits of book changes line up behind each other; only the commit itself, the rest of those transactions still runs side by side.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ChangeFeedService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private BookChangeRepository bookChangeRepository;
+
+    private BookRepository bookRepository;
+
+    @Autowired
+    public ChangeFeedService(BookChangeRepository bookChangeRepository, BookRepository bookRepository) {
+        this.bookChangeRepository = bookChangeRepository;
+        this.bookRepository = bookRepository;
+    }
+
+    /*
+        Called just before the transaction that changed the book commits (BEFORE_COMMIT), still inside it (readOnly = false: this one writes).
+        The changes still waiting in the persistence context are written first, so that once the lock is held this transaction doesn't wait for any other row: a transaction holding the lock only ever waits for its commit.
+        A second change in the same transaction finds the lock already held.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    @Transactional
+    public void onBookChanged(BookChangedEvent event) {
+        bookChangeRepository.flush();
+        bookChangeRepository.lockLog();
+        bookChangeRepository.save(new BookChange(event.getBookId(), typeOf(event.getChange()), Instant.now()));
+    }
+
+    public ChangeFeedResponse changes(long since, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<BookChange> rows = bookChangeRepository.findAfter(since, PageRequest.of(0, pageSize));
+
+        // The last change of every book, in the order of those last changes
+        Map<Long, BookChange.Type> changes = new LinkedHashMap<>();
+        long cursor = since;
+        for (BookChange row : rows) {
+            BookChange.Type earlier = changes.remove(row.getBookId());
+            changes.put(row.getBookId(), merge(earlier, row.getType()));
+            cursor = row.getId();
+        }
+
+        Map<Long, Book> books = new HashMap<>();
+        if (!changes.isEmpty()) {
+            for (Book book : bookRepository.findBooksByBookIds(new ArrayList<>(changes.keySet()))) {
+                books.put(book.getId(), book);
+            }
+        }
+
+        List<BookChangeResponse> responses = new ArrayList<>();
+        for (Map.Entry<Long, BookChange.Type> change : changes.entrySet()) {
+            Book book = books.get(change.getKey());
+            // A book changed here and deleted in a later row: its DELETED row comes on a later page, but it's already gone
+            BookChange.Type type = book == null ? BookChange.Type.DELETED : change.getValue();
+            responses.add(new BookChangeResponse(change.getKey(), type.name(), type == BookChange.Type.DELETED ? null : book));
+        }
+        return new ChangeFeedResponse(responses, cursor, rows.size() == pageSize);
+    }
+
+    static BookChange.Type typeOf(BookChangedEvent.Change change) {
+        switch (change) {
+            case CREATED:
+                return BookChange.Type.CREATED;
+            case DELETED:
+                return BookChange.Type.DELETED;
+            default:
+                return BookChange.Type.UPDATED;
+        }
+    }
+
+    // Created then updated is still new to the client; anything followed by a delete is a delete
+    private static BookChange.Type merge(BookChange.Type earlier, BookChange.Type later) {
+        if (earlier == BookChange.Type.CREATED && later == BookChange.Type.UPDATED) {
+            return BookChange.Type.CREATED;
+        }
+        return later;
+    }
+}
@@ -0,0 +1,30 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+
+/*
+    Writes a cover (Book.img, History.img and the projections of them) as the URL the browser loads it from.
+
+    The database only keeps the image's hash (see ImageStore); the URL is put together here, while the JSON is written, with the current library.images.base-url.
+
+    Used with @JsonSerialize(using = CoverUrlSerializer.class). Jackson asks Spring to create it (Spring Boot's and Spring Data REST's ObjectMappers both do), which is how it gets the ImageStore.
+ */
+public class CoverUrlSerializer extends JsonSerializer<String> {
+
+    private ImageStore imageStore;
+
+    @Autowired
+    public CoverUrlSerializer(ImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    @Override
+    public void serialize(String img, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeString(imageStore.urlOf(img));
+    }
+}
@@ -0,0 +1,32 @@
+package com.luv2code.springbootlibrary.service;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/*
+    Thrown when an insert hits one of the "only once per user and book" unique keys (see migration V13): the user already has this book checked out, or already reviewed it.
+
+    Instead of SELECTing first to find out ("is there a checkout already?"), the services just INSERT and let the database say no.
+    That's one query less per write, and it's also right when the same request is sent twice at the same moment (a double click), which the SELECT can't catch: both SELECTs find nothing, then both INSERTs run.
+
+    @ResponseStatus: a controller that lets this exception through answers 409 Conflict with the message, instead of the 500 of a plain Exception.
+
+    The methods that throw it need @Transactional(rollbackFor = DuplicateEntryException.class): the failed INSERT already marked the transaction as "roll back only",
+    and without rollbackFor Spring would try to commit it anyway (this is a checked exception) and the caller would get an UnexpectedRollbackException instead of this one.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class DuplicateEntryException extends Exception {
+
+    public DuplicateEntryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    // True if the violation is the unique key uniqueKey, and not e.g. a NOT NULL column. The databases put the key's name in the message:
+    //     MySQL: Duplicate entry 'reader@example.com-5' for key 'checkout.uq_checkout_user_book'
+    //     H2:    Unique index or primary key violation: "public.uq_checkout_user_book_index_8 ON public.checkout(...)"
+    public static boolean isViolationOf(DataIntegrityViolationException e, String uniqueKey) {
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(uniqueKey);
+    }
+}
@@ -0,0 +1,80 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.ReviewRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Works out the ETags of the book, review and catalog responses, so a client that already has the latest copy gets a 304 Not Modified (no body) instead of the same JSON again.
+
+    An ETag is a short text that changes whenever the response would change. The browser keeps it with the response and sends it back in "If-None-Match"; if it's still the current one, we answer 304.
+    Here the ETags are "strong" (the same ETag means exactly the same JSON) and are worked out from a few numbers rather than from the whole response:
+        - a book:            its version, ratingCount and ratingSum (one index lookup, see BookRepository.findVersionById),
+        - a book's reviews:  how many reviews it has and the highest review id (see ReviewRepository.findVersionByBookId),
+        - the catalog lists: a counter bumped by every committed BookChangedEvent.
+
+    The catalog counter lives in memory, so it starts again when the app restarts and every instance of the app has its own. The random "started" part of its ETag makes sure an ETag from another instance or from before a restart never matches, which costs one full response, never a stale one.
+    A change made straight in the database (not through the app) doesn't move the counter: the lists keep their ETag until the next change made through the app or the next restart.
+
+    The ETag is always worked out BEFORE reading the response it goes with. If the data changes in between, the client gets the newer data with the older ETag and simply downloads it again next time; the other way round it would keep a stale copy.
+ */
+@Service
+public class ETagService {
+
+    private BookRepository bookRepository;
+
+    private ReviewRepository reviewRepository;
+
+    private final String started = Long.toString(System.nanoTime() ^ System.currentTimeMillis(), 36);
+
+    private final AtomicLong catalogRevision = new AtomicLong();
+
+    @Autowired
+    public ETagService(BookRepository bookRepository, ReviewRepository reviewRepository) {
+        this.bookRepository = bookRepository;
+        this.reviewRepository = reviewRepository;
+    }
+
+    // The current ETag of a book, without loading it. Empty if the book doesn't exist.
+    public Optional<String> bookETag(Long bookId) {
+        return bookRepository.findVersionById(bookId)
+                .map(version -> bookETag(bookId, version.getVersion(), version.getRatingCount(), version.getRatingSum()));
+    }
+
+    // The ETag of this copy of the book (the one being sent)
+    public static String bookETag(Book book) {
+        return bookETag(book.getId(), book.getVersion(), book.getRatingCount(), book.getRatingSum());
+    }
+
+    // The ETag of every page of a book's reviews
+    public String reviewsETag(Long bookId) {
+        ReviewRepository.ReviewsVersion version = reviewRepository.findVersionByBookId(bookId);
+        return quote("reviews-" + bookId + "-" + version.getReviews() + "-" + version.getLastId());
+    }
+
+    // The ETag of every list of books (/api/books, its search methods, /api/books/seek)
+    public String catalogETag() {
+        return quote("catalog-" + started + "-" + catalogRevision.get());
+    }
+
+    // fallbackExecution = true: also called when the event is published outside of a transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        catalogRevision.incrementAndGet();
+    }
+
+    private static String bookETag(Long bookId, Long version, long ratingCount, double ratingSum) {
+        return quote("book-" + bookId + "-" + version + "-" + ratingCount + "-" + ratingSum);
+    }
+
+    // ETags are sent between double quotes
+    private static String quote(String tag) {
+        return "\"" + tag + "\"";
+    }
+}
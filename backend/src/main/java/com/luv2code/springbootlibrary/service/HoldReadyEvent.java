@@ -0,0 +1,21 @@
+package com.luv2code.springbootlibrary.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/*
+    Published (with Spring's ApplicationEventPublisher) when a returned copy is set aside for the reader at the head of a book's waitlist (see HoldService).
+    Like BookChangedEvent, listeners should use @TransactionalEventListener: the copy is only theirs once the return has committed.
+ */
+@Data
+@AllArgsConstructor
+public class HoldReadyEvent {
+
+    private Long bookId;
+
+    private String userEmail;
+
+    private Instant readyUntil;
+}
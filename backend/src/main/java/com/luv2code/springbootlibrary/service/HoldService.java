@@ -0,0 +1,216 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.HoldRepository;
+import com.luv2code.springbootlibrary.dao.MessageRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.Hold;
+import com.luv2code.springbootlibrary.entity.Message;
+import com.luv2code.springbootlibrary.responsemodels.HoldResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/*
+    The waitlists of books with no copies left. Instead of reloading the book page until a copy is back, a reader puts the book on hold and is told when a copy is set aside for them.
+
+    - placeHold:  joins the end of the book's queue (only when no copy is on the shelf).
+    - handOver:   called by BookService.returnBook in the same transaction as the return. The returned copy doesn't go back on the shelf: it is set aside (READY) for the first reader in the queue,
+                  who gets a message in their inbox and a HoldReadyEvent is published.
+    - checkout:   a reader with a READY hold checks the book out as usual, and gets the copy set aside for them (BookService.checkoutBook calls takeReadyCopy).
+    - expiry:     a copy that isn't picked up within library.holds.pickup-time goes to the next reader, or back on the shelf if nobody is waiting.
+
+    copiesAvailable only counts the copies on the shelf: copies = copiesAvailable + loans + READY holds.
+    The queue is the (book_id, status, id) index of migration V12: the head is the first entry of the book's WAITING holds, so joining, leaving and taking the head are single index lookups whatever the length of the queue.
+ */
+@Service
+@Transactional
+public class HoldService {
+
+    private HoldRepository holdRepository;
+
+    private BookRepository bookRepository;
+
+    private CheckoutRepository checkoutRepository;
+
+    private MessageRepository messageRepository;
+
+    private HoldProperties properties;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public HoldService(HoldRepository holdRepository, BookRepository bookRepository,
+                       CheckoutRepository checkoutRepository, MessageRepository messageRepository,
+                       HoldProperties properties, ApplicationEventPublisher eventPublisher) {
+        this.holdRepository = holdRepository;
+        this.bookRepository = bookRepository;
+        this.checkoutRepository = checkoutRepository;
+        this.messageRepository = messageRepository;
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public void placeHold(String userEmail, Long bookId) throws Exception {
+        Optional<Book> book = bookRepository.findById(bookId);
+        if (!book.isPresent()) {
+            throw new Exception("Book not found");
+        }
+        if (checkoutRepository.findByUserEmailAndBookId(userEmail, bookId) != null) {
+            throw new Exception("Book already checked out by user");
+        }
+        if (holdRepository.findByUserEmailAndBookId(userEmail, bookId).isPresent()) {
+            throw new Exception("Book already on hold for user");
+        }
+        if (book.get().getCopiesAvailable() > 0) {
+            throw new Exception("Book has copies available, check it out instead");
+        }
+        holdRepository.save(new Hold(userEmail, bookId, Instant.now()));
+    }
+
+    // Leaves the queue. A copy already set aside for the user goes to the next reader.
+    public void cancelHold(String userEmail, Long bookId) throws Exception {
+        Optional<Hold> hold = holdRepository.findByUserEmailAndBookId(userEmail, bookId);
+        if (!hold.isPresent()) {
+            throw new Exception("Book not on hold for user");
+        }
+        if (holdRepository.deleteByIdAndStatus(hold.get().getId(), Hold.Status.READY) == 1) {
+            passOn(bookId);
+        } else {
+            holdRepository.deleteByIdAndStatus(hold.get().getId(), Hold.Status.WAITING);
+        }
+    }
+
+    public List<HoldResponse> holds(String userEmail) {
+        List<HoldResponse> holds = new ArrayList<>();
+        for (Hold hold : holdRepository.findByUserEmailOrderByIdAsc(userEmail)) {
+            long ahead = hold.getStatus() == Hold.Status.WAITING
+                    ? holdRepository.countByBookIdAndStatusAndIdLessThan(hold.getBookId(), Hold.Status.WAITING, hold.getId())
+                    : 0;
+            holds.add(new HoldResponse(hold.getBookId(), hold.getStatus().name(), ahead, hold.getReadyUntil()));
+        }
+        return holds;
+    }
+
+    /*
+        Sets a copy of the book aside for the first reader in its queue. Returns false if nobody is waiting: the copy is the caller's to put on the shelf.
+        Runs inside the caller's transaction, so if the return rolls back, so does this.
+     */
+    public boolean handOver(Long bookId) {
+        Optional<Hold> head = holdRepository.findFirstByBookIdAndStatusOrderByIdAsc(bookId, Hold.Status.WAITING);
+        head.ifPresent(this::setAside);
+        return head.isPresent();
+    }
+
+    /*
+        Called by BookService.checkoutBook. Returns true if a copy was set aside for the user, who takes it (their hold is done).
+        A WAITING hold is left alone: the user only leaves the queue (leaveQueues) once they got a copy off the shelf, otherwise a checkout that finds the shelf empty would cost them their place.
+     */
+    public boolean takeReadyCopy(String userEmail, Long bookId) {
+        Optional<Hold> hold = holdRepository.findByUserEmailAndBookId(userEmail, bookId);
+        if (!hold.isPresent() || hold.get().getStatus() != Hold.Status.READY) {
+            return false;
+        }
+        // Only one of the checkout and the expiry job can remove the READY hold, and only that one gets the copy
+        return holdRepository.deleteByIdAndStatus(hold.get().getId(), Hold.Status.READY) == 1;
+    }
+
+    /*
+        takeReadyCopy for many books at once (the batch checkout): one query for the user's holds of all of them.
+        Returns the books whose copy was set aside for the user. WAITING holds are left alone, like in takeReadyCopy: the caller removes them with leaveQueues once it knows which checkouts worked.
+        The caller passes only books it is going to lend: a READY hold removed here can't be put back, its copy now belongs to the checkout.
+     */
+    public Set<Long> takeReadyCopies(String userEmail, Collection<Long> bookIds) {
+        Set<Long> taken = new HashSet<>();
+        if (bookIds.isEmpty()) {
+            return taken;
+        }
+        for (Hold hold : holdRepository.findByUserEmailAndBookIdIn(userEmail, bookIds)) {
+            if (hold.getStatus() == Hold.Status.READY
+                    && holdRepository.deleteByIdAndStatus(hold.getId(), Hold.Status.READY) == 1) {
+                taken.add(hold.getBookId());
+            }
+        }
+        return taken;
+    }
+
+    // Takes the user out of the queues of books they have just checked out from the shelf
+    public void leaveQueues(String userEmail, Collection<Long> bookIds) {
+        if (!bookIds.isEmpty()) {
+            holdRepository.deleteByUserEmailAndBookIds(userEmail, bookIds, Hold.Status.WAITING);
+        }
+    }
+
+    // Called when a book is deleted
+    public void forget(Long bookId) {
+        holdRepository.deleteAllByBookId(bookId);
+    }
+
+    /*
+        Every minute by default:
+        - a copy not picked up in time goes to the next reader (or back on the shelf),
+        - a book with readers waiting and copies on the shelf (a return that happened while the hold was being placed) gives those copies to its queue.
+     */
+    @Scheduled(initialDelayString = "${library.holds.expiry-interval-ms}", fixedDelayString = "${library.holds.expiry-interval-ms}")
+    public void expireHolds() {
+        for (Hold hold : holdRepository.findByStatusAndReadyUntilBefore(Hold.Status.READY, Instant.now())) {
+            if (holdRepository.deleteByIdAndStatus(hold.getId(), Hold.Status.READY) == 1) {
+                passOn(hold.getBookId());
+            }
+        }
+
+        for (Long bookId : holdRepository.findBookIdsWithCopiesAvailable(Hold.Status.WAITING)) {
+            Optional<Hold> head = holdRepository.findFirstByBookIdAndStatusOrderByIdAsc(bookId, Hold.Status.WAITING);
+            if (head.isPresent() && bookRepository.decrementCopiesAvailable(bookId) == 1) {
+                setAside(head.get());
+                Book book = bookRepository.findById(bookId).get();
+                eventPublisher.publishEvent(BookChangedEvent.inventory(book, book.getCopiesAvailable() + 1));
+            }
+        }
+    }
+
+    // A copy set aside for a reader who no longer needs it: to the next reader, or back on the shelf
+    private void passOn(Long bookId) {
+        if (handOver(bookId)) {
+            return;
+        }
+        if (bookRepository.incrementCopiesAvailable(bookId) == 1) {
+            Book book = bookRepository.findById(bookId).get();
+            eventPublisher.publishEvent(BookChangedEvent.inventory(book, book.getCopiesAvailable() - 1));
+        }
+    }
+
+    /*
+        Marks the hold READY and tells the reader: a message in their inbox (the Messages page), and a HoldReadyEvent for whoever can tell them sooner.
+        save() rather than changing the loaded hold: the guarded book UPDATEs clear the persistence context, which may have detached it.
+     */
+    private void setAside(Hold hold) {
+        Instant readyUntil = Instant.now().plus(properties.getPickupTime());
+        hold.setStatus(Hold.Status.READY);
+        hold.setReadyUntil(readyUntil);
+        holdRepository.save(hold);
+
+        String title = bookRepository.findById(hold.getBookId()).map(Book::getTitle).orElse("your book");
+        Message message = new Message("Your hold is ready: " + title, "Waitlist for " + title);
+        message.setUserEmail(hold.getUserEmail());
+        message.setResponse("A copy of " + title + " is set aside for you until " + readyUntil
+                + ". Check it out before then, or it goes to the next reader in the queue.");
+        // Closed: it's a notice, not a question waiting for an admin
+        message.setClosed(true);
+        messageRepository.save(message);
+
+        eventPublisher.publishEvent(new HoldReadyEvent(hold.getBookId(), hold.getUserEmail(), readyUntil));
+    }
+}
@@ -0,0 +1,155 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.ImageStoreProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/*
+    Keeps the book cover images as plain files on disk instead of inside the book table.
+
+    The admin page sends a cover as a data URL ("data:image/png;base64,iVBORw0..."). It used to be saved like that in Book.img, so every list of books sent to the browser carried every cover as base64 text inside the JSON.
+    Now the bytes are written to a file and Book.img only holds the hash of that file, 64 characters.
+    The URL the browser gets (served by ImageController) is only put together when the book is sent out (see CoverUrlSerializer), so moving the images to another host is a change of library.images.base-url, not of every row.
+
+    The files are "content addressed": a file is named after the SHA-256 hash of its bytes. So:
+        - the same cover uploaded twice is stored once,
+        - a file never changes once it's written, so browsers can cache it forever and the hash doubles as its ETag,
+        - the name alone is enough to check the bytes haven't been damaged.
+
+    Files are spread over 256 sub folders (the first 2 characters of the hash) so no folder gets too big:
+            cover-images/3f/3fa8c2...e91
+ */
+@Component
+public class ImageStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path directory;
+
+    private final String baseUrl;
+
+    @Autowired
+    public ImageStore(ImageStoreProperties properties) {
+        this.directory = Paths.get(properties.getDirectory()).toAbsolutePath();
+        this.baseUrl = properties.getBaseUrl();
+    }
+
+    /*
+        Turns whatever the admin page sent as "img" into what we keep in Book.img:
+            null or ""          ->  unchanged (the book has no cover)
+            "data:...;base64,"  ->  the bytes are stored, and the hash of the stored file is returned
+            anything else       ->  unchanged (it already is a URL)
+     */
+    public String storeDataUrl(String img) {
+        if (img == null || !img.startsWith("data:")) {
+            return img;
+        }
+
+        int comma = img.indexOf(',');
+        if (comma < 0 || !img.substring(0, comma).endsWith(";base64")) {
+            throw new IllegalArgumentException("Cover image must be a base64 data URL");
+        }
+
+        return store(Base64.getMimeDecoder().decode(img.substring(comma + 1)));
+    }
+
+    // Writes the bytes (unless a file with the same hash already exists) and returns their hash.
+    public String store(byte[] bytes) {
+        String hash = sha256(bytes);
+        Path file = pathFor(hash);
+
+        if (Files.exists(file)) {
+            return hash;
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+
+            // Write to a temporary file first and then rename it, so nobody can ever read a half written image
+            Path temporary = Files.createTempFile(file.getParent(), hash, ".tmp");
+            try {
+                Files.write(temporary, bytes);
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Another request stored the same image at the same time. Same hash, same bytes, so theirs is as good as ours.
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store image " + hash, e);
+        }
+        return hash;
+    }
+
+    // The file for this hash, if we have it. Anything that isn't a well formed hash is rejected, so the name can never point outside the directory.
+    public Optional<Path> find(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Path file = pathFor(hash);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    public String urlFor(String hash) {
+        return baseUrl + hash;
+    }
+
+    // What a Book.img / History.img is sent out as: the URL of the stored file for a hash. Anything else (no cover, a link to another site) is sent as it is.
+    public String urlOf(String img) {
+        return img != null && HASH.matcher(img).matches() ? urlFor(img) : img;
+    }
+
+    /*
+        We only keep the bytes, not the type the browser sent with them, so the type is worked out from the first bytes of the file (every image format starts with its own "magic number").
+     */
+    public String contentTypeOf(Path file) throws IOException {
+        byte[] head = new byte[12];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            read = in.readNBytes(head, 0, head.length);
+        }
+
+        if (read >= 8 && head[0] == (byte) 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+            return "image/png";
+        }
+        if (read >= 3 && head[0] == (byte) 0xFF && head[1] == (byte) 0xD8 && head[2] == (byte) 0xFF) {
+            return "image/jpeg";
+        }
+        if (read >= 6 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8') {
+            return "image/gif";
+        }
+        if (read >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+
+    private Path pathFor(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java runtime has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.InventoryContentionResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Counts, per book id, how often inventory changes collided with each other. InventoryRetryPolicy records into it, and the admin endpoint /api/admin/secure/inventory/contention reads it.
+
+    This is what tells us which books are "hot" and whether the optimistic or the pessimistic locking mode suits them better.
+
+    LongAdder is a counter built for many threads adding to it at the same time (cheaper than AtomicLong when there is a lot of contention).
+ */
+@Component
+public class InventoryContentionMetrics {
+
+    private static class Counters {
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder giveUps = new LongAdder();
+    }
+
+    private final Map<Long, Counters> countersByBookId = new ConcurrentHashMap<>();
+
+    public void recordConflict(Long bookId) {
+        counters(bookId).conflicts.increment();
+    }
+
+    public void recordRetry(Long bookId) {
+        counters(bookId).retries.increment();
+    }
+
+    public void recordGiveUp(Long bookId) {
+        counters(bookId).giveUps.increment();
+    }
+
+    // Returns the counters of every book that has had at least one conflict, the most contended book first.
+    public List<InventoryContentionResponse> snapshot() {
+        List<InventoryContentionResponse> responses = new ArrayList<>();
+        countersByBookId.forEach((bookId, counters) -> responses.add(
+                new InventoryContentionResponse(
+                        bookId,
+                        counters.conflicts.sum(),
+                        counters.retries.sum(),
+                        counters.giveUps.sum()
+                )
+        ));
+        responses.sort(Comparator.comparingLong(InventoryContentionResponse::getConflicts).reversed());
+        return responses;
+    }
+
+    public void reset() {
+        countersByBookId.clear();
+    }
+
+    private Counters counters(Long bookId) {
+        return countersByBookId.computeIfAbsent(bookId, id -> new Counters());
+    }
+}
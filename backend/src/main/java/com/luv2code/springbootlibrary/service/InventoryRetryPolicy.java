@@ -0,0 +1,81 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+    Runs a change to a book's inventory and tries it again if another request changed the same book first.
+
+    With @Version on Book, the losing request gets an OptimisticLockingFailureException when its transaction commits. Because the whole transaction has already been rolled back by then, the retry has to happen OUTSIDE the @Transactional service method. That's why the controllers call:
+            inventoryRetryPolicy.execute(bookId, () -> bookService.checkoutBook(userEmail, bookId));
+    and every attempt gets a brand new transaction.
+
+    Between attempts we sleep for a random time ("jitter") between 0 and a limit that doubles after every attempt. If everyone who lost waited the same fixed time, they would all collide again at the same moment.
+ */
+@Component
+public class InventoryRetryPolicy {
+
+    // The piece of work to run. Like Callable, but named after what it's for.
+    @FunctionalInterface
+    public interface InventoryOperation<T> {
+        T run() throws Exception;
+    }
+
+    // Same thing for work that doesn't return anything (e.g. returnBook).
+    @FunctionalInterface
+    public interface InventoryAction {
+        void run() throws Exception;
+    }
+
+    private InventoryProperties inventoryProperties;
+
+    private InventoryContentionMetrics contentionMetrics;
+
+    @Autowired
+    public InventoryRetryPolicy(InventoryProperties inventoryProperties,
+                                InventoryContentionMetrics contentionMetrics) {
+        this.inventoryProperties = inventoryProperties;
+        this.contentionMetrics = contentionMetrics;
+    }
+
+    public <T> T execute(Long bookId, InventoryOperation<T> operation) throws Exception {
+        int maxAttempts = Math.max(1, inventoryProperties.getMaxAttempts());
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.run();
+            } catch (OptimisticLockingFailureException e) {
+                contentionMetrics.recordConflict(bookId);
+
+                if (attempt >= maxAttempts) {
+                    contentionMetrics.recordGiveUp(bookId);
+                    throw e;
+                }
+
+                contentionMetrics.recordRetry(bookId);
+                Thread.sleep(backoffMillis(attempt));
+            }
+        }
+    }
+
+    public void run(Long bookId, InventoryAction action) throws Exception {
+        execute(bookId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // "Full jitter": a random wait between 0 and initialBackoff * 2^(attempt - 1), never more than maxBackoff.
+    long backoffMillis(int attempt) {
+        long limit = inventoryProperties.getInitialBackoffMs() << Math.min(attempt - 1, 20);
+        limit = Math.min(limit, inventoryProperties.getMaxBackoffMs());
+        if (limit <= 0) {
+            return 0;
+        }
+        return ThreadLocalRandom.current().nextLong(limit + 1);
+    }
+}
@@ -0,0 +1,100 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.JwtProperties;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    Keeps the issuer's public keys (the "JWKS") in memory, so checking a token's signature never waits for a download.
+
+        - The keys are loaded in the background as soon as the app starts and then every refreshInterval, on a thread of their own. A request only ever reads the copy in memory.
+        - Rotation: when a token is signed with a key we don't have, the issuer has most likely added a new key. The keys are loaded again right away (at most once per minRefreshInterval) and the token is checked against the new set.
+        - If a download fails, the keys we already have are kept and used until the next one works.
+
+    It's the JWKSource the token decoder looks keys up in (see JwtDecoderConfiguration). Where the keys come from is up to the JwksLoader.
+ */
+public class JwksCache implements JWKSource<SecurityContext> {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksCache.class);
+
+    private final AtomicReference<JWKSet> keys = new AtomicReference<>(new JWKSet());
+
+    private final JwksLoader loader;
+
+    private final JwtProperties jwtProperties;
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jwks-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // System.nanoTime() of the last load, successful or not. 0 = never.
+    private volatile long lastLoadNanos;
+
+    public JwksCache(JwksLoader loader, JwtProperties jwtProperties) {
+        this.loader = loader;
+        this.jwtProperties = jwtProperties;
+    }
+
+    // Loads the keys now (in the background) and then every refreshInterval
+    public void start() {
+        long interval = jwtProperties.getRefreshInterval().toMillis();
+        refresher.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) throws KeySourceException {
+        List<JWK> matches = selector.select(keys.get());
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+
+        // Unknown key: most likely the issuer rotated its keys, so load them again (unless we just did).
+        // Look again whatever refreshIfAllowed says: "not allowed" may mean another request loaded them while this one waited for the lock, and the new key is there now.
+        refreshIfAllowed();
+        return selector.select(keys.get());
+    }
+
+    public JWKSet current() {
+        return keys.get();
+    }
+
+    // Loads the keys unless they were loaded less than minRefreshInterval ago. Returns true if they were loaded.
+    synchronized boolean refreshIfAllowed() {
+        long sinceLastLoad = System.nanoTime() - lastLoadNanos;
+        if (lastLoadNanos != 0 && sinceLastLoad < jwtProperties.getMinRefreshInterval().toNanos()) {
+            return false;
+        }
+        refresh();
+        return true;
+    }
+
+    synchronized void refresh() {
+        lastLoadNanos = System.nanoTime();
+        try {
+            JWKSet loaded = loader.load();
+            keys.set(loaded);
+            log.debug("Loaded {} signing keys", loaded.getKeys().size());
+        } catch (Exception e) {
+            // Keep using the keys we have, the next refresh will try again
+            log.warn("Could not load the token signing keys, keeping the {} we have: {}", keys.get().getKeys().size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.nimbusds.jose.jwk.JWKSet;
+
+/*
+    Where JwksCache gets the issuer's public keys from:
+        RemoteJwksLoader - downloads them from the issuer (Okta)
+        LocalTokenIssuer - the keys of the stand-in issuer of the local-issuer profile, already in memory
+ */
+public interface JwksLoader {
+
+    JWKSet load() throws Exception;
+}
@@ -0,0 +1,81 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.JwtVerificationResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    A histogram of how long checking a token takes (signature + claims), recorded by TimedJwtDecoder for every request that sends one.
+
+    The bars are fixed (BOUNDS_MICROS), so recording is just one LongAdder increment: cheap enough to do on every request, even with many threads at once.
+    The admin endpoint /api/admin/secure/jwt/verification reads it.
+ */
+@Component
+public class JwtVerificationMetrics {
+
+    // Upper bound of every bar, in microseconds. One more bar after the last one counts everything slower.
+    private static final long[] BOUNDS_MICROS = {10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000};
+
+    private final LongAdder[] bars = new LongAdder[BOUNDS_MICROS.length + 1];
+
+    private final LongAdder verified = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    public JwtVerificationMetrics() {
+        for (int i = 0; i < bars.length; i++) {
+            bars[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos, boolean accepted) {
+        (accepted ? verified : rejected).increment();
+        totalNanos.add(nanos);
+
+        long micros = nanos / 1_000;
+        int bar = 0;
+        while (bar < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[bar]) {
+            bar++;
+        }
+        bars[bar].increment();
+    }
+
+    public JwtVerificationResponse snapshot() {
+        long[] counts = new long[bars.length];
+        long total = 0;
+        for (int i = 0; i < bars.length; i++) {
+            counts[i] = bars[i].sum();
+            total += counts[i];
+        }
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            histogram.put(i < BOUNDS_MICROS.length ? String.valueOf(BOUNDS_MICROS[i]) : "+Inf", counts[i]);
+        }
+
+        double meanMicros = total == 0 ? 0 : totalNanos.sum() / 1_000.0 / total;
+        return new JwtVerificationResponse(verified.sum(), rejected.sum(), meanMicros,
+                percentile(counts, total, 0.50), percentile(counts, total, 0.99), histogram);
+    }
+
+    // The upper bound of the bar the given share of the checks falls in (-1 for "+Inf", 0 if nothing was recorded yet)
+    private static long percentile(long[] counts, long total, double share) {
+        if (total == 0) {
+            return 0;
+        }
+        long wanted = (long) Math.ceil(total * share);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= wanted) {
+                return i < BOUNDS_MICROS.length ? BOUNDS_MICROS[i] : -1;
+            }
+        }
+        return -1;
+    }
+}
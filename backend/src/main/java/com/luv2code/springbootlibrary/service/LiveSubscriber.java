@@ -0,0 +1,140 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.AvailabilityUpdateResponse;
+import com.luv2code.springbootlibrary.responsemodels.LoanUpdateResponse;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    One open live updates stream, and the events waiting to be written to it (see LiveUpdateService).
+
+    Events are never written by the thread that raised them: they wait here until a sender thread takes them all at once (drain). That's the back-pressure:
+        - availability: only the latest count of each book waits. A client that reads slowly skips the counts in between, which are out of date anyway.
+        - loans:        every change waits, up to maxPendingEvents. Past that the stream is marked overflowed and closed, so the client reconnects and reloads its loans instead of missing one.
+
+    It also keeps track of the write running on it, so LiveUpdateService can tell a write stuck on a client that stopped reading (see markStuck).
+ */
+class LiveSubscriber {
+
+    private final SseEmitter emitter;
+
+    private final String userEmail;
+
+    private final Set<Long> bookIds;
+
+    private final int maxPendingEvents;
+
+    private final Map<Long, AvailabilityUpdateResponse> pendingAvailability = new LinkedHashMap<>();
+
+    private final Deque<LoanUpdateResponse> pendingLoans = new ArrayDeque<>();
+
+    private boolean heartbeatDue;
+
+    private boolean overflowed;
+
+    // When an event was last written (or the stream opened), in System.currentTimeMillis()
+    private volatile long lastSentAt;
+
+    // True while a write of this stream is queued or running on the sender threads
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // When the write running now started (System.currentTimeMillis()), 0 while no write is running, STUCK once that write took too long
+    private final AtomicLong writingSince = new AtomicLong();
+
+    private static final long STUCK = -1;
+
+    LiveSubscriber(SseEmitter emitter, String userEmail, Set<Long> bookIds, int maxPendingEvents, long now) {
+        this.emitter = emitter;
+        this.userEmail = userEmail;
+        this.bookIds = bookIds;
+        this.maxPendingEvents = maxPendingEvents;
+        this.lastSentAt = now;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    String getUserEmail() {
+        return userEmail;
+    }
+
+    Set<Long> getBookIds() {
+        return bookIds;
+    }
+
+    // Replaces the count of the book waiting to be sent, if there is one (it moves to the end, after the changes that came before it)
+    synchronized void offerAvailability(AvailabilityUpdateResponse update) {
+        pendingAvailability.remove(update.getBookId());
+        pendingAvailability.put(update.getBookId(), update);
+    }
+
+    // Returns false if too many loan changes are already waiting: the stream is then overflowed
+    synchronized boolean offerLoan(LoanUpdateResponse update) {
+        if (pendingLoans.size() >= maxPendingEvents) {
+            overflowed = true;
+            return false;
+        }
+        pendingLoans.add(update);
+        return true;
+    }
+
+    synchronized void heartbeat() {
+        heartbeatDue = true;
+    }
+
+    synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
+    synchronized boolean hasPending() {
+        return heartbeatDue || !pendingAvailability.isEmpty() || !pendingLoans.isEmpty();
+    }
+
+    // Everything waiting to be sent, oldest first, availability before loans
+    synchronized List<Object> drain() {
+        List<Object> events = new ArrayList<>(pendingAvailability.values());
+        events.addAll(pendingLoans);
+        pendingAvailability.clear();
+        pendingLoans.clear();
+        return events;
+    }
+
+    synchronized boolean takeHeartbeat() {
+        boolean due = heartbeatDue;
+        heartbeatDue = false;
+        return due;
+    }
+
+    void writeStarted(long now) {
+        writingSince.set(now);
+    }
+
+    // Returns true if the write was marked stuck meanwhile (see markStuck)
+    boolean writeFinished() {
+        return writingSince.getAndSet(0) == STUCK;
+    }
+
+    // Marks the running write as stuck if it started sendTimeoutMillis ago or more. Only one of markStuck and writeFinished wins, so a stuck write is counted exactly once.
+    boolean markStuck(long now, long sendTimeoutMillis) {
+        long since = writingSince.get();
+        return since > 0 && now - since >= sendTimeoutMillis && writingSince.compareAndSet(since, STUCK);
+    }
+
+    void sent(long now) {
+        lastSentAt = now;
+    }
+
+    long idleMillis(long now) {
+        return now - lastSentAt;
+    }
+}
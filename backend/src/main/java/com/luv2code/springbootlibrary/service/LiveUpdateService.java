@@ -0,0 +1,323 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.luv2code.springbootlibrary.config.LiveUpdateProperties;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.AvailabilityUpdateResponse;
+import com.luv2code.springbootlibrary.responsemodels.LoanUpdateResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Pushes changes to the browser over Server-Sent Events (GET /api/books/live), so the frontend doesn't have to fetch the book and the loans again after every action and on every page just in case something changed.
+
+    A stream gets:
+        - "availability" events for the books it watches (?bookIds=...): the book's copies and copiesAvailable, after every checkout, return or admin change,
+        - "loan" events about the signed-in user's own loans: checked out, returned, renewed, or a hold ready (see HoldService).
+
+    Where the events come from: the same in-process events the rest of the app already listens to, raised by BookService and AdminService (BookChangedEvent), BookService (LoanChangedEvent) and HoldService (HoldReadyEvent).
+    They are heard with @TransactionalEventListener, so only changes that committed are pushed.
+
+    Cost of a stream: an SseEmitter is an async request, so an open stream doesn't keep a thread while it waits, only a few objects (thousands per instance are fine, up to library.live.max-connections).
+    The events are written by the few "liveUpdateExecutor" threads, never by the request that made the change, and each stream has at most one write queued or running at a time (see LiveSubscriber for what waits meanwhile).
+    A write blocks while the client doesn't read, so a few clients that stopped reading could hold every sender thread. A write running longer than library.live.send-timeout is therefore cut off:
+    its stream gets no more events (it's closed once the write gives up), and the pool gets an extra thread for as long as the write is stuck (at most library.live.max-stuck-writes), so the other streams keep getting theirs.
+
+    Signing in: a browser's EventSource can't send an Authorization header. The page first asks for a ticket with its token (POST /api/books/secure/live/ticket, see issueTicket), then opens the stream with ?ticket=...
+    A ticket is random, works once and only for library.live.ticket-time-to-live, so the token itself never ends up in a URL (and in the access logs). A client that can send the header (not a browser) may still do that instead.
+
+    Streams are closed:
+        - when the client goes away (found out by the heartbeat comment sent every library.live.heartbeat-interval-ms),
+        - when they had nothing to send for library.live.idle-timeout, or after library.live.max-lifetime,
+        - when they fall too far behind on loan changes.
+    A browser's EventSource reconnects by itself after a close; the client should fetch the book and loans once when (re)connecting.
+
+    Only the streams connected to THIS instance of the app hear about changes made on it. With several instances behind a load balancer, the events would have to go through a shared broker first.
+ */
+@Service
+public class LiveUpdateService {
+
+    private LiveUpdateProperties properties;
+
+    private Executor executor;
+
+    private final Set<LiveSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // The open streams, counted separately so that two streams opened at the same moment can't both take the last place
+    private final AtomicInteger connections = new AtomicInteger();
+
+    // Writes cut off by closeStuckWrites that haven't given up yet, each standing for an extra sender thread
+    private final AtomicInteger stuckWrites = new AtomicInteger();
+
+    // ticket -> the email of the user it was issued to
+    private final Cache<String, String> tickets;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<Long, Set<LiveSubscriber>> subscribersByBook = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<LiveSubscriber>> subscribersByUser = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LiveUpdateService(LiveUpdateProperties properties, @Qualifier("liveUpdateExecutor") Executor executor) {
+        this.properties = properties;
+        this.executor = executor;
+        this.tickets = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTicketTimeToLive())
+                .maximumSize(properties.getMaxConnections())
+                .build();
+    }
+
+    public String issueTicket(String userEmail) {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String ticket = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tickets.put(ticket, userEmail);
+        return ticket;
+    }
+
+    // The email of the user the ticket was issued to. The ticket is used up.
+    public String redeemTicket(String ticket) throws Exception {
+        String userEmail = tickets.asMap().remove(ticket);
+        if (userEmail == null) {
+            throw new Exception("Live updates ticket expired or already used");
+        }
+        return userEmail;
+    }
+
+    // userEmail is null for a visitor who isn't signed in: they only get the availability of the books they watch
+    public SseEmitter subscribe(String userEmail, List<Long> bookIds) throws Exception {
+        if (bookIds.size() > properties.getMaxWatchedBooks()) {
+            throw new Exception("At most " + properties.getMaxWatchedBooks() + " books per stream");
+        }
+        // The place is taken first and given back if there wasn't one (remove gives it back when the stream closes)
+        if (connections.incrementAndGet() > properties.getMaxConnections()) {
+            connections.decrementAndGet();
+            throw new Exception("Too many live update streams, try again later");
+        }
+
+        Set<Long> watched = new LinkedHashSet<>();
+        for (Long bookId : bookIds) {
+            if (bookId != null) {
+                watched.add(bookId);
+            }
+        }
+
+        SseEmitter emitter = new SseEmitter(properties.getMaxLifetime().toMillis());
+        LiveSubscriber subscriber = new LiveSubscriber(emitter, userEmail, watched, properties.getMaxPendingEvents(),
+                System.currentTimeMillis());
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+        add(subscriber);
+        return emitter;
+    }
+
+    public int connections() {
+        return connections.get();
+    }
+
+    // fallbackExecution = true: also called when the event is published outside of a transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        boolean deleted = event.getChange() == BookChangedEvent.Change.DELETED;
+        if (event.getChange() != BookChangedEvent.Change.INVENTORY && !deleted) {
+            return;
+        }
+        Set<LiveSubscriber> watchers = subscribersByBook.get(event.getBookId());
+        if (watchers == null) {
+            return;
+        }
+
+        Book book = event.getBook();
+        AvailabilityUpdateResponse update = deleted
+                ? new AvailabilityUpdateResponse(event.getBookId(), 0, 0, true)
+                : new AvailabilityUpdateResponse(event.getBookId(), book.getCopies(), book.getCopiesAvailable(), false);
+        for (LiveSubscriber subscriber : watchers) {
+            subscriber.offerAvailability(update);
+            schedule(subscriber);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoanChanged(LoanChangedEvent event) {
+        toUser(event.getUserEmail(),
+                new LoanUpdateResponse(event.getBookId(), event.getChange().name(), event.getReturnDate(), null));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoldReady(HoldReadyEvent event) {
+        toUser(event.getUserEmail(), new LoanUpdateResponse(event.getBookId(), "HOLD_READY", null, event.getReadyUntil()));
+    }
+
+    // Closes the idle streams and sends a heartbeat on the others (which also finds the clients that went away without saying so)
+    @Scheduled(initialDelayString = "${library.live.heartbeat-interval-ms}", fixedDelayString = "${library.live.heartbeat-interval-ms}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long idleTimeout = properties.getIdleTimeout().toMillis();
+        for (LiveSubscriber subscriber : subscribers) {
+            if (subscriber.idleMillis(now) >= idleTimeout) {
+                close(subscriber);
+            } else {
+                subscriber.heartbeat();
+                schedule(subscriber);
+            }
+        }
+    }
+
+    // Cuts off the writes stuck on clients that stopped reading (see the class comment)
+    @Scheduled(initialDelayString = "${library.live.send-check-interval-ms}", fixedDelayString = "${library.live.send-check-interval-ms}")
+    public void closeStuckWrites() {
+        long now = System.currentTimeMillis();
+        long sendTimeout = properties.getSendTimeout().toMillis();
+        for (LiveSubscriber subscriber : subscribers) {
+            if (subscriber.markStuck(now, sendTimeout)) {
+                remove(subscriber);
+                if (stuckWrites.incrementAndGet() <= properties.getMaxStuckWrites()) {
+                    resizeSenders();
+                }
+            }
+        }
+    }
+
+    private void toUser(String userEmail, LoanUpdateResponse update) {
+        Set<LiveSubscriber> streams = userEmail == null ? null : subscribersByUser.get(userEmail);
+        if (streams == null) {
+            return;
+        }
+        for (LiveSubscriber subscriber : streams) {
+            subscriber.offerLoan(update);
+            schedule(subscriber);
+        }
+    }
+
+    // Queues a write of the stream, unless one is already queued or running (it will pick up this event too)
+    private void schedule(LiveSubscriber subscriber) {
+        if (!subscriber.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> flush(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.scheduled.set(false);
+            close(subscriber);
+        }
+    }
+
+    private void flush(LiveSubscriber subscriber) {
+        subscriber.writeStarted(System.currentTimeMillis());
+        try {
+            if (subscriber.isOverflowed()) {
+                close(subscriber);
+                return;
+            }
+            boolean heartbeat = subscriber.takeHeartbeat();
+            List<Object> events = subscriber.drain();
+            for (Object event : events) {
+                String name = event instanceof AvailabilityUpdateResponse ? "availability" : "loan";
+                subscriber.getEmitter().send(SseEmitter.event().name(name).data(event, MediaType.APPLICATION_JSON));
+            }
+            if (!events.isEmpty()) {
+                subscriber.sent(System.currentTimeMillis());
+            } else if (heartbeat) {
+                subscriber.getEmitter().send(SseEmitter.event().comment("heartbeat"));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away, or the stream was closed meanwhile
+            remove(subscriber);
+            return;
+        } finally {
+            if (subscriber.writeFinished()) {
+                // Cut off by closeStuckWrites while it was running: its extra thread isn't needed any more
+                stuckWrites.decrementAndGet();
+                resizeSenders();
+                subscriber.getEmitter().complete();
+            }
+            subscriber.scheduled.set(false);
+        }
+
+        // Events that came in while this write was running
+        if (subscriber.hasPending() && subscribers.contains(subscriber)) {
+            schedule(subscriber);
+        }
+    }
+
+    // The sender threads: library.live.sender-threads, plus one for each write stuck right now (up to library.live.max-stuck-writes)
+    private synchronized void resizeSenders() {
+        if (!(executor instanceof ThreadPoolTaskExecutor)) {
+            return;
+        }
+        ThreadPoolTaskExecutor pool = (ThreadPoolTaskExecutor) executor;
+        int size = properties.getSenderThreads() + Math.min(Math.max(stuckWrites.get(), 0), properties.getMaxStuckWrites());
+        // The maximum may never be below the core size, so whichever goes first depends on the direction
+        if (size > pool.getMaxPoolSize()) {
+            pool.setMaxPoolSize(size);
+            pool.setCorePoolSize(size);
+        } else {
+            pool.setCorePoolSize(size);
+            pool.setMaxPoolSize(size);
+        }
+    }
+
+    private void add(LiveSubscriber subscriber) {
+        subscribers.add(subscriber);
+        for (Long bookId : subscriber.getBookIds()) {
+            subscribersByBook.compute(bookId, (id, streams) -> {
+                Set<LiveSubscriber> set = streams == null ? ConcurrentHashMap.newKeySet() : streams;
+                set.add(subscriber);
+                return set;
+            });
+        }
+        if (subscriber.getUserEmail() != null) {
+            subscribersByUser.compute(subscriber.getUserEmail(), (email, streams) -> {
+                Set<LiveSubscriber> set = streams == null ? ConcurrentHashMap.newKeySet() : streams;
+                set.add(subscriber);
+                return set;
+            });
+        }
+    }
+
+    private void close(LiveSubscriber subscriber) {
+        remove(subscriber);
+        subscriber.getEmitter().complete();
+    }
+
+    // Can be called more than once for the same stream (e.g. by close and then by the emitter's onCompletion)
+    private void remove(LiveSubscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        connections.decrementAndGet();
+        for (Long bookId : subscriber.getBookIds()) {
+            subscribersByBook.computeIfPresent(bookId, (id, streams) -> {
+                streams.remove(subscriber);
+                return streams.isEmpty() ? null : streams;
+            });
+        }
+        if (subscriber.getUserEmail() != null) {
+            subscribersByUser.computeIfPresent(subscriber.getUserEmail(), (email, streams) -> {
+                streams.remove(subscriber);
+                return streams.isEmpty() ? null : streams;
+            });
+        }
+    }
+}
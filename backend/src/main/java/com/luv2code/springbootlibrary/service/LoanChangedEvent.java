@@ -0,0 +1,31 @@
+package com.luv2code.springbootlibrary.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/*
+    Published (with Spring's ApplicationEventPublisher) by BookService whenever one of a user's loans changes, so whoever shows the user their loans (see LiveUpdateService) can update them without asking again.
+    Like BookChangedEvent, listeners should use @TransactionalEventListener: a loan that rolled back never happened.
+
+    returnDate:  when the book is due (CHECKED_OUT, RENEWED); null for RETURNED.
+ */
+@Data
+@AllArgsConstructor
+public class LoanChangedEvent {
+
+    public enum Change {
+        CHECKED_OUT,
+        RETURNED,
+        RENEWED
+    }
+
+    private String userEmail;
+
+    private Long bookId;
+
+    private Change change;
+
+    private LocalDate returnDate;
+}
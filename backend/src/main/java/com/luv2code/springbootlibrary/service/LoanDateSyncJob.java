@@ -0,0 +1,49 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.LoanDateBackfill;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/*
+    Every minute by default (library.loan-dates.sync-interval-ms), copies the loan dates that instances of the previous version wrote as strings into the DATE columns (see LoanDates and LoanDateBackfill).
+
+    Migration V4 converted the rows that existed when it ran, but during a rolling deploy the old instances keep checking out, renewing and returning books for a while, and they only write the strings.
+    Until this job has caught up with such a row, Checkout and History read its date from the string. This job (and the old columns) can go once no instance of the old version is left.
+
+    It only runs while library.loan-dates.sync-enabled=true: turn it on for the rolling deploy that brings in migrations V3/V4, and off again once the old instances are gone.
+    (@ConditionalOnProperty: with the switch off the job isn't even created, so nothing is scheduled.)
+ */
+@Component
+@ConditionalOnProperty(name = "library.loan-dates.sync-enabled", havingValue = "true")
+public class LoanDateSyncJob {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanDateSyncJob.class);
+
+    private DataSource dataSource;
+
+    @Autowired
+    public LoanDateSyncJob(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Scheduled(initialDelayString = "${library.loan-dates.sync-interval-ms}", fixedDelayString = "${library.loan-dates.sync-interval-ms}")
+    public void sync() {
+        try (Connection connection = dataSource.getConnection()) {
+            LoanDateBackfill backfill = LoanDateBackfill.run(connection);
+            if (backfill.getConverted() > 0) {
+                log.info("Copied the loan dates of {} rows written by an older version into the DATE columns", backfill.getConverted());
+            }
+        } catch (SQLException e) {
+            // The next run tries again
+            log.warn("Could not copy the loan dates: {}", e.getMessage());
+        }
+    }
+}
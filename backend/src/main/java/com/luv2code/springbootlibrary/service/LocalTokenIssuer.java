@@ -0,0 +1,111 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.JwtProperties;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/*
+    A stand-in for Okta, only active with the "local-issuer" profile (see application-local-issuer.properties).
+
+    It makes its own RSA key when the app starts and signs RS256 tokens with the same claims Okta's have for us ("sub" = the user's email, "userType" = "admin" for administrators).
+    The app checks these tokens exactly like real ones (signature, issuer, audience, expiry), it just finds the public key here instead of downloading it from Okta. That way the whole secured API can be load tested without an Okta tenant or network.
+
+    rotate() makes a new signing key but keeps publishing the previous one, the way a real issuer rotates keys: tokens signed before the rotation still work, and JwksCache has to pick up the new key when the first token signed with it shows up.
+ */
+@Component
+@Profile("local-issuer")
+public class LocalTokenIssuer implements JwksLoader {
+
+    // How many old public keys are still published after rotations
+    private static final int KEYS_KEPT = 2;
+
+    private JwtProperties jwtProperties;
+
+    private volatile RSAKey signingKey;
+
+    private volatile List<RSAKey> publishedKeys;
+
+    @Autowired
+    public LocalTokenIssuer(JwtProperties jwtProperties) throws JOSEException {
+        this.jwtProperties = jwtProperties;
+        this.signingKey = newKey();
+        this.publishedKeys = List.of(signingKey);
+    }
+
+    // A signed token for this user, valid for timeToLive. userType may be null (a normal user).
+    public String mint(String subject, String userType, Duration timeToLive) throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+                .issuer(jwtProperties.getIssuer())
+                .subject(subject)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(timeToLive)))
+                .jwtID(UUID.randomUUID().toString());
+        if (jwtProperties.getAudience() != null && !jwtProperties.getAudience().isEmpty()) {
+            claims.audience(jwtProperties.getAudience());
+        }
+        if (userType != null) {
+            claims.claim("userType", userType);
+        }
+
+        RSAKey key = signingKey;
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).type(JOSEObjectType.JWT).build(),
+                claims.build()
+        );
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    // Signs from now on with a new key, and keeps publishing the previous one
+    public synchronized void rotate() throws JOSEException {
+        RSAKey next = newKey();
+        List<RSAKey> keys = new ArrayList<>();
+        keys.add(next);
+        for (RSAKey key : publishedKeys) {
+            if (keys.size() < KEYS_KEPT) {
+                keys.add(key);
+            }
+        }
+        publishedKeys = List.copyOf(keys);
+        signingKey = next;
+    }
+
+    // The public halves of the published keys, what Okta serves at /v1/keys
+    @Override
+    public JWKSet load() {
+        List<JWK> publicKeys = new ArrayList<>();
+        for (RSAKey key : publishedKeys) {
+            publicKeys.add(key.toPublicJWK());
+        }
+        return new JWKSet(publicKeys);
+    }
+
+    private static RSAKey newKey() throws JOSEException {
+        return new RSAKeyGenerator(2048)
+                .keyID(UUID.randomUUID().toString())
+                .keyUse(KeyUse.SIGNATURE)
+                .algorithm(JWSAlgorithm.RS256)
+                .generate();
+    }
+}
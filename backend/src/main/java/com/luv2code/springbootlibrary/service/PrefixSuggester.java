@@ -0,0 +1,349 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.TypeaheadSuggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The autocomplete of the search box: given the start of a title, author or category, returns the best MAX_SUGGESTIONS completions.
+
+    It's a "trie" (prefix tree): one node per distinct prefix, the children of a node being the prefixes one character longer.
+            ""  ->  "h"  ->  "ha"  ->  "har"  ->  "harr"  ->  "harry"  ->  ...
+    Every node already holds its best suggestions (most books first), worked out once when the trie is built. Answering is then a walk down one node per typed character, with no search through the catalog, so it takes microseconds.
+
+    To keep it small, the trie is "packed" into a few plain arrays instead of millions of node objects, and it's never changed once built (TypeaheadService builds a new one and swaps it in):
+        - the nodes are numbered breadth first, so the children of node i are the nodes childStart[i] .. childStart[i + 1] - 1, sorted by their character (found with a binary search),
+        - a node with a single child and no suggestion ending on it has the same best suggestions as that child, so they share one copy in "top",
+        - only the first MAX_DEPTH characters of a name get nodes. A longer prefix is answered from all the names under the node at MAX_DEPTH, not just its best ones (those may all fail the longer prefix):
+          the names are sorted by their first MAX_DEPTH characters, so they are next to each other in "texts" and found with two binary searches (see suggestDeep).
+
+    Names are compared the same way as in the search index (lower case, no accents, punctuation ignored, see BookSearchIndex.normalize).
+ */
+public final class PrefixSuggester {
+
+    public enum Kind {
+        TITLE,
+        AUTHOR,
+        CATEGORY
+    }
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    static final int MAX_DEPTH = 32;
+
+    private static final String[] KIND_NAMES = {"title", "author", "category"};
+
+    // The suggestions, sorted by their (normalized, shortened to MAX_DEPTH) name
+    private final String[] texts;
+    private final byte[] kinds;
+    private final int[] books;
+
+    // The nodes: the character leading to the node, where its children start, and where its best suggestions are in "top"
+    private final char[] labels;
+    private final int[] childStart;
+    private final int[] topFrom;
+    private final byte[] topCount;
+
+    // Indexes into texts/kinds/books, best first, MAX_SUGGESTIONS (or fewer) per node
+    private final int[] top;
+
+    private PrefixSuggester(String[] texts, byte[] kinds, int[] books,
+                            char[] labels, int[] childStart, int[] topFrom, byte[] topCount, int[] top) {
+        this.texts = texts;
+        this.kinds = kinds;
+        this.books = books;
+        this.labels = labels;
+        this.childStart = childStart;
+        this.topFrom = topFrom;
+        this.topCount = topCount;
+        this.top = top;
+    }
+
+    public static PrefixSuggester empty() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // The best suggestions (at most limit) starting with the given text, most books first
+    public List<TypeaheadSuggestion> suggest(String prefix, int limit) {
+        String key = BookSearchIndex.normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        if (key.length() > MAX_DEPTH) {
+            return suggestDeep(key, limit);
+        }
+
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            node = child(node, key.charAt(i));
+            if (node < 0) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<TypeaheadSuggestion> suggestions = new ArrayList<>();
+        for (int i = topFrom[node]; i < topFrom[node] + topCount[node] && suggestions.size() < limit; i++) {
+            int s = top[i];
+            suggestions.add(new TypeaheadSuggestion(texts[s], KIND_NAMES[kinds[s]], books[s]));
+        }
+        return suggestions;
+    }
+
+    // A key longer than MAX_DEPTH: every name sharing its first MAX_DEPTH characters is checked against the whole key, and the best ones kept
+    private List<TypeaheadSuggestion> suggestDeep(String key, int limit) {
+        String shortKey = key.substring(0, MAX_DEPTH);
+        int from = firstWithKeyAtLeast(shortKey, false);
+        int to = firstWithKeyAtLeast(shortKey, true);
+
+        List<Integer> matches = new ArrayList<>();
+        for (int s = from; s < to; s++) {
+            if (BookSearchIndex.normalize(texts[s]).startsWith(key)) {
+                matches.add(s);
+            }
+        }
+        matches.sort((a, b) -> Builder.better(a, b, texts, books) ? -1 : Builder.better(b, a, texts, books) ? 1 : 0);
+
+        List<TypeaheadSuggestion> suggestions = new ArrayList<>();
+        for (int i = 0; i < matches.size() && i < Math.min(limit, MAX_SUGGESTIONS); i++) {
+            int s = matches.get(i);
+            suggestions.add(new TypeaheadSuggestion(texts[s], KIND_NAMES[kinds[s]], books[s]));
+        }
+        return suggestions;
+    }
+
+    // The first suggestion whose key (normalized name shortened to MAX_DEPTH) is >= shortKey, or > shortKey when after is true
+    private int firstWithKeyAtLeast(String shortKey, boolean after) {
+        int low = 0;
+        int high = texts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int compared = keyOf(texts[middle]).compareTo(shortKey);
+            if (compared < 0 || (after && compared == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String keyOf(String text) {
+        String normalized = BookSearchIndex.normalize(text);
+        return normalized.length() > MAX_DEPTH ? normalized.substring(0, MAX_DEPTH) : normalized;
+    }
+
+    public int suggestionCount() {
+        return texts.length;
+    }
+
+    public int nodeCount() {
+        return labels.length;
+    }
+
+    /*
+        About how many bytes of heap this trie takes: its arrays plus the suggestion texts.
+        (Array and String headers are counted as 16 and 40 bytes, which is what a 64 bit JVM with compressed pointers uses.)
+     */
+    public long estimatedBytes() {
+        long bytes = 16L * 8
+                + 2L * labels.length + 4L * childStart.length + 4L * topFrom.length + topCount.length
+                + 4L * top.length
+                + 4L * texts.length + kinds.length + 4L * books.length;
+        for (String text : texts) {
+            bytes += 40 + text.length();
+        }
+        return bytes;
+    }
+
+    // The child of node reached with character c, or -1
+    private int child(int node, char c) {
+        int low = childStart[node];
+        int high = childStart[node + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (labels[middle] < c) {
+                low = middle + 1;
+            } else if (labels[middle] > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /*
+        Collects the names (counting how many books have each one) and packs them into a PrefixSuggester.
+        The same name as title and as author gives two suggestions; the same title on several books gives one, with the number of books.
+     */
+    public static final class Builder {
+
+        private static class Name {
+            final String text;
+            final Kind kind;
+            final String key;
+            int books;
+
+            Name(String text, Kind kind, String key) {
+                this.text = text;
+                this.kind = kind;
+                this.key = key;
+            }
+        }
+
+        private final Map<String, Name> names = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(String text, Kind kind) {
+            String normalized = BookSearchIndex.normalize(text);
+            if (normalized.isEmpty()) {
+                return this;
+            }
+            names.computeIfAbsent(kind.ordinal() + ":" + normalized, k -> new Name(text.trim(), kind, keyOf(text))).books++;
+            return this;
+        }
+
+        public PrefixSuggester build() {
+            List<Name> sorted = new ArrayList<>(names.values());
+            sorted.sort((a, b) -> a.key.compareTo(b.key));
+
+            int n = sorted.size();
+            String[] keys = new String[n];
+            String[] texts = new String[n];
+            byte[] kinds = new byte[n];
+            int[] books = new int[n];
+            for (int i = 0; i < n; i++) {
+                Name name = sorted.get(i);
+                keys[i] = name.key;
+                texts[i] = name.text;
+                kinds[i] = (byte) name.kind.ordinal();
+                books[i] = name.books;
+            }
+
+            // While building, every node also remembers its range of suggestions [lo, hi), its depth and its parent
+            IntList labels = new IntList();
+            IntList childStart = new IntList();
+            IntList topFrom = new IntList();
+            IntList topCount = new IntList();
+            IntList top = new IntList();
+            IntList lo = new IntList();
+            IntList hi = new IntList();
+            IntList depth = new IntList();
+            IntList parent = new IntList();
+
+            labels.add(0);
+            lo.add(0);
+            hi.add(n);
+            depth.add(0);
+            parent.add(-1);
+
+            int[] best = new int[MAX_SUGGESTIONS];
+            for (int node = 0; node < labels.size; node++) {
+                int from = lo.get(node);
+                int to = hi.get(node);
+                int d = depth.get(node);
+
+                int p = parent.get(node);
+                if (p >= 0 && lo.get(p) == from && hi.get(p) == to) {
+                    topFrom.add(topFrom.get(p));
+                    topCount.add(topCount.get(p));
+                } else {
+                    int count = bestOf(from, to, texts, books, best);
+                    topFrom.add(top.size);
+                    topCount.add(count);
+                    for (int i = 0; i < count; i++) {
+                        top.add(best[i]);
+                    }
+                }
+
+                // The names ending on this node sort before the longer ones, and the longer ones are grouped by their next character
+                childStart.add(labels.size);
+                int i = from;
+                while (i < to && keys[i].length() == d) {
+                    i++;
+                }
+                while (i < to) {
+                    char c = keys[i].charAt(d);
+                    int start = i;
+                    while (i < to && keys[i].charAt(d) == c) {
+                        i++;
+                    }
+                    labels.add(c);
+                    lo.add(start);
+                    hi.add(i);
+                    depth.add(d + 1);
+                    parent.add(node);
+                }
+            }
+            childStart.add(labels.size);
+
+            char[] packedLabels = new char[labels.size];
+            byte[] packedTopCount = new byte[labels.size];
+            for (int node = 0; node < labels.size; node++) {
+                packedLabels[node] = (char) labels.get(node);
+                packedTopCount[node] = (byte) topCount.get(node);
+            }
+            return new PrefixSuggester(texts, kinds, books,
+                    packedLabels, childStart.toArray(), topFrom.toArray(), packedTopCount, top.toArray());
+        }
+
+        // Puts the best (most books, then shortest text) MAX_SUGGESTIONS suggestions of [from, to) in "best", best first, and returns how many there are
+        private static int bestOf(int from, int to, String[] texts, int[] books, int[] best) {
+            int count = 0;
+            for (int s = from; s < to; s++) {
+                int position = count;
+                while (position > 0 && better(s, best[position - 1], texts, books)) {
+                    position--;
+                }
+                if (position >= MAX_SUGGESTIONS) {
+                    continue;
+                }
+                int moved = Math.min(count, MAX_SUGGESTIONS - 1) - position;
+                System.arraycopy(best, position, best, position + 1, moved);
+                best[position] = s;
+                count = Math.min(count + 1, MAX_SUGGESTIONS);
+            }
+            return count;
+        }
+
+        private static boolean better(int a, int b, String[] texts, int[] books) {
+            if (books[a] != books[b]) {
+                return books[a] > books[b];
+            }
+            return texts[a].length() < texts[b].length();
+        }
+    }
+
+    // A growable int[] (an ArrayList<Integer> would box every number while building a trie with millions of nodes)
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
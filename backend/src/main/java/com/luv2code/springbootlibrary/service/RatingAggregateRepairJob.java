@@ -0,0 +1,39 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+    Every night (library.ratings.repair-cron), recalculates the rating totals of every book from the review table, so any drift between the two is repaired.
+
+    Each book is recalculated in its own short transaction (RatingAggregateService.recompute), so a review posted while the job runs only ever waits for one book, never for the whole job.
+ */
+@Component
+public class RatingAggregateRepairJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingAggregateRepairJob.class);
+
+    private BookRepository bookRepository;
+
+    private RatingAggregateService ratingAggregateService;
+
+    @Autowired
+    public RatingAggregateRepairJob(BookRepository bookRepository, RatingAggregateService ratingAggregateService) {
+        this.bookRepository = bookRepository;
+        this.ratingAggregateService = ratingAggregateService;
+    }
+
+    @Scheduled(cron = "${library.ratings.repair-cron}")
+    public void repairAll() {
+        int repaired = 0;
+        for (Long bookId : bookRepository.findAllIds()) {
+            ratingAggregateService.recompute(bookId);
+            repaired++;
+        }
+        log.info("Recalculated the rating totals of {} books", repaired);
+    }
+}
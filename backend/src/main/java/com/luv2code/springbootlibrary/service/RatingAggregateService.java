@@ -0,0 +1,100 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.RatingHistogramRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.RatingHistogramBucket;
+import com.luv2code.springbootlibrary.responsemodels.BookRatingResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/*
+    Keeps a running total of every book's reviews (count, sum and a histogram of the ratings, see migration V8).
+
+    The book page used to download the reviews and average them in the browser, which cost a full review fetch per page view and only counted the first page of reviews.
+    Now ReviewService.postReview calls record() in the same transaction that saves the review, and reading the rating is a lookup of one book row and at most 11 histogram rows, however many reviews the book has.
+
+    If the totals ever drift from the review table (a review deleted by hand, a failed deploy...), recompute() rebuilds them. RatingAggregateRepairJob does that for every book at night.
+ */
+@Service
+@Transactional
+public class RatingAggregateService {
+
+    // Ratings go from 0 to 5 stars in half star steps, so 11 possible values
+    public static final int MAX_HALF_STARS = 10;
+
+    private BookRepository bookRepository;
+
+    private RatingHistogramRepository ratingHistogramRepository;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public RatingAggregateService(BookRepository bookRepository, RatingHistogramRepository ratingHistogramRepository,
+                                  ApplicationEventPublisher eventPublisher) {
+        this.bookRepository = bookRepository;
+        this.ratingHistogramRepository = ratingHistogramRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // The rating as a number of half stars (4.5 -> 9). Throws for anything that isn't a 0 to 5 star rating in half star steps.
+    public static int toHalfStars(double rating) throws Exception {
+        double halfStars = rating * 2;
+        if (halfStars < 0 || halfStars > MAX_HALF_STARS || halfStars != Math.rint(halfStars)) {
+            throw new Exception("Rating must be between 0 and 5 in steps of 0.5");
+        }
+        return (int) halfStars;
+    }
+
+    // Adds one review to the book's totals. Throws if the book doesn't exist (the UPDATE of its totals found no row), before a histogram row is made for it.
+    public void record(Long bookId, double rating) throws Exception {
+        int halfStars = toHalfStars(rating);
+        if (bookRepository.addRating(bookId, rating) == 0) {
+            throw new Exception("Book not found");
+        }
+        ratingHistogramRepository.increment(bookId, halfStars);
+        // The book's ratingCount/ratingAverage changed, so a cached copy of it (see BookCache) is out of date
+        eventPublisher.publishEvent(BookChangedEvent.rating(bookId));
+    }
+
+    public Optional<BookRatingResponse> rating(Long bookId) {
+        Optional<Book> book = bookRepository.findById(bookId);
+        if (!book.isPresent()) {
+            return Optional.empty();
+        }
+
+        long[] histogram = new long[MAX_HALF_STARS + 1];
+        for (RatingHistogramBucket bucket : ratingHistogramRepository.findByBookId(bookId)) {
+            if (bucket.getHalfStars() >= 0 && bucket.getHalfStars() <= MAX_HALF_STARS) {
+                histogram[bucket.getHalfStars()] = bucket.getReviewCount();
+            }
+        }
+
+        return Optional.of(new BookRatingResponse(bookId, book.get().getRatingCount(), book.get().getRatingAverage(), histogram));
+    }
+
+    // Throws the book's totals away and counts its reviews again
+    public void recompute(Long bookId) {
+        Optional<BookRepository.BookVersion> before = bookRepository.findVersionById(bookId);
+        ratingHistogramRepository.deleteAllByBookId(bookId);
+        ratingHistogramRepository.rebuild(bookId);
+        bookRepository.recomputeRating(bookId);
+
+        // The repair job recomputes every book every night; only the ones whose totals really moved count as changed (see ChangeFeedService)
+        Optional<BookRepository.BookVersion> after = bookRepository.findVersionById(bookId);
+        if (before.isPresent() && after.isPresent()
+                && (before.get().getRatingCount() != after.get().getRatingCount()
+                || before.get().getRatingSum() != after.get().getRatingSum())) {
+            eventPublisher.publishEvent(BookChangedEvent.rating(bookId));
+        }
+    }
+
+    // Called when a book is deleted, together with its reviews
+    public void forget(Long bookId) {
+        ratingHistogramRepository.deleteAllByBookId(bookId);
+    }
+}
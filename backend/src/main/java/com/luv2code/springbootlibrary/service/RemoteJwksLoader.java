@@ -0,0 +1,29 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.JwtProperties;
+import com.nimbusds.jose.jwk.JWKSet;
+
+import java.net.URL;
+
+// Downloads the issuer's public keys from library.jwt.jwks-uri (see JwksLoader)
+public class RemoteJwksLoader implements JwksLoader {
+
+    // A key set is a few KB. Anything much bigger isn't one.
+    private static final int SIZE_LIMIT_BYTES = 512 * 1024;
+
+    private JwtProperties jwtProperties;
+
+    public RemoteJwksLoader(JwtProperties jwtProperties) {
+        this.jwtProperties = jwtProperties;
+    }
+
+    @Override
+    public JWKSet load() throws Exception {
+        return JWKSet.load(
+                new URL(jwtProperties.getJwksUri()),
+                (int) jwtProperties.getConnectTimeout().toMillis(),
+                (int) jwtProperties.getReadTimeout().toMillis(),
+                SIZE_LIMIT_BYTES
+        );
+    }
+}
@@ -5,6 +5,7 @@ import com.luv2code.springbootlibrary.dao.ReviewRepository;
 import com.luv2code.springbootlibrary.entity.Review;
 import com.luv2code.springbootlibrary.requestmodels.ReviewRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,9 +28,12 @@ public class ReviewService {
 
     private ReviewRepository reviewRepository;
 
+    private RatingAggregateService ratingAggregateService;
+
     @Autowired
-    public ReviewService(ReviewRepository reviewRepository) {
+    public ReviewService(ReviewRepository reviewRepository, RatingAggregateService ratingAggregateService) {
         this.reviewRepository = reviewRepository;
+        this.ratingAggregateService = ratingAggregateService;
     }
 
     //  ReviewRequest reviewRequest  ->> This has no values so how do we create values to parse into the method?? Since the ReviewRequest model has no constructors, Spring automatically create a no argument constructor for the model. In order to add values to the ReviewRequest model, we'll need to use Setters to explicitly add values to the ReviewRequest model. It'll look like this
@@ -39,12 +43,12 @@ public class ReviewService {
     //  reviewRequest.setReviewDescription(Optional.of("This book was fantastic!"));
 
         // PURPOSE OF FUNCTION
-        // This function is designed to post a review for a specific book by a user, but it checks first to ensure that the user hasn’t already reviewed the book. It ensures that no duplicate reviews are posted by the same user for the same book.
+        // This function is designed to post a review for a specific book by a user. A user reviews a book only once: the unique key uq_review_user_book (migration V13) rejects a second review, and the user gets a 409 (see DuplicateEntryException).
+        // rollbackFor = Exception.class: a review of a book that doesn't exist is refused by ratingAggregateService.record after the review was saved, and that save must not be kept.
+        @Transactional(rollbackFor = Exception.class)
         public void postReview(String userEmail, ReviewRequest reviewRequest) throws Exception {
-        Review validateReview = reviewRepository.findByUserEmailAndBookId(userEmail, reviewRequest.getBookId());
-        if (validateReview != null) {
-            throw new Exception("Review already created");
-        }
+        // Reject ratings the histogram has no place for (see RatingAggregateService) before anything is saved
+        RatingAggregateService.toHalfStars(reviewRequest.getRating());
 
         Review review = new Review();
         review.setBookId(reviewRequest.getBookId());
@@ -58,8 +62,18 @@ public class ReviewService {
 
         // Get Today's Date
         review.setDate(Date.valueOf(LocalDate.now()));
-        // Save the review
-        reviewRepository.save(review);
+        // Save the review. No SELECT to check for an earlier review first, the INSERT finds out by itself (also when the same review is sent twice at the same moment).
+        try {
+            reviewRepository.saveAndFlush(review);
+        } catch (DataIntegrityViolationException e) {
+            if (DuplicateEntryException.isViolationOf(e, "uq_review_user_book")) {
+                throw new DuplicateEntryException("Review already created", e);
+            }
+            throw e;
+        }
+
+        // Add the review to the book's rating totals. Same transaction as the save, so either both happen or neither does.
+        ratingAggregateService.record(reviewRequest.getBookId(), reviewRequest.getRating());
     }
 
 
@@ -0,0 +1,50 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.CacheRegionStatsResponse;
+import com.luv2code.springbootlibrary.responsemodels.SecondLevelCacheStatsResponse;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+    Reads the hit/miss counters Hibernate keeps for every region of its second-level cache ("book", "review", "book-queries", and Hibernate's own query cache regions).
+    The admin endpoint /api/admin/secure/l2-cache shows them. The cache only exists with the "l2cache" profile (see application-l2cache.properties).
+ */
+@Component
+public class SecondLevelCacheMetrics {
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    public SecondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public SecondLevelCacheStatsResponse snapshot() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        Statistics statistics = sessionFactory.getStatistics();
+        if (!sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()) {
+            return new SecondLevelCacheStatsResponse(false, statistics.isStatisticsEnabled(), new ArrayList<>());
+        }
+
+        List<CacheRegionStatsResponse> regions = new ArrayList<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics counters = statistics.getCacheRegionStatistics(region);
+            if (counters == null) {
+                continue;
+            }
+            long lookups = counters.getHitCount() + counters.getMissCount();
+            regions.add(new CacheRegionStatsResponse(region, counters.getHitCount(), counters.getMissCount(),
+                    counters.getPutCount(), lookups == 0 ? 0 : (double) counters.getHitCount() / lookups));
+        }
+        regions.sort(Comparator.comparing(CacheRegionStatsResponse::getRegion));
+        return new SecondLevelCacheStatsResponse(true, statistics.isStatisticsEnabled(), regions);
+    }
+}
@@ -0,0 +1,121 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.HistoryRepository;
+import com.luv2code.springbootlibrary.dao.MessageRepository;
+import com.luv2code.springbootlibrary.entity.BookSummary;
+import com.luv2code.springbootlibrary.entity.HistoryWithBook;
+import com.luv2code.springbootlibrary.entity.Message;
+import com.luv2code.springbootlibrary.responsemodels.SeekPageResponse;
+import com.luv2code.springbootlibrary.utils.SeekCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/*
+    Cursor ("keyset" or "seek") paging for the long listings: the catalog, a user's history, and the messages.
+
+    The Spring Data REST listings (/api/books?page=40&size=5) use OFFSET paging: the database reads and throws away the 200 rows before the page every time, so the deeper the page the slower it gets. And every page runs a second query, COUNT(*), for the total number of pages.
+
+    Here a page is asked for with the cursor of the previous page instead of a page number. The cursor holds the sort key and id of the last row sent, so the next page is
+            WHERE (sort key, id) come after the cursor  ORDER BY sort key, id  LIMIT size + 1
+    which the database answers straight from an index (see V9__add_keyset_paging_indexes.sql), in the same time for page 1 and page 10,000.
+    One row more than asked for is read, only to know whether there is a next page. There is no COUNT.
+
+    Listings and their order:
+        books:    id
+        history:  returned_on (newest first), then id (newest first)
+        messages: id
+ */
+@Service
+@Transactional(readOnly = true)
+public class SeekPagingService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private BookRepository bookRepository;
+
+    private HistoryRepository historyRepository;
+
+    private MessageRepository messageRepository;
+
+    @Autowired
+    public SeekPagingService(BookRepository bookRepository, HistoryRepository historyRepository,
+                             MessageRepository messageRepository) {
+        this.bookRepository = bookRepository;
+        this.historyRepository = historyRepository;
+        this.messageRepository = messageRepository;
+    }
+
+    // cursor: null for the first page, otherwise the nextCursor of the previous page.
+    // Books are listed as BookSummary (no description), like the other lists of books
+    public SeekPageResponse<BookSummary> books(String cursor, int size) throws Exception {
+        long afterId = cursor == null ? 0 : idOf(SeekCursor.decode(cursor, 1)[0]);
+        List<BookSummary> rows = bookRepository.findPageAfter(afterId, limit(size));
+        return page(rows, size, book -> SeekCursor.encode(book.getId().toString()));
+    }
+
+    public SeekPageResponse<HistoryWithBook> history(String userEmail, String cursor, int size) throws Exception {
+        List<HistoryWithBook> rows;
+        if (cursor == null) {
+            rows = historyRepository.findFirstPageByUserEmail(userEmail, limit(size));
+        } else {
+            String[] values = SeekCursor.decode(cursor, 2);
+            rows = historyRepository.findPageByUserEmailAfter(userEmail, dateOf(values[0]), idOf(values[1]), limit(size));
+        }
+        return page(rows, size, history -> SeekCursor.encode(history.getReturnedDate().toString(), history.getId().toString()));
+    }
+
+    public SeekPageResponse<Message> messagesOfUser(String userEmail, String cursor, int size) throws Exception {
+        long afterId = cursor == null ? 0 : idOf(SeekCursor.decode(cursor, 1)[0]);
+        List<Message> rows = messageRepository.findPageByUserEmailAfter(userEmail, afterId, limit(size));
+        return page(rows, size, message -> SeekCursor.encode(message.getId().toString()));
+    }
+
+    public SeekPageResponse<Message> messagesByClosed(boolean closed, String cursor, int size) throws Exception {
+        long afterId = cursor == null ? 0 : idOf(SeekCursor.decode(cursor, 1)[0]);
+        List<Message> rows = messageRepository.findPageByClosedAfter(closed, afterId, limit(size));
+        return page(rows, size, message -> SeekCursor.encode(message.getId().toString()));
+    }
+
+    // Asks for one row more than the page size, to find out whether there is a next page
+    private static PageRequest limit(int size) {
+        return PageRequest.of(0, pageSize(size) + 1);
+    }
+
+    private static int pageSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+    }
+
+    private static <T> SeekPageResponse<T> page(List<T> rows, int size, Function<T, String> cursorOf) {
+        int pageSize = pageSize(size);
+        if (rows.size() <= pageSize) {
+            return new SeekPageResponse<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, pageSize));
+        return new SeekPageResponse<>(items, cursorOf.apply(items.get(pageSize - 1)));
+    }
+
+    private static long idOf(String value) throws Exception {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new Exception("Invalid cursor");
+        }
+    }
+
+    private static LocalDate dateOf(String value) throws Exception {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new Exception("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.luv2code.springbootlibrary.service;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+// Checks tokens with another JwtDecoder and records how long every check took in JwtVerificationMetrics
+public class TimedJwtDecoder implements JwtDecoder {
+
+    private JwtDecoder decoder;
+
+    private JwtVerificationMetrics metrics;
+
+    public TimedJwtDecoder(JwtDecoder decoder, JwtVerificationMetrics metrics) {
+        this.decoder = decoder;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long started = System.nanoTime();
+        boolean accepted = false;
+        try {
+            Jwt jwt = decoder.decode(token);
+            accepted = true;
+            return jwt;
+        } finally {
+            metrics.record(System.nanoTime() - started, accepted);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.TypeaheadProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.responsemodels.TypeaheadStatsResponse;
+import com.luv2code.springbootlibrary.responsemodels.TypeaheadSuggestion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+    Answers the search box autocomplete from a PrefixSuggester, and rebuilds it when the catalog changes.
+
+    A PrefixSuggester can't be changed once it's built, so a change in the catalog means building a whole new one:
+        - it's built on a background thread, from the names of all books (id, title, author, category only, BUILD_BATCH books at a time),
+        - meanwhile the old one keeps answering,
+        - when it's done it replaces the old one in a single write of the "current" field. A request sees either the old trie or the new one, never half of one.
+
+    The first build runs when the app has started; after that, a book added or deleted (BookChangedEvent) starts a rebuild library.typeahead.rebuild-delay later.
+ */
+@Service
+public class TypeaheadService {
+
+    private static final Logger log = LoggerFactory.getLogger(TypeaheadService.class);
+
+    static final int BUILD_BATCH = 5_000;
+
+    private BookRepository bookRepository;
+
+    private TypeaheadProperties properties;
+
+    private volatile PrefixSuggester current = PrefixSuggester.empty();
+
+    private volatile long lastBuildMillis;
+
+    private volatile Instant builtAt;
+
+    // True while a rebuild is waiting to start, so changes arriving meanwhile don't queue more of them
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "typeahead-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public TypeaheadService(BookRepository bookRepository, TypeaheadProperties properties) {
+        this.bookRepository = bookRepository;
+        this.properties = properties;
+    }
+
+    public List<TypeaheadSuggestion> suggest(String prefix, int limit) {
+        return current.suggest(prefix, Math.min(Math.max(limit, 1), PrefixSuggester.MAX_SUGGESTIONS));
+    }
+
+    public TypeaheadStatsResponse stats() {
+        PrefixSuggester suggester = current;
+        return new TypeaheadStatsResponse(suggester.suggestionCount(), suggester.nodeCount(),
+                suggester.estimatedBytes(), lastBuildMillis, builtAt);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        scheduleRebuild(Duration.ZERO);
+    }
+
+    // fallbackExecution = true: also called when the event is published outside of a transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        // Checkouts and returns don't change any name, so they don't need a new trie
+        if (event.changesNames()) {
+            scheduleRebuild(properties.getRebuildDelay());
+        }
+    }
+
+    // Builds a new trie from the database and puts it in use
+    public void rebuild() {
+        // Cleared before reading, so a change committed while we read schedules the next rebuild instead of being lost
+        rebuildScheduled.set(false);
+
+        long started = System.nanoTime();
+        PrefixSuggester.Builder builder = PrefixSuggester.builder();
+        long afterId = 0;
+        List<BookRepository.BookNames> batch;
+        do {
+            batch = bookRepository.findNamesAfter(afterId, PageRequest.of(0, BUILD_BATCH));
+            for (BookRepository.BookNames book : batch) {
+                builder.add(book.getTitle(), PrefixSuggester.Kind.TITLE);
+                builder.add(book.getAuthor(), PrefixSuggester.Kind.AUTHOR);
+                builder.add(book.getCategory(), PrefixSuggester.Kind.CATEGORY);
+                afterId = book.getId();
+            }
+        } while (batch.size() == BUILD_BATCH);
+
+        PrefixSuggester built = builder.build();
+        current = built;
+        lastBuildMillis = (System.nanoTime() - started) / 1_000_000;
+        builtAt = Instant.now();
+
+        log.info("Typeahead rebuilt: {} suggestions, {} nodes, about {} KB, in {} ms",
+                built.suggestionCount(), built.nodeCount(), built.estimatedBytes() / 1024, lastBuildMillis);
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuilder.shutdownNow();
+    }
+
+    private void scheduleRebuild(Duration delay) {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(this::rebuildSafely, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // An exception would end the task silently, so it's logged; the old trie stays in use until the next change
+    private void rebuildSafely() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Typeahead rebuild failed, still using the previous one", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.luv2code.springbootlibrary.utils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/*
+    The loan dates as they are stored in the old string columns of checkout and history ('yyyy-MM-dd', see migration V3).
+
+    Instances of the previous version of the app only read and write those string columns, and they keep running next to the new version while it is deployed. Until they are all gone:
+        - the new version writes both: the DATE column, and the same date as a string in the old column (see the setters of Checkout and History, and LoanBatchWriter),
+        - a row written by an old instance only has the string. The entities fall back to it while their DATE column is still empty, and LoanDateSyncJob copies it into the DATE column.
+ */
+public final class LoanDates {
+
+    private LoanDates() {
+    }
+
+    public static String format(LocalDate date) {
+        return date == null ? null : date.toString();
+    }
+
+    // null if there's no date or it isn't a valid 'yyyy-MM-dd' date: the old columns were never checked, so they may hold anything ("", "2024-02-31", ...)
+    public static LocalDate parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(text.trim());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.luv2code.springbootlibrary.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/*
+    The "cursor" of the cursor (keyset) listings: where the next page starts.
+
+    It holds the sort key(s) and id of the last row of the page just sent, e.g. "2024-03-01" and 4711 for a history row. The next page is then "the rows after that one in the sort order", which the database finds with an index instead of counting past OFFSET rows.
+
+    To the client it's an opaque string (URL safe base64) that it sends back as it is: it must not build or change cursors itself, so their content can change later.
+ */
+public final class SeekCursor {
+
+    private static final char SEPARATOR = '\n';
+
+    private SeekCursor() {
+    }
+
+    public static String encode(String... values) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.join(String.valueOf(SEPARATOR), values).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The values of a cursor made by encode(). Anything else (wrong number of values, not base64) is rejected.
+    public static String[] decode(String cursor, int expectedValues) throws Exception {
+        String[] values;
+        try {
+            values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(String.valueOf(SEPARATOR), -1);
+        } catch (IllegalArgumentException e) {
+            throw new Exception("Invalid cursor");
+        }
+        if (values.length != expectedValues) {
+            throw new Exception("Invalid cursor");
+        }
+        return values;
+    }
+}
@@ -0,0 +1,36 @@
+package db.migration;
+
+import com.luv2code.springbootlibrary.dao.LoanDateBackfill;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+    Second half of the loan date migration (see V3__add_typed_loan_date_columns.sql): copies the old 'yyyy-MM-dd' strings into the new DATE columns.
+
+    Flyway runs this class like the .sql files because of its name (V4__...) and package (db.migration).
+
+    The copying itself is LoanDateBackfill, which LoanDateSyncJob also runs (while library.loan-dates.sync-enabled is on) for the rows instances of the previous version still write while the new version is deployed.
+    It converts the rows in small batches and commits every batch on its own (canExecuteInTransaction() returns false). One giant UPDATE would lock every loan row until it finished; small batches only lock a few rows for a few milliseconds, so the app keeps working while the migration runs.
+
+    Rows that already have the right value in the new column are skipped, so it is safe to run again if it's interrupted. A string that isn't a valid date is left alone (and counted in the log) instead of failing the migration.
+ */
+public class V4__Backfill_typed_loan_dates extends BaseJavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V4__Backfill_typed_loan_dates.class);
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        LoanDateBackfill backfill = LoanDateBackfill.run(context.getConnection());
+        if (backfill.getMalformed() > 0) {
+            log.warn("{} loan rows have dates that aren't 'yyyy-MM-dd' and were left without a DATE", backfill.getMalformed());
+        }
+        log.info("Copied the loan dates of {} rows into the DATE columns", backfill.getConverted());
+    }
+}
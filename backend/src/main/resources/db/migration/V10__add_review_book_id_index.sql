@@ -0,0 +1,3 @@
+-- The reviews of a book (ReviewRepository.findByBookId, newest first on the book page) and the "has this list changed?" check
+-- of ETagService (how many reviews the book has and the highest review id) are both read from this index alone.
+CREATE INDEX idx_review_book_id ON review (book_id, id);
@@ -0,0 +1,17 @@
+-- An append-only log of every change to the catalog, read by the change feed (/api/books/changes, see ChangeFeedService).
+-- A row is written in the same transaction as the change itself, so a change that rolls back leaves no row behind.
+--
+--   id           the feed's cursor: it only ever goes up, and a client asks for the rows after the last id it has seen
+--   change_type  CREATED, UPDATED or DELETED
+--   changed_at   when the row was written (used to tell a gap left by a rollback from a transaction that hasn't committed yet)
+CREATE TABLE book_change_log (
+    id          BIGINT NOT NULL AUTO_INCREMENT,
+    book_id     BIGINT NOT NULL,
+    change_type VARCHAR(16) NOT NULL,
+    changed_at  DATETIME(3) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Every book already in the catalog counts as created, so a client starting from the beginning gets the whole catalog once.
+INSERT INTO book_change_log (book_id, change_type, changed_at)
+SELECT id, 'CREATED', CURRENT_TIMESTAMP(3) FROM book ORDER BY id;
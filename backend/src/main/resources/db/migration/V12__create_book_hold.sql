@@ -0,0 +1,24 @@
+-- The waitlist of books with no copies left (see HoldService). One row per reader waiting for a book, or with a copy set aside for them.
+--
+--   status       WAITING: in the queue. READY: a returned copy is set aside for the reader until ready_until.
+--   ready_until  when a READY hold expires and its copy goes to the next reader (NULL while WAITING)
+--
+-- The id is the place in the queue: the head of a book's queue is its WAITING hold with the lowest id.
+CREATE TABLE book_hold (
+    id           BIGINT NOT NULL AUTO_INCREMENT,
+    user_email   VARCHAR(255) NOT NULL,
+    book_id      BIGINT NOT NULL,
+    status       VARCHAR(16) NOT NULL,
+    requested_at DATETIME(3) NOT NULL,
+    ready_until  DATETIME(3) DEFAULT NULL,
+    PRIMARY KEY (id)
+);
+
+-- A reader holds a book at most once
+CREATE UNIQUE INDEX uq_book_hold_user_book ON book_hold (user_email, book_id);
+
+-- The head of a book's queue, and a reader's place in it:   WHERE book_id = ? AND status = 'WAITING' ORDER BY id
+CREATE INDEX idx_book_hold_queue ON book_hold (book_id, status, id);
+
+-- The copies set aside for too long:                         WHERE status = 'READY' AND ready_until < ?
+CREATE INDEX idx_book_hold_ready_until ON book_hold (status, ready_until);
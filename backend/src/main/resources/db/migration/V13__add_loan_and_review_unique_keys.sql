@@ -0,0 +1,27 @@
+-- A user has a book checked out at most once, and reviews a book at most once. The app used to check this with a SELECT before
+-- every INSERT (which two requests at the same moment both pass); now the database does, and BookService / ReviewService
+-- turn the violation into a 409 (see DuplicateEntryException). The keys also serve findByUserEmailAndBookId.
+--
+-- Duplicates that got in before this migration are removed first, keeping the oldest row. Every duplicate checkout took a copy
+-- off the shelf when it was made, so that copy is put back on the book before the row goes. The rating totals of a book that
+-- lost a duplicate review are recalculated by the nightly RatingAggregateRepairJob.
+-- (The id lists are wrapped in a derived table because MySQL doesn't allow a DELETE to read its own table in a subquery.)
+
+-- The duplicates of a book = its checkout rows minus the (user, book) pairs that keep one row each.
+-- (COALESCE: the DELETE below keeps one row for all the NULL emails too, which COUNT(DISTINCT) alone wouldn't count.)
+UPDATE book SET copies_available = copies_available + (
+    SELECT COUNT(*) - COUNT(DISTINCT COALESCE(checkout.user_email, '')) FROM checkout WHERE checkout.book_id = book.id
+)
+WHERE id IN (SELECT book_id FROM checkout GROUP BY user_email, book_id HAVING COUNT(*) > 1);
+
+DELETE FROM checkout WHERE id NOT IN (
+    SELECT id FROM (SELECT MIN(id) AS id FROM checkout GROUP BY user_email, book_id) AS kept
+);
+
+DELETE FROM review WHERE id NOT IN (
+    SELECT id FROM (SELECT MIN(id) AS id FROM review GROUP BY user_email, book_id) AS kept
+);
+
+CREATE UNIQUE INDEX uq_checkout_user_book ON checkout (user_email, book_id);
+
+CREATE UNIQUE INDEX uq_review_user_book ON review (user_email, book_id);
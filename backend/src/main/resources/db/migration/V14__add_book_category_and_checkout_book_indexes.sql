@@ -0,0 +1,19 @@
+-- The last repository queries that still read a whole table. With these, every query in the dao package is answered from
+-- an index (QueryPlanTest checks that with EXPLAIN, and names the few queries that read every row on purpose).
+--
+-- Where the other queries are served from:
+--   checkout  user_email, book_id        uq_checkout_user_book (V13)    findByUserEmailAndBookId(In), findBooksByUserEmail, findCurrentLoansByUserEmail
+--             return_on                  idx_checkout_return_on (V3)    findByReturnDateBetween / Before
+--   review    book_id, id                idx_review_book_id (V10)       findByBookId, findVersionByBookId, deleteAllByBookId
+--             user_email, book_id        uq_review_user_book (V13)      findByUserEmailAndBookId
+--   history   user_email, returned_on    idx_history_user_returned_on   findBooksByUserEmail, the cursor listing (V9)
+--             returned_on                idx_history_returned_on (V3)   findByReturnedDateBetween
+--   messages  user_email, id / closed, id                               findByUserEmail, findByClosed and their cursor listings (V9)
+--   book_hold                            the indexes of V12
+
+-- The catalog by category:   WHERE category = ?   (findByCategory and its COUNT)
+-- copies_available is in the index too, so the per-category counts of countByCategory are read from the index alone.
+CREATE INDEX idx_book_category ON book (category, copies_available);
+
+-- The loans of a deleted book:   DELETE FROM checkout WHERE book_id = ?   (CheckoutRepository.deleteAllByBookId)
+CREATE INDEX idx_checkout_book_id ON checkout (book_id);
@@ -0,0 +1,8 @@
+-- book.img and history.img held the full URL of a cover in the ImageStore (http://host/api/images/<hash>), with the host of
+-- the day baked into every row. They now only hold the 64 character hash; the URL is put together when a book is sent out,
+-- from library.images.base-url (see CoverUrlSerializer). Covers that link to another site are left as they are.
+-- (Every _ in the LIKE pattern stands for one character of the hash.)
+
+UPDATE book SET img = RIGHT(img, 64) WHERE img LIKE '%/api/images/________________________________________________________________';
+
+UPDATE history SET img = RIGHT(img, 64) WHERE img LIKE '%/api/images/________________________________________________________________';
@@ -0,0 +1,9 @@
+-- One row that every transaction writing to book_change_log locks just before it commits (see ChangeFeedService).
+-- The log rows are only inserted while holding it, so they get their ids in the order the transactions commit: when a
+-- client can see a row, every row with a lower id is already visible too, and the change feed never has to wait for a gap.
+CREATE TABLE book_change_log_lock (
+    id INT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO book_change_log_lock (id) VALUES (1);
@@ -0,0 +1,6 @@
+-- The history lists now read each row's book in the same query as the rows (see History.book), and AdminService.deleteBook
+-- clears the book_id of a deleted book's rows, keeping a copy of its description and cover (like migration V7 did).
+-- Books deleted before this version left their rows pointing at nothing. Their description and cover went with them, so
+-- all that can be done here is to clear the dangling book_id.
+UPDATE history SET book_id = NULL
+WHERE book_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM book WHERE book.id = history.book_id);
@@ -0,0 +1,58 @@
+-- The tables as they existed before the app managed its own schema.
+--
+-- An existing database already has these tables: Flyway "baselines" it at version 1 (see spring.flyway.baseline-* in
+-- application.properties) and skips this file. A brand new database (or the in-memory test database) gets them from here.
+
+CREATE TABLE IF NOT EXISTS book (
+    id               BIGINT NOT NULL AUTO_INCREMENT,
+    title            VARCHAR(255) DEFAULT NULL,
+    author           VARCHAR(255) DEFAULT NULL,
+    description      TEXT DEFAULT NULL,
+    copies           INT DEFAULT NULL,
+    copies_available INT DEFAULT NULL,
+    category         VARCHAR(255) DEFAULT NULL,
+    img              MEDIUMTEXT DEFAULT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS review (
+    id                 BIGINT NOT NULL AUTO_INCREMENT,
+    user_email         VARCHAR(255) DEFAULT NULL,
+    date               DATETIME DEFAULT NULL,
+    rating             DECIMAL(3, 2) DEFAULT NULL,
+    book_id            BIGINT DEFAULT NULL,
+    review_description TEXT DEFAULT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS checkout (
+    id            BIGINT NOT NULL AUTO_INCREMENT,
+    user_email    VARCHAR(255) DEFAULT NULL,
+    checkout_date VARCHAR(45) DEFAULT NULL,
+    return_date   VARCHAR(45) DEFAULT NULL,
+    book_id       BIGINT DEFAULT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS history (
+    id            BIGINT NOT NULL AUTO_INCREMENT,
+    user_email    VARCHAR(255) DEFAULT NULL,
+    checkout_date VARCHAR(45) DEFAULT NULL,
+    returned_date VARCHAR(45) DEFAULT NULL,
+    title         VARCHAR(255) DEFAULT NULL,
+    author        VARCHAR(255) DEFAULT NULL,
+    description   TEXT DEFAULT NULL,
+    img           MEDIUMTEXT DEFAULT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS messages (
+    id          BIGINT NOT NULL AUTO_INCREMENT,
+    user_email  VARCHAR(255) DEFAULT NULL,
+    title       VARCHAR(255) DEFAULT NULL,
+    question    TEXT DEFAULT NULL,
+    admin_email VARCHAR(255) DEFAULT NULL,
+    response    TEXT DEFAULT NULL,
+    closed      TINYINT(1) DEFAULT 0,
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,3 @@
+-- Version counter used for optimistic locking of the inventory columns (copies, copies_available).
+-- Every UPDATE of a book bumps it, so a writer that read an older version knows someone else got there first.
+ALTER TABLE book ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,20 @@
+-- Typed DATE columns for the loan dates, which until now were stored as 'yyyy-MM-dd' strings.
+--
+-- This is the first half of an online migration:
+--   V3 (this file)   adds the new nullable columns and their indexes. On MySQL 8 adding a nullable column is an INSTANT
+--                    change and CREATE INDEX runs in place, so neither blocks reads or writes of the live tables.
+--   V4 (Java)        copies the old string values into the new columns in small batches (db.migration.V4__Backfill_typed_loan_dates).
+-- The old string columns stay in use while instances of the previous version still run next to this one (see LoanDates):
+-- the app writes every date to both columns, and reads the string only when the DATE column is still empty.
+-- LoanDateSyncJob copies the strings those instances keep writing into the new columns while library.loan-dates.sync-enabled is on.
+-- The string columns can be dropped by a later migration once every running instance is on this version.
+
+ALTER TABLE checkout ADD COLUMN checkout_on DATE DEFAULT NULL;
+ALTER TABLE checkout ADD COLUMN return_on DATE DEFAULT NULL;
+
+ALTER TABLE history ADD COLUMN checkout_on DATE DEFAULT NULL;
+ALTER TABLE history ADD COLUMN returned_on DATE DEFAULT NULL;
+
+-- "Which loans are due tomorrow / overdue?" and "what was returned last week?" become index range scans.
+CREATE INDEX idx_checkout_return_on ON checkout (return_on);
+CREATE INDEX idx_history_returned_on ON history (returned_on);
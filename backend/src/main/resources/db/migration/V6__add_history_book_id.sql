@@ -0,0 +1,10 @@
+-- History rows used to carry their own copy of the book's description and cover (base64), so every return added a whole
+-- cover image to the table. From now on a history row points at its book instead and only keeps a small snapshot of the
+-- title and author (so the row still makes sense after the book is deleted).
+--
+-- The existing rows are linked to their books, and their copies removed, by the Java migration V7
+-- (com.luv2code.springbootlibrary.migration.V7__Deduplicate_history_books).
+
+ALTER TABLE history ADD COLUMN book_id BIGINT DEFAULT NULL;
+
+CREATE INDEX idx_history_book_id ON history (book_id);
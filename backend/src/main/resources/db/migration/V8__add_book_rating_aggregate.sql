@@ -0,0 +1,25 @@
+-- A running total of every book's reviews, so showing a book's rating doesn't mean fetching and averaging all its reviews.
+--
+--   book.rating_count / book.rating_sum   how many reviews the book has and the sum of their ratings (average = sum / count)
+--   book_rating_histogram                 how many reviews gave each rating, one row per book and rating.
+--                                         half_stars is the rating times 2 (0 = 0 stars, 1 = half a star, ..., 10 = 5 stars)
+--
+-- ReviewService keeps them up to date when a review is posted, and RatingAggregateRepairJob recalculates them from the
+-- review table every night in case they drift. The statements at the bottom fill them in for the reviews we already have.
+
+ALTER TABLE book ADD COLUMN rating_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE book ADD COLUMN rating_sum DECIMAL(12, 2) NOT NULL DEFAULT 0;
+
+CREATE TABLE book_rating_histogram (
+    book_id      BIGINT NOT NULL,
+    half_stars   INT NOT NULL,
+    review_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (book_id, half_stars)
+);
+
+INSERT INTO book_rating_histogram (book_id, half_stars, review_count)
+SELECT book_id, ROUND(rating * 2), COUNT(*) FROM review WHERE book_id IS NOT NULL GROUP BY book_id, ROUND(rating * 2);
+
+UPDATE book SET
+    rating_count = (SELECT COUNT(*) FROM review WHERE review.book_id = book.id),
+    rating_sum   = (SELECT COALESCE(SUM(rating), 0) FROM review WHERE review.book_id = book.id);
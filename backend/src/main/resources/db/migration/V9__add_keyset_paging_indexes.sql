@@ -0,0 +1,14 @@
+-- Indexes for the cursor ("keyset") listings of SeekPagingService. Each one matches a listing's WHERE and ORDER BY exactly,
+-- so a page is read by jumping into the index right after the cursor and reading size + 1 entries, however deep the page is.
+--
+--   a user's history, newest return first:   WHERE user_email = ? AND (returned_on, id) < (?, ?) ORDER BY returned_on DESC, id DESC
+--   a user's messages:                       WHERE user_email = ? AND id > ? ORDER BY id
+--   open / closed messages:                  WHERE closed = ? AND id > ? ORDER BY id
+--
+-- The book listing only needs the primary key.
+
+CREATE INDEX idx_history_user_returned_on ON history (user_email, returned_on, id);
+
+CREATE INDEX idx_messages_user_email ON messages (user_email, id);
+
+CREATE INDEX idx_messages_closed ON messages (closed, id);
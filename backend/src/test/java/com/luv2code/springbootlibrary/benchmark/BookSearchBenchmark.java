@@ -0,0 +1,117 @@
+package com.luv2code.springbootlibrary.benchmark;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.service.BookSearchIndex;
+import com.luv2code.springbootlibrary.service.BookSearchService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/*
+	Compares the title search with LIKE '%term%' (findByTitleContaining) against the in-memory trigram index (BookSearchIndex), for catalogs of 10k, 100k and 1M books.
+
+	The database is the embedded H2 used by the tests, so the SQL numbers are only a lower bound for MySQL over the network.
+
+	Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookSearchBenchmark {
+
+	private static final String[] WORDS = {
+			"harry", "potter", "stone", "secret", "garden", "night", "river", "silent", "empire", "winter",
+			"shadow", "king", "house", "ocean", "dragon", "city", "glass", "forest", "memory", "storm",
+			"little", "women", "war", "peace", "island", "light", "golden", "road", "moon", "station"
+	};
+
+	private static final String[] SURNAMES = {
+			"Rowling", "Tolkien", "Austen", "Orwell", "Morrison", "Achebe", "Murakami", "Atwood", "Dickens", "Le Guin"
+	};
+
+	private static final String[] QUERIES = {"harry", "silent riv", "tolkien", "dragn", "mo"};
+
+	private static final int INSERT_BATCH = 10_000;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM book");
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {10_000, 100_000, 1_000_000})
+	void trigramIndexVersusLike(int books) {
+		insertBooks(books);
+
+		BookSearchIndex index = new BookSearchIndex();
+		BookSearchService searchService = new BookSearchService(index, bookRepository);
+		long started = System.nanoTime();
+		searchService.buildIndex();
+		System.out.printf("%,9d books: index built in %,d ms%n", books, (System.nanoTime() - started) / 1_000_000);
+
+		int iterations = Math.max(5, 2_000_000 / books);
+		for (String query : QUERIES) {
+			assertFalse(index.search(query, 0, 20).getBookIds().isEmpty(), query);
+
+			double like = microsPerCall(iterations, () -> bookRepository.findByTitleContaining(query, PageRequest.of(0, 20)));
+			double trigram = microsPerCall(iterations, () -> index.search(query, 0, 20));
+
+			System.out.printf("%,9d books, \"%s\": LIKE %,10.1f us/search, trigram index %,10.1f us/search (%.1fx)%n",
+					books, query, like, trigram, like / trigram);
+		}
+	}
+
+	// Random two to four word titles, inserted with plain JDBC batches (saving a million entities through JPA would take longer than the benchmark)
+	private void insertBooks(int books) {
+		Random random = new Random(books);
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < books; i++) {
+			StringBuilder title = new StringBuilder();
+			int words = 2 + random.nextInt(3);
+			for (int w = 0; w < words; w++) {
+				String word = WORDS[random.nextInt(WORDS.length)];
+				title.append(w == 0 ? "" : " ").append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+			}
+			String author = (char) ('A' + random.nextInt(26)) + ". " + SURNAMES[random.nextInt(SURNAMES.length)];
+			rows.add(new Object[]{title.toString(), author, "Description of book " + i, 1, 1, "FE"});
+
+			if (rows.size() == INSERT_BATCH || i == books - 1) {
+				jdbcTemplate.batchUpdate("INSERT INTO book (title, author, description, copies, copies_available, category) VALUES (?, ?, ?, ?, ?, ?)", rows);
+				rows.clear();
+			}
+		}
+	}
+
+	private static double microsPerCall(int iterations, Supplier<?> call) {
+		for (int i = 0; i < iterations; i++) {
+			call.get();
+		}
+		long started = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			call.get();
+		}
+		return (System.nanoTime() - started) / 1_000.0 / iterations;
+	}
+}
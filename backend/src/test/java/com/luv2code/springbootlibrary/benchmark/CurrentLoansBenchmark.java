@@ -0,0 +1,136 @@
+package com.luv2code.springbootlibrary.benchmark;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.Checkout;
+import com.luv2code.springbootlibrary.responsemodels.ShelfCurrentLoansResponse;
+import com.luv2code.springbootlibrary.service.BookService;
+import com.luv2code.springbootlibrary.service.HoldService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+	Compares the old currentLoans (three steps + in-memory join + SimpleDateFormat) with the new single projection query, for users with 5, 50 and 500 loans.
+
+	Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import({BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class})
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CurrentLoansBenchmark {
+
+	private static final String USER = "heavy.reader@example.com";
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	void cleanUp() {
+		checkoutRepository.deleteAll();
+		bookRepository.deleteAll();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {5, 50, 500})
+	void projectionVersusInMemoryJoin(int loans) throws Exception {
+		List<Checkout> checkouts = new ArrayList<>();
+		for (int i = 0; i < loans; i++) {
+			Book book = new Book();
+			book.setTitle("Book " + i);
+			book.setAuthor("Author " + i);
+			book.setDescription("Description of book " + i);
+			book.setCopies(1);
+			book.setCopiesAvailable(0);
+			book.setCategory("FE");
+			book = bookRepository.save(book);
+			checkouts.add(new Checkout(USER, LocalDate.now(), LocalDate.now().plusDays(i % 14), book.getId()));
+		}
+		checkoutRepository.saveAll(checkouts);
+
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		assertEquals(loans, transaction.execute(status -> legacyCurrentLoans(USER)).size());
+		assertEquals(loans, bookService.currentLoans(USER).size());
+
+		int iterations = Math.max(20, 20_000 / loans);
+		double legacy = microsPerCall(iterations, () -> transaction.execute(status -> legacyCurrentLoans(USER)));
+		double projection = microsPerCall(iterations, () -> bookService.currentLoans(USER));
+
+		System.out.printf("%4d loans: in-memory join %9.1f us/call, projection query %9.1f us/call (%.1fx)%n",
+				loans, legacy, projection, legacy / projection);
+	}
+
+	private static double microsPerCall(int iterations, Supplier<?> call) {
+		for (int i = 0; i < iterations; i++) {
+			call.get();
+		}
+		long started = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			call.get();
+		}
+		return (System.nanoTime() - started) / 1_000.0 / iterations;
+	}
+
+	// BookService.currentLoans as it was before the projection query, kept here only to compare against (it parsed the dates from "yyyy-MM-dd" strings).
+	private List<ShelfCurrentLoansResponse> legacyCurrentLoans(String userEmail) {
+		try {
+			List<ShelfCurrentLoansResponse> responses = new ArrayList<>();
+			List<Checkout> checkoutList = checkoutRepository.findBooksByUserEmail(userEmail);
+			List<Long> bookIdList = new ArrayList<>();
+			for (Checkout checkout : checkoutList) {
+				bookIdList.add(checkout.getBookId());
+			}
+			List<Book> books = bookRepository.findBooksByBookIds(bookIdList);
+			SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+			for (Book book : books) {
+				Optional<Checkout> checkout = checkoutList.stream()
+						.filter(x -> x.getBookId().equals(book.getId()))
+						.findFirst();
+				if (checkout.isPresent()) {
+					Date d1 = sdf.parse(checkout.get().getReturnDate().toString());
+					Date d2 = sdf.parse(LocalDate.now().toString());
+					long days = TimeUnit.DAYS.convert(d1.getTime() - d2.getTime(), TimeUnit.MILLISECONDS);
+					responses.add(new ShelfCurrentLoansResponse(book, (int) days));
+				}
+			}
+			return responses;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
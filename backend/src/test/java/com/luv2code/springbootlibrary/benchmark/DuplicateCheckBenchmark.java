@@ -0,0 +1,272 @@
+package com.luv2code.springbootlibrary.benchmark;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.dao.ReviewRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.requestmodels.ReviewRequest;
+import com.luv2code.springbootlibrary.service.BookService;
+import com.luv2code.springbootlibrary.service.DuplicateEntryException;
+import com.luv2code.springbootlibrary.service.HoldService;
+import com.luv2code.springbootlibrary.service.RatingAggregateService;
+import com.luv2code.springbootlibrary.service.ReviewService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+	Posting a review and checking out a book used to SELECT "does the user have one already?" before the INSERT. Now the unique keys of migration V13 answer that (see DuplicateEntryException).
+
+	- statements per write: counts the SQL statements of one postReview / checkoutBook, against the same call with the old SELECT in front of it, and times both.
+	- double submissions: many threads send the same review / checkout of the same user at the same moment. Exactly one may get through, whatever the timing.
+
+	Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import({BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class,
+		ReviewService.class, RatingAggregateService.class})
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DuplicateCheckBenchmark {
+
+	private static final int WRITES = 2000;
+
+	private static final int THREADS = 16;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private ReviewService reviewService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private ReviewRepository reviewRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM review");
+		jdbcTemplate.update("DELETE FROM book_rating_histogram");
+		checkoutRepository.deleteAll();
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void reviewsWithoutTheSelectFirst() throws Exception {
+		Long bookId = saveBook(1).getId();
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		statistics.clear();
+		long started = System.nanoTime();
+		for (int i = 0; i < WRITES; i++) {
+			String userEmail = "legacy" + i + "@example.com";
+			transaction.execute(status -> {
+				legacyPostReview(userEmail, review(bookId));
+				return null;
+			});
+		}
+		double legacyMicros = (System.nanoTime() - started) / 1_000.0 / WRITES;
+		double legacyStatements = statistics.getPrepareStatementCount() / (double) WRITES;
+
+		statistics.clear();
+		started = System.nanoTime();
+		for (int i = 0; i < WRITES; i++) {
+			reviewService.postReview("reader" + i + "@example.com", review(bookId));
+		}
+		double micros = (System.nanoTime() - started) / 1_000.0 / WRITES;
+		double statements = statistics.getPrepareStatementCount() / (double) WRITES;
+
+		assertEquals(legacyStatements - 1, statements);
+		System.out.printf("postReview:  SELECT then INSERT %.1f statements, %7.1f us/review | INSERT only %.1f statements, %7.1f us/review%n",
+				legacyStatements, legacyMicros, statements, micros);
+	}
+
+	@Test
+	void checkoutsWithoutTheSelectFirst() throws Exception {
+		Long bookId = saveBook(2 * WRITES).getId();
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		statistics.clear();
+		long started = System.nanoTime();
+		for (int i = 0; i < WRITES; i++) {
+			String userEmail = "legacy" + i + "@example.com";
+			transaction.execute(status -> {
+				legacyCheckoutBook(userEmail, bookId);
+				return null;
+			});
+		}
+		double legacyMicros = (System.nanoTime() - started) / 1_000.0 / WRITES;
+		double legacyStatements = statistics.getPrepareStatementCount() / (double) WRITES;
+
+		statistics.clear();
+		started = System.nanoTime();
+		for (int i = 0; i < WRITES; i++) {
+			bookService.checkoutBook("reader" + i + "@example.com", bookId);
+		}
+		double micros = (System.nanoTime() - started) / 1_000.0 / WRITES;
+		double statements = statistics.getPrepareStatementCount() / (double) WRITES;
+
+		assertEquals(legacyStatements - 1, statements);
+		System.out.printf("checkoutBook: SELECT then INSERT %.1f statements, %7.1f us/checkout | INSERT only %.1f statements, %7.1f us/checkout%n",
+				legacyStatements, legacyMicros, statements, micros);
+	}
+
+	@Test
+	void aReviewSentManyTimesAtOnceIsSavedOnce() throws Exception {
+		Long bookId = saveBook(1).getId();
+
+		List<Exception> failures = sameRequestAtOnce(() -> {
+			reviewService.postReview("double.click@example.com", review(bookId));
+			return null;
+		});
+
+		assertEquals(THREADS - 1, failures.size());
+		assertEquals(1, countRows("SELECT COUNT(*) FROM review WHERE book_id = ?", bookId));
+		assertEquals(1, countRows("SELECT rating_count FROM book WHERE id = ?", bookId));
+		// MySQL waits for the first INSERT to commit and then reports the duplicate. H2 may instead refuse an INSERT that collides with one not committed yet ("concurrent update"), which is just as safe.
+		System.out.printf("postReview x %d at once: 1 saved, %d answered 409, %d other failures%n",
+				THREADS, conflicts(failures), failures.size() - conflicts(failures));
+	}
+
+	@Test
+	void aCheckoutSentManyTimesAtOnceLendsOneCopy() throws Exception {
+		Long bookId = saveBook(THREADS).getId();
+
+		List<Exception> failures = sameRequestAtOnce(() -> bookService.checkoutBook("double.click@example.com", bookId));
+
+		// The copy is taken first (a locked UPDATE of the book), so the requests line up behind each other and every one after the first runs into the unique key
+		assertEquals(THREADS - 1, failures.size());
+		assertEquals(THREADS - 1, conflicts(failures));
+		assertEquals(1, countRows("SELECT COUNT(*) FROM checkout WHERE book_id = ?", bookId));
+		// ...and the copies the failed requests took went back on the shelf with their rollback
+		assertEquals(THREADS - 1, countRows("SELECT copies_available FROM book WHERE id = ?", bookId));
+		System.out.printf("checkoutBook x %d at once: 1 checked out, %d answered 409%n", THREADS, conflicts(failures));
+	}
+
+	// Runs the same call on THREADS threads released at the same moment, and returns what the failed calls threw
+	private List<Exception> sameRequestAtOnce(Callable<?> request) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		List<Future<Exception>> results = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			results.add(pool.submit(() -> {
+				start.await();
+				try {
+					request.call();
+					return null;
+				} catch (Exception e) {
+					return e;
+				}
+			}));
+		}
+		start.countDown();
+
+		List<Exception> failures = new ArrayList<>();
+		for (Future<Exception> result : results) {
+			Exception failure = result.get();
+			if (failure != null) {
+				failures.add(failure);
+			}
+		}
+		pool.shutdown();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+		return failures;
+	}
+
+	private static long conflicts(List<Exception> failures) {
+		return failures.stream().filter(e -> e instanceof DuplicateEntryException).count();
+	}
+
+	private long countRows(String sql, Long bookId) {
+		return jdbcTemplate.queryForObject(sql, Long.class, bookId);
+	}
+
+	// ReviewService.postReview as it was before migration V13, kept here only to compare against
+	private void legacyPostReview(String userEmail, ReviewRequest reviewRequest) {
+		if (reviewRepository.findByUserEmailAndBookId(userEmail, reviewRequest.getBookId()) != null) {
+			throw new IllegalStateException("Review already created");
+		}
+		try {
+			reviewService.postReview(userEmail, reviewRequest);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// BookService.checkoutBook as it was before migration V13: the same, with the SELECT in front
+	private void legacyCheckoutBook(String userEmail, Long bookId) {
+		if (checkoutRepository.findByUserEmailAndBookId(userEmail, bookId) != null) {
+			throw new IllegalStateException("Book doesn't exist or already checked out by user");
+		}
+		try {
+			bookService.checkoutBook(userEmail, bookId);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static ReviewRequest review(Long bookId) {
+		ReviewRequest request = new ReviewRequest();
+		request.setBookId(bookId);
+		request.setRating(4.5);
+		request.setReviewDescription(Optional.empty());
+		return request;
+	}
+
+	private Book saveBook(int copies) {
+		Book book = new Book();
+		book.setTitle("Duplicate Check");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(copies);
+		book.setCopiesAvailable(copies);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
@@ -0,0 +1,122 @@
+package com.luv2code.springbootlibrary.benchmark;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+	What the "l2cache" profile buys on the read path and costs on the write path.
+
+	Reads: findById, a category page and findBooksByBookIds, each timed with the cache emptied before every call (what every call costs without the second-level cache) and with the cache warm.
+	Writes: the same reads, but with a change to one book between two reads:
+		- an entity save (copiesAvailable changed and saved with its version) only replaces that book in the "book" region, but every cached query about books is thrown away,
+		- an UPDATE query (addRating) throws away the whole "book" region as well.
+
+	Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@ActiveProfiles({"test", "l2cache"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheBenchmark {
+
+	private static final int BOOKS = 2_000;
+
+	private static final int ITERATIONS = 2_000;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM book");
+		entityManagerFactory.getCache().evictAll();
+	}
+
+	@Test
+	void readPathAndWritePathInvalidation() {
+		insertBooks();
+		List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM book ORDER BY id", Long.class);
+		List<Long> loans = new ArrayList<>(ids.subList(0, 10));
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+		report("findById", ids, id -> bookRepository.findById(id));
+		report("category page", ids, id -> bookRepository.findByCategory("C" + id % 10, PageRequest.of(0, 20)));
+		report("findBooksByBookIds", ids, id -> bookRepository.findBooksByBookIds(loans));
+
+		Long hot = ids.get(0);
+		double afterSave = microsPerCall(ids, id -> {
+			transaction.executeWithoutResult(status -> {
+				Book book = bookRepository.findById(hot).get();
+				book.setCopiesAvailable(book.getCopiesAvailable() == 0 ? 1 : 0);
+			});
+			bookRepository.findByCategory("C" + id % 10, PageRequest.of(0, 20));
+			bookRepository.findById(id);
+		});
+		double afterUpdateQuery = microsPerCall(ids, id -> {
+			transaction.executeWithoutResult(status -> bookRepository.addRating(hot, 4));
+			bookRepository.findByCategory("C" + id % 10, PageRequest.of(0, 20));
+			bookRepository.findById(id);
+		});
+		System.out.printf("write + category page + findById: entity save %9.1f us/round, UPDATE query %9.1f us/round%n",
+				afterSave, afterUpdateQuery);
+	}
+
+	private void report(String read, List<Long> ids, Consumer<Long> call) {
+		double cold = microsPerCall(ids, id -> {
+			entityManagerFactory.getCache().evictAll();
+			call.accept(id);
+		});
+		double evictOnly = microsPerCall(ids, id -> entityManagerFactory.getCache().evictAll());
+		double warm = microsPerCall(ids, call);
+		double uncached = cold - evictOnly;
+		System.out.printf("%-20s without cache %9.1f us/call, warm cache %9.1f us/call (%.1fx)%n",
+				read, uncached, warm, uncached / warm);
+	}
+
+	// Cycles through 100 of the books, so the warm runs read the same books again and again, like the popular books of the catalog
+	private static double microsPerCall(List<Long> ids, Consumer<Long> call) {
+		for (int i = 0; i < ITERATIONS; i++) {
+			call.accept(ids.get(i % 100));
+		}
+		long started = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			call.accept(ids.get(i % 100));
+		}
+		return (System.nanoTime() - started) / 1_000.0 / ITERATIONS;
+	}
+
+	private void insertBooks() {
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < BOOKS; i++) {
+			rows.add(new Object[]{"Book " + i, "Author " + i, "Description of book " + i, "C" + i % 10});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO book (title, author, description, copies, copies_available, category, version) " +
+				"VALUES (?, ?, ?, 1, 1, ?, 0)", rows);
+	}
+}
@@ -0,0 +1,82 @@
+package com.luv2code.springbootlibrary.benchmark;
+
+import com.luv2code.springbootlibrary.service.PrefixSuggester;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/*
+	Builds the typeahead trie for catalogs of 10k, 100k and 1M books and prints how long a suggestion takes and how much heap the trie uses,
+	both as PrefixSuggester.estimatedBytes() and as measured by the JVM (used heap after a GC, with and without the trie).
+
+	Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class TypeaheadBenchmark {
+
+	private static final String[] WORDS = {
+			"harry", "potter", "stone", "secret", "garden", "night", "river", "silent", "empire", "winter",
+			"shadow", "king", "house", "ocean", "dragon", "city", "glass", "forest", "memory", "storm",
+			"little", "women", "war", "peace", "island", "light", "golden", "road", "moon", "station"
+	};
+
+	private static final String[] CATEGORIES = {"FE", "BE", "Data", "DevOps", "Fiction", "History", "Science", "Poetry"};
+
+	private static final String[] PREFIXES = {"h", "ha", "harry p", "silent riv", "d", "do", "fict", "zz"};
+
+	@ParameterizedTest
+	@ValueSource(ints = {10_000, 100_000, 1_000_000})
+	void suggestionLatencyAndFootprint(int books) {
+		long heapBefore = usedHeap();
+
+		Random random = new Random(books);
+		PrefixSuggester.Builder builder = PrefixSuggester.builder();
+		for (int i = 0; i < books; i++) {
+			StringBuilder title = new StringBuilder();
+			int words = 2 + random.nextInt(3);
+			for (int w = 0; w < words; w++) {
+				title.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			builder.add(title.toString(), PrefixSuggester.Kind.TITLE);
+			builder.add("Author " + Integer.toString(random.nextInt(books / 4 + 1), 36), PrefixSuggester.Kind.AUTHOR);
+			builder.add(CATEGORIES[random.nextInt(CATEGORIES.length)], PrefixSuggester.Kind.CATEGORY);
+		}
+
+		long started = System.nanoTime();
+		PrefixSuggester suggester = builder.build();
+		long buildMillis = (System.nanoTime() - started) / 1_000_000;
+		builder = null;
+
+		long measured = usedHeap() - heapBefore;
+		System.out.printf("%,9d books: %,d suggestions, %,d nodes, built in %,d ms, estimated %,d KB, measured %,d KB%n",
+				books, suggester.suggestionCount(), suggester.nodeCount(), buildMillis,
+				suggester.estimatedBytes() / 1024, measured / 1024);
+
+		assertFalse(suggester.suggest("harry p", 8).isEmpty());
+
+		int iterations = 200_000;
+		for (String prefix : PREFIXES) {
+			for (int i = 0; i < iterations; i++) {
+				suggester.suggest(prefix, 8);
+			}
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				suggester.suggest(prefix, 8);
+			}
+			System.out.printf("%,9d books, \"%s\": %.2f us/suggestion%n",
+					books, prefix, (System.nanoTime() - start) / 1_000.0 / iterations);
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,116 @@
+package com.luv2code.springbootlibrary.benchmark;
+
+import com.luv2code.springbootlibrary.config.UserClaimsArgumentResolver;
+import com.luv2code.springbootlibrary.utils.UserClaims;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+	How much CPU a request spends getting the user's email and userType out of its token:
+		legacy:   ExtractJWT, called twice per request (sub + userType) like AdminController and MessagesController.putMessage did. Each call base64-decodes the payload and splits it again.
+		resolver: UserClaimsArgumentResolver, which reads the claims from the Jwt Spring Security already parsed.
+
+	Spring Security's own validation runs in both cases, so it isn't part of the comparison.
+
+	Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class UserClaimsBenchmark {
+
+	private static final int ITERATIONS = 200_000;
+
+	@AfterEach
+	void clearSecurityContext() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void resolverVersusStringSplitting() {
+		// A payload shaped like an Okta access token
+		String payload = "{\"ver\":1,\"jti\":\"AT.mJ3kq0gQ7xVd-3ZpDf1zR4g\",\"iss\":\"https://dev-123456.okta.com/oauth2/default\","
+				+ "\"aud\":\"api://default\",\"iat\":1700000000,\"exp\":1700003600,\"cid\":\"0oa1b2c3d4e5f6g7h8i9\","
+				+ "\"uid\":\"00u1a2b3c4d5e6f7g8h9\",\"scp\":[\"openid\",\"profile\",\"email\"],\"sub\":\"reader@example.com\",\"userType\":\"admin\"}";
+		String token = "Bearer eyJhbGciOiJSUzI1NiJ9."
+				+ Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+				+ ".c2lnbmF0dXJl";
+
+		Jwt jwt = Jwt.withTokenValue(token)
+				.header("alg", "RS256")
+				.subject("reader@example.com")
+				.claim("userType", "admin")
+				.issuedAt(Instant.ofEpochSecond(1700000000))
+				.build();
+		SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+		UserClaimsArgumentResolver resolver = new UserClaimsArgumentResolver();
+
+		assertEquals("reader@example.com", legacyPayloadJWTExtraction(token, "\"sub\""));
+		assertEquals("admin", legacyPayloadJWTExtraction(token, "\"userType\""));
+
+		double legacy = nanosPerRequest(() -> legacyPayloadJWTExtraction(token, "\"sub\"") + legacyPayloadJWTExtraction(token, "\"userType\""));
+		double resolved = nanosPerRequest(() -> {
+			UserClaims claims = (UserClaims) resolver.resolveArgument(null, null, new ServletWebRequest(new MockHttpServletRequest()), null);
+			return claims.getEmail() + claims.isAdmin();
+		});
+
+		System.out.printf("claims per request: ExtractJWT x2 %8.0f ns, UserClaimsArgumentResolver %8.0f ns (%.1fx)%n",
+				legacy, resolved, legacy / resolved);
+	}
+
+	private static double nanosPerRequest(Supplier<String> request) {
+		int sink = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			sink += request.get().length();
+		}
+		long started = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			sink += request.get().length();
+		}
+		double nanos = (double) (System.nanoTime() - started) / ITERATIONS;
+		// Use the results, so the JIT can't throw the work away
+		if (sink == 42) {
+			System.out.println();
+		}
+		return nanos;
+	}
+
+	// ExtractJWT.payloadJWTExtraction as it was before UserClaims replaced it, kept here only to compare against.
+	private static String legacyPayloadJWTExtraction(String token, String extraction) {
+		token.replace("Bearer ", "");
+		String[] chunks = token.split("\\.");
+		Base64.Decoder decoder = Base64.getUrlDecoder();
+		String payload = new String(decoder.decode(chunks[1]));
+		String[] entries = payload.split(",");
+		Map<String, String> map = new HashMap<String, String>();
+		for (String entry : entries) {
+			String[] keyValue = entry.split(":");
+			if (keyValue[0].equals(extraction)) {
+				int remove = 1;
+				if (keyValue[1].endsWith("}")) {
+					remove = 2;
+				}
+				keyValue[1] = keyValue[1].substring(0, keyValue[1].length() - remove);
+				keyValue[1] = keyValue[1].substring(1);
+				map.put(keyValue[0], keyValue[1]);
+			}
+		}
+		if (map.containsKey(extraction)) {
+			return map.get(extraction);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,22 @@
+package com.luv2code.springbootlibrary.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BookPageConfigurationTest {
+
+	@Test
+	void leavesConnectionsForEverythingElse() {
+		ThreadPoolTaskExecutor executor = new BookPageConfiguration().bookPageExecutor(4, 500, 10);
+
+		assertEquals(4, executor.getMaxPoolSize());
+	}
+
+	@Test
+	void refusesAsManyThreadsAsConnections() {
+		assertThrows(IllegalStateException.class, () -> new BookPageConfiguration().bookPageExecutor(10, 500, 10));
+	}
+}
@@ -0,0 +1,14 @@
+package com.luv2code.springbootlibrary.config;
+
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+// The H2 version of LibraryMySQLDialect, used by the tests. Every function registered there must be registered here too.
+public class LibraryH2Dialect extends H2Dialect {
+
+    public LibraryH2Dialect() {
+        super();
+        registerFunction("days_until", new SQLFunctionTemplate(StandardBasicTypes.INTEGER, "datediff('DAY', current_date, ?1)"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.luv2code.springbootlibrary.config;
+
+import com.luv2code.springbootlibrary.utils.UserClaims;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserClaimsArgumentResolverTest {
+
+	private final UserClaimsArgumentResolver resolver = new UserClaimsArgumentResolver();
+
+	@AfterEach
+	void clearSecurityContext() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void readsTheClaimsOfTheValidatedToken() {
+		// The old string splitting parser got confused by claims with commas and colons in them
+		authenticate(Jwt.withTokenValue("token")
+				.header("alg", "RS256")
+				.subject("reader@example.com")
+				.claim("name", "Doe, Jane: librarian")
+				.claim("userType", "admin")
+				.issuedAt(Instant.now())
+				.build());
+		ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest());
+
+		UserClaims claims = (UserClaims) resolver.resolveArgument(null, null, request, null);
+
+		assertEquals("reader@example.com", claims.getEmail());
+		assertTrue(claims.isAdmin());
+		// Built once per request
+		assertSame(claims, resolver.resolveArgument(null, null, request, null));
+	}
+
+	@Test
+	void usersWithoutUserTypeAreNotAdmins() {
+		authenticate(Jwt.withTokenValue("token").header("alg", "RS256").subject("reader@example.com").build());
+
+		UserClaims claims = (UserClaims) resolver.resolveArgument(null, null, new ServletWebRequest(new MockHttpServletRequest()), null);
+
+		assertFalse(claims.isAdmin());
+	}
+
+	@Test
+	void isNullWithoutAToken() {
+		assertNull(resolver.resolveArgument(null, null, new ServletWebRequest(new MockHttpServletRequest()), null));
+	}
+
+	private static void authenticate(Jwt jwt) {
+		SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+	}
+}
@@ -0,0 +1,68 @@
+package com.luv2code.springbootlibrary.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+	book.img and history.img only hold the cover's hash. Every way a book or a history row is sent out (the book itself, the lists
+	through BookSummary, the history through HistoryWithBook) has to turn it into the URL of the image, with the base URL of today.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+		"library.images.base-url=https://covers.example.com/api/images/",
+		// A database of its own: the @DataJpaTest tests migrate the shared one without the Java migrations that are Spring beans (V5, V7), which the full application would refuse
+		"spring.datasource.url=jdbc:h2:mem:coverurltest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+		// Nothing here logs in, and the client registration would otherwise go looking for the real Okta issuer at startup
+		"spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration"
+})
+class CoverUrlTest {
+
+	private static final String HASH = "3fa8c2".repeat(10) + "0e91";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM history");
+		jdbcTemplate.update("DELETE FROM book");
+	}
+
+	@Test
+	void theStoredHashIsSentAsTheUrlOfTheImage() throws Exception {
+		jdbcTemplate.update("INSERT INTO book (title, author, description, copies, copies_available, category, img) VALUES ('Dune', 'Herbert', 'Sand', 1, 1, 'FE', ?)", HASH);
+		jdbcTemplate.update("INSERT INTO book (title, author, description, copies, copies_available, category, img) VALUES ('Emma', 'Austen', 'Match', 1, 1, 'FE', 'http://example.com/emma.png')");
+		Long bookId = jdbcTemplate.queryForObject("SELECT id FROM book WHERE title = 'Dune'", Long.class);
+		jdbcTemplate.update("INSERT INTO history (user_email, title, author, book_id) VALUES ('reader@example.com', 'Dune', 'Herbert', ?)", bookId);
+		String url = "https://covers.example.com/api/images/" + HASH;
+
+		mockMvc.perform(get("/api/books/" + bookId))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.img").value(url));
+
+		mockMvc.perform(get("/api/books?sort=title"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$._embedded.books[0].img").value(url))
+				.andExpect(jsonPath("$._embedded.books[1].img").value("http://example.com/emma.png"));
+
+		mockMvc.perform(get("/api/histories/search/findBooksByUserEmail?userEmail=reader@example.com"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$._embedded.histories[0].img").value(url));
+	}
+}
@@ -0,0 +1,96 @@
+package com.luv2code.springbootlibrary.controller;
+
+import com.luv2code.springbootlibrary.config.ImageStoreProperties;
+import com.luv2code.springbootlibrary.service.ImageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ImageControllerTest {
+
+	// The 8 byte PNG signature followed by some filler, enough for the content type check
+	private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3, 4, 5, 6, 7, 8};
+
+	@TempDir
+	Path directory;
+
+	private ImageStore imageStore;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		ImageStoreProperties properties = new ImageStoreProperties();
+		properties.setDirectory(directory.toString());
+		properties.setBaseUrl("http://localhost:8080/api/images/");
+		imageStore = new ImageStore(properties);
+		mockMvc = MockMvcBuilders.standaloneSetup(new ImageController(imageStore)).build();
+	}
+
+	@Test
+	void storesDataUrlsOnceAndKeepsOnlyTheirHash() {
+		String dataUrl = "data:image/png;base64," + Base64.getEncoder().encodeToString(PNG);
+
+		String first = imageStore.storeDataUrl(dataUrl);
+		String second = imageStore.storeDataUrl(dataUrl);
+
+		assertEquals(first, second);
+		assertTrue(first.matches("[0-9a-f]{64}"));
+		assertEquals("http://example.com/cover.png", imageStore.storeDataUrl("http://example.com/cover.png"));
+	}
+
+	@Test
+	void sendsAHashAsTheUrlOfItsImage() {
+		String hash = imageStore.store(PNG);
+
+		assertEquals("http://localhost:8080/api/images/" + hash, imageStore.urlOf(hash));
+		assertEquals("http://example.com/cover.png", imageStore.urlOf("http://example.com/cover.png"));
+		assertEquals(null, imageStore.urlOf(null));
+	}
+
+	@Test
+	void servesTheImageWithAStrongEtag() throws Exception {
+		String hash = imageStore.store(PNG);
+
+		mockMvc.perform(get("/api/images/" + hash))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", "\"" + hash + "\""))
+				.andExpect(header().string("Content-Type", "image/png"))
+				.andExpect(content().bytes(PNG));
+
+		mockMvc.perform(get("/api/images/" + hash).header("If-None-Match", "\"" + hash + "\""))
+				.andExpect(status().isNotModified());
+	}
+
+	@Test
+	void servesByteRanges() throws Exception {
+		String hash = imageStore.store(PNG);
+
+		mockMvc.perform(get("/api/images/" + hash).header("Range", "bytes=4-7"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string("Content-Range", "bytes 4-7/" + PNG.length))
+				.andExpect(content().bytes(Arrays.copyOfRange(PNG, 4, 8)));
+
+		mockMvc.perform(get("/api/images/" + hash).header("Range", "bytes=100-"))
+				.andExpect(status().isRequestedRangeNotSatisfiable());
+	}
+
+	@Test
+	void unknownOrMalformedHashesAreNotFound() throws Exception {
+		mockMvc.perform(get("/api/images/" + "0".repeat(64))).andExpect(status().isNotFound());
+		mockMvc.perform(get("/api/images/..%2F..%2Fetc%2Fpasswd")).andExpect(status().isNotFound());
+	}
+}
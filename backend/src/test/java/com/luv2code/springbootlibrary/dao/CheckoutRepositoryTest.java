@@ -0,0 +1,36 @@
+package com.luv2code.springbootlibrary.dao;
+
+import com.luv2code.springbootlibrary.entity.Checkout;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class CheckoutRepositoryTest {
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Test
+	void findsLoansByReturnDateRange() {
+		LocalDate today = LocalDate.now();
+		checkoutRepository.save(new Checkout("a@example.com", today.minusDays(10), today.minusDays(3), 1L));
+		checkoutRepository.save(new Checkout("b@example.com", today.minusDays(6), today.plusDays(1), 2L));
+		checkoutRepository.save(new Checkout("c@example.com", today, today.plusDays(7), 3L));
+
+		List<Checkout> dueTomorrow = checkoutRepository.findByReturnDateBetween(today.plusDays(1), today.plusDays(1));
+		List<Checkout> overdue = checkoutRepository.findByReturnDateBefore(today);
+
+		assertEquals(1, dueTomorrow.size());
+		assertEquals("b@example.com", dueTomorrow.get(0).getUserEmail());
+		assertEquals(1, overdue.size());
+		assertEquals("a@example.com", overdue.get(0).getUserEmail());
+	}
+}
@@ -0,0 +1,257 @@
+package com.luv2code.springbootlibrary.dao;
+
+import com.luv2code.springbootlibrary.entity.Hold;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.Date;
+import java.sql.ParameterMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+	Runs every query method of the repositories once, records the SQL Hibernate sends, and asks the database for its plan (EXPLAIN).
+	The test fails if a plan reads a whole table, so a new query, or a changed one, comes with its index (see the migrations in db/migration).
+
+	The database is the H2 of the tests in MySQL mode. A table read without an index condition shows up in its plan as
+	a comment naming only "public.book.tableScan", or only an index like "public.primary_key_1" (the whole index, in order), with no ": condition" after it.
+
+	A new method in one of the repositories has to be added to queries() below, otherwise allQueryMethodsAreChecked fails.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+		"com.luv2code.springbootlibrary.dao.QueryPlanTest$RecordingStatementInspector")
+class QueryPlanTest {
+
+	private static final List<Class<?>> REPOSITORIES = Arrays.asList(BookChangeRepository.class, BookRepository.class,
+			CheckoutRepository.class, HistoryRepository.class, HoldRepository.class, MessageRepository.class,
+			RatingHistogramRepository.class, ReviewRepository.class);
+
+	// The queries that read every row on purpose, and why
+	private static final Map<String, String> WHOLE_TABLE_ON_PURPOSE = Map.of(
+			"BookRepository.findByTitleContaining", "LIKE '%title%' can't use an index (BookSearchService answers searches from memory)",
+			"BookRepository.findAllIds", "the nightly RatingAggregateRepairJob goes through every book",
+			"BookRepository.countByCategory", "the counts of every category, to check CategoryFacetService",
+			"HistoryRepository.findAll", "/api/histories lists every user's history");
+
+	// A table read without index condition: the comment after the table names the table scan, or an index with no ": condition"
+	private static final Pattern WHOLE_TABLE_READ = Pattern.compile("/\\*\\s*\"?public\"?\\.([^:*]*\\*/|[^*]*tableScan)", Pattern.CASE_INSENSITIVE);
+
+	// Plain INSERT ... VALUES statements don't read anything
+	private static final Pattern INSERT_VALUES = Pattern.compile("^\\s*insert\\b.*\\bvalues\\b", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private static final String EMAIL = "reader@example.com";
+
+	// Page 2, so the Page queries also run their COUNT query
+	private static final Pageable SECOND_PAGE = PageRequest.of(1, 5);
+
+	@Autowired
+	private BookChangeRepository bookChangeRepository;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private HistoryRepository historyRepository;
+
+	@Autowired
+	private HoldRepository holdRepository;
+
+	@Autowired
+	private MessageRepository messageRepository;
+
+	@Autowired
+	private RatingHistogramRepository ratingHistogramRepository;
+
+	@Autowired
+	private ReviewRepository reviewRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void everyQueryReadsThroughAnIndex() {
+		List<String> failures = new ArrayList<>();
+
+		for (Map.Entry<String, Runnable> query : queries().entrySet()) {
+			RecordingStatementInspector.STATEMENTS.clear();
+			query.getValue().run();
+			List<String> statements = new ArrayList<>(RecordingStatementInspector.STATEMENTS);
+			assertFalse(statements.isEmpty(), query.getKey() + " sent no SQL");
+
+			if (WHOLE_TABLE_ON_PURPOSE.containsKey(query.getKey())) {
+				continue;
+			}
+			for (String sql : statements) {
+				if (INSERT_VALUES.matcher(sql).find()) {
+					continue;
+				}
+				String plan = explain(sql);
+				if (WHOLE_TABLE_READ.matcher(plan).find()) {
+					failures.add(query.getKey() + " reads a whole table:\n    " + plan);
+				}
+			}
+		}
+
+		assertTrue(failures.isEmpty(), String.join("\n\n", failures));
+	}
+
+	@Test
+	void allQueryMethodsAreChecked() {
+		Set<String> declared = new TreeSet<>();
+		for (Class<?> repository : REPOSITORIES) {
+			for (Method method : repository.getDeclaredMethods()) {
+				if (!method.isDefault() && !method.isSynthetic() && !Modifier.isStatic(method.getModifiers())) {
+					declared.add(repository.getSimpleName() + "." + method.getName());
+				}
+			}
+		}
+
+		assertEquals(declared, new TreeSet<>(queries().keySet()));
+		assertTrue(new HashSet<>(queries().keySet()).containsAll(WHOLE_TABLE_ON_PURPOSE.keySet()));
+	}
+
+	// Every query method, called with any arguments: only the SQL matters here, not what it finds
+	private Map<String, Runnable> queries() {
+		Map<String, Runnable> queries = new LinkedHashMap<>();
+		LocalDate today = LocalDate.now();
+		List<Long> bookIds = Arrays.asList(1L, 2L);
+
+		queries.put("BookChangeRepository.findAfter", () -> bookChangeRepository.findAfter(0, PageRequest.of(0, 5)));
+		queries.put("BookChangeRepository.lockLog", () -> bookChangeRepository.lockLog());
+
+		queries.put("BookRepository.findByTitleContaining", () -> bookRepository.findByTitleContaining("java", SECOND_PAGE));
+		queries.put("BookRepository.findByCategory", () -> bookRepository.findByCategory("FE", SECOND_PAGE));
+		queries.put("BookRepository.findById", () -> bookRepository.findById(1L, SECOND_PAGE));
+		queries.put("BookRepository.findBooksByBookIds", () -> bookRepository.findBooksByBookIds(bookIds));
+		queries.put("BookRepository.decrementCopiesAvailable", () -> bookRepository.decrementCopiesAvailable(1L));
+		queries.put("BookRepository.incrementCopiesAvailable", () -> bookRepository.incrementCopiesAvailable(1L));
+		queries.put("BookRepository.findByIdForUpdate", () -> bookRepository.findByIdForUpdate(1L));
+		queries.put("BookRepository.addRating", () -> bookRepository.addRating(1L, 4.5));
+		queries.put("BookRepository.recomputeRating", () -> bookRepository.recomputeRating(1L));
+		queries.put("BookRepository.findAllIds", () -> bookRepository.findAllIds());
+		queries.put("BookRepository.findNamesAfter", () -> bookRepository.findNamesAfter(0L, PageRequest.of(0, 5)));
+		queries.put("BookRepository.countByCategory", () -> bookRepository.countByCategory());
+		queries.put("BookRepository.findPageAfter", () -> bookRepository.findPageAfter(0L, PageRequest.of(0, 5)));
+		queries.put("BookRepository.findVersionById", () -> bookRepository.findVersionById(1L));
+
+		queries.put("CheckoutRepository.findByUserEmailAndBookId", () -> checkoutRepository.findByUserEmailAndBookId(EMAIL, 1L));
+		queries.put("CheckoutRepository.findByUserEmailAndBookIdIn", () -> checkoutRepository.findByUserEmailAndBookIdIn(EMAIL, bookIds));
+		queries.put("CheckoutRepository.findBooksByUserEmail", () -> checkoutRepository.findBooksByUserEmail(EMAIL));
+		queries.put("CheckoutRepository.findCurrentLoansByUserEmail", () -> checkoutRepository.findCurrentLoansByUserEmail(EMAIL));
+		queries.put("CheckoutRepository.findByReturnDateBetween", () -> checkoutRepository.findByReturnDateBetween(today, today.plusDays(7)));
+		queries.put("CheckoutRepository.findByReturnDateBefore", () -> checkoutRepository.findByReturnDateBefore(today));
+		queries.put("CheckoutRepository.deleteAllByBookId", () -> checkoutRepository.deleteAllByBookId(1L));
+
+		queries.put("HistoryRepository.detachBook", () -> historyRepository.detachBook(1L, "Description", null));
+		queries.put("HistoryRepository.findAll", () -> historyRepository.findAll(SECOND_PAGE));
+		queries.put("HistoryRepository.findBooksByUserEmail", () -> historyRepository.findBooksByUserEmail(EMAIL, SECOND_PAGE));
+		queries.put("HistoryRepository.findByReturnedDateBetween", () -> historyRepository.findByReturnedDateBetween(today.minusDays(7), today, SECOND_PAGE));
+		queries.put("HistoryRepository.findFirstPageByUserEmail", () -> historyRepository.findFirstPageByUserEmail(EMAIL, PageRequest.of(0, 5)));
+		queries.put("HistoryRepository.findPageByUserEmailAfter", () -> historyRepository.findPageByUserEmailAfter(EMAIL, today, 1L, PageRequest.of(0, 5)));
+
+		queries.put("HoldRepository.findByUserEmailAndBookId", () -> holdRepository.findByUserEmailAndBookId(EMAIL, 1L));
+		queries.put("HoldRepository.findByUserEmailOrderByIdAsc", () -> holdRepository.findByUserEmailOrderByIdAsc(EMAIL));
+		queries.put("HoldRepository.findByUserEmailAndBookIdIn", () -> holdRepository.findByUserEmailAndBookIdIn(EMAIL, bookIds));
+		queries.put("HoldRepository.findFirstByBookIdAndStatusOrderByIdAsc", () -> holdRepository.findFirstByBookIdAndStatusOrderByIdAsc(1L, Hold.Status.WAITING));
+		queries.put("HoldRepository.countByBookIdAndStatusAndIdLessThan", () -> holdRepository.countByBookIdAndStatusAndIdLessThan(1L, Hold.Status.WAITING, 10L));
+		queries.put("HoldRepository.findByStatusAndReadyUntilBefore", () -> holdRepository.findByStatusAndReadyUntilBefore(Hold.Status.READY, Instant.now()));
+		queries.put("HoldRepository.findBookIdsWithCopiesAvailable", () -> holdRepository.findBookIdsWithCopiesAvailable(Hold.Status.WAITING));
+		queries.put("HoldRepository.deleteByIdAndStatus", () -> holdRepository.deleteByIdAndStatus(1L, Hold.Status.READY));
+		queries.put("HoldRepository.deleteByUserEmailAndBookIds", () -> holdRepository.deleteByUserEmailAndBookIds(EMAIL, bookIds, Hold.Status.WAITING));
+		queries.put("HoldRepository.deleteAllByBookId", () -> holdRepository.deleteAllByBookId(1L));
+
+		queries.put("MessageRepository.findByUserEmail", () -> messageRepository.findByUserEmail(EMAIL, SECOND_PAGE));
+		queries.put("MessageRepository.findByClosed", () -> messageRepository.findByClosed(false, SECOND_PAGE));
+		queries.put("MessageRepository.findPageByUserEmailAfter", () -> messageRepository.findPageByUserEmailAfter(EMAIL, 0L, PageRequest.of(0, 5)));
+		queries.put("MessageRepository.findPageByClosedAfter", () -> messageRepository.findPageByClosedAfter(false, 0L, PageRequest.of(0, 5)));
+
+		queries.put("RatingHistogramRepository.findByBookId", () -> ratingHistogramRepository.findByBookId(1L));
+		queries.put("RatingHistogramRepository.increment", () -> ratingHistogramRepository.increment(1L, 9));
+		queries.put("RatingHistogramRepository.rebuild", () -> ratingHistogramRepository.rebuild(2L));
+		queries.put("RatingHistogramRepository.deleteAllByBookId", () -> ratingHistogramRepository.deleteAllByBookId(1L));
+
+		queries.put("ReviewRepository.findByBookId", () -> reviewRepository.findByBookId(1L, SECOND_PAGE));
+		queries.put("ReviewRepository.findByUserEmailAndBookId", () -> reviewRepository.findByUserEmailAndBookId(EMAIL, 1L));
+		queries.put("ReviewRepository.deleteAllByBookId", () -> reviewRepository.deleteAllByBookId(1L));
+		queries.put("ReviewRepository.findVersionByBookId", () -> reviewRepository.findVersionByBookId(1L));
+		return queries;
+	}
+
+	// The plan of the statement, with a made-up value of the right type for each parameter (with NULLs, H2 would plan "col = NULL" as "WHERE FALSE" and read nothing)
+	private String explain(String sql) {
+		return jdbcTemplate.query("EXPLAIN " + sql, statement -> {
+			ParameterMetaData parameters = statement.getParameterMetaData();
+			for (int i = 1; i <= parameters.getParameterCount(); i++) {
+				statement.setObject(i, sampleValue(parameters.getParameterType(i)));
+			}
+		}, resultSet -> {
+			StringBuilder plan = new StringBuilder();
+			while (resultSet.next()) {
+				plan.append(resultSet.getString(1));
+			}
+			return plan.toString();
+		});
+	}
+
+	private static Object sampleValue(int sqlType) {
+		switch (sqlType) {
+			case Types.BOOLEAN:
+			case Types.BIT:
+				return false;
+			case Types.DATE:
+				return Date.valueOf(LocalDate.now());
+			case Types.TIMESTAMP:
+			case Types.TIMESTAMP_WITH_TIMEZONE:
+				return Timestamp.from(Instant.now());
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.CLOB:
+				return "x"; // one character, so it also works as the ESCAPE of a LIKE
+			default:
+				return 1;
+		}
+	}
+
+	// Hibernate hands every SQL statement to this before sending it (see the @TestPropertySource above)
+	public static class RecordingStatementInspector implements StatementInspector {
+
+		static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			STATEMENTS.add(sql);
+			return sql;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.luv2code.springbootlibrary.migration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// The script runs on its own connection, so the rows it reads must already be committed.
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class V13AddLoanAndReviewUniqueKeysTest {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	// Flyway already ran V13 on the test database. Without its keys the tables are as they were before it, duplicates allowed.
+	@BeforeEach
+	void dropTheKeys() {
+		jdbcTemplate.update("DROP INDEX uq_checkout_user_book");
+		jdbcTemplate.update("DROP INDEX uq_review_user_book");
+	}
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM checkout");
+		jdbcTemplate.update("DELETE FROM review");
+		jdbcTemplate.update("DELETE FROM book");
+		jdbcTemplate.update("CREATE UNIQUE INDEX IF NOT EXISTS uq_checkout_user_book ON checkout (user_email, book_id)");
+		jdbcTemplate.update("CREATE UNIQUE INDEX IF NOT EXISTS uq_review_user_book ON review (user_email, book_id)");
+	}
+
+	@Test
+	void theCopiesOfRemovedDuplicateCheckoutsGoBackOnTheShelf() throws Exception {
+		// 5 copies, 4 checkout rows: the same reader 3 times (2 duplicates) and another reader once
+		Long bookId = saveBook(5, 1);
+		Long otherBookId = saveBook(2, 1);
+		for (String userEmail : new String[]{"double@example.com", "double@example.com", "double@example.com", "single@example.com"}) {
+			jdbcTemplate.update("INSERT INTO checkout (user_email, book_id) VALUES (?, ?)", userEmail, bookId);
+		}
+		jdbcTemplate.update("INSERT INTO checkout (user_email, book_id) VALUES (?, ?)", "single@example.com", otherBookId);
+		jdbcTemplate.update("INSERT INTO review (user_email, book_id, rating) VALUES (?, ?, ?)", "double@example.com", bookId, 4.0);
+		jdbcTemplate.update("INSERT INTO review (user_email, book_id, rating) VALUES (?, ?, ?)", "double@example.com", bookId, 1.0);
+
+		try (Connection connection = dataSource.getConnection()) {
+			ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V13__add_loan_and_review_unique_keys.sql"));
+		}
+
+		assertEquals(2, count("SELECT COUNT(*) FROM checkout WHERE book_id = ?", bookId));
+		assertEquals(3, count("SELECT copies_available FROM book WHERE id = ?", bookId));
+		assertEquals(1, count("SELECT copies_available FROM book WHERE id = ?", otherBookId));
+		assertEquals(1, count("SELECT COUNT(*) FROM review WHERE book_id = ?", bookId));
+		assertEquals(4, count("SELECT rating FROM review WHERE book_id = ?", bookId));
+	}
+
+	private Long saveBook(int copies, int copiesAvailable) {
+		jdbcTemplate.update("INSERT INTO book (title, author, description, copies, copies_available) VALUES ('Twice', 'Author', 'Description', ?, ?)",
+				copies, copiesAvailable);
+		return jdbcTemplate.queryForObject("SELECT MAX(id) FROM book", Long.class);
+	}
+
+	private long count(String sql, Long bookId) {
+		return jdbcTemplate.queryForObject(sql, Long.class, bookId);
+	}
+}
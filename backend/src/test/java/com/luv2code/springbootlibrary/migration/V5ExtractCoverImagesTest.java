@@ -0,0 +1,80 @@
+package com.luv2code.springbootlibrary.migration;
+
+import com.luv2code.springbootlibrary.config.ImageStoreProperties;
+import com.luv2code.springbootlibrary.service.ImageStore;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.migration.Context;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// The migration commits batch by batch on its own connection, so the rows it reads must already be committed.
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class V5ExtractCoverImagesTest {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM book");
+	}
+
+	@Test
+	void movesTheCoversAndLeavesCorruptOnesAlone() throws Exception {
+		String good = "data:image/png;base64," + Base64.getEncoder().encodeToString(new byte[]{1, 2, 3});
+		saveBook("Broken", "data:image/png,not base64");
+		saveBook("Dune", good);
+
+		ImageStoreProperties properties = new ImageStoreProperties();
+		properties.setDirectory(directory.toString());
+		try (Connection connection = dataSource.getConnection()) {
+			new V5__Extract_cover_images(new ImageStore(properties)).migrate(contextFor(connection));
+		}
+
+		List<String> covers = jdbcTemplate.queryForList("SELECT img FROM book ORDER BY id", String.class);
+		assertEquals("data:image/png,not base64", covers.get(0));
+		assertTrue(covers.get(1).matches("[0-9a-f]{64}"));
+	}
+
+	private void saveBook(String title, String img) {
+		jdbcTemplate.update("INSERT INTO book (title, author, description, copies, copies_available, img) VALUES (?, 'Author', 'Description', 1, 1, ?)", title, img);
+	}
+
+	private static Context contextFor(Connection connection) {
+		return new Context() {
+			@Override
+			public Configuration getConfiguration() {
+				return null;
+			}
+
+			@Override
+			public Connection getConnection() {
+				return connection;
+			}
+		};
+	}
+}
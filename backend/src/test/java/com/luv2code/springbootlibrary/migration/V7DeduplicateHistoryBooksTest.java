@@ -0,0 +1,110 @@
+package com.luv2code.springbootlibrary.migration;
+
+import com.luv2code.springbootlibrary.config.ImageStoreProperties;
+import com.luv2code.springbootlibrary.service.ImageStore;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.migration.Context;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// The migration commits batch by batch on its own connection, so the rows it reads must already be committed.
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class V7DeduplicateHistoryBooksTest {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM history");
+		jdbcTemplate.update("DELETE FROM book");
+	}
+
+	@Test
+	void linksHistoryToBooksAndDropsTheCopiedBlobs() throws Exception {
+		String cover = "data:image/png;base64," + Base64.getEncoder().encodeToString(new byte[]{1, 2, 3, 4});
+		jdbcTemplate.update("INSERT INTO book (title, author, description, copies, copies_available, img) VALUES ('Dune', 'Herbert', 'Sand', 1, 1, 'http://localhost:8080/api/images/x')");
+		Long bookId = jdbcTemplate.queryForObject("SELECT id FROM book", Long.class);
+
+		// Rows written before V6: each one has its own copy of the description and cover
+		for (int i = 0; i < 3; i++) {
+			jdbcTemplate.update("INSERT INTO history (user_email, title, author, description, img) VALUES ('reader@example.com', 'Dune', 'Herbert', 'Sand', ?)", cover);
+			jdbcTemplate.update("INSERT INTO history (user_email, title, author, description, img) VALUES ('reader@example.com', 'Deleted', 'Nobody', 'Gone', ?)", cover);
+		}
+
+		ImageStoreProperties properties = new ImageStoreProperties();
+		properties.setDirectory(directory.toString());
+		try (Connection connection = dataSource.getConnection()) {
+			new V7__Deduplicate_history_books(new ImageStore(properties)).migrate(contextFor(connection));
+		}
+
+		for (Map<String, Object> row : jdbcTemplate.queryForList("SELECT book_id, description, img FROM history WHERE title = 'Dune'")) {
+			assertEquals(bookId, ((Number) row.get("book_id")).longValue());
+			assertNull(row.get("description"));
+			assertNull(row.get("img"));
+		}
+
+		// The deleted book's rows keep their description, and all three now share the one stored cover
+		List<String> orphanCovers = jdbcTemplate.queryForList("SELECT DISTINCT img FROM history WHERE title = 'Deleted'", String.class);
+		assertEquals(1, orphanCovers.size());
+		assertTrue(orphanCovers.get(0).matches("[0-9a-f]{64}"));
+		assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM history WHERE description = 'Gone' AND book_id IS NULL", Integer.class));
+	}
+
+	@Test
+	void leavesACorruptCoverAloneInsteadOfFailing() throws Exception {
+		String good = "data:image/png;base64," + Base64.getEncoder().encodeToString(new byte[]{5, 6, 7});
+		jdbcTemplate.update("INSERT INTO history (user_email, title, author, img) VALUES ('reader@example.com', 'Deleted', 'Nobody', 'data:image/png;base64')");
+		jdbcTemplate.update("INSERT INTO history (user_email, title, author, img) VALUES ('reader@example.com', 'Deleted', 'Nobody', ?)", good);
+
+		ImageStoreProperties properties = new ImageStoreProperties();
+		properties.setDirectory(directory.toString());
+		try (Connection connection = dataSource.getConnection()) {
+			new V7__Deduplicate_history_books(new ImageStore(properties)).migrate(contextFor(connection));
+		}
+
+		List<String> covers = jdbcTemplate.queryForList("SELECT img FROM history ORDER BY id", String.class);
+		assertEquals("data:image/png;base64", covers.get(0));
+		assertTrue(covers.get(1).matches("[0-9a-f]{64}"));
+	}
+
+	private static Context contextFor(Connection connection) {
+		return new Context() {
+			@Override
+			public Configuration getConfiguration() {
+				return null;
+			}
+
+			@Override
+			public Connection getConnection() {
+				return connection;
+			}
+		};
+	}
+}
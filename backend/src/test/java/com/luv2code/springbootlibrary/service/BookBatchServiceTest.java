@@ -0,0 +1,106 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.BookCacheProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.BookBatchResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@Import({BookBatchService.class, BookCache.class, BookCacheProperties.class})
+@ActiveProfiles("test")
+class BookBatchServiceTest {
+
+	@Autowired
+	private BookBatchService bookBatchService;
+
+	@Autowired
+	private BookCache bookCache;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@BeforeEach
+	void emptyCache() {
+		bookCache.setEnabled(false);
+		bookCache.setEnabled(true);
+	}
+
+	@Test
+	void booksComeInTheOrderAskedForWithTheMissingOnes() throws Exception {
+		Book first = saveBook("First");
+		Book second = saveBook("Second");
+
+		BookBatchResponse response = bookBatchService.books(Arrays.asList(second.getId(), -1L, first.getId(), second.getId()));
+
+		assertEquals(4, response.getBooks().size());
+		assertEquals("Second", response.getBooks().get(0).getTitle());
+		assertNull(response.getBooks().get(1));
+		assertEquals("First", response.getBooks().get(2).getTitle());
+		assertEquals("Second", response.getBooks().get(3).getTitle());
+		assertEquals(Collections.singletonList(-1L), response.getMissing());
+	}
+
+	@Test
+	void cachedBooksAreNotReadAgain() throws Exception {
+		Book cached = saveBook("Cached");
+		Book other = saveBook("Other");
+		bookCache.find(cached.getId());
+		long hitsBefore = bookCache.stats().getHits();
+		long missesBefore = bookCache.stats().getMisses();
+
+		bookBatchService.books(Arrays.asList(cached.getId(), other.getId()));
+
+		assertEquals(hitsBefore + 1, bookCache.stats().getHits());
+		assertEquals(missesBefore + 1, bookCache.stats().getMisses());
+	}
+
+	@Test
+	void moreIdsThanOneInQueryAreAllFound() throws Exception {
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < BookCache.IN_CHUNK + 5; i++) {
+			ids.add(saveBook("Book " + i).getId());
+		}
+
+		BookBatchResponse response = bookBatchService.books(ids);
+
+		assertEquals(ids.size(), response.getBooks().size());
+		assertEquals(0, response.getMissing().size());
+		assertEquals("Book " + BookCache.IN_CHUNK, response.getBooks().get(BookCache.IN_CHUNK).getTitle());
+	}
+
+	@Test
+	void tooManyIdsAreRefused() {
+		List<Long> ids = new ArrayList<>();
+		for (long i = 0; i <= BookBatchService.MAX_IDS; i++) {
+			ids.add(i);
+		}
+
+		assertThrows(Exception.class, () -> bookBatchService.books(ids));
+	}
+
+	private Book saveBook(String title) {
+		Book book = new Book();
+		book.setTitle(title);
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(1);
+		book.setCopiesAvailable(1);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
@@ -0,0 +1,187 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.BookCacheProperties;
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.HistoryRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.dao.RatingHistogramRepository;
+import com.luv2code.springbootlibrary.dao.ReviewRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.requestmodels.ReviewRequest;
+import com.luv2code.springbootlibrary.responsemodels.BookCacheStatsResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+	Books are removed from the cache by @TransactionalEventListener, which only runs once a transaction has committed, so @Transactional(NOT_SUPPORTED) turns off the usual "one transaction per test" of @DataJpaTest.
+ */
+@DataJpaTest
+@Import({BookCache.class, BookCacheProperties.class, BookService.class, InventoryProperties.class, HoldService.class,
+		HoldProperties.class, LoanBatchWriter.class, ReviewService.class, RatingAggregateService.class})
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookCacheTest {
+
+	@Autowired
+	private BookCache bookCache;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private ReviewService reviewService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private HistoryRepository historyRepository;
+
+	@Autowired
+	private ReviewRepository reviewRepository;
+
+	@Autowired
+	private RatingHistogramRepository ratingHistogramRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void enable() {
+		bookCache.setEnabled(false);
+		bookCache.setEnabled(true);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		ratingHistogramRepository.deleteAll();
+		reviewRepository.deleteAll();
+		historyRepository.deleteAll();
+		checkoutRepository.deleteAll();
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void secondReadComesFromMemory() {
+		Book book = saveBook("Cached", 2);
+		long hitsBefore = bookCache.stats().getHits();
+
+		Book first = bookCache.find(book.getId()).get();
+		// Changed behind the cache's back: the cached book is still served
+		jdbcTemplate.update("UPDATE book SET title = 'Changed' WHERE id = ?", book.getId());
+		Book second = bookCache.find(book.getId()).get();
+
+		assertSame(first, second);
+		assertEquals("Cached", second.getTitle());
+		assertEquals(hitsBefore + 1, bookCache.stats().getHits());
+	}
+
+	@Test
+	void checkoutAndReturnRemoveTheBook() throws Exception {
+		Book book = saveBook("Loaned", 2);
+		assertEquals(2, bookCache.find(book.getId()).get().getCopiesAvailable());
+
+		bookService.checkoutBook("reader@example.com", book.getId());
+		assertEquals(1, bookCache.find(book.getId()).get().getCopiesAvailable());
+
+		bookService.returnBook("reader@example.com", book.getId());
+		assertEquals(2, bookCache.find(book.getId()).get().getCopiesAvailable());
+	}
+
+	@Test
+	void aNewReviewRemovesTheBook() throws Exception {
+		Book book = saveBook("Reviewed", 1);
+		assertEquals(0, bookCache.find(book.getId()).get().getRatingCount());
+
+		ReviewRequest review = new ReviewRequest();
+		review.setBookId(book.getId());
+		review.setRating(4.5);
+		review.setReviewDescription(Optional.empty());
+		reviewService.postReview("reader@example.com", review);
+
+		assertEquals(1, bookCache.find(book.getId()).get().getRatingCount());
+	}
+
+	@Test
+	void missingBooksAreNotCached() {
+		assertFalse(bookCache.find(-1L).isPresent());
+		assertEquals(0, bookCache.stats().getBooks());
+	}
+
+	@Test
+	void aBulkReadUsesCachedBooksButDoesNotKeepTheOthers() {
+		Book cached = saveBook("Cached", 1);
+		Book notCached = saveBook("Not Cached", 1);
+		Book first = bookCache.find(cached.getId()).get();
+
+		Map<Long, Book> found = bookCache.findAll(Arrays.asList(cached.getId(), notCached.getId(), -1L));
+
+		assertEquals(2, found.size());
+		assertSame(first, found.get(cached.getId()));
+		assertEquals("Not Cached", found.get(notCached.getId()).getTitle());
+		// Kept, it could be a row read just before a change whose removal already ran
+		assertEquals(1, bookCache.stats().getBooks());
+	}
+
+	@Test
+	void turnedOffEveryReadGoesToTheDatabase() {
+		Book book = saveBook("Uncached", 1);
+		bookCache.find(book.getId());
+
+		bookCache.setEnabled(false);
+		jdbcTemplate.update("UPDATE book SET title = 'Changed' WHERE id = ?", book.getId());
+
+		assertEquals("Changed", bookCache.find(book.getId()).get().getTitle());
+		assertEquals(0, bookCache.stats().getBooks());
+		assertFalse(bookCache.stats().isEnabled());
+	}
+
+	@Test
+	void keepsTheSizeUnderTheMaximum() {
+		BookCacheProperties properties = new BookCacheProperties();
+		properties.setMaximumBytes(10_000);
+		BookCache small = new BookCache(bookRepository, properties);
+
+		for (int i = 0; i < 50; i++) {
+			small.find(saveBook("Book " + i, 1).getId());
+		}
+
+		BookCacheStatsResponse stats = small.stats();
+		assertTrue(stats.getBytes() <= 10_000, "bytes: " + stats.getBytes());
+		assertTrue(stats.getEvictions() > 0);
+	}
+
+	private Book saveBook(String title, int copies) {
+		Book book = new Book();
+		book.setTitle(title);
+		book.setAuthor("Author");
+		book.setDescription("A description long enough to give the book some weight. ".repeat(4));
+		book.setCopies(copies);
+		book.setCopiesAvailable(copies);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
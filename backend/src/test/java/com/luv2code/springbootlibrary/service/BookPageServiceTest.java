@@ -0,0 +1,114 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.BookCacheProperties;
+import com.luv2code.springbootlibrary.config.BookPageConfiguration;
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.dao.ReviewRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.Checkout;
+import com.luv2code.springbootlibrary.entity.Review;
+import com.luv2code.springbootlibrary.responsemodels.BookPageResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+	The lookups run on other threads, each in its own transaction, so the test data has to be committed first: @Transactional(NOT_SUPPORTED) turns off the usual "one transaction per test" of @DataJpaTest.
+ */
+@DataJpaTest
+@Import({BookPageService.class, BookService.class, ReviewService.class, RatingAggregateService.class,
+		InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class,
+		BookPageConfiguration.class, BookCache.class, BookCacheProperties.class})
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookPageServiceTest {
+
+	@Autowired
+	private BookPageService bookPageService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private ReviewRepository reviewRepository;
+
+	@AfterEach
+	void cleanUp() {
+		reviewRepository.deleteAll();
+		checkoutRepository.deleteAll();
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void assemblesTheWholePageForTheUser() {
+		Book book = saveBook("Page");
+		Book other = saveBook("Other");
+		checkoutRepository.save(new Checkout("reader@example.com", LocalDate.now(), LocalDate.now().plusDays(7), book.getId()));
+		checkoutRepository.save(new Checkout("reader@example.com", LocalDate.now(), LocalDate.now().plusDays(7), other.getId()));
+		for (int i = 0; i < 5; i++) {
+			saveReview(i == 0 ? "reader@example.com" : "other" + i + "@example.com", book.getId());
+		}
+
+		BookPageResponse page = bookPageService.bookPage(book.getId(), "reader@example.com").get();
+
+		assertEquals("Page", page.getBook().getTitle());
+		assertEquals(BookPageService.LATEST_REVIEWS, page.getLatestReviews().size());
+		assertTrue(page.getReviewLeft());
+		assertEquals(2, page.getCurrentLoansCount());
+		assertTrue(page.getCheckedOut());
+	}
+
+	@Test
+	void leavesOutTheUserPartsWhenNobodyIsLoggedIn() {
+		Book book = saveBook("Anonymous");
+
+		BookPageResponse page = bookPageService.bookPage(book.getId(), null).get();
+
+		assertEquals("Anonymous", page.getBook().getTitle());
+		assertNull(page.getReviewLeft());
+		assertNull(page.getCurrentLoansCount());
+		assertNull(page.getCheckedOut());
+	}
+
+	@Test
+	void missingBookIsEmpty() {
+		assertFalse(bookPageService.bookPage(-1L, "reader@example.com").isPresent());
+	}
+
+	private Book saveBook(String title) {
+		Book book = new Book();
+		book.setTitle(title);
+		book.setAuthor("Author");
+		book.setCopies(1);
+		book.setCopiesAvailable(1);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+
+	private void saveReview(String userEmail, Long bookId) {
+		Review review = new Review();
+		review.setUserEmail(userEmail);
+		review.setBookId(bookId);
+		review.setRating(4);
+		reviewRepository.save(review);
+	}
+}
@@ -0,0 +1,102 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.BookSearchResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookSearchIndexTest {
+
+	private BookSearchIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new BookSearchIndex();
+		index.put(1L, "Harry Potter and the Philosopher's Stone", "J. K. Rowling");
+		index.put(2L, "Harry Potter", "J. K. Rowling");
+		index.put(3L, "The Hobbit", "J. R. R. Tolkien");
+		index.put(4L, "Les Misérables", "Victor Hugo");
+		index.put(5L, "Dirty Harry Stories", "Anonymous");
+	}
+
+	@Test
+	void findsTitlesStartingWithTheSearchBestMatchFirst() {
+		BookSearchResponse result = index.search("harry pot", 0, 10);
+
+		// Both Potter books contain every trigram; the shorter title wins the tie
+		assertEquals(Arrays.asList(2L, 1L), result.getBookIds().subList(0, 2));
+		assertEquals(1.0, result.getScores().get(0));
+	}
+
+	@Test
+	void stillTypingTheLastWordMatchesItsPrefix() {
+		assertEquals(List.of(3L), index.search("hob", 0, 10).getBookIds());
+	}
+
+	@Test
+	void searchesAuthorsIgnoringCaseAndAccents() {
+		assertEquals(List.of(3L), index.search("TOLKIEN", 0, 10).getBookIds());
+		assertEquals(List.of(4L), index.search("miserables", 0, 10).getBookIds());
+	}
+
+	@Test
+	void toleratesASmallTypo() {
+		BookSearchResponse result = index.search("hobbti", 0, 10);
+
+		assertEquals(3L, result.getBookIds().get(0));
+		assertTrue(result.getScores().get(0) < 1.0);
+	}
+
+	@Test
+	void pagesThroughTheRankedMatches() {
+		BookSearchResponse first = index.search("harry", 0, 2);
+		BookSearchResponse second = index.search("harry", 1, 2);
+
+		// All three contain "harry", so the shortest titles come first
+		assertEquals(3, first.getTotalMatches());
+		assertEquals(List.of(2L, 5L), first.getBookIds());
+		assertEquals(List.of(1L), second.getBookIds());
+	}
+
+	@Test
+	void removedAndReplacedBooksAreNoLongerFoundUnderTheirOldTitle() {
+		index.remove(3L);
+		index.put(2L, "Emma", "Jane Austen");
+
+		assertTrue(index.search("hobbit", 0, 10).getBookIds().isEmpty());
+		assertEquals(List.of(5L, 1L), index.search("harry", 0, 10).getBookIds());
+		assertEquals(List.of(2L), index.search("austen", 0, 10).getBookIds());
+		assertEquals(4, index.size());
+	}
+
+	@Test
+	void theBuildDoesntBringBackWhatChangedWhileItRan() {
+		BookSearchIndex building = new BookSearchIndex();
+		building.putFromBuild(1L, "The Hobbit", "J. R. R. Tolkien");
+		// Deleted and renamed after the build read them, but before it got to put them
+		building.remove(2L);
+		building.put(3L, "Emma", "Jane Austen");
+		building.putFromBuild(2L, "Harry Potter", "J. K. Rowling");
+		building.putFromBuild(3L, "Les Misérables", "Victor Hugo");
+		building.markReady();
+
+		assertTrue(building.search("harry", 0, 10).getBookIds().isEmpty());
+		assertTrue(building.search("miserables", 0, 10).getBookIds().isEmpty());
+		assertEquals(List.of(3L), building.search("emma", 0, 10).getBookIds());
+		assertEquals(2, building.size());
+
+		// Once ready, the build is over and a book can be put again
+		building.putFromBuild(2L, "Harry Potter", "J. K. Rowling");
+		assertEquals(List.of(2L), building.search("harry", 0, 10).getBookIds());
+	}
+
+	@Test
+	void blankSearchFindsNothing() {
+		assertTrue(index.search("  !? ", 0, 10).getBookIds().isEmpty());
+	}
+}
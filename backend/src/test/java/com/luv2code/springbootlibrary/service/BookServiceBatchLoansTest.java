@@ -0,0 +1,134 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.LoanBatchItemResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import({BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class})
+@ActiveProfiles("test")
+class BookServiceBatchLoansTest {
+
+	private static final String USER = "kiosk@example.com";
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private HoldService holdService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Test
+	void eachBookGetsItsOwnResult() throws Exception {
+		Book available = saveBook(1);
+		Book none = saveBook(0);
+		Book alreadyMine = saveBook(2);
+		bookService.checkoutBook(USER, alreadyMine.getId());
+
+		List<LoanBatchItemResponse> results = bookService.checkoutBooks(USER,
+				Arrays.asList(available.getId(), none.getId(), alreadyMine.getId(), -1L, available.getId()));
+
+		assertEquals(4, results.size());
+		assertTrue(results.get(0).isDone());
+		assertEquals("No copies available", results.get(1).getError());
+		assertFalse(results.get(2).isDone());
+		assertFalse(results.get(3).isDone());
+		assertEquals(0, copiesAvailable(available));
+		assertEquals(2, count("SELECT COUNT(*) FROM checkout WHERE user_email = ?"));
+	}
+
+	@Test
+	void returnsDeleteTheCheckoutsAndWriteTheHistory() throws Exception {
+		Book first = saveBook(1);
+		Book second = saveBook(1);
+		Book notMine = saveBook(1);
+		bookService.checkoutBooks(USER, Arrays.asList(first.getId(), second.getId()));
+
+		List<LoanBatchItemResponse> results = bookService.returnBooks(USER,
+				Arrays.asList(first.getId(), notMine.getId(), second.getId()));
+
+		assertTrue(results.get(0).isDone());
+		assertFalse(results.get(1).isDone());
+		assertTrue(results.get(2).isDone());
+		assertEquals(0, count("SELECT COUNT(*) FROM checkout WHERE user_email = ?"));
+		assertEquals(2, count("SELECT COUNT(*) FROM history WHERE user_email = ? AND returned_on IS NOT NULL"));
+		assertEquals(1, copiesAvailable(first));
+		assertEquals(1, copiesAvailable(second));
+	}
+
+	@Test
+	void aCopySetAsideIsTakenByTheBatch() throws Exception {
+		Book book = saveBook(1);
+		bookService.checkoutBook("lender@example.com", book.getId());
+		holdService.placeHold(USER, book.getId());
+		bookService.returnBook("lender@example.com", book.getId());
+
+		List<LoanBatchItemResponse> results = bookService.checkoutBooks(USER, Arrays.asList(book.getId()));
+
+		assertTrue(results.get(0).isDone());
+		assertTrue(holdService.holds(USER).isEmpty());
+		assertEquals(0, copiesAvailable(book));
+	}
+
+	@Test
+	void aCopySetAsideStaysSetAsideWhenTheBookIsAlreadyCheckedOut() throws Exception {
+		Book book = saveBook(1);
+		bookService.checkoutBook("lender@example.com", book.getId());
+		holdService.placeHold(USER, book.getId());
+		bookService.returnBook("lender@example.com", book.getId());
+		// A checkout that got in by another way while the copy was set aside
+		jdbcTemplate.update("INSERT INTO checkout (user_email, book_id) VALUES (?, ?)", USER, book.getId());
+
+		List<LoanBatchItemResponse> results = bookService.checkoutBooks(USER, Arrays.asList(book.getId()));
+
+		assertFalse(results.get(0).isDone());
+		assertEquals(1, holdService.holds(USER).size());
+		assertEquals("READY", holdService.holds(USER).get(0).getStatus());
+	}
+
+	private long count(String sql) {
+		entityManager.flush();
+		return jdbcTemplate.queryForObject(sql, Long.class, USER);
+	}
+
+	private int copiesAvailable(Book book) {
+		entityManager.flush();
+		return jdbcTemplate.queryForObject("SELECT copies_available FROM book WHERE id = ?", Integer.class, book.getId());
+	}
+
+	private Book saveBook(int copies) {
+		Book book = new Book();
+		book.setTitle("Kiosk");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(copies);
+		book.setCopiesAvailable(copies);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
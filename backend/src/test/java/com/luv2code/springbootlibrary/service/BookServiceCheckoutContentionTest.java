@@ -0,0 +1,184 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.HistoryRepository;
+import com.luv2code.springbootlibrary.dao.HoldRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+	Many borrowers hammer checkout/return on one "hot" book at the same time.
+
+	While they do, another thread keeps reading the book and checkout tables: the test fails if it ever sees more checkout rows for the book than it has copies, or copies_available below 0 (an oversell),
+	or if the counts in the two tables don't add up at the end. What the database says is checked, not what the borrowers think they got.
+	It also prints checkouts/sec for each number of concurrent borrowers.
+
+	@Transactional(NOT_SUPPORTED) turns off the usual "one transaction per test" of @DataJpaTest, so every checkout/return runs in its own transaction just like a real request. Like the controller, the test goes through InventoryRetryPolicy.
+
+	This class runs the default (pessimistic) locking mode, OptimisticCheckoutContentionTest runs the same test in the optimistic mode. A full "mvn test" prints both series, which is the measurement to look at before changing library.inventory.locking-mode.
+
+	Every test leaves the tables empty (history and holds too): the H2 database is shared by all the tests of the run.
+	(This test once failed with a duplicate history id in the optimistic mode: H2 in MySQL mode can give the same AUTO_INCREMENT id to two inserts when concurrent inserts are rolled back.
+	A lost race used to insert its row before the version check failed; BookService now fails it before the insert, see takeCopy.)
+ */
+@DataJpaTest
+@Import({BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class,
+		InventoryRetryPolicy.class, InventoryContentionMetrics.class})
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookServiceCheckoutContentionTest {
+
+	private static final int COPIES = 8;
+
+	private static final int ATTEMPTS = 2048;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private InventoryRetryPolicy inventoryRetryPolicy;
+
+	@Autowired
+	protected InventoryProperties inventoryProperties;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private HistoryRepository historyRepository;
+
+	@Autowired
+	private HoldRepository holdRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		historyRepository.deleteAll();
+		holdRepository.deleteAll();
+		checkoutRepository.deleteAll();
+		bookRepository.deleteAll();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 16, 256})
+	void concurrentBorrowersNeverOversellAHotBook(int borrowers) throws Exception {
+		Long bookId = saveHotBook();
+
+		LongAdder checkouts = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(borrowers);
+		List<Future<?>> results = new ArrayList<>();
+		int attemptsPerBorrower = Math.max(1, ATTEMPTS / borrowers);
+
+		for (int i = 0; i < borrowers; i++) {
+			String userEmail = "borrower" + i + "@example.com";
+			results.add(pool.submit(() -> {
+				start.await();
+				for (int attempt = 0; attempt < attemptsPerBorrower; attempt++) {
+					try {
+						inventoryRetryPolicy.execute(bookId, () -> bookService.checkoutBook(userEmail, bookId));
+					} catch (Exception noCopyLeftOrGaveUp) {
+						continue;
+					}
+					checkouts.increment();
+					returnUntilItWorks(userEmail, bookId);
+				}
+				return null;
+			}));
+		}
+
+		AtomicBoolean borrowing = new AtomicBoolean(true);
+		ExecutorService watcher = Executors.newSingleThreadExecutor();
+		Future<int[]> worstSeen = watcher.submit(() -> watch(bookId, borrowing));
+
+		long started = System.nanoTime();
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get();
+		}
+		long elapsed = System.nanoTime() - started;
+		borrowing.set(false);
+		pool.shutdown();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+		watcher.shutdown();
+
+		int[] worst = worstSeen.get(10, TimeUnit.SECONDS);
+		assertTrue(worst[0] <= COPIES, "oversold: " + worst[0] + " checkout rows for " + COPIES + " copies");
+		assertTrue(worst[1] >= 0, "oversold: copies_available went down to " + worst[1]);
+
+		Book book = bookRepository.findById(bookId).get();
+		assertEquals(COPIES, book.getCopiesAvailable());
+		assertEquals(0, checkoutRepository.count());
+		assertTrue(checkouts.sum() > 0);
+
+		System.out.printf("%-11s %4d concurrent borrowers: %6d checkouts, %8.0f checkouts/sec%n",
+				inventoryProperties.getLockingMode(), borrowers, checkouts.sum(),
+				checkouts.sum() / (elapsed / 1_000_000_000.0));
+	}
+
+	// Reads the committed state over and over until the borrowers are done. Returns the most checkout rows and the fewest copies_available it saw.
+	private int[] watch(Long bookId, AtomicBoolean borrowing) {
+		int mostOnLoan = 0;
+		int fewestAvailable = COPIES;
+		do {
+			mostOnLoan = Math.max(mostOnLoan, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM checkout WHERE book_id = ?", Integer.class, bookId));
+			fewestAvailable = Math.min(fewestAvailable, jdbcTemplate.queryForObject("SELECT copies_available FROM book WHERE id = ?", Integer.class, bookId));
+		} while (borrowing.get());
+		return new int[]{mostOnLoan, fewestAvailable};
+	}
+
+	// A borrower whose return gave up (too many conflicts) simply tries again, otherwise the copy would stay on loan forever.
+	private void returnUntilItWorks(String userEmail, Long bookId) throws Exception {
+		while (true) {
+			try {
+				inventoryRetryPolicy.run(bookId, () -> bookService.returnBook(userEmail, bookId));
+				return;
+			} catch (OptimisticLockingFailureException gaveUp) {
+				// try again
+			}
+		}
+	}
+
+	private Long saveHotBook() {
+		Book book = new Book();
+		book.setTitle("Hot Book");
+		book.setAuthor("Popular Author");
+		book.setCopies(COPIES);
+		book.setCopiesAvailable(COPIES);
+		book.setCategory("FE");
+		return bookRepository.save(book).getId();
+	}
+}
@@ -0,0 +1,83 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.Checkout;
+import com.luv2code.springbootlibrary.responsemodels.ShelfCurrentLoansResponse;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@Import({BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class})
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BookServiceCurrentLoansTest {
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Test
+	void currentLoansComeBackWithDaysLeftFromOneQuery() {
+		Book dueSoon = saveBook("Due Soon");
+		Book overdue = saveBook("Overdue");
+		Book someoneElses = saveBook("Someone else's");
+		LocalDate today = LocalDate.now();
+		checkoutRepository.save(new Checkout("reader@example.com", today.minusDays(4), today.plusDays(3), dueSoon.getId()));
+		checkoutRepository.save(new Checkout("reader@example.com", today.minusDays(9), today.minusDays(2), overdue.getId()));
+		checkoutRepository.save(new Checkout("other@example.com", today, today.plusDays(7), someoneElses.getId()));
+		checkoutRepository.flush();
+		// Start from an empty persistence context, otherwise the books would already be loaded and extra queries wouldn't show up
+		entityManager.clear();
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		List<ShelfCurrentLoansResponse> loans = bookService.currentLoans("reader@example.com");
+
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertEquals(2, loans.size());
+		assertEquals("Due Soon", loans.get(0).getBook().getTitle());
+		assertEquals(3, loans.get(0).getDaysLeft());
+		assertEquals("Overdue", loans.get(1).getBook().getTitle());
+		assertEquals(-2, loans.get(1).getDaysLeft());
+	}
+
+	private Book saveBook(String title) {
+		Book book = new Book();
+		book.setTitle(title);
+		book.setAuthor("Author");
+		book.setCopies(1);
+		book.setCopiesAvailable(0);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
@@ -0,0 +1,127 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.HistoryRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.CategoryFacetResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+	The counts are changed by @TransactionalEventListener, which only runs once a transaction has committed, so @Transactional(NOT_SUPPORTED) turns off the usual "one transaction per test" of @DataJpaTest.
+ */
+@DataJpaTest
+@Import({CategoryFacetService.class, BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class})
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CategoryFacetServiceTest {
+
+	@Autowired
+	private CategoryFacetService categoryFacetService;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private HistoryRepository historyRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		historyRepository.deleteAll();
+		checkoutRepository.deleteAll();
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void loadsTheCountsFromTheDatabase() {
+		saveBook("FE", 1);
+		saveBook("FE", 0);
+		saveBook("BE", 2);
+
+		categoryFacetService.reconcile();
+
+		assertEquals(List.of(
+				new CategoryFacetResponse("BE", 1, 1),
+				new CategoryFacetResponse("FE", 2, 1)
+		), categoryFacetService.categories());
+	}
+
+	@Test
+	void checkoutAndReturnOfTheLastCopyChangeTheAvailableCount() throws Exception {
+		Book book = saveBook("Data", 1);
+		categoryFacetService.reconcile();
+
+		bookService.checkoutBook("reader@example.com", book.getId());
+		assertEquals(List.of(new CategoryFacetResponse("Data", 1, 0)), categoryFacetService.categories());
+
+		bookService.returnBook("reader@example.com", book.getId());
+		assertEquals(List.of(new CategoryFacetResponse("Data", 1, 1)), categoryFacetService.categories());
+	}
+
+	@Test
+	void reconcileRepairsChangesMadeBehindItsBack() {
+		Book book = saveBook("DevOps", 3);
+		categoryFacetService.reconcile();
+
+		jdbcTemplate.update("UPDATE book SET copies_available = 0 WHERE id = ?", book.getId());
+		categoryFacetService.onBookChanged(BookChangedEvent.created(saveBook("DevOps", 1)));
+		assertEquals(List.of(new CategoryFacetResponse("DevOps", 2, 2)), categoryFacetService.categories());
+
+		categoryFacetService.reconcile();
+		assertEquals(List.of(new CategoryFacetResponse("DevOps", 2, 1)), categoryFacetService.categories());
+	}
+
+	@Test
+	void aChangeCommittedWhileReconcileReadsIsKept() {
+		saveBook("Data", 1);
+		BookRepository readingSlowly = mock(BookRepository.class);
+		CategoryFacetService facets = new CategoryFacetService(readingSlowly);
+		// The GROUP BY has counted the table when another book is added and its event arrives
+		when(readingSlowly.countByCategory()).thenAnswer(invocation -> {
+			List<BookRepository.CategoryCount> rows = bookRepository.countByCategory();
+			facets.onBookChanged(BookChangedEvent.created(saveBook("Data", 1)));
+			return rows;
+		});
+
+		facets.reconcile();
+
+		assertEquals(List.of(new CategoryFacetResponse("Data", 2, 2)), facets.categories());
+	}
+
+	private Book saveBook(String category, int copiesAvailable) {
+		Book book = new Book();
+		book.setTitle("A " + category + " book");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(Math.max(copiesAvailable, 1));
+		book.setCopiesAvailable(copiesAvailable);
+		book.setCategory(category);
+		return bookRepository.save(book);
+	}
+}
@@ -0,0 +1,196 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.BookChangeResponse;
+import com.luv2code.springbootlibrary.responsemodels.ChangeFeedResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+	The log rows are written inside the transactions of the changes, which have to really commit for the feed to read them, so @Transactional(NOT_SUPPORTED) turns off the usual "one transaction per test" of @DataJpaTest.
+ */
+@DataJpaTest
+@Import({ChangeFeedService.class, BookService.class, InventoryProperties.class,
+		HoldService.class, HoldProperties.class, LoanBatchWriter.class})
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChangeFeedServiceTest {
+
+	@Autowired
+	private ChangeFeedService changeFeedService;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	// The id of the last log row before the test
+	private long start;
+
+	@BeforeEach
+	void rememberWhereTheLogEnds() {
+		start = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM book_change_log", Long.class);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		checkoutRepository.deleteAll();
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void aCheckoutIsAnUpdateWithTheBookAsItIsNow() throws Exception {
+		Book book = saveBook();
+		publish(BookChangedEvent.created(book));
+		long afterCreation = changeFeedService.changes(start, 100).getCursor();
+
+		bookService.checkoutBook("reader@example.com", book.getId());
+
+		ChangeFeedResponse feed = changeFeedService.changes(afterCreation, 100);
+		assertEquals(1, feed.getChanges().size());
+		assertEquals("UPDATED", feed.getChanges().get(0).getChange());
+		assertEquals(0, feed.getChanges().get(0).getBook().getCopiesAvailable());
+		assertFalse(feed.isMore());
+		assertEquals(feed.getCursor(), changeFeedService.changes(feed.getCursor(), 100).getCursor());
+	}
+
+	@Test
+	void eachBookComesOnceWithItsLastChange() {
+		Book kept = saveBook();
+		Book deleted = saveBook();
+		publish(BookChangedEvent.created(kept));
+		publish(BookChangedEvent.created(deleted));
+		publish(BookChangedEvent.inventory(kept, 1));
+		bookRepository.delete(deleted);
+		publish(BookChangedEvent.deleted(deleted));
+
+		ChangeFeedResponse feed = changeFeedService.changes(start, 100);
+
+		assertEquals(2, feed.getChanges().size());
+		BookChangeResponse first = feed.getChanges().get(0);
+		BookChangeResponse second = feed.getChanges().get(1);
+		assertEquals(kept.getId(), first.getBookId());
+		assertEquals("CREATED", first.getChange());
+		assertEquals(deleted.getId(), second.getBookId());
+		assertEquals("DELETED", second.getChange());
+		assertNull(second.getBook());
+		assertEquals(start + 4, feed.getCursor());
+	}
+
+	@Test
+	void pagesFollowTheCursor() {
+		for (int i = 0; i < 5; i++) {
+			publish(BookChangedEvent.created(saveBook()));
+		}
+
+		ChangeFeedResponse first = changeFeedService.changes(start, 3);
+		ChangeFeedResponse second = changeFeedService.changes(first.getCursor(), 3);
+
+		assertEquals(3, first.getChanges().size());
+		assertTrue(first.isMore());
+		assertEquals(2, second.getChanges().size());
+		assertFalse(second.isMore());
+	}
+
+	@Test
+	void aChangeThatRolledBackDoesntHoldTheFeedUp() {
+		Book book = saveBook();
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			eventPublisher.publishEvent(BookChangedEvent.inventory(book, 1));
+			status.setRollbackOnly();
+		});
+		publish(BookChangedEvent.inventory(book, 1));
+
+		ChangeFeedResponse feed = changeFeedService.changes(start, 100);
+
+		assertEquals(1, feed.getChanges().size());
+	}
+
+	@Test
+	void aChangeThatCommitsLastComesLastWhenItStartedFirst() throws Exception {
+		Book slow = saveBook();
+		Book fast = saveBook();
+		CountDownLatch published = new CountDownLatch(1);
+		CountDownLatch commit = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> slowChange = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			eventPublisher.publishEvent(BookChangedEvent.inventory(slow, 1));
+			published.countDown();
+			try {
+				commit.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}));
+		published.await();
+
+		// The change made first is still running; the one made after it commits right away and can be read right away
+		publish(BookChangedEvent.inventory(fast, 1));
+		ChangeFeedResponse first = changeFeedService.changes(start, 100);
+		assertEquals(1, first.getChanges().size());
+		assertEquals(fast.getId(), first.getChanges().get(0).getBookId());
+
+		// ...and the slow one comes after the cursor the client now has, instead of behind it
+		commit.countDown();
+		slowChange.get(10, TimeUnit.SECONDS);
+		executor.shutdown();
+		ChangeFeedResponse second = changeFeedService.changes(first.getCursor(), 100);
+		assertEquals(1, second.getChanges().size());
+		assertEquals(slow.getId(), second.getChanges().get(0).getBookId());
+	}
+
+	private void publish(BookChangedEvent event) {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> eventPublisher.publishEvent(event));
+	}
+
+	private Book saveBook() {
+		Book book = new Book();
+		book.setTitle("Fed");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(1);
+		book.setCopiesAvailable(1);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
@@ -0,0 +1,123 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.requestmodels.ReviewRequest;
+import com.luv2code.springbootlibrary.responsemodels.LoanBatchItemResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@Import({BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class,
+		ReviewService.class, RatingAggregateService.class})
+@ActiveProfiles("test")
+// Each call commits or rolls back on its own, so the test sees what a second request would see: whether the copy went back is only known after the rollback.
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DuplicateEntryTest {
+
+	private static final String USER = "double.click@example.com";
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private ReviewService reviewService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM review");
+		jdbcTemplate.update("DELETE FROM book_rating_histogram");
+		jdbcTemplate.update("DELETE FROM checkout");
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void theExceptionAnswers409() {
+		assertEquals(HttpStatus.CONFLICT, DuplicateEntryException.class.getAnnotation(ResponseStatus.class).value());
+	}
+
+	@Test
+	void checkingOutTheSameBookTwiceIsAConflictAndPutsTheCopyBack() throws Exception {
+		Long bookId = saveBook(3).getId();
+		bookService.checkoutBook(USER, bookId);
+
+		assertThrows(DuplicateEntryException.class, () -> bookService.checkoutBook(USER, bookId));
+
+		assertEquals(1, count("SELECT COUNT(*) FROM checkout WHERE book_id = ?", bookId));
+		assertEquals(2, count("SELECT copies_available FROM book WHERE id = ?", bookId));
+	}
+
+	@Test
+	void aBatchWithABookAlreadyCheckedOutPutsThatCopyBack() throws Exception {
+		Long bookId = saveBook(3).getId();
+		bookService.checkoutBook(USER, bookId);
+
+		List<LoanBatchItemResponse> results = bookService.checkoutBooks(USER, Collections.singletonList(bookId));
+
+		assertFalse(results.get(0).isDone());
+		assertEquals(1, count("SELECT COUNT(*) FROM checkout WHERE book_id = ?", bookId));
+		assertEquals(2, count("SELECT copies_available FROM book WHERE id = ?", bookId));
+	}
+
+	@Test
+	void reviewingTheSameBookTwiceIsAConflictAndKeepsTheFirstReview() throws Exception {
+		Long bookId = saveBook(1).getId();
+		reviewService.postReview(USER, review(bookId, 4));
+
+		assertThrows(DuplicateEntryException.class, () -> reviewService.postReview(USER, review(bookId, 1)));
+
+		assertEquals(1, count("SELECT COUNT(*) FROM review WHERE book_id = ?", bookId));
+		assertEquals(4, count("SELECT rating FROM review WHERE book_id = ?", bookId));
+		// The totals were updated in the same transaction as the failed INSERT, so they were rolled back with it
+		assertEquals(1, count("SELECT rating_count FROM book WHERE id = ?", bookId));
+	}
+
+	private long count(String sql, Long bookId) {
+		return jdbcTemplate.queryForObject(sql, Long.class, bookId);
+	}
+
+	private static ReviewRequest review(Long bookId, double rating) {
+		ReviewRequest request = new ReviewRequest();
+		request.setBookId(bookId);
+		request.setRating(rating);
+		request.setReviewDescription(Optional.empty());
+		return request;
+	}
+
+	private Book saveBook(int copies) {
+		Book book = new Book();
+		book.setTitle("Twice");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(copies);
+		book.setCopiesAvailable(copies);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
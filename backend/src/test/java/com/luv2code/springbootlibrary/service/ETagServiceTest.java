@@ -0,0 +1,168 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.ConditionalGetFilter;
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.CheckoutRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.dao.RatingHistogramRepository;
+import com.luv2code.springbootlibrary.dao.ReviewRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.requestmodels.ReviewRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/*
+	The catalog ETag moves on @TransactionalEventListener, which only runs once a transaction has committed, so @Transactional(NOT_SUPPORTED) turns off the usual "one transaction per test" of @DataJpaTest.
+ */
+@DataJpaTest
+@Import({ETagService.class, BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class,
+		LoanBatchWriter.class, ReviewService.class, RatingAggregateService.class})
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ETagServiceTest {
+
+	@Autowired
+	private ETagService eTagService;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private ReviewService reviewService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CheckoutRepository checkoutRepository;
+
+	@Autowired
+	private ReviewRepository reviewRepository;
+
+	@Autowired
+	private RatingHistogramRepository ratingHistogramRepository;
+
+	@AfterEach
+	void cleanUp() {
+		ratingHistogramRepository.deleteAll();
+		reviewRepository.deleteAll();
+		checkoutRepository.deleteAll();
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void bookETagMatchesTheLoadedBookAndMovesWithCheckoutsAndReviews() throws Exception {
+		Book book = saveBook();
+		String fresh = eTagService.bookETag(book.getId()).get();
+		assertEquals(ETagService.bookETag(bookRepository.findById(book.getId()).get()), fresh);
+
+		bookService.checkoutBook("reader@example.com", book.getId());
+		String checkedOut = eTagService.bookETag(book.getId()).get();
+		assertNotEquals(fresh, checkedOut);
+
+		postReview(book.getId());
+		assertNotEquals(checkedOut, eTagService.bookETag(book.getId()).get());
+		assertFalse(eTagService.bookETag(-1L).isPresent());
+	}
+
+	@Test
+	void reviewsETagMovesWithANewReview() throws Exception {
+		Book book = saveBook();
+		String none = eTagService.reviewsETag(book.getId());
+
+		postReview(book.getId());
+
+		assertNotEquals(none, eTagService.reviewsETag(book.getId()));
+	}
+
+	@Test
+	void catalogETagMovesWithEveryCommittedChange() throws Exception {
+		Book book = saveBook();
+		String before = eTagService.catalogETag();
+
+		bookService.checkoutBook("reader@example.com", book.getId());
+
+		assertNotEquals(before, eTagService.catalogETag());
+	}
+
+	@Test
+	void filterAnswers304WithoutRunningTheRequest() throws Exception {
+		Book book = saveBook();
+		ConditionalGetFilter filter = new ConditionalGetFilter(eTagService);
+
+		MockHttpServletResponse first = get("/api/reviews/search/findByBookId", book.getId(), null, filter);
+		String etag = first.getHeader("ETag");
+		assertEquals(200, first.getStatus());
+		assertEquals(eTagService.reviewsETag(book.getId()), etag);
+
+		MockFilterChain chain = new MockFilterChain();
+		MockHttpServletResponse second = new MockHttpServletResponse();
+		filter.doFilter(request("/api/reviews/search/findByBookId", book.getId(), etag), second, chain);
+		assertEquals(304, second.getStatus());
+		assertNull(chain.getRequest());
+
+		postReview(book.getId());
+		assertEquals(200, get("/api/reviews/search/findByBookId", book.getId(), etag, filter).getStatus());
+	}
+
+	@Test
+	void filterLeavesOtherUrlsAlone() throws Exception {
+		MockHttpServletResponse response = get("/api/messages", null, null, new ConditionalGetFilter(eTagService));
+
+		assertNull(response.getHeader("ETag"));
+	}
+
+	private static MockHttpServletResponse get(String path, Long bookId, String ifNoneMatch, ConditionalGetFilter filter) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request(path, bookId, ifNoneMatch), response, new MockFilterChain());
+		return response;
+	}
+
+	private static MockHttpServletRequest request(String path, Long bookId, String ifNoneMatch) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		if (bookId != null) {
+			request.setParameter("bookId", bookId.toString());
+		}
+		if (ifNoneMatch != null) {
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		return request;
+	}
+
+	private void postReview(Long bookId) throws Exception {
+		ReviewRequest review = new ReviewRequest();
+		review.setBookId(bookId);
+		review.setRating(4);
+		review.setReviewDescription(Optional.empty());
+		reviewService.postReview("reviewer" + System.nanoTime() + "@example.com", review);
+	}
+
+	private Book saveBook() {
+		Book book = new Book();
+		book.setTitle("Tagged");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(2);
+		book.setCopiesAvailable(2);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
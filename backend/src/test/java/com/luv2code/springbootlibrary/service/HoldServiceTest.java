@@ -0,0 +1,176 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.dao.MessageRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.HoldResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import({HoldService.class, HoldProperties.class, LoanBatchWriter.class, BookService.class, InventoryProperties.class})
+@ActiveProfiles("test")
+class HoldServiceTest {
+
+	@Autowired
+	private HoldService holdService;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private MessageRepository messageRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Test
+	void noHoldWhileACopyIsOnTheShelf() {
+		Book book = saveBook(1);
+
+		assertThrows(Exception.class, () -> holdService.placeHold("reader@example.com", book.getId()));
+	}
+
+	@Test
+	void aReturnedCopyGoesToTheFirstInTheQueue() throws Exception {
+		Book book = saveBook(1);
+		bookService.checkoutBook("lender@example.com", book.getId());
+		holdService.placeHold("first@example.com", book.getId());
+		holdService.placeHold("second@example.com", book.getId());
+		assertEquals(1, holdService.holds("second@example.com").get(0).getAhead());
+
+		bookService.returnBook("lender@example.com", book.getId());
+
+		HoldResponse first = holdService.holds("first@example.com").get(0);
+		assertEquals("READY", first.getStatus());
+		assertTrue(first.getReadyUntil().isAfter(Instant.now()));
+		assertEquals(0, holdService.holds("second@example.com").get(0).getAhead());
+		assertEquals(0, copiesAvailable(book));
+		assertEquals(1, messageRepository.findByUserEmail("first@example.com", Pageable.unpaged()).getTotalElements());
+
+		// The copy set aside is the first reader's, nobody else can check it out
+		assertThrows(Exception.class, () -> bookService.checkoutBook("someone@example.com", book.getId()));
+		bookService.checkoutBook("first@example.com", book.getId());
+		assertTrue(holdService.holds("first@example.com").isEmpty());
+		assertEquals(0, copiesAvailable(book));
+	}
+
+	@Test
+	void aCheckoutThatFindsTheShelfEmptyKeepsTheReadersPlace() throws Exception {
+		Book book = saveBook(1);
+		bookService.checkoutBook("lender@example.com", book.getId());
+		holdService.placeHold("first@example.com", book.getId());
+
+		assertThrows(Exception.class, () -> bookService.checkoutBook("first@example.com", book.getId()));
+
+		HoldResponse hold = holdService.holds("first@example.com").get(0);
+		assertEquals("WAITING", hold.getStatus());
+		assertEquals(0, hold.getAhead());
+	}
+
+	@Test
+	void aWaitingReaderWhoFindsACopyOnTheShelfLeavesTheQueue() throws Exception {
+		Book book = saveBook(1);
+		bookService.checkoutBook("lender@example.com", book.getId());
+		holdService.placeHold("first@example.com", book.getId());
+		// Put on the shelf behind the waitlist's back, like a return that raced with the hold
+		jdbcTemplate.update("UPDATE book SET copies_available = 1 WHERE id = ?", book.getId());
+
+		bookService.checkoutBook("first@example.com", book.getId());
+
+		assertTrue(holdService.holds("first@example.com").isEmpty());
+		assertEquals(0, copiesAvailable(book));
+	}
+
+	@Test
+	void aCopyNotPickedUpGoesToTheNextReaderThenBackOnTheShelf() throws Exception {
+		Book book = saveBook(1);
+		bookService.checkoutBook("lender@example.com", book.getId());
+		holdService.placeHold("first@example.com", book.getId());
+		holdService.placeHold("second@example.com", book.getId());
+		bookService.returnBook("lender@example.com", book.getId());
+
+		expireReadyHolds();
+		assertTrue(holdService.holds("first@example.com").isEmpty());
+		assertEquals("READY", holdService.holds("second@example.com").get(0).getStatus());
+
+		expireReadyHolds();
+		assertTrue(holdService.holds("second@example.com").isEmpty());
+		assertEquals(1, copiesAvailable(book));
+	}
+
+	@Test
+	void cancellingAReadyHoldPassesTheCopyOn() throws Exception {
+		Book book = saveBook(1);
+		bookService.checkoutBook("lender@example.com", book.getId());
+		holdService.placeHold("first@example.com", book.getId());
+		holdService.placeHold("second@example.com", book.getId());
+		bookService.returnBook("lender@example.com", book.getId());
+
+		holdService.cancelHold("first@example.com", book.getId());
+
+		assertTrue(holdService.holds("first@example.com").isEmpty());
+		assertEquals("READY", holdService.holds("second@example.com").get(0).getStatus());
+	}
+
+	@Test
+	void waitersGetCopiesThatReachedTheShelf() throws Exception {
+		Book book = saveBook(1);
+		bookService.checkoutBook("lender@example.com", book.getId());
+		holdService.placeHold("first@example.com", book.getId());
+		// Put on the shelf behind the waitlist's back, like a return that raced with the hold
+		jdbcTemplate.update("UPDATE book SET copies_available = 1 WHERE id = ?", book.getId());
+
+		holdService.expireHolds();
+
+		assertEquals("READY", holdService.holds("first@example.com").get(0).getStatus());
+		assertEquals(0, copiesAvailable(book));
+	}
+
+	// Makes every READY hold look too old, then runs the expiry job
+	private void expireReadyHolds() {
+		entityManager.flush();
+		jdbcTemplate.update("UPDATE book_hold SET ready_until = ? WHERE status = 'READY'",
+				Timestamp.from(Instant.now().minus(1, ChronoUnit.MINUTES)));
+		holdService.expireHolds();
+	}
+
+	private int copiesAvailable(Book book) {
+		entityManager.flush();
+		return jdbcTemplate.queryForObject("SELECT copies_available FROM book WHERE id = ?", Integer.class, book.getId());
+	}
+
+	private Book saveBook(int copies) {
+		Book book = new Book();
+		book.setTitle("Popular");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(copies);
+		book.setCopiesAvailable(copies);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+}
@@ -0,0 +1,88 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.responsemodels.InventoryContentionResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryRetryPolicyTest {
+
+	private InventoryProperties properties;
+
+	private InventoryContentionMetrics metrics;
+
+	private InventoryRetryPolicy policy;
+
+	@BeforeEach
+	void setUp() {
+		properties = new InventoryProperties();
+		properties.setMaxAttempts(3);
+		properties.setInitialBackoffMs(1);
+		properties.setMaxBackoffMs(4);
+		metrics = new InventoryContentionMetrics();
+		policy = new InventoryRetryPolicy(properties, metrics);
+	}
+
+	@Test
+	void retriesConflictsUntilTheOperationSucceeds() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+
+		String result = policy.execute(7L, () -> {
+			if (calls.incrementAndGet() < 3) {
+				throw new ObjectOptimisticLockingFailureException("Book", 7L);
+			}
+			return "done";
+		});
+
+		assertEquals("done", result);
+		InventoryContentionResponse counters = metrics.snapshot().get(0);
+		assertEquals(2, counters.getConflicts());
+		assertEquals(2, counters.getRetries());
+		assertEquals(0, counters.getGiveUps());
+	}
+
+	@Test
+	void givesUpAfterMaxAttempts() {
+		AtomicInteger calls = new AtomicInteger();
+
+		assertThrows(ObjectOptimisticLockingFailureException.class, () -> policy.run(7L, () -> {
+			calls.incrementAndGet();
+			throw new ObjectOptimisticLockingFailureException("Book", 7L);
+		}));
+
+		assertEquals(3, calls.get());
+		InventoryContentionResponse counters = metrics.snapshot().get(0);
+		assertEquals(3, counters.getConflicts());
+		assertEquals(2, counters.getRetries());
+		assertEquals(1, counters.getGiveUps());
+	}
+
+	@Test
+	void otherExceptionsAreNotRetried() {
+		AtomicInteger calls = new AtomicInteger();
+
+		assertThrows(Exception.class, () -> policy.run(7L, () -> {
+			calls.incrementAndGet();
+			throw new Exception("Book doesn't exist or already checked out by user");
+		}));
+
+		assertEquals(1, calls.get());
+		assertTrue(metrics.snapshot().isEmpty());
+	}
+
+	@Test
+	void backoffStaysWithinTheDoublingLimit() {
+		for (int attempt = 1; attempt <= 10; attempt++) {
+			long limit = Math.min(properties.getInitialBackoffMs() << (attempt - 1), properties.getMaxBackoffMs());
+			long backoff = policy.backoffMillis(attempt);
+			assertTrue(backoff >= 0 && backoff <= limit, "attempt " + attempt + " slept " + backoff);
+		}
+	}
+}
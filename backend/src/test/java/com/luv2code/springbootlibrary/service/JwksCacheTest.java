@@ -0,0 +1,54 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.JwtProperties;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.OctetSequenceKeyGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JwksCacheTest {
+
+	@Test
+	void aKeyLoadedWhileWaitingForTheLockIsFound() throws Exception {
+		JWK rotated = new OctetSequenceKeyGenerator(256).keyID("rotated").generate();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch finishLoading = new CountDownLatch(1);
+		JwksCache cache = new JwksCache(() -> {
+			loading.countDown();
+			finishLoading.await();
+			return new JWKSet(rotated);
+		}, new JwtProperties());
+
+		// Another request is loading the keys (the refresh that found the new key first)
+		CompletableFuture<Void> refresh = CompletableFuture.runAsync(cache::refresh);
+		loading.await(5, TimeUnit.SECONDS);
+
+		// This one doesn't know the key yet and waits for the lock; by the time it gets it, the keys were just loaded, so it may not load them again
+		AtomicReference<Thread> requestThread = new AtomicReference<>();
+		CompletableFuture<List<JWK>> request = CompletableFuture.supplyAsync(() -> {
+			requestThread.set(Thread.currentThread());
+			try {
+				return cache.get(new JWKSelector(new JWKMatcher.Builder().keyID("rotated").build()), null);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		while (requestThread.get() == null || requestThread.get().getState() != Thread.State.BLOCKED) {
+			Thread.sleep(1);
+		}
+		finishLoading.countDown();
+		refresh.get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, request.get(5, TimeUnit.SECONDS).size());
+	}
+}
@@ -0,0 +1,195 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.LiveUpdateProperties;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.AvailabilityUpdateResponse;
+import com.luv2code.springbootlibrary.responsemodels.LoanUpdateResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+	The writes are queued on an executor that only collects them, so the test decides when they run.
+ */
+class LiveUpdateServiceTest {
+
+	private LiveUpdateProperties properties;
+
+	private List<Runnable> writes;
+
+	private LiveUpdateService service;
+
+	@BeforeEach
+	void setUp() {
+		properties = new LiveUpdateProperties();
+		properties.setMaxConnections(2);
+		properties.setMaxWatchedBooks(3);
+		properties.setMaxPendingEvents(2);
+		writes = new ArrayList<>();
+		service = new LiveUpdateService(properties, writes::add);
+	}
+
+	@Test
+	void manyChangesBeforeAWriteMakeOneWrite() throws Exception {
+		service.subscribe(null, Arrays.asList(1L, 2L));
+
+		service.onBookChanged(BookChangedEvent.inventory(book(1L, 0), 1));
+		service.onBookChanged(BookChangedEvent.inventory(book(1L, 1), 0));
+		service.onBookChanged(BookChangedEvent.inventory(book(3L, 0), 1));
+
+		assertEquals(1, writes.size());
+		runWrites();
+		assertEquals(1, service.connections());
+	}
+
+	@Test
+	void aStreamTooFarBehindOnLoansIsClosed() throws Exception {
+		service.subscribe("reader@example.com", Collections.emptyList());
+
+		for (int i = 0; i < 3; i++) {
+			service.onLoanChanged(new LoanChangedEvent("reader@example.com", 1L, LoanChangedEvent.Change.RENEWED, LocalDate.now()));
+		}
+		runWrites();
+
+		assertEquals(0, service.connections());
+	}
+
+	@Test
+	void otherUsersLoansAreNotSent() throws Exception {
+		service.subscribe("reader@example.com", Collections.emptyList());
+
+		service.onLoanChanged(new LoanChangedEvent("other@example.com", 1L, LoanChangedEvent.Change.CHECKED_OUT, LocalDate.now()));
+
+		assertTrue(writes.isEmpty());
+	}
+
+	@Test
+	void idleStreamsAreClosedOthersGetAHeartbeat() throws Exception {
+		service.subscribe(null, Collections.singletonList(1L));
+		service.sweep();
+		assertEquals(1, writes.size());
+		runWrites();
+
+		properties.setIdleTimeout(Duration.ZERO);
+		service.sweep();
+
+		assertEquals(0, service.connections());
+	}
+
+	@Test
+	void limitsAreEnforced() throws Exception {
+		assertThrows(Exception.class, () -> service.subscribe(null, Arrays.asList(1L, 2L, 3L, 4L)));
+
+		service.subscribe(null, Collections.emptyList());
+		service.subscribe(null, Collections.emptyList());
+		assertThrows(Exception.class, () -> service.subscribe(null, Collections.emptyList()));
+	}
+
+	@Test
+	void streamsOpenedAtTheSameMomentDontGoPastTheLimit() throws Exception {
+		properties.setMaxConnections(5);
+		LiveUpdateService limited = new LiveUpdateService(properties, writes::add);
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(16);
+		List<Future<Boolean>> opened = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			opened.add(pool.submit(() -> {
+				start.await();
+				try {
+					limited.subscribe(null, Collections.emptyList());
+					return true;
+				} catch (Exception e) {
+					return false;
+				}
+			}));
+		}
+		start.countDown();
+
+		int accepted = 0;
+		for (Future<Boolean> result : opened) {
+			if (result.get()) {
+				accepted++;
+			}
+		}
+		pool.shutdown();
+
+		assertEquals(5, accepted);
+		assertEquals(5, limited.connections());
+	}
+
+	@Test
+	void aTicketSignsInOneStream() throws Exception {
+		String ticket = service.issueTicket("reader@example.com");
+
+		assertEquals("reader@example.com", service.redeemTicket(ticket));
+		assertThrows(Exception.class, () -> service.redeemTicket(ticket));
+		assertThrows(Exception.class, () -> service.redeemTicket("made-up"));
+	}
+
+	@Test
+	void aStuckWriteIsCountedOnce() {
+		LiveSubscriber subscriber = new LiveSubscriber(new SseEmitter(), null, Collections.emptySet(), 1, 1_000);
+
+		// Nothing is being written
+		assertFalse(subscriber.markStuck(10_000, 1_000));
+
+		subscriber.writeStarted(2_000);
+		assertFalse(subscriber.markStuck(2_500, 1_000));
+		assertTrue(subscriber.markStuck(3_000, 1_000));
+		assertFalse(subscriber.markStuck(4_000, 1_000));
+		assertTrue(subscriber.writeFinished());
+
+		// A write that finishes in time was never stuck, and can't be marked after it finished
+		subscriber.writeStarted(5_000);
+		assertFalse(subscriber.writeFinished());
+		assertFalse(subscriber.markStuck(9_000, 1_000));
+	}
+
+	@Test
+	void onlyTheLatestCountOfABookWaits() {
+		LiveSubscriber subscriber = new LiveSubscriber(new SseEmitter(), "reader@example.com",
+				Collections.singleton(1L), 1, System.currentTimeMillis());
+
+		subscriber.offerAvailability(new AvailabilityUpdateResponse(1L, 2, 1, false));
+		subscriber.offerAvailability(new AvailabilityUpdateResponse(2L, 1, 0, false));
+		subscriber.offerAvailability(new AvailabilityUpdateResponse(1L, 2, 0, false));
+		assertTrue(subscriber.offerLoan(new LoanUpdateResponse(1L, "RETURNED", null, null)));
+		assertFalse(subscriber.offerLoan(new LoanUpdateResponse(1L, "CHECKED_OUT", null, null)));
+
+		List<Object> events = subscriber.drain();
+		assertEquals(3, events.size());
+		assertEquals(2L, ((AvailabilityUpdateResponse) events.get(0)).getBookId());
+		assertEquals(0, ((AvailabilityUpdateResponse) events.get(1)).getCopiesAvailable());
+		assertTrue(subscriber.isOverflowed());
+	}
+
+	private void runWrites() {
+		while (!writes.isEmpty()) {
+			writes.remove(0).run();
+		}
+	}
+
+	private static Book book(Long id, int copiesAvailable) {
+		Book book = new Book();
+		book.setId(id);
+		book.setCopies(1);
+		book.setCopiesAvailable(copiesAvailable);
+		return book;
+	}
+}
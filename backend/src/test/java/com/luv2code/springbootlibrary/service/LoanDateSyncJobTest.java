@@ -0,0 +1,138 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.HoldProperties;
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.LoanBatchWriter;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.HistoryWithBook;
+import com.luv2code.springbootlibrary.responsemodels.SeekPageResponse;
+import com.luv2code.springbootlibrary.responsemodels.ShelfCurrentLoansResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/*
+	A rolling deploy: the previous version of the app is still running next to this one and writes its loan dates only as strings (see LoanDates).
+	The job copies them on its own connection, so the rows must be committed first.
+ */
+@DataJpaTest
+@Import({LoanDateSyncJob.class, BookService.class, InventoryProperties.class, HoldService.class, HoldProperties.class, LoanBatchWriter.class,
+		SeekPagingService.class})
+@ActiveProfiles("test")
+@TestPropertySource(properties = "library.loan-dates.sync-enabled=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanDateSyncJobTest {
+
+	private static final String USER = "reader@example.com";
+
+	@Autowired
+	private LoanDateSyncJob loanDateSyncJob;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private SeekPagingService seekPagingService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM checkout");
+		jdbcTemplate.update("DELETE FROM history");
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void aLoanWrittenByTheOldVersionCanBeShownAndRenewedBeforeItIsConverted() throws Exception {
+		Long bookId = saveBook();
+		LocalDate today = LocalDate.now();
+		oldVersionChecksOut(bookId, today.minusDays(4), today.plusDays(3));
+
+		List<ShelfCurrentLoansResponse> loans = bookService.currentLoans(USER);
+		assertEquals(3, loans.get(0).getDaysLeft());
+
+		bookService.renewLoan(USER, bookId);
+
+		// Renewing wrote both columns
+		Map<String, Object> row = jdbcTemplate.queryForMap("SELECT return_on, return_date FROM checkout WHERE book_id = ?", bookId);
+		assertEquals(Date.valueOf(today.plusDays(7)), row.get("return_on"));
+		assertEquals(today.plusDays(7).toString(), row.get("return_date"));
+	}
+
+	@Test
+	void copiesTheStringsOfTheOldVersionIntoTheDates() {
+		Long bookId = saveBook();
+		LocalDate today = LocalDate.now();
+		oldVersionChecksOut(bookId, today, today.plusDays(7));
+		jdbcTemplate.update("INSERT INTO history (user_email, checkout_date, returned_date, title) VALUES (?, ?, ?, ?)",
+				USER, "2024-08-01", "2024-08-05", "Returned Book");
+
+		loanDateSyncJob.sync();
+
+		assertEquals(Date.valueOf(today.plusDays(7)), jdbcTemplate.queryForObject("SELECT return_on FROM checkout", Date.class));
+		assertEquals(Date.valueOf(LocalDate.of(2024, 8, 5)), jdbcTemplate.queryForObject("SELECT returned_on FROM history", Date.class));
+
+		// The old version keeps checking out while the deploy runs: the next run converts the new row (and only reads that one)
+		Long otherBookId = saveBook();
+		oldVersionChecksOut(otherBookId, today, today.plusDays(5));
+		loanDateSyncJob.sync();
+
+		assertEquals(Date.valueOf(today.plusDays(5)), jdbcTemplate.queryForObject("SELECT return_on FROM checkout WHERE book_id = ?", Date.class, otherBookId));
+	}
+
+	@Test
+	void historyWithoutADateIsLeftOutOfTheCursorListingUntilConverted() throws Exception {
+		jdbcTemplate.update("INSERT INTO history (user_email, checkout_on, returned_on, checkout_date, returned_date, title) VALUES (?, ?, ?, ?, ?, ?)",
+				USER, Date.valueOf("2024-08-01"), Date.valueOf("2024-08-05"), "2024-08-01", "2024-08-05", "Converted");
+		jdbcTemplate.update("INSERT INTO history (user_email, checkout_date, returned_date, title) VALUES (?, ?, ?, ?)",
+				USER, "2024-09-01", "2024-09-05", "From The Old Version");
+
+		SeekPageResponse<HistoryWithBook> page = seekPagingService.history(USER, null, 1);
+		assertEquals("Converted", page.getItems().get(0).getTitle());
+		assertNull(page.getNextCursor());
+
+		loanDateSyncJob.sync();
+
+		page = seekPagingService.history(USER, null, 1);
+		assertEquals("From The Old Version", page.getItems().get(0).getTitle());
+		assertEquals("Converted", seekPagingService.history(USER, page.getNextCursor(), 1).getItems().get(0).getTitle());
+	}
+
+	// What the previous version of the app writes: the dates only as strings
+	private void oldVersionChecksOut(Long bookId, LocalDate checkoutDate, LocalDate returnDate) {
+		jdbcTemplate.update("INSERT INTO checkout (user_email, checkout_date, return_date, book_id) VALUES (?, ?, ?, ?)",
+				USER, checkoutDate.toString(), returnDate.toString(), bookId);
+	}
+
+	private Long saveBook() {
+		Book book = new Book();
+		book.setTitle("Rolling Deploy");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(1);
+		book.setCopiesAvailable(0);
+		book.setCategory("FE");
+		return bookRepository.save(book).getId();
+	}
+}
@@ -0,0 +1,96 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.JwtDecoderConfiguration;
+import com.luv2code.springbootlibrary.config.JwtProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocalTokenIssuerTest {
+
+	private JwtProperties properties;
+
+	private LocalTokenIssuer issuer;
+
+	private AtomicInteger loads;
+
+	private JwtVerificationMetrics metrics;
+
+	private JwtDecoder decoder;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		properties = new JwtProperties();
+		properties.setIssuer("http://localhost:8080/api/local-issuer");
+		properties.setAudience("api://default");
+		properties.setMinRefreshInterval(Duration.ofHours(1));
+		issuer = new LocalTokenIssuer(properties);
+
+		loads = new AtomicInteger();
+		JwksCache cache = new JwksCache(() -> {
+			loads.incrementAndGet();
+			return issuer.load();
+		}, properties);
+		metrics = new JwtVerificationMetrics();
+		decoder = new JwtDecoderConfiguration().jwtDecoder(cache, properties, metrics);
+	}
+
+	@Test
+	void verifiesItsOwnTokensOffline() throws Exception {
+		Jwt jwt = decoder.decode(issuer.mint("admin@example.com", "admin", Duration.ofMinutes(5)));
+
+		assertEquals("admin@example.com", jwt.getSubject());
+		assertEquals("admin", jwt.getClaimAsString("userType"));
+		assertEquals(1, metrics.snapshot().getVerified());
+	}
+
+	@Test
+	void picksUpRotatedKeysOnTheFirstTokenSignedWithThem() throws Exception {
+		properties.setMinRefreshInterval(Duration.ZERO);
+		decoder.decode(issuer.mint("reader@example.com", null, Duration.ofMinutes(5)));
+		String beforeRotation = issuer.mint("reader@example.com", null, Duration.ofMinutes(5));
+		issuer.rotate();
+		// Nobody tells the cache about the rotation: the unknown key id makes it load the keys again
+
+		decoder.decode(issuer.mint("reader@example.com", null, Duration.ofMinutes(5)));
+		decoder.decode(beforeRotation);
+
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void unknownKeysDoNotTriggerMoreThanOneLoadPerInterval() throws Exception {
+		decoder.decode(issuer.mint("reader@example.com", null, Duration.ofMinutes(5)));
+
+		LocalTokenIssuer stranger = new LocalTokenIssuer(properties);
+		for (int i = 0; i < 5; i++) {
+			String forged = stranger.mint("reader@example.com", "admin", Duration.ofMinutes(5));
+			assertThrows(JwtException.class, () -> decoder.decode(forged));
+		}
+
+		assertEquals(1, loads.get());
+		assertEquals(5, metrics.snapshot().getRejected());
+	}
+
+	@Test
+	void rejectsTokensForAnotherIssuer() throws Exception {
+		JwtProperties otherIssuer = new JwtProperties();
+		otherIssuer.setIssuer("https://somewhere.else");
+		otherIssuer.setAudience("api://default");
+		LocalTokenIssuer impostor = new LocalTokenIssuer(otherIssuer);
+		JwksCache cache = new JwksCache(impostor::load, properties);
+		JwtDecoder impostorKeysDecoder = new JwtDecoderConfiguration().jwtDecoder(cache, properties, metrics);
+
+		String token = impostor.mint("reader@example.com", null, Duration.ofMinutes(5));
+
+		assertThrows(JwtException.class, () -> impostorKeysDecoder.decode(token));
+	}
+}
@@ -0,0 +1,17 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.config.InventoryProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs every test of BookServiceCheckoutContentionTest again, with the optimistic (@Version + retry) locking mode. Its checkouts/sec are printed next to the pessimistic ones, to compare the two modes on a hot book.
+@TestPropertySource(properties = "library.inventory.locking-mode=optimistic")
+class OptimisticCheckoutContentionTest extends BookServiceCheckoutContentionTest {
+
+	@Test
+	void runsInOptimisticMode() {
+		assertEquals(InventoryProperties.LockingMode.OPTIMISTIC, inventoryProperties.getLockingMode());
+	}
+}
@@ -0,0 +1,101 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.TypeaheadSuggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixSuggesterTest {
+
+	@Test
+	void suggestsNamesStartingWithThePrefixMostBooksFirst() {
+		PrefixSuggester suggester = PrefixSuggester.builder()
+				.add("Harry Potter", PrefixSuggester.Kind.TITLE)
+				.add("Harry Potter", PrefixSuggester.Kind.TITLE)
+				.add("Hard Times", PrefixSuggester.Kind.TITLE)
+				.add("Harper Lee", PrefixSuggester.Kind.AUTHOR)
+				.add("Harper Lee", PrefixSuggester.Kind.AUTHOR)
+				.add("Harper Lee", PrefixSuggester.Kind.AUTHOR)
+				.add("History", PrefixSuggester.Kind.CATEGORY)
+				.build();
+
+		List<TypeaheadSuggestion> suggestions = suggester.suggest("har", 10);
+
+		assertEquals(List.of("Harper Lee", "Harry Potter", "Hard Times"), texts(suggestions));
+		assertEquals("author", suggestions.get(0).getType());
+		assertEquals(3, suggestions.get(0).getBooks());
+		assertEquals(List.of("History"), texts(suggester.suggest("HIST", 10)));
+	}
+
+	@Test
+	void ignoresCaseAccentsAndPunctuation() {
+		PrefixSuggester suggester = PrefixSuggester.builder()
+				.add("Les Misérables", PrefixSuggester.Kind.TITLE)
+				.build();
+
+		assertEquals(List.of("Les Misérables"), texts(suggester.suggest("les mise", 10)));
+		assertEquals(List.of("Les Misérables"), texts(suggester.suggest("LES-MISÉ", 10)));
+	}
+
+	@Test
+	void keepsOnlyTheBestSuggestionsAndHonoursTheLimit() {
+		PrefixSuggester.Builder builder = PrefixSuggester.builder();
+		for (int i = 0; i < 50; i++) {
+			for (int copies = 0; copies <= i; copies++) {
+				builder.add("Book " + i, PrefixSuggester.Kind.TITLE);
+			}
+		}
+		PrefixSuggester suggester = builder.build();
+
+		assertEquals(PrefixSuggester.MAX_SUGGESTIONS, suggester.suggest("book", 100).size());
+		assertEquals(List.of("Book 49", "Book 48", "Book 47"), texts(suggester.suggest("b", 3)));
+		assertEquals(List.of("Book 7"), texts(suggester.suggest("book 7", 10)));
+	}
+
+	@Test
+	void prefixesLongerThanTheTrieDepthAreStillChecked() {
+		String longTitle = "The Curious Incident of the Dog in the Night-Time";
+		PrefixSuggester suggester = PrefixSuggester.builder()
+				.add(longTitle, PrefixSuggester.Kind.TITLE)
+				.add("The Curious Incident of the Dog in the Garden", PrefixSuggester.Kind.TITLE)
+				.build();
+
+		assertEquals(List.of(longTitle), texts(suggester.suggest("the curious incident of the dog in the ni", 10)));
+	}
+
+	@Test
+	void longPrefixesFindNamesBeyondTheBestOfTheirDeepestNode() {
+		String prefix = "A Very Long Series Title That Goes On, Volume ";
+		PrefixSuggester.Builder builder = PrefixSuggester.builder();
+		// More popular volumes than fit in the node's best suggestions, none of them matching "volume 7"
+		for (int i = 0; i < 2 * PrefixSuggester.MAX_SUGGESTIONS; i++) {
+			for (int copies = 0; copies < 3; copies++) {
+				builder.add(prefix + "1" + i, PrefixSuggester.Kind.TITLE);
+			}
+		}
+		builder.add(prefix + "7", PrefixSuggester.Kind.TITLE);
+		PrefixSuggester suggester = builder.build();
+
+		assertEquals(List.of(prefix + "7"), texts(suggester.suggest(prefix + "7", 10)));
+		assertEquals(PrefixSuggester.MAX_SUGGESTIONS, suggester.suggest(prefix + "1", 50).size());
+	}
+
+	@Test
+	void unknownOrBlankPrefixesSuggestNothing() {
+		PrefixSuggester suggester = PrefixSuggester.builder()
+				.add("Emma", PrefixSuggester.Kind.TITLE)
+				.build();
+
+		assertTrue(suggester.suggest("x", 10).isEmpty());
+		assertTrue(suggester.suggest(" ", 10).isEmpty());
+		assertTrue(PrefixSuggester.empty().suggest("emma", 10).isEmpty());
+	}
+
+	private static List<String> texts(List<TypeaheadSuggestion> suggestions) {
+		return suggestions.stream().map(TypeaheadSuggestion::getText).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,113 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.requestmodels.ReviewRequest;
+import com.luv2code.springbootlibrary.responsemodels.BookRatingResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManager;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@Import({ReviewService.class, RatingAggregateService.class})
+@ActiveProfiles("test")
+class RatingAggregateServiceTest {
+
+	@Autowired
+	private ReviewService reviewService;
+
+	@Autowired
+	private RatingAggregateService ratingAggregateService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void postingReviewsKeepsTheTotalsUpToDate() throws Exception {
+		Long bookId = saveBook().getId();
+
+		reviewService.postReview("a@example.com", review(bookId, 5));
+		reviewService.postReview("b@example.com", review(bookId, 4.5));
+		reviewService.postReview("c@example.com", review(bookId, 4.5));
+		entityManager.clear();
+
+		BookRatingResponse rating = ratingAggregateService.rating(bookId).get();
+		assertEquals(3, rating.getRatingCount());
+		// (5 + 4.5 + 4.5) / 3 = 4.67, rounded to the nearest half star
+		assertEquals(4.5, rating.getRatingAverage());
+		assertArrayEquals(new long[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1}, rating.getHistogram());
+	}
+
+	@Test
+	void recomputeRepairsDrift() throws Exception {
+		Long bookId = saveBook().getId();
+		reviewService.postReview("a@example.com", review(bookId, 2));
+
+		// Somebody deletes the review by hand, the totals still count it
+		jdbcTemplate.update("DELETE FROM review WHERE book_id = ?", bookId);
+		ratingAggregateService.recompute(bookId);
+		entityManager.clear();
+
+		BookRatingResponse rating = ratingAggregateService.rating(bookId).get();
+		assertEquals(0, rating.getRatingCount());
+		assertEquals(0, rating.getRatingAverage());
+		assertArrayEquals(new long[11], rating.getHistogram());
+	}
+
+	@Test
+	void aSecondReviewOfTheSameBookIsAConflict() throws Exception {
+		Long bookId = saveBook().getId();
+		reviewService.postReview("a@example.com", review(bookId, 4));
+
+		assertThrows(DuplicateEntryException.class, () -> reviewService.postReview("a@example.com", review(bookId, 1)));
+	}
+
+	@Test
+	void aReviewOfABookThatDoesntExistIsRejected() {
+		assertThrows(Exception.class, () -> reviewService.postReview("a@example.com", review(-1L, 4)));
+
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_rating_histogram WHERE book_id = -1", Integer.class));
+	}
+
+	@Test
+	void rejectsRatingsThatAreNotHalfStars() {
+		Long bookId = saveBook().getId();
+
+		assertThrows(Exception.class, () -> reviewService.postReview("a@example.com", review(bookId, 3.3)));
+		assertThrows(Exception.class, () -> reviewService.postReview("a@example.com", review(bookId, 6)));
+	}
+
+	private Book saveBook() {
+		Book book = new Book();
+		book.setTitle("Rated");
+		book.setAuthor("Author");
+		book.setCopies(1);
+		book.setCopiesAvailable(1);
+		book.setCategory("FE");
+		return bookRepository.saveAndFlush(book);
+	}
+
+	private static ReviewRequest review(Long bookId, double rating) {
+		ReviewRequest request = new ReviewRequest();
+		request.setBookId(bookId);
+		request.setRating(rating);
+		request.setReviewDescription(Optional.empty());
+		return request;
+	}
+}
@@ -0,0 +1,109 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.responsemodels.CacheRegionStatsResponse;
+import com.luv2code.springbootlibrary.responsemodels.SecondLevelCacheStatsResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+	Runs with the "l2cache" profile on top of "test". Every repository call outside of a transaction gets its own persistence context, so a second findById can only be answered by the second-level cache.
+ */
+@DataJpaTest
+@Import(SecondLevelCacheMetrics.class)
+@ActiveProfiles({"test", "l2cache"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheMetricsTest {
+
+	@Autowired
+	private SecondLevelCacheMetrics secondLevelCacheMetrics;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	void emptyTheCache() {
+		entityManagerFactory.getCache().evictAll();
+	}
+
+	@AfterEach
+	void cleanUp() {
+		bookRepository.deleteAll();
+	}
+
+	@Test
+	void secondFindByIdIsAHitInTheBookRegion() {
+		Book book = saveBook("FE");
+		entityManagerFactory.getCache().evictAll();
+		long hitsBefore = region("book").getHits();
+
+		bookRepository.findById(book.getId());
+		bookRepository.findById(book.getId());
+
+		assertTrue(secondLevelCacheMetrics.snapshot().isEnabled());
+		assertEquals(hitsBefore + 1, region("book").getHits());
+	}
+
+	@Test
+	void categoryPagesComeFromTheQueryCache() {
+		saveBook("BE");
+		saveBook("BE");
+		bookRepository.findByCategory("BE", PageRequest.of(0, 5));
+		long hitsBefore = region("book-queries").getHits();
+
+		assertEquals(2, bookRepository.findByCategory("BE", PageRequest.of(0, 5)).getTotalElements());
+
+		assertTrue(region("book-queries").getHits() > hitsBefore);
+	}
+
+	@Test
+	void anUpdateQueryThrowsTheCachedBooksAway() {
+		Book book = saveBook("Data");
+		bookRepository.findById(book.getId());
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> bookRepository.addRating(book.getId(), 4));
+
+		assertEquals(1, bookRepository.findById(book.getId()).get().getRatingCount());
+	}
+
+	private CacheRegionStatsResponse region(String name) {
+		SecondLevelCacheStatsResponse stats = secondLevelCacheMetrics.snapshot();
+		return stats.getRegions().stream()
+				.filter(region -> region.getRegion().equals(name))
+				.findFirst()
+				.orElseThrow(() -> new AssertionError("No region " + name + " in " + stats.getRegions()));
+	}
+
+	private Book saveBook(String category) {
+		Book book = new Book();
+		book.setTitle("A " + category + " book");
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(1);
+		book.setCopiesAvailable(1);
+		book.setCategory(category);
+		return bookRepository.save(book);
+	}
+}
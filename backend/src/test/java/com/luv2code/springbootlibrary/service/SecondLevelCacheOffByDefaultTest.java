@@ -0,0 +1,40 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.responsemodels.SecondLevelCacheStatsResponse;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/*
+	Without the "l2cache" profile there must be no second-level cache at all, even though hibernate-jcache is on the classpath (SecondLevelCacheMetricsTest covers the profile itself).
+ */
+@DataJpaTest
+@Import(SecondLevelCacheMetrics.class)
+@ActiveProfiles("test")
+class SecondLevelCacheOffByDefaultTest {
+
+	@Autowired
+	private SecondLevelCacheMetrics secondLevelCacheMetrics;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void theDefaultProfileHasNoRegions() {
+		SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		SecondLevelCacheStatsResponse stats = secondLevelCacheMetrics.snapshot();
+
+		assertFalse(sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled());
+		assertFalse(sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled());
+		assertFalse(stats.isEnabled());
+		assertEquals(0, sessionFactory.getStatistics().getSecondLevelCacheRegionNames().length);
+	}
+}
@@ -0,0 +1,193 @@
+package com.luv2code.springbootlibrary.service;
+
+import com.luv2code.springbootlibrary.dao.BookRepository;
+import com.luv2code.springbootlibrary.dao.HistoryRepository;
+import com.luv2code.springbootlibrary.dao.MessageRepository;
+import com.luv2code.springbootlibrary.entity.Book;
+import com.luv2code.springbootlibrary.entity.BookSummary;
+import com.luv2code.springbootlibrary.entity.History;
+import com.luv2code.springbootlibrary.entity.HistoryWithBook;
+import com.luv2code.springbootlibrary.entity.Message;
+import com.luv2code.springbootlibrary.responsemodels.SeekPageResponse;
+import com.luv2code.springbootlibrary.utils.SeekCursor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@Import({SeekPagingService.class})
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class SeekPagingServiceTest {
+
+	private static final String USER = "reader@example.com";
+
+	@Autowired
+	private SeekPagingService seekPagingService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private HistoryRepository historyRepository;
+
+	@Autowired
+	private MessageRepository messageRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void walksThroughTheWholeCatalogWithCursors() throws Exception {
+		List<Long> saved = new ArrayList<>();
+		for (int i = 0; i < 7; i++) {
+			saved.add(saveBook("Book " + i).getId());
+		}
+
+		List<Long> seen = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			SeekPageResponse<BookSummary> page = seekPagingService.books(cursor, 3);
+			page.getItems().forEach(book -> seen.add(book.getId()));
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+
+		assertEquals(saved, seen);
+		assertEquals(3, pages);
+	}
+
+	@Test
+	void historyIsNewestReturnFirstAndSameDayReturnsAreNotSkipped() throws Exception {
+		LocalDate today = LocalDate.now();
+		History older = historyRepository.save(history(today.minusDays(3)));
+		History sameDayFirst = historyRepository.save(history(today));
+		History sameDaySecond = historyRepository.save(history(today));
+		historyRepository.save(new History("someone.else@example.com", today, today, 1L, "Other", "Other"));
+
+		SeekPageResponse<HistoryWithBook> first = seekPagingService.history(USER, null, 2);
+		SeekPageResponse<HistoryWithBook> second = seekPagingService.history(USER, first.getNextCursor(), 2);
+
+		assertEquals(List.of(sameDaySecond.getId(), sameDayFirst.getId()), ids(first.getItems()));
+		assertEquals(List.of(older.getId()), ids(second.getItems()));
+		assertNull(second.getNextCursor());
+	}
+
+	@Test
+	void historyRowsComeWithTheirBooksInOneQuery() throws Exception {
+		LocalDate today = LocalDate.now();
+		for (int i = 0; i < 3; i++) {
+			Book book = saveBook("Returned " + i);
+			historyRepository.save(new History(USER, today.minusDays(7), today.minusDays(i), book.getId(), book.getTitle(), "Author"));
+		}
+		// A book deleted since: its row keeps a copy of the description
+		Book deleted = saveBook("Deleted");
+		historyRepository.save(new History(USER, today.minusDays(7), today.minusDays(3), deleted.getId(), "Deleted", "Author"));
+		bookRepository.delete(deleted);
+		historyRepository.detachBook(deleted.getId(), "Kept description", null);
+		entityManager.flush();
+		entityManager.clear();
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		List<HistoryWithBook> rows = seekPagingService.history(USER, null, 4).getItems();
+
+		assertEquals(4, rows.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals("Description", rows.get(i).getDescription());
+		}
+		assertNull(rows.get(3).getBookId());
+		assertEquals("Kept description", rows.get(3).getDescription());
+		assertEquals(1, statistics.getPrepareStatementCount());
+
+		// The Spring Data REST listing (/api/histories/search/findBooksByUserEmail) reads the books with the rows too
+		entityManager.clear();
+		statistics.clear();
+		for (History history : historyRepository.findBooksByUserEmail(USER, PageRequest.of(0, 10))) {
+			if (history.getBookId() != null) {
+				assertEquals("Description", history.getBook().getDescription());
+			}
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void aRowWhoseBookIsGoneShowsNoBook() throws Exception {
+		// Written by a return while its book was being deleted: the book_id points at nothing
+		historyRepository.save(new History(USER, LocalDate.now().minusDays(7), LocalDate.now(), 999_999L, "Deleted", "Author"));
+		entityManager.flush();
+		entityManager.clear();
+
+		HistoryWithBook row = seekPagingService.history(USER, null, 1).getItems().get(0);
+
+		assertNull(row.getDescription());
+		assertNull(row.getImg());
+	}
+
+	@Test
+	void messagesArePagedPerUserAndPerState() throws Exception {
+		Message open = saveMessage(USER, false);
+		Message answered = saveMessage(USER, true);
+		saveMessage("someone.else@example.com", false);
+
+		SeekPageResponse<Message> mine = seekPagingService.messagesOfUser(USER, null, 1);
+		assertEquals(open.getId(), mine.getItems().get(0).getId());
+		assertEquals(answered.getId(), seekPagingService.messagesOfUser(USER, mine.getNextCursor(), 1).getItems().get(0).getId());
+
+		assertEquals(2, seekPagingService.messagesByClosed(false, null, 10).getItems().size());
+	}
+
+	@Test
+	void rejectsCursorsItDidNotMake() {
+		assertThrows(Exception.class, () -> seekPagingService.books("not a cursor!", 5));
+		assertThrows(Exception.class, () -> seekPagingService.history(USER, SeekCursor.encode("42"), 5));
+		assertThrows(Exception.class, () -> seekPagingService.history(USER, SeekCursor.encode("yesterday", "42"), 5));
+	}
+
+	private Book saveBook(String title) {
+		Book book = new Book();
+		book.setTitle(title);
+		book.setAuthor("Author");
+		book.setDescription("Description");
+		book.setCopies(1);
+		book.setCopiesAvailable(1);
+		book.setCategory("FE");
+		return bookRepository.save(book);
+	}
+
+	private static History history(LocalDate returnedOn) {
+		return new History(USER, returnedOn.minusDays(7), returnedOn, 1L, "Title", "Author");
+	}
+
+	private Message saveMessage(String userEmail, boolean closed) {
+		Message message = new Message("Question", "Is it available?");
+		message.setUserEmail(userEmail);
+		message.setClosed(closed);
+		return messageRepository.save(message);
+	}
+
+	private static List<Long> ids(List<HistoryWithBook> rows) {
+		return rows.stream().map(HistoryWithBook::getId).collect(Collectors.toList());
+	}
+}
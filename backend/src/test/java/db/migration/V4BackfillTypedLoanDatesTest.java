@@ -0,0 +1,98 @@
+package db.migration;
+
+import com.luv2code.springbootlibrary.SpringBootLibraryApplication;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.migration.Context;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// This test lives next to the migration (outside com.luv2code.springbootlibrary), so it has to point at the application class itself.
+@DataJpaTest
+@ContextConfiguration(classes = SpringBootLibraryApplication.class)
+@ActiveProfiles("test")
+// The migration commits batch by batch on its own connection, so the rows it reads must already be committed.
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class V4BackfillTypedLoanDatesTest {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM checkout");
+		jdbcTemplate.update("DELETE FROM history");
+	}
+
+	@Test
+	void copiesLegacyStringDatesIntoTheDateColumns() throws Exception {
+		// Rows written by the old version of the app: only the string columns are filled in
+		for (int i = 0; i < 2500; i++) {
+			jdbcTemplate.update("INSERT INTO checkout (user_email, checkout_date, return_date, book_id) VALUES (?, ?, ?, ?)",
+					"reader" + i + "@example.com", "2024-09-18", "2024-09-25", (long) i);
+		}
+		jdbcTemplate.update("INSERT INTO history (user_email, checkout_date, returned_date, title) VALUES (?, ?, ?, ?)",
+				"reader@example.com", "2024-08-01", "2024-08-05", "Returned Book");
+
+		try (Connection connection = dataSource.getConnection()) {
+			new V4__Backfill_typed_loan_dates().migrate(contextFor(connection));
+		}
+
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM checkout WHERE return_on IS NULL OR checkout_on IS NULL", Integer.class));
+		assertEquals(2500, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM checkout WHERE return_on = ?", Integer.class, Date.valueOf(LocalDate.of(2024, 9, 25))));
+
+		Map<String, Object> history = jdbcTemplate.queryForMap("SELECT checkout_on, returned_on FROM history");
+		assertEquals(LocalDate.of(2024, 8, 1), ((Date) history.get("checkout_on")).toLocalDate());
+		assertEquals(LocalDate.of(2024, 8, 5), ((Date) history.get("returned_on")).toLocalDate());
+	}
+
+	@Test
+	void leavesMalformedDatesAloneInsteadOfFailing() throws Exception {
+		jdbcTemplate.update("INSERT INTO checkout (user_email, checkout_date, return_date, book_id) VALUES (?, ?, ?, ?)",
+				"good@example.com", "2024-09-18", "2024-09-25", 1L);
+		jdbcTemplate.update("INSERT INTO checkout (user_email, checkout_date, return_date, book_id) VALUES (?, ?, ?, ?)",
+				"bad@example.com", "2024-09-18", "2024-02-31", 2L);
+		jdbcTemplate.update("INSERT INTO history (user_email, checkout_date, returned_date, title) VALUES (?, ?, ?, ?)",
+				"bad@example.com", "", "yesterday", "Returned Book");
+
+		try (Connection connection = dataSource.getConnection()) {
+			new V4__Backfill_typed_loan_dates().migrate(contextFor(connection));
+		}
+
+		assertEquals(Date.valueOf(LocalDate.of(2024, 9, 25)),
+				jdbcTemplate.queryForObject("SELECT return_on FROM checkout WHERE user_email = 'good@example.com'", Date.class));
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM checkout WHERE return_on IS NULL", Integer.class));
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM history WHERE returned_on IS NULL", Integer.class));
+	}
+
+	private static Context contextFor(Connection connection) {
+		return new Context() {
+			@Override
+			public Configuration getConfiguration() {
+				return null;
+			}
+
+			@Override
+			public Connection getConnection() {
+				return connection;
+			}
+		};
+	}
+}
@@ -19,26 +19,33 @@ export const BookCheckoutPage = () => {
     // Review State
     const [reviews, setReviews] = useState<ReviewModel[]>([])
     const [totalStars, setTotalStars] = useState(0);
-    const [isLoadingReview, setIsLoadingReview] = useState(true);
-
     const [isReviewLeft, setIsReviewLeft] = useState(false);
-    const [isLoadingUserReview, setIsLoadingUserReview] = useState(true);
 
     // Loans Count State
     const [currentLoansCount, setCurrentLoansCount] = useState(0);
-    const [isLoadingCurrentLoansCount, setIsLoadingCurrentLoansCount] = useState(true);
 
     // Is Book Check Out?
     const [isCheckedOut, setIsCheckedOut] = useState(false);
-    const [isLoadingBookCheckedOut, setIsLoadingBookCheckedOut] = useState(true);
 
     const bookId = (window.location.pathname).split('/')[2];
 
+    /*
+        Everything the page shows comes from ONE request: the book, its latest reviews, and (when logged in) whether the user reviewed it,
+        how many books they have checked out and whether this is one of them. It's fetched again after a checkout or a review.
+        The Authorization header is only sent when logged in; without it the parts about the user come back empty.
+     */
     useEffect(() => {
-        const fetchBook = async () => {
-            const baseUrl: string = `http://localhost:8080/api/books/${bookId}`;
+        const fetchBookPage = async () => {
+            const url: string = `http://localhost:8080/api/books/${bookId}/page`;
+            const requestOptions = authState && authState.isAuthenticated ? {
+                method: 'GET',
+                headers: {
+                    Authorization: `Bearer ${authState.accessToken?.accessToken}`,
+                    'Content-Type': 'application/json'
+                }
+            } : { method: 'GET' };
 
-            const response = await fetch(baseUrl);
+            const response = await fetch(url, requestOptions);
 
             if (!response.ok) {
                 throw new Error('Something went wrong!');
@@ -47,151 +54,113 @@ export const BookCheckoutPage = () => {
             const responseJson = await response.json();
 
             const loadedBook: BookModel = {
-                id: responseJson.id,
-                title: responseJson.title,
-                author: responseJson.author,
-                description: responseJson.description,
-                copies: responseJson.copies,
-                copiesAvailable: responseJson.copiesAvailable,
-                category: responseJson.category,
-                img: responseJson.img,
+                id: responseJson.book.id,
+                title: responseJson.book.title,
+                author: responseJson.book.author,
+                description: responseJson.book.description,
+                copies: responseJson.book.copies,
+                copiesAvailable: responseJson.book.copiesAvailable,
+                category: responseJson.book.category,
+                img: responseJson.book.img,
+                ratingCount: responseJson.book.ratingCount,
+                ratingAverage: responseJson.book.ratingAverage,
             };
 
-            setBook(loadedBook);
-            setIsLoading(false);
-        };
-        fetchBook().catch((error: any) => {
-            setIsLoading(false);
-            setHttpError(error.message);
-        })
-    }, [isCheckedOut]);
-
-    useEffect(() => {
-        const fetchBookReviews = async () => {
-            const reviewUrl: string = `http://localhost:8080/api/reviews/search/findByBookId?bookId=${bookId}`;
-
-            const responseReviews = await fetch(reviewUrl);
-
-            if (!responseReviews.ok) {
-                throw new Error('Something went wrong!');
-            }
-
-            const responseJsonReviews = await responseReviews.json();
-
-            const responseData = responseJsonReviews._embedded.reviews;
-
             const loadedReviews: ReviewModel[] = [];
-
-            let weightedStarReviews: number = 0;
-
-            for (const key in responseData) {
+            for (const review of responseJson.latestReviews) {
                 loadedReviews.push({
-                    id: responseData[key].id,
-                    userEmail: responseData[key].userEmail,
-                    date: responseData[key].date,
-                    rating: responseData[key].rating,
-                    book_id: responseData[key].bookId,
-                    reviewDescription: responseData[key].reviewDescription,
+                    id: review.id,
+                    userEmail: review.userEmail,
+                    date: review.date,
+                    rating: review.rating,
+                    book_id: review.bookId,
+                    reviewDescription: review.reviewDescription,
                 });
-                weightedStarReviews = weightedStarReviews + responseData[key].rating;
-            }
-
-            if (loadedReviews) {
-                const round = (Math.round((weightedStarReviews / loadedReviews.length) * 2) / 2).toFixed(1);
-                setTotalStars(Number(round));
             }
 
+            setBook(loadedBook);
+            // The average of all the book's reviews, worked out by the server (the page only gets the latest few reviews)
+            setTotalStars(responseJson.book.ratingAverage);
             setReviews(loadedReviews);
-            setIsLoadingReview(false);
+            setIsReviewLeft(responseJson.reviewLeft === true);
+            setCurrentLoansCount(responseJson.currentLoansCount ?? 0);
+            setIsCheckedOut(responseJson.checkedOut === true);
+            setIsLoading(false);
         };
-
-        fetchBookReviews().catch((error: any) => {
-            setIsLoadingReview(false);
+        fetchBookPage().catch((error: any) => {
+            setIsLoading(false);
             setHttpError(error.message);
         })
-    }, [isReviewLeft]);
+    }, [authState, isCheckedOut, isReviewLeft]);
 
+    /*
+        Live updates of this book's copies (and, when logged in, of the user's loans) over Server-Sent Events, so the page doesn't show a stale count.
+        EventSource can't send an Authorization header, so when logged in the page first asks for a ticket with its token and opens the stream with that.
+        A ticket works once: when the stream is closed (the server closes idle and old streams), the page waits a little and opens a new one with a new ticket.
+     */
     useEffect(() => {
-        const fetchUserReviewBook = async () => {
+        let eventSource: EventSource | undefined;
+        let retry: ReturnType<typeof setTimeout> | undefined;
+        let stopped = false;
+
+        const openStream = async () => {
+            let url = `http://localhost:8080/api/books/live?bookIds=${bookId}`;
             if (authState && authState.isAuthenticated) {
-                const url = `http://localhost:8080/api/reviews/secure/user/book/?bookId=${bookId}`;
-                const requestOptions = {
-                    method: 'GET',
+                const ticketResponse = await fetch(`http://localhost:8080/api/books/secure/live/ticket`, {
+                    method: 'POST',
                     headers: {
                         Authorization: `Bearer ${authState.accessToken?.accessToken}`,
                         'Content-Type': 'application/json'
                     }
-                };
-                const userReview = await fetch(url, requestOptions);
-                if (!userReview.ok) {
-                    throw new Error('Something went wrong');
-                }
-                const userReviewResponseJson = await userReview.json();
-                setIsReviewLeft(userReviewResponseJson);
-            }
-            setIsLoadingUserReview(false);
-        }
-        fetchUserReviewBook().catch((error: any) => {
-            setIsLoadingUserReview(false);
-            setHttpError(error.message);
-        })
-    }, [authState]);
-
-    useEffect(() => {
-        const fetchUserCurrentLoansCount = async () => {
-            if (authState && authState.isAuthenticated) {
-                const url = `http://localhost:8080/api/books/secure/currentloans/count`;
-                const requestOptions = {
-                    method: 'GET',
-                    headers: { 
-                        Authorization: `Bearer ${authState.accessToken?.accessToken}`,
-                        'Content-Type': 'application/json'
-                     }
-                };
-                const currentLoansCountResponse = await fetch(url, requestOptions);
-                if (!currentLoansCountResponse.ok)  {
+                });
+                if (!ticketResponse.ok) {
                     throw new Error('Something went wrong!');
                 }
-                const currentLoansCountResponseJson = await currentLoansCountResponse.json();
-                setCurrentLoansCount(currentLoansCountResponseJson);
+                const ticketJson = await ticketResponse.json();
+                url += `&ticket=${encodeURIComponent(ticketJson.ticket)}`;
+            }
+            if (stopped) {
+                return;
             }
-            setIsLoadingCurrentLoansCount(false);
-        }
-        fetchUserCurrentLoansCount().catch((error: any) => {
-            setIsLoadingCurrentLoansCount(false);
-            setHttpError(error.message);
-        })
-    }, [authState, isCheckedOut]);
-
-    useEffect(() => {
-        const fetchUserCheckedOutBook = async () => {
-            if (authState && authState.isAuthenticated) {
-                const url = `http://localhost:8080/api/books/secure/ischeckedout/byuser/?bookId=${bookId}`;
-                const requestOptions = {
-                    method: 'GET',
-                    headers: {
-                        Authorization: `Bearer ${authState.accessToken?.accessToken}`,
-                        'Content-Type': 'application/json'
-                    }
-                };
-                const bookCheckedOut = await fetch(url, requestOptions);
 
-                if (!bookCheckedOut.ok) {
-                    throw new Error('Something went wrong!');
+            eventSource = new EventSource(url);
+            eventSource.addEventListener('availability', (event) => {
+                const update = JSON.parse((event as MessageEvent).data);
+                setBook(current => current ? { ...current, copies: update.copies, copiesAvailable: update.copiesAvailable } : current);
+            });
+            eventSource.addEventListener('loan', (event) => {
+                const update = JSON.parse((event as MessageEvent).data);
+                if (String(update.bookId) !== bookId) {
+                    return;
+                }
+                if (update.change === 'CHECKED_OUT') {
+                    setIsCheckedOut(true);
+                } else if (update.change === 'RETURNED') {
+                    setIsCheckedOut(false);
+                }
+            });
+            eventSource.onerror = () => {
+                // The browser would reconnect by itself, but with the used ticket: close it and start over
+                eventSource?.close();
+                if (!stopped) {
+                    retry = setTimeout(() => openStream().catch(() => { }), 5000);
                 }
+            };
+        };
 
-                const bookCheckedOutResponseJson = await bookCheckedOut.json();
-                setIsCheckedOut(bookCheckedOutResponseJson);
+        // Live updates are a nicety: if they don't work, the page still shows what it fetched
+        openStream().catch(() => { });
+
+        return () => {
+            stopped = true;
+            if (retry) {
+                clearTimeout(retry);
             }
-            setIsLoadingBookCheckedOut(false);
-        }
-        fetchUserCheckedOutBook().catch((error: any) => {
-            setIsLoadingBookCheckedOut(false);
-            setHttpError(error.message);
-        })
-    }, [authState]);
+            eventSource?.close();
+        };
+    }, [authState, bookId]);
 
-    if (isLoading || isLoadingReview || isLoadingCurrentLoansCount || isLoadingBookCheckedOut || isLoadingUserReview) {
+    if (isLoading) {
         return (
             <SpinnerLoading />
         )
@@ -46,9 +46,6 @@ export const SearchBook: React.FC<{ book: BookModel }> = (props) => {
                         <h4>
                             {props.book.title}
                         </h4>
-                        <p className='card-text'>
-                            {props.book.description}
-                        </p>
                     </div>
                 </div>
                 <div className='col-md-4 d-flex justify-content-center align-items-center'>
@@ -7,6 +7,9 @@ class BookModel {
     copiesAvailable?: number;
     category?: string;
     img?: string;
+    // The book's review count and average rating (to the nearest half star), kept up to date by the server
+    ratingCount?: number;
+    ratingAverage?: number;
 
     constructor (id: number, title: string, author: string, description: string, 
         copies: number, copiesAvailable: number, category: string, img: string) {